@@ -1,23 +1,43 @@
 package com.egeniq.utils.api;
 
-import java.net.ConnectException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PushbackReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.util.JsonReader;
 import android.util.Log;
 import ch.boye.httpclientandroidlib.Header;
 import ch.boye.httpclientandroidlib.HttpEntity;
 import ch.boye.httpclientandroidlib.HttpResponse;
-import ch.boye.httpclientandroidlib.client.HttpClient;
 import ch.boye.httpclientandroidlib.client.methods.HttpDelete;
 import ch.boye.httpclientandroidlib.client.methods.HttpGet;
 import ch.boye.httpclientandroidlib.client.methods.HttpPost;
 import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+import ch.boye.httpclientandroidlib.util.EntityUtils;
 
 import com.egeniq.utils.net.AbstractHTTPClient;
+import com.egeniq.utils.net.CachedResponse;
+import com.egeniq.utils.net.Deadline;
+import com.egeniq.utils.net.DeadlineExceededException;
+import com.egeniq.utils.net.DownloadListener;
+import com.egeniq.utils.net.HTTPException;
+import com.egeniq.utils.net.RequestCallback;
+import com.egeniq.utils.net.RequestFuture;
+import com.egeniq.utils.net.RequestTrace;
 
 /**
  * Simple API client.
@@ -31,6 +51,12 @@ public class APIClient extends AbstractHTTPClient {
         JSONArray,
         Raw
     }
+    
+    private boolean _streamingEnabled = false;
+    
+    private boolean _coalescingEnabled = false;
+    private final ConcurrentHashMap<String, InFlightRequest> _inFlightRequests = new ConcurrentHashMap<String, InFlightRequest>();
+    private final AtomicLong _coalescedRequestCount = new AtomicLong();
 
     /**
      * Constructor.
@@ -84,19 +110,37 @@ public class APIClient extends AbstractHTTPClient {
      * @return Object.
      */
     public JSONObject get(String location, boolean useSSL, Header[] headers) throws APIException {
-        HttpGet httpGet = new HttpGet(_getURL(location, useSSL));
+        return _executeJSONObjectAPIRequest(_createGetRequest(location, useSSL, headers, "Fetch JSON object"));
+    }
 
-        if (headers != null) {
-            for (Header header : headers) {
-                httpGet.addHeader(header);
-            }
-        }          
-        
-        if (_isLoggingEnabled()) {
-            Log.d(_getLoggingTag(), "Fetch JSON object: " + httpGet.getURI());
-        }
-        
-        return _executeJSONObjectAPIRequest(httpGet);
+    /**
+     * Performs an asynchronous GET request to the given location (which is appended to the base URL)
+     * and returns the result as a JSON object.
+     * 
+     * Doesn't use SSL.
+     * 
+     * @param location Location.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<JSONObject> getAsync(String location, RequestCallback<JSONObject> callback) {
+        return getAsync(location, false, null, callback);
+    }
+    
+    /**
+     * Performs an asynchronous GET request to the given location (which is appended to the base URL)
+     * and returns the result as a JSON object.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<JSONObject> getAsync(String location, boolean useSSL, Header[] headers, RequestCallback<JSONObject> callback) {
+        return _submitAPIRequest(ResponseType.JSONObject, _createGetRequest(location, useSSL, headers, "Fetch JSON object"), callback);
     }
     
     /**
@@ -139,19 +183,138 @@ public class APIClient extends AbstractHTTPClient {
      * @return List.
      */
     public JSONArray getArray(String location, boolean useSSL, Header[] headers) throws APIException {
-        HttpGet httpGet = new HttpGet(_getURL(location, useSSL));
-        
-        if (headers != null) {
-            for (Header header : headers) {
-                httpGet.addHeader(header);
-            }
-        }        
+        return _executeJSONArrayAPIRequest(_createGetRequest(location, useSSL, headers, "Fetch JSON array"));
+    }
 
-        if (_isLoggingEnabled()) {
-            Log.d(_getLoggingTag(), "Fetch JSON array: " + httpGet.getURI());
-        }
-        
-        return _executeJSONArrayAPIRequest(httpGet);
+    /**
+     * Performs an asynchronous GET request to the given location (which is appended to the base URL)
+     * and returns the result as a JSON array.
+     * 
+     * Doesn't use SSL.
+     * 
+     * @param location Location.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<JSONArray> getArrayAsync(String location, RequestCallback<JSONArray> callback) {
+        return getArrayAsync(location, false, null, callback);
+    }
+    
+    /**
+     * Performs an asynchronous GET request to the given location (which is appended to the base URL)
+     * and returns the result as a JSON array.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<JSONArray> getArrayAsync(String location, boolean useSSL, Header[] headers, RequestCallback<JSONArray> callback) {
+        return _submitAPIRequest(ResponseType.JSONArray, _createGetRequest(location, useSSL, headers, "Fetch JSON array"), callback);
+    }
+    
+    /**
+     * Is streaming enabled?
+     */
+    public boolean isStreamingEnabled() {
+        return _streamingEnabled;
+    }
+    
+    /**
+     * Enable / disable streaming.
+     * 
+     * When enabled, JSON object and array responses to GET requests are parsed directly 
+     * from the response stream instead of being read into a string first. The maximum 
+     * response body size still applies. Response bodies won't be logged in this mode. 
+     * Only has effect on API level 11 and higher.
+     */
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        _streamingEnabled = streamingEnabled;
+    }
+
+    /**
+     * Is coalescing of identical GET requests enabled?
+     */
+    public boolean isCoalescingEnabled() {
+        return _coalescingEnabled;
+    }
+    
+    /**
+     * Enable / disable coalescing of identical GET requests.
+     * 
+     * When enabled, a GET request that is identical (same response type, URL and 
+     * headers) to a request that is still in-flight doesn't hit the network, but waits 
+     * for and returns the result of the in-flight request instead. All callers receive 
+     * the same parsed JSON instance (or an exception caused by the same failure), so
+     * callers shouldn't modify it.
+     * Cancelling the in-flight request fails the waiting requests as well. A waiting 
+     * request waits until its deadline expires (see Deadline) or, without deadline, 
+     * for at most the timeout of this client, after which it's executed by itself. With
+     * a timeout of 0 waiting requests don't wait, they are executed by themselves.
+     */
+    public void setCoalescingEnabled(boolean coalescingEnabled) {
+        _coalescingEnabled = coalescingEnabled;
+    }
+    
+    /**
+     * Returns the number of requests that have been served by an identical in-flight 
+     * request instead of hitting the network.
+     */
+    public long getCoalescedRequestCount() {
+        return _coalescedRequestCount.get();
+    }
+
+    /**
+     * Performs a GET request to the given location (which is appended to the base URL) 
+     * and passes the response stream to the given handler.
+     * 
+     * Doesn't use SSL.
+     * 
+     * @param location Location.
+     * @param handler  Stream handler.
+     * 
+     * @return Handler result.
+     */
+    @TargetApi(11)
+    public <T> T getStream(String location, JSONStreamHandler<T> handler) throws APIException {
+        return getStream(location, false, null, handler);
+    }
+
+    /**
+     * Performs a GET request to the given location (which is appended to the base URL) 
+     * and passes the response stream to the given handler.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available?
+     * @param handler  Stream handler.
+     * 
+     * @return Handler result.
+     */
+    @TargetApi(11)
+    public <T> T getStream(String location, boolean useSSL, JSONStreamHandler<T> handler) throws APIException {
+        return getStream(location, useSSL, null, handler);
+    }
+
+    /**
+     * Performs a GET request to the given location (which is appended to the base URL) 
+     * and passes the response stream to the given handler.
+     * 
+     * The handler is never called for error responses, these are thrown as an APIException
+     * in the same way as for the other request methods.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available?
+     * @param headers  HTTP headers.
+     * @param handler  Stream handler.
+     * 
+     * @return Handler result, or null if the body is empty.
+     */
+    @TargetApi(11)
+    public <T> T getStream(String location, boolean useSSL, Header[] headers, JSONStreamHandler<T> handler) throws APIException {
+        return _executeStreamingAPIRequest(_createGetRequest(location, useSSL, headers, "Fetch stream"), handler);
     }
     
     /**
@@ -194,19 +357,124 @@ public class APIClient extends AbstractHTTPClient {
      * @return String.
      */
     public String getRaw(String location, boolean useSSL, Header[] headers) throws APIException {
-        HttpGet httpGet = new HttpGet(_getURL(location, useSSL));
-        
-        if (headers != null) {
-            for (Header header : headers) {
-                httpGet.addHeader(header);
-            }
-        }        
+        return _executeRawAPIRequest(_createGetRequest(location, useSSL, headers, "Fetch Raw"));
+    }
 
-        if (_isLoggingEnabled()) {
-            Log.d(_getLoggingTag(), "Fetch Raw: " + httpGet.getURI());
+    /**
+     * Performs an asynchronous GET request to the given location (which is appended to the base URL)
+     * and returns the result as a string.
+     * 
+     * Doesn't use SSL.
+     * 
+     * @param location Location.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<String> getRawAsync(String location, RequestCallback<String> callback) {
+        return getRawAsync(location, false, null, callback);
+    }
+    
+    /**
+     * Performs an asynchronous GET request to the given location (which is appended to the base URL)
+     * and returns the result as a string.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<String> getRawAsync(String location, boolean useSSL, Header[] headers, RequestCallback<String> callback) {
+        return _submitAPIRequest(ResponseType.Raw, _createGetRequest(location, useSSL, headers, "Fetch Raw"), callback);
+    }
+    
+    /**
+     * Performs a GET request to the given location (which is appended to the base URL)
+     * and copies the response body to the given stream. 
+     * 
+     * Unlike getRaw the body is copied byte for byte and never held in memory. The 
+     * stream isn't closed.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param out      Output stream.
+     * @param listener Progress listener (optional).
+     * 
+     * @return Number of bytes written.
+     */
+    public long download(String location, boolean useSSL, Header[] headers, OutputStream out, DownloadListener listener) throws APIException {
+        try {
+            return _download(_createGetRequest(location, useSSL, headers, "Download"), out, listener);
+        } catch (HTTPException e) {
+            throw _createAPIException(e);
+        } catch (IOException e) {
+            if (_isLoggingEnabled()) {
+                Log.e(_getLoggingTag(), "Unexpected error", e);
+            }
+            
+            throw new APIException(e);
         }
-        
-        return _executeRawAPIRequest(httpGet);
+    }
+    
+    /**
+     * Performs a GET request to the given location (which is appended to the base URL)
+     * and writes the response body to the given file. 
+     * 
+     * If the file already exists, the download is resumed using a Range request. Delete 
+     * the file first to download it from scratch.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param file     File.
+     * @param listener Progress listener (optional).
+     * 
+     * @return Size of the file.
+     */
+    public long download(String location, boolean useSSL, Header[] headers, File file, DownloadListener listener) throws APIException {
+        try {
+            return _download(_createGetRequest(location, useSSL, headers, "Download"), file, listener);
+        } catch (HTTPException e) {
+            throw _createAPIException(e);
+        } catch (IOException e) {
+            if (_isLoggingEnabled()) {
+                Log.e(_getLoggingTag(), "Unexpected error", e);
+            }
+            
+            throw new APIException(e);
+        }
+    }
+    
+    /**
+     * Asynchronously downloads the given location to the given file, see 
+     * {@link #download(String, boolean, Header[], File, DownloadListener)}.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param file     File.
+     * @param listener Progress listener (optional).
+     * @param callback Optional callback, receives the size of the file.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<Long> downloadAsync(String location, boolean useSSL, Header[] headers, final File file, final DownloadListener listener, RequestCallback<Long> callback) {
+        final HttpGet httpGet = _createGetRequest(location, useSSL, headers, "Download");
+        return _submit(httpGet, new Callable<Long>() {
+            @Override
+            public Long call() throws APIException {
+                try {
+                    return Long.valueOf(_download(httpGet, file, listener));
+                } catch (HTTPException e) {
+                    throw _createAPIException(e);
+                } catch (IOException e) {
+                    throw new APIException(e);
+                }
+            }
+        }, callback);
     }
     
     /**
@@ -244,23 +512,39 @@ public class APIClient extends AbstractHTTPClient {
      * @return Object.
      */
     public JSONObject post(String location, HttpEntity entity, boolean useSSL, Header[] headers) throws APIException {
-        HttpPost httpPost = new HttpPost(_getURL(location, useSSL));
-
-        if (headers != null) {
-            for (Header header : headers) {
-                httpPost.addHeader(header);
-            }
-        }
-
-        if (entity != null) {
-            httpPost.setEntity(entity);
-        }
+        return _executeJSONObjectAPIRequest(_createPostRequest(location, entity, useSSL, headers));
+    }
 
-        if (_isLoggingEnabled()) {
-            Log.d(_getLoggingTag(), "Post: " + httpPost.getURI());
-        }
-        
-        return _executeJSONObjectAPIRequest(httpPost);
+    /**
+     * Performs an asynchronous POST request to the given location (which is appended to the base URL)
+     * and returns the result as a JSON object.
+     * 
+     * Doesn't use SSL.
+     * 
+     * @param location Location.
+     * @param entity   Post entity.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<JSONObject> postAsync(String location, HttpEntity entity, RequestCallback<JSONObject> callback) {
+        return postAsync(location, entity, false, null, callback);
+    }
+    
+    /**
+     * Performs an asynchronous POST request to the given location (which is appended to the base URL)
+     * and returns the result as a JSON object.
+     * 
+     * @param location Location.
+     * @param entity   Post entity.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<JSONObject> postAsync(String location, HttpEntity entity, boolean useSSL, Header[] headers, RequestCallback<JSONObject> callback) {
+        return _submitAPIRequest(ResponseType.JSONObject, _createPostRequest(location, entity, useSSL, headers), callback);
     }
     
     /**
@@ -298,23 +582,7 @@ public class APIClient extends AbstractHTTPClient {
      * @return Object.
      */
     public String postRaw(String location, HttpEntity entity, boolean useSSL, Header[] headers) throws APIException {
-        HttpPost httpPost = new HttpPost(_getURL(location, useSSL));
-
-        if (headers != null) {
-            for (Header header : headers) {
-                httpPost.addHeader(header);
-            }
-        }
-
-        if (entity != null) {
-            httpPost.setEntity(entity);
-        }
-
-        if (_isLoggingEnabled()) {
-            Log.d(_getLoggingTag(), "Post: " + httpPost.getURI());
-        }
-        
-        return _executeRawAPIRequest(httpPost);
+        return _executeRawAPIRequest(_createPostRequest(location, entity, useSSL, headers));
     }
     
     /**
@@ -353,6 +621,85 @@ public class APIClient extends AbstractHTTPClient {
      * @return Object.
      */
     public JSONObject delete(String location, boolean useSSL, Header[] headers) throws APIException {
+        return _executeJSONObjectAPIRequest(_createDeleteRequest(location, useSSL, headers));
+    }
+
+    /**
+     * Performs an asynchronous DELETE request to the given location (which is appended to the base URL)
+     * and returns the result as a JSON object.
+     * 
+     * Doesn't use SSL.
+     * 
+     * @param location Location.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<JSONObject> deleteAsync(String location, RequestCallback<JSONObject> callback) {
+        return deleteAsync(location, false, null, callback);
+    }
+    
+    /**
+     * Performs an asynchronous DELETE request to the given location (which is appended to the base URL)
+     * and returns the result as a JSON object.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<JSONObject> deleteAsync(String location, boolean useSSL, Header[] headers, RequestCallback<JSONObject> callback) {
+        return _submitAPIRequest(ResponseType.JSONObject, _createDeleteRequest(location, useSSL, headers), callback);
+    }
+
+    /**
+     * Creates a GET request.
+     */
+    private HttpGet _createGetRequest(String location, boolean useSSL, Header[] headers, String description) {
+        HttpGet httpGet = new HttpGet(_getURL(location, useSSL));
+        
+        if (headers != null) {
+            for (Header header : headers) {
+                httpGet.addHeader(header);
+            }
+        }        
+
+        if (_isLoggingEnabled()) {
+            Log.d(_getLoggingTag(), description + ": " + httpGet.getURI());
+        }
+        
+        return httpGet;
+    }
+    
+    /**
+     * Creates a POST request.
+     */
+    private HttpPost _createPostRequest(String location, HttpEntity entity, boolean useSSL, Header[] headers) {
+        HttpPost httpPost = new HttpPost(_getURL(location, useSSL));
+
+        if (headers != null) {
+            for (Header header : headers) {
+                httpPost.addHeader(header);
+            }
+        }
+
+        if (entity != null) {
+            httpPost.setEntity(entity);
+        }
+
+        if (_isLoggingEnabled()) {
+            Log.d(_getLoggingTag(), "Post: " + httpPost.getURI());
+        }
+        
+        return httpPost;
+    }
+    
+    /**
+     * Creates a DELETE request.
+     */
+    private HttpDelete _createDeleteRequest(String location, boolean useSSL, Header[] headers) {
         HttpDelete httpDelete = new HttpDelete(_getURL(location, useSSL));
 
         if (headers != null) {
@@ -365,7 +712,20 @@ public class APIClient extends AbstractHTTPClient {
             Log.d(_getLoggingTag(), "Delete: " + httpDelete.getURI());
         }
         
-        return _executeJSONObjectAPIRequest(httpDelete);
+        return httpDelete;
+    }
+    
+    /**
+     * Submits an API request for asynchronous execution.
+     */
+    private <T> RequestFuture<T> _submitAPIRequest(final ResponseType responseType, final HttpRequestBase httpRequest, RequestCallback<T> callback) {
+        return _submit(httpRequest, new Callable<T>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public T call() throws APIException {
+                return (T)_executeAPIRequest(responseType, httpRequest);
+            }
+        }, callback);
     }
 
     /**
@@ -401,21 +761,98 @@ public class APIClient extends AbstractHTTPClient {
      * Handles response processing and error handling in a uniform way.
      */
     protected Object _executeAPIRequest(ResponseType responseType, HttpRequestBase httpRequest) throws APIException {
-        try {
-            httpRequest.setParams(_getDefaultParams());
+        if (!_coalescingEnabled || !(httpRequest instanceof HttpGet)) {
+            return _performAPIRequest(responseType, httpRequest);
+        }
+        
+        String key = _getCoalescingKey(responseType, httpRequest);
+        InFlightRequest inFlightRequest = new InFlightRequest();
+        InFlightRequest existingRequest = _inFlightRequests.putIfAbsent(key, inFlightRequest);
+        if (existingRequest != null) {
+            Deadline deadline = Deadline.current();
+            if (deadline != null && deadline.isExpired()) {
+                throw new APIException(new DeadlineExceededException());
+            }
             
-            HttpClient client = _getClient();
-            HttpResponse response = null;
+            if (_isLoggingEnabled()) {
+                Log.d(_getLoggingTag(), "Coalescing request with in-flight request: " + key);
+            }
             
-            try {
-                response = client.execute(httpRequest);
-            } catch (ConnectException ex) {
-                // close idle connections to make sure the connect exception isn't
-                // caused by a stuck connection and try again
-                client.getConnectionManager().closeIdleConnections(0, TimeUnit.MILLISECONDS);
-                response = client.execute(httpRequest);
+            if (existingRequest.await(deadline != null && deadline.hasTimeout() ? deadline.getRemainingTime() : getTimeout())) {
+                _coalescedRequestCount.incrementAndGet();
+                return existingRequest.getResult();
+            } else if (deadline != null && deadline.hasTimeout()) {
+                throw new APIException(new DeadlineExceededException());
             }
             
+            // the in-flight request takes longer than the timeout, don't depend on it
+            if (_isLoggingEnabled()) {
+                Log.d(_getLoggingTag(), "In-flight request is slow, executing request: " + key);
+            }
+            
+            return _performAPIRequest(responseType, httpRequest);
+        }
+        
+        Object result = null;
+        APIException exception = null;
+        try {
+            result = _performAPIRequest(responseType, httpRequest);
+            return result;
+        } catch (APIException e) {
+            exception = e;
+            throw e;
+        } catch (RuntimeException e) {
+            exception = new APIException(e);
+            throw e;
+        } finally {
+            _inFlightRequests.remove(key, inFlightRequest);
+            inFlightRequest.complete(result, exception);
+        }
+    }
+    
+    /**
+     * Returns the key used to detect identical requests.
+     */
+    private String _getCoalescingKey(ResponseType responseType, HttpRequestBase httpRequest) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(responseType).append(' ').append(httpRequest.getMethod()).append(' ').append(httpRequest.getURI());
+        for (Header header : httpRequest.getAllHeaders()) {
+            builder.append('\n').append(header.getName()).append(": ").append(header.getValue());
+        }
+        
+        return builder.toString();
+    }
+    
+    /**
+     * Performs an API request, see {@link #_executeAPIRequest(ResponseType, HttpRequestBase)}.
+     */
+    private Object _performAPIRequest(ResponseType responseType, HttpRequestBase httpRequest) throws APIException {
+        boolean cacheable = getResponseCache() != null && httpRequest instanceof HttpGet;
+        
+        if (_streamingEnabled && !cacheable && httpRequest instanceof HttpGet && Build.VERSION.SDK_INT >= 11) {
+            if (responseType == ResponseType.JSONObject) {
+                return _executeStreamingAPIRequest(httpRequest, JSONStreamParser.OBJECT_HANDLER);
+            } else if (responseType == ResponseType.JSONArray) {
+                return _executeStreamingAPIRequest(httpRequest, JSONStreamParser.ARRAY_HANDLER);
+            }
+        }
+        
+        RequestTrace trace = _startTrace(httpRequest);
+        
+        try {
+            CachedResponse cachedResponse = null;
+            if (cacheable) {
+                cachedResponse = _getCachedResponse(httpRequest);
+                if (cachedResponse != null && cachedResponse.isFresh()) {
+                    if (_isLoggingEnabled()) {
+                        Log.v(_getLoggingTag(), "Cached response body: " + cachedResponse.getBody());
+                    }
+                    
+                    return _parseResponseBody(responseType, cachedResponse.getBody(), trace);
+                }
+            }
+            
+            HttpResponse response = _execute(httpRequest);
             String responseBody = _getResponseBody(response);
 
             if (_isLoggingEnabled()) {
@@ -423,29 +860,102 @@ public class APIClient extends AbstractHTTPClient {
             }
             
             if (response.getStatusLine().getStatusCode() >= 400) {
-                try {
-                    JSONObject object = new JSONObject(responseBody);
-                    throw new APIException(object.getString("code"), object.getString("message"), response.getStatusLine().getStatusCode());
-                } catch (JSONException e) {
-                    throw new APIException(response.getStatusLine().getStatusCode(), e);
+                throw _createAPIException(response, responseBody);
+            } else if (cacheable) {
+                responseBody = _cacheResponse(httpRequest, response, cachedResponse, responseBody);
+            } else if (!(httpRequest instanceof HttpGet)) {
+                _invalidateCachedResponse(httpRequest);
+            }
+            
+            return _parseResponseBody(responseType, responseBody, trace);
+        } catch (APIException e) {
+            // Re-throw APIExceptions.
+            throw e;
+        } catch (Exception e) {
+            if (_isLoggingEnabled()) {
+                Log.e(_getLoggingTag(), "Unexpected error", e);
+            }
+            
+            throw new APIException(e);
+        } finally {
+            _completeTrace(trace);
+        }
+    }  
+    
+    /**
+     * Converts the response body to the expected response type.
+     */
+    private Object _parseResponseBody(ResponseType responseType, String responseBody, RequestTrace trace) throws JSONException {
+        if (responseBody == null || responseBody.trim().length() == 0) {
+            return null;
+        }
+
+        long startTime = System.nanoTime();
+        switch (responseType) {
+            case JSONArray:
+                JSONArray array = new JSONArray(responseBody);
+                _traceParse(trace, startTime);
+                return array;
+
+            case JSONObject:
+                JSONObject object = new JSONObject(responseBody);
+                _traceParse(trace, startTime);
+                return object;
+            case Raw:
+                return responseBody;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Executes an API request that has been fully configured and passes the response
+     * stream to the given handler.
+     * 
+     * Error responses are still read in full and converted to an APIException.
+     */
+    @TargetApi(11)
+    protected <T> T _executeStreamingAPIRequest(HttpRequestBase httpRequest, JSONStreamHandler<T> handler) throws APIException {
+        HttpResponse response = null;
+        RequestTrace trace = _startTrace(httpRequest);
+        
+        try {
+            response = _execute(httpRequest);
+            
+            if (response.getStatusLine().getStatusCode() >= 400) {
+                String responseBody = _getResponseBody(response);
+                
+                if (_isLoggingEnabled()) {
+                    Log.v(_getLoggingTag(), "Response body: " + responseBody);
                 }
                 
-            } else {
-                if (responseBody == null || responseBody.trim().length() == 0) {
+                throw _createAPIException(response, responseBody);
+            } else if (!(httpRequest instanceof HttpGet)) {
+                _invalidateCachedResponse(httpRequest);
+            }
+            
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return null;
+            }
+            
+            PushbackReader reader = new PushbackReader(new InputStreamReader(_getResponseContent(entity), _getResponseCharset(entity)), 1);
+            try {
+                if (!_skipWhitespace(reader)) {
                     return null;
                 }
-
-                switch (responseType) {
-                    case JSONArray:
-                        return new JSONArray(responseBody);
-    
-                    case JSONObject:
-                        return new JSONObject(responseBody);
-                    case Raw:
-                        return responseBody;
-                    default:
-                        return null;
+                
+                long startTime = System.nanoTime();
+                T result = handler.handle(new JsonReader(reader));
+                _traceParse(trace, startTime);
+                
+                if (_isLoggingEnabled()) {
+                    Log.v(_getLoggingTag(), "Response body streamed");
                 }
+                
+                return result;
+            } finally {
+                reader.close();
             }
         } catch (APIException e) {
             // Re-throw APIExceptions.
@@ -456,6 +966,105 @@ public class APIClient extends AbstractHTTPClient {
             }
             
             throw new APIException(e);
+        } finally {
+            if (response != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+            
+            _completeTrace(trace);
         }
-    }  
+    }
+    
+    /**
+     * Creates an API exception for the given error response.
+     */
+    private APIException _createAPIException(HttpResponse response, String responseBody) {
+        try {
+            JSONObject object = new JSONObject(responseBody);
+            return new APIException(object.getString("code"), object.getString("message"), response.getStatusLine().getStatusCode());
+        } catch (JSONException e) {
+            return new APIException(response.getStatusLine().getStatusCode(), e);
+        }
+    }
+    
+    /**
+     * Converts an HTTP exception for an error response to an API exception.
+     */
+    private APIException _createAPIException(HTTPException exception) {
+        try {
+            JSONObject object = new JSONObject(exception.getMessage());
+            return new APIException(object.getString("code"), object.getString("message"), exception.getCode());
+        } catch (Exception e) {
+            return new APIException(exception.getCode(), exception);
+        }
+    }
+    
+    /**
+     * Skips leading whitespace. 
+     * 
+     * Returns false if the end of the stream is reached before any other character is found.
+     */
+    private boolean _skipWhitespace(PushbackReader reader) throws IOException {
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (!Character.isWhitespace(c)) {
+                reader.unread(c);
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
+    /**
+     * Request that is in-flight and whose result is shared with identical requests.
+     */
+    private static class InFlightRequest {
+        private final CountDownLatch _latch = new CountDownLatch(1);
+        private volatile Object _result;
+        private volatile APIException _exception;
+
+        /**
+         * Publishes the result to the waiting requests.
+         */
+        public void complete(Object result, APIException exception) {
+            _result = result;
+            _exception = exception;
+            _latch.countDown();
+        }
+
+        /**
+         * Waits at most the given time (in milliseconds) for the result. A timeout of 0 or
+         * less doesn't wait, it only checks whether the request has completed.
+         * 
+         * @return Has the request completed?
+         */
+        public boolean await(long timeout) throws APIException {
+            try {
+                if (timeout <= 0) {
+                    return _latch.getCount() == 0;
+                }
+                
+                return _latch.await(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new APIException(new InterruptedIOException("Interrupted while waiting for in-flight request"));
+            }
+        }
+        
+        /**
+         * Returns the result of the completed request.
+         * 
+         * A failure is thrown as a new exception for every waiter, caused by the failure
+         * of the in-flight request.
+         */
+        public Object getResult() throws APIException {
+            APIException exception = _exception;
+            if (exception != null) {
+                throw new APIException(exception.getCode(), exception.getMessage(), exception.getResponseCode(), exception);
+            }
+            
+            return _result;
+        }
+    }
 }
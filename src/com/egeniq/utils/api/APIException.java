@@ -1,5 +1,7 @@
 package com.egeniq.utils.api;
 
+import com.egeniq.utils.net.CircuitOpenException;
+
 /**
  * API exception.
  */
@@ -9,6 +11,12 @@ public class APIException extends Exception {
      */
     private static final long serialVersionUID = 6047699912655048829L;
     
+    /**
+     * Error code used when the request wasn't executed because the circuit for its 
+     * route is open.
+     */
+    public final static String CIRCUIT_OPEN = "circuit_open";
+    
     /**
      * Error code.
      */
@@ -27,22 +35,42 @@ public class APIException extends Exception {
     }
     
     /**
-     * Constructs an unknown API exception.
+     * Constructs an unknown API exception, or a CIRCUIT_OPEN exception if caused by a
+     * CircuitOpenException.
      */
     public APIException(Throwable parent) {
-        this("unknown", "Unknown error", 0, parent);
+        this(0, parent);
     }    
 
     /**
-     * Constructs an unknown API exception.
+     * Constructs an unknown API exception, or a CIRCUIT_OPEN exception if caused by a
+     * CircuitOpenException.
      * 
      * @param responseCode HTTPResponse code
      * @param parent       Throwable parent
      */
     public APIException(int responseCode, Throwable parent) {
-        this("unknown", "Unknown error", responseCode, parent);
+        this(CircuitOpenException.isCause(parent), responseCode, parent);
     }    
     
+    /**
+     * Constructs an unknown API exception, or a CIRCUIT_OPEN exception.
+     * 
+     * @param circuitOpen  Caused by a CircuitOpenException?
+     * @param responseCode HTTPResponse code
+     * @param parent       Throwable parent
+     */
+    private APIException(boolean circuitOpen, int responseCode, Throwable parent) {
+        super(circuitOpen ? "Circuit open" : "Unknown error", parent);
+        if (circuitOpen) {
+            _code = CIRCUIT_OPEN;
+            _responseCode = 0;
+        } else {
+            _code = "unknown";
+            _responseCode = responseCode;
+        }
+    }
+    
     /**
      * Constructs an API exception with the given code and message.
      * 
@@ -7,9 +7,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Locale;
 import java.util.Map;
-import java.util.TimeZone;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -21,13 +19,6 @@ import android.annotation.SuppressLint;
  * Utility methods to deal with data retrieved from the API.
  */
 public class APIUtils {
-    private final static SimpleDateFormat _dateFormat;
-    static {
-        // Interpret dates delivered by the API as en_US in the UTC time zone.
-        _dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
-        _dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-    }
-
     public static Integer getInt(JSONObject object, String key, Integer fallback) {
         try {
             return !object.has(key) || object.isNull(key) ? fallback : Integer.valueOf(object.getInt(key));
@@ -76,13 +67,25 @@ public class APIUtils {
         }
     }
 
+    /**
+     * Returns the ISO-8601 date-time (e.g. 2013-06-20T14:05:00Z) for the given key. 
+     * 
+     * Parsing is thread-safe, see {@link ISODateFormat}.
+     */
     public static Date getDate(JSONObject object, String key, Date fallback) {
         return getDate(object, key, fallback, null);
     }
 
+    /**
+     * Returns the date for the given key parsed using the given format. 
+     * 
+     * SimpleDateFormat isn't thread-safe, so callers are responsible for not sharing 
+     * the format between threads. If no format is given the date is parsed as an 
+     * ISO-8601 date-time.
+     */
     public static Date getDate(JSONObject object, String key, Date fallback, SimpleDateFormat format) {
         try {
-            return !object.has(key) || object.isNull(key) ? fallback : format == null ? _dateFormat.parse(object.getString(key)) : format.parse(object.getString(key));
+            return !object.has(key) || object.isNull(key) ? fallback : format == null ? ISODateFormat.parseDateTime(object.getString(key)) : format.parse(object.getString(key));
         } catch (JSONException e) {
             return fallback;
         } catch (ParseException e) {
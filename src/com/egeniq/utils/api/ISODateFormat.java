@@ -0,0 +1,316 @@
+package com.egeniq.utils.api;
+
+import java.text.ParseException;
+import java.util.Date;
+
+/**
+ * Thread-safe parser and formatter for the ISO-8601 / RFC-3339 date shapes used by
+ * the APIs, i.e. yyyy-MM-dd'T'HH:mm:ss'Z' and yyyy-MM-dd.
+ * 
+ * Unlike SimpleDateFormat this class has no shared mutable state and doesn't use
+ * Calendar, so it can be used concurrently and doesn't allocate besides the result.
+ * 
+ * Date-times may contain fractional seconds and either a 'Z' or a numeric (+hh:mm,
+ * +hhmm or +hh) UTC offset. A date-time without offset is interpreted as UTC. Dates 
+ * are interpreted as midnight UTC. Dates are always formatted in UTC.
+ */
+public class ISODateFormat {
+    private final static long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final static ThreadLocal<char[]> _buffer = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[20];
+        }
+    };
+
+    /**
+     * Parses a date-time, e.g. 2013-06-20T14:05:00Z.
+     * 
+     * @param string Date-time string.
+     * 
+     * @return Date.
+     * 
+     * @throws ParseException
+     */
+    public static Date parseDateTime(String string) throws ParseException {
+        return new Date(parseDateTimeMillis(string));
+    }
+
+    /**
+     * Parses a date-time, e.g. 2013-06-20T14:05:00Z.
+     * 
+     * @param string Date-time string.
+     * 
+     * @return Milliseconds since the epoch.
+     * 
+     * @throws ParseException
+     */
+    public static long parseDateTimeMillis(String string) throws ParseException {
+        int length = string.length();
+        if (length < 19) {
+            throw new ParseException("Unparseable date-time: \"" + string + "\"", length);
+        }
+
+        long millis = _parseDateMillis(string);
+
+        char separator = string.charAt(10);
+        if (separator != 'T' && separator != 't' && separator != ' ') {
+            throw new ParseException("Unparseable date-time: \"" + string + "\"", 10);
+        }
+
+        int hour = _parseDigits(string, 11, 2, 0, 23);
+        _expect(string, 13, ':');
+        int minute = _parseDigits(string, 14, 2, 0, 59);
+        _expect(string, 16, ':');
+        int second = _parseDigits(string, 17, 2, 0, 60);
+        millis += ((hour * 60L + minute) * 60L + second) * 1000L;
+
+        int index = 19;
+        if (index < length && string.charAt(index) == '.') {
+            index++;
+            int start = index;
+            int fraction = 0;
+            while (index < length && string.charAt(index) >= '0' && string.charAt(index) <= '9') {
+                if (index - start < 3) {
+                    fraction = fraction * 10 + (string.charAt(index) - '0');
+                }
+                index++;
+            }
+
+            if (index == start) {
+                throw new ParseException("Unparseable date-time: \"" + string + "\"", index);
+            }
+
+            for (int digits = index - start; digits < 3; digits++) {
+                fraction *= 10;
+            }
+
+            millis += fraction;
+        }
+
+        if (index == length) {
+            return millis;
+        }
+
+        char zone = string.charAt(index);
+        if ((zone == 'Z' || zone == 'z') && index + 1 == length) {
+            return millis;
+        } else if (zone == '+' || zone == '-') {
+            int offsetHours = _parseDigits(string, index + 1, 2, 0, 23);
+            int offsetMinutes = 0;
+            index += 3;
+            if (index < length && string.charAt(index) == ':') {
+                index++;
+            }
+            if (index < length) {
+                offsetMinutes = _parseDigits(string, index, 2, 0, 59);
+                index += 2;
+            }
+
+            if (index != length) {
+                throw new ParseException("Unparseable date-time: \"" + string + "\"", index);
+            }
+
+            long offset = (offsetHours * 60L + offsetMinutes) * 60L * 1000L;
+            return zone == '+' ? millis - offset : millis + offset;
+        }
+
+        throw new ParseException("Unparseable date-time: \"" + string + "\"", index);
+    }
+
+    /**
+     * Parses a date, e.g. 2013-06-20.
+     * 
+     * Trailing text (e.g. a time) is ignored.
+     * 
+     * @param string Date string.
+     * 
+     * @return Date (midnight UTC).
+     * 
+     * @throws ParseException
+     */
+    public static Date parseDate(String string) throws ParseException {
+        if (string.length() < 10) {
+            throw new ParseException("Unparseable date: \"" + string + "\"", string.length());
+        }
+
+        return new Date(_parseDateMillis(string));
+    }
+
+    /**
+     * Formats the given date as a date-time, e.g. 2013-06-20T14:05:00Z.
+     * 
+     * @param date Date.
+     * 
+     * @return Date-time string.
+     */
+    public static String formatDateTime(Date date) {
+        return formatDateTime(date.getTime());
+    }
+
+    /**
+     * Formats the given time as a date-time, e.g. 2013-06-20T14:05:00Z.
+     * 
+     * @param millis Milliseconds since the epoch.
+     * 
+     * @return Date-time string.
+     */
+    public static String formatDateTime(long millis) {
+        char[] buffer = _buffer.get();
+        _formatDate(buffer, millis);
+
+        long millisOfDay = _floorMod(millis, MILLIS_PER_DAY);
+        int secondOfDay = (int)(millisOfDay / 1000);
+        buffer[10] = 'T';
+        _formatDigits(buffer, 11, 2, secondOfDay / 3600);
+        buffer[13] = ':';
+        _formatDigits(buffer, 14, 2, secondOfDay / 60 % 60);
+        buffer[16] = ':';
+        _formatDigits(buffer, 17, 2, secondOfDay % 60);
+        buffer[19] = 'Z';
+
+        return new String(buffer, 0, 20);
+    }
+
+    /**
+     * Formats the given date as a date, e.g. 2013-06-20.
+     * 
+     * @param date Date.
+     * 
+     * @return Date string.
+     */
+    public static String formatDate(Date date) {
+        char[] buffer = _buffer.get();
+        _formatDate(buffer, date.getTime());
+        return new String(buffer, 0, 10);
+    }
+
+    /**
+     * Parses the yyyy-MM-dd part at the start of the given string.
+     */
+    private static long _parseDateMillis(String string) throws ParseException {
+        int year = _parseDigits(string, 0, 4, 0, 9999);
+        _expect(string, 4, '-');
+        int month = _parseDigits(string, 5, 2, 1, 12);
+        _expect(string, 7, '-');
+        int day = _parseDigits(string, 8, 2, 1, 31);
+
+        if (day > _daysInMonth(year, month)) {
+            throw new ParseException("Invalid day of month: \"" + string + "\"", 8);
+        }
+
+        return _daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+    }
+
+    /**
+     * Writes yyyy-MM-dd for the given time to the start of the buffer.
+     */
+    private static void _formatDate(char[] buffer, long millis) {
+        long days = _floorDiv(millis, MILLIS_PER_DAY);
+
+        // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+        days += 719468;
+        long era = _floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int)(dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int)(mp < 10 ? mp + 3 : mp - 9);
+        int year = (int)(yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        _formatDigits(buffer, 0, 4, year);
+        buffer[4] = '-';
+        _formatDigits(buffer, 5, 2, month);
+        buffer[7] = '-';
+        _formatDigits(buffer, 8, 2, day);
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 for the given date.
+     */
+    private static long _daysFromCivil(int year, int month, int day) {
+        // see http://howardhinnant.github.io/date_algorithms.html
+        long y = month <= 2 ? year - 1 : year;
+        long era = _floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Returns the number of days in the given month.
+     */
+    private static int _daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Parses a fixed number of digits at the given position.
+     */
+    private static int _parseDigits(String string, int offset, int count, int min, int max) throws ParseException {
+        if (offset + count > string.length()) {
+            throw new ParseException("Unparseable date: \"" + string + "\"", offset);
+        }
+
+        int result = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new ParseException("Unparseable date: \"" + string + "\"", i);
+            }
+
+            result = result * 10 + (c - '0');
+        }
+
+        if (result < min || result > max) {
+            throw new ParseException("Unparseable date: \"" + string + "\"", offset);
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks for the given character at the given position.
+     */
+    private static void _expect(String string, int offset, char expected) throws ParseException {
+        if (string.charAt(offset) != expected) {
+            throw new ParseException("Unparseable date: \"" + string + "\"", offset);
+        }
+    }
+
+    /**
+     * Writes a zero-padded number with a fixed number of digits.
+     */
+    private static void _formatDigits(char[] buffer, int offset, int count, int value) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            buffer[i] = (char)('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static long _floorDiv(long x, long y) {
+        long result = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            result--;
+        }
+
+        return result;
+    }
+
+    private static long _floorMod(long x, long y) {
+        return x - _floorDiv(x, y) * y;
+    }
+}
@@ -0,0 +1,29 @@
+package com.egeniq.utils.api;
+
+import java.io.IOException;
+
+import android.annotation.TargetApi;
+import android.util.JsonReader;
+
+/**
+ * Handles a streamed JSON response body.
+ * 
+ * The handler is called with a pull-style reader positioned at the start of the
+ * response body. The body is never fully buffered, so the handler can map the
+ * response straight onto its own entities.
+ * 
+ * @param <T> Result type.
+ */
+@TargetApi(11)
+public interface JSONStreamHandler<T> {
+    /**
+     * Reads the result from the given reader.
+     * 
+     * @param reader JSON reader.
+     * 
+     * @return Result.
+     * 
+     * @throws IOException
+     */
+    public T handle(JsonReader reader) throws IOException;
+}
@@ -0,0 +1,137 @@
+package com.egeniq.utils.api;
+
+import java.io.IOException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.annotation.TargetApi;
+import android.util.JsonReader;
+
+/**
+ * Builds JSON objects and arrays directly from a JSON stream, without reading
+ * the full JSON string in memory first.
+ */
+@TargetApi(11)
+public class JSONStreamParser {
+    /**
+     * Handler that reads a JSON object.
+     */
+    public final static JSONStreamHandler<JSONObject> OBJECT_HANDLER = new JSONStreamHandler<JSONObject>() {
+        @Override
+        public JSONObject handle(JsonReader reader) throws IOException {
+            return readObject(reader);
+        }
+    };
+
+    /**
+     * Handler that reads a JSON array.
+     */
+    public final static JSONStreamHandler<JSONArray> ARRAY_HANDLER = new JSONStreamHandler<JSONArray>() {
+        @Override
+        public JSONArray handle(JsonReader reader) throws IOException {
+            return readArray(reader);
+        }
+    };
+
+    /**
+     * Reads the next JSON object from the stream.
+     * 
+     * @param reader JSON reader.
+     * 
+     * @return JSON object.
+     * 
+     * @throws IOException
+     */
+    public static JSONObject readObject(JsonReader reader) throws IOException {
+        JSONObject object = new JSONObject();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+
+            try {
+                object.put(name, readValue(reader));
+            } catch (JSONException e) {
+                throw new IOException("Invalid value for key '" + name + "'");
+            }
+        }
+        reader.endObject();
+
+        return object;
+    }
+
+    /**
+     * Reads the next JSON array from the stream.
+     * 
+     * @param reader JSON reader.
+     * 
+     * @return JSON array.
+     * 
+     * @throws IOException
+     */
+    public static JSONArray readArray(JsonReader reader) throws IOException {
+        JSONArray array = new JSONArray();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader));
+        }
+        reader.endArray();
+
+        return array;
+    }
+
+    /**
+     * Reads the next JSON value from the stream.
+     * 
+     * Numbers are converted to the same types org.json would use, so the result is
+     * interchangeable with objects constructed from a JSON string.
+     * 
+     * @param reader JSON reader.
+     * 
+     * @return Value (JSONObject, JSONArray, String, Boolean, Integer, Long, Double or JSONObject.NULL).
+     * 
+     * @throws IOException
+     */
+    public static Object readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case STRING:
+                return reader.nextString();
+            case BOOLEAN:
+                return Boolean.valueOf(reader.nextBoolean());
+            case NUMBER:
+                return _parseNumber(reader.nextString());
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new IOException("Unexpected token " + reader.peek());
+        }
+    }
+
+    /**
+     * Converts a JSON number literal to an Integer, Long or Double.
+     */
+    private static Number _parseNumber(String literal) {
+        if (literal.indexOf('.') == -1 && literal.indexOf('e') == -1 && literal.indexOf('E') == -1) {
+            try {
+                long value = Long.parseLong(literal);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return Integer.valueOf((int)value);
+                } else {
+                    return Long.valueOf(value);
+                }
+            } catch (NumberFormatException e) {
+                // too large for a long, fall through
+            }
+        }
+
+        return Double.valueOf(literal);
+    }
+}
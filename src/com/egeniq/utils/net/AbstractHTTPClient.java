@@ -1,20 +1,52 @@
 package com.egeniq.utils.net;
 
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import android.annotation.SuppressLint;
+import android.os.Build;
+import android.util.Log;
+import ch.boye.httpclientandroidlib.Header;
+import ch.boye.httpclientandroidlib.HeaderElement;
 import ch.boye.httpclientandroidlib.HttpEntity;
 import ch.boye.httpclientandroidlib.HttpResponse;
-import ch.boye.httpclientandroidlib.HttpVersion;
+import ch.boye.httpclientandroidlib.HttpStatus;
 import ch.boye.httpclientandroidlib.client.HttpClient;
-import ch.boye.httpclientandroidlib.impl.client.DefaultHttpClient;
-import ch.boye.httpclientandroidlib.impl.conn.tsccm.ThreadSafeClientConnManager;
+import ch.boye.httpclientandroidlib.client.entity.DeflateDecompressingEntity;
+import ch.boye.httpclientandroidlib.client.entity.GzipDecompressingEntity;
+import ch.boye.httpclientandroidlib.client.methods.HttpEntityEnclosingRequestBase;
+import ch.boye.httpclientandroidlib.client.methods.HttpGet;
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+import ch.boye.httpclientandroidlib.entity.ContentType;
+import ch.boye.httpclientandroidlib.params.AbstractHttpParams;
 import ch.boye.httpclientandroidlib.params.BasicHttpParams;
-import ch.boye.httpclientandroidlib.params.CoreProtocolPNames;
 import ch.boye.httpclientandroidlib.params.HttpConnectionParams;
 import ch.boye.httpclientandroidlib.params.HttpParams;
 import ch.boye.httpclientandroidlib.util.EntityUtils;
@@ -24,10 +56,57 @@ import ch.boye.httpclientandroidlib.util.EntityUtils;
  */
 public abstract class AbstractHTTPClient {
     private final static int DEFAULT_TIMEOUT = 15000;
+    private final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+    private final static int MAX_PRESIZED_BODY_LENGTH = 4 * 1024 * 1024;
+    private final static Charset UTF8 = Charset.forName("UTF-8");
     
     private int _timeout = DEFAULT_TIMEOUT;
+    private volatile ImmutableHttpParams _defaultParams = null;
+    private final boolean _defaultParamsOverridden = _overridesDefaultParams(getClass());
+    private long _maxResponseBodySize = -1;
 
-    private static HttpClient _httpClient = null;
+    private static ExecutorService _defaultExecutor = null;
+    
+    private ConnectionPoolConfig _connectionPoolConfig = ConnectionPoolConfig.DEFAULT;
+    private final ConcurrentHashMap<String, ConnectionPoolConfig> _hostConnectionPoolConfigs = new ConcurrentHashMap<String, ConnectionPoolConfig>();
+    private volatile ConnectionPool _connectionPool = null;
+    
+    private Transport _transport = new HttpClientTransport(this);
+    
+    private RetryPolicy _retryPolicy = new DefaultRetryPolicy();
+    private final AtomicLong _retryCount = new AtomicLong();
+    
+    private RequestListener _requestListener = null;
+    
+    private boolean _compressionEnabled = true;
+    private int _requestCompressionThreshold = -1;
+    
+    private ConnectivityMonitor _connectivityMonitor = null;
+    private long _offlineWaitTime = 0;
+    
+    private volatile ExecutorService _executor = null;
+    private RequestScheduler _requestScheduler = null;
+    
+    private AdmissionPolicy _admissionPolicy = null;
+    private final ConcurrentHashMap<String, AdmissionPolicy> _hostAdmissionPolicies = new ConcurrentHashMap<String, AdmissionPolicy>();
+    private final ConcurrentHashMap<String, AdmissionController> _admissionControllers = new ConcurrentHashMap<String, AdmissionController>();
+    
+    private CircuitBreakerPolicy _circuitBreakerPolicy = null;
+    private final ConcurrentHashMap<String, CircuitBreaker> _circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+    private final CopyOnWriteArrayList<CircuitBreaker.Listener> _circuitBreakerListeners = new CopyOnWriteArrayList<CircuitBreaker.Listener>();
+    
+    private volatile RequestHedger _requestHedger = null;
+    private HedgingPolicy _hedgingPolicy = null;
+    private final HedgingStatistics _hedgingStatistics = new HedgingStatistics();
+    private int _maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+    private boolean _executorResizable = true;
+    
+    private final ConcurrentHashMap<NetworkClass, NetworkPolicy> _networkPolicies = new ConcurrentHashMap<NetworkClass, NetworkPolicy>();
+    
+    private ResponseCache _responseCache = null;
+    private final ResponseCacheStatistics _responseCacheStatistics = new ResponseCacheStatistics();
+    
+    private final WarmUpStatistics _warmUpStatistics = new WarmUpStatistics();
 
     private String _loggingTag = getClass().getName();
     private boolean _loggingEnabled = false;
@@ -124,15 +203,116 @@ public abstract class AbstractHTTPClient {
     
     /**
      * Returns the default http request parameters.
+     * 
+     * A new, mutable copy is returned for every call, so subclasses can change it
+     * without affecting other requests. Subclasses can override this method to provide
+     * their own parameters, which are then used as the base for every request; the 
+     * timeouts of the deadline of a request still apply. Without override, requests
+     * share an immutable instance.
      */
     protected HttpParams _getDefaultParams() {
-        HttpParams params = new BasicHttpParams();
-        HttpConnectionParams.setConnectionTimeout(params, _timeout);
-        HttpConnectionParams.setSoTimeout(params, _timeout);
-        HttpConnectionParams.setSoKeepalive(params, true);
+        return _getSharedParams()._toMutable();
+    }
+    
+    /**
+     * Returns the default http request parameters, shared by all requests.
+     * 
+     * The parameters are immutable and only rebuilt when the timeouts change.
+     */
+    private ImmutableHttpParams _getSharedParams() {
+        NetworkPolicy policy = getNetworkPolicy();
+        int connectTimeout = policy != null && policy.getConnectTimeout() >= 0 ? policy.getConnectTimeout() : _timeout;
+        int readTimeout = policy != null && policy.getReadTimeout() >= 0 ? policy.getReadTimeout() : _timeout;
+        
+        ImmutableHttpParams params = _defaultParams;
+        if (params == null || HttpConnectionParams.getConnectionTimeout(params) != connectTimeout || HttpConnectionParams.getSoTimeout(params) != readTimeout) {
+            params = _createParams(connectTimeout, readTimeout);
+            _defaultParams = params;
+        }
+        
         return params;
     }
     
+    /**
+     * Returns the HTTP parameters for a request executed under the given deadline.
+     * 
+     * The timeouts of the deadline override the default timeouts, and all timeouts are
+     * limited to the remaining time of the deadline.
+     * 
+     * @param deadline Deadline, may be null.
+     */
+    protected HttpParams _getRequestParams(Deadline deadline) {
+        HttpParams params = _defaultParamsOverridden ? _getDefaultParams() : _getSharedParams();
+        if (deadline == null) {
+            return params;
+        }
+        
+        int connectTimeout = deadline.getConnectTimeout() >= 0 ? deadline.getConnectTimeout() : HttpConnectionParams.getConnectionTimeout(params);
+        int readTimeout = deadline.getReadTimeout() >= 0 ? deadline.getReadTimeout() : HttpConnectionParams.getSoTimeout(params);
+        
+        long remaining = deadline.getRemainingTime();
+        if (remaining < Integer.MAX_VALUE) {
+            int limit = (int)Math.max(1, remaining);
+            connectTimeout = connectTimeout == 0 ? limit : Math.min(connectTimeout, limit);
+            readTimeout = readTimeout == 0 ? limit : Math.min(readTimeout, limit);
+        }
+        
+        if (connectTimeout == HttpConnectionParams.getConnectionTimeout(params) && readTimeout == HttpConnectionParams.getSoTimeout(params)) {
+            return params;
+        } else if (params == _defaultParams || !(params instanceof AbstractHttpParams)) {
+            return _createParams(connectTimeout, readTimeout);
+        }
+        
+        BasicHttpParams copy = new BasicHttpParams();
+        ImmutableHttpParams._copy((AbstractHttpParams)params, copy);
+        HttpConnectionParams.setConnectionTimeout(copy, connectTimeout);
+        HttpConnectionParams.setSoTimeout(copy, readTimeout);
+        return new ImmutableHttpParams(copy);
+    }
+    
+    /**
+     * Does the given class (a subclass of this class) override _getDefaultParams()?
+     */
+    private static boolean _overridesDefaultParams(Class<?> clazz) {
+        for (; clazz != AbstractHTTPClient.class; clazz = clazz.getSuperclass()) {
+            try {
+                clazz.getDeclaredMethod("_getDefaultParams");
+                return true;
+            } catch (NoSuchMethodException e) {
+                // not overridden by this class
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Creates immutable HTTP parameters with the given timeouts.
+     */
+    private static ImmutableHttpParams _createParams(int connectTimeout, int readTimeout) {
+        BasicHttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, connectTimeout);
+        HttpConnectionParams.setSoTimeout(params, readTimeout);
+        HttpConnectionParams.setSoKeepalive(params, true);
+        return new ImmutableHttpParams(params);
+    }
+    
+    /**
+     * Adds the parameters the caller set on the request to the given request parameters.
+     * 
+     * The timeouts and other values of the request parameters take precedence.
+     */
+    private static HttpParams _mergeParams(HttpParams callerParams, HttpParams params) {
+        if (callerParams == params || !(callerParams instanceof AbstractHttpParams) || ((AbstractHttpParams)callerParams).getNames().isEmpty()) {
+            return params;
+        }
+        
+        BasicHttpParams merged = new BasicHttpParams();
+        ImmutableHttpParams._copy((AbstractHttpParams)callerParams, merged);
+        ImmutableHttpParams._copy((AbstractHttpParams)params, merged);
+        return new ImmutableHttpParams(merged);
+    }
+    
     /**
      * Get the currently set timeout.
      */
@@ -148,55 +328,1531 @@ public abstract class AbstractHTTPClient {
     }    
 
     /**
-     * Creates a HTTP client object.
+     * Returns the executor used for asynchronous requests.
+     * 
+     * Unless an executor has been set or created for this client (see 
+     * {@link #setMaxConcurrentRequests(int)} and {@link NetworkPolicy}), the executor 
+     * shared by all clients is returned.
+     */
+    public ExecutorService getExecutor() {
+        ExecutorService executor = _executor;
+        return executor != null ? executor : _getDefaultExecutor();
+    }
+    
+    /**
+     * Sets the executor used for asynchronous requests.
+     * 
+     * The executor is not shut down by this client. Pass null to use the shared executor.
+     */
+    public void setExecutor(ExecutorService executor) {
+        _executor = executor;
+        _maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+        _executorResizable = executor == null;
+    }
+    
+    /**
+     * Creates a dedicated executor for this client which executes at most the given
+     * number of asynchronous requests concurrently. Other requests are queued.
      */
-    protected synchronized static HttpClient _getClient() {
-        if (_httpClient == null) {
-            ThreadSafeClientConnManager connectionManager = new ThreadSafeClientConnManager();
-            connectionManager.setDefaultMaxPerRoute(10);
-            connectionManager.setMaxTotal(100);
-            HttpParams params = new BasicHttpParams();
-            HttpConnectionParams.setConnectionTimeout(params, DEFAULT_TIMEOUT);
-            HttpConnectionParams.setSoTimeout(params, DEFAULT_TIMEOUT);
-            HttpConnectionParams.setSoKeepalive(params, true);
-            _httpClient = new DefaultHttpClient(connectionManager, params);
-            _httpClient.getParams().setParameter(CoreProtocolPNames.PROTOCOL_VERSION, HttpVersion.HTTP_1_1);
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        _executor = _createExecutor(maxConcurrentRequests);
+        _maxConcurrentRequests = maxConcurrentRequests;
+        _executorResizable = true;
+    }
+    
+    /**
+     * Returns the request scheduler, null if disabled.
+     */
+    public RequestScheduler getRequestScheduler() {
+        return _requestScheduler;
+    }
+    
+    /**
+     * Sets the request scheduler, which limits the number of concurrently executing
+     * requests of this client and admits waiting requests in order of priority.
+     * 
+     * Scheduling is disabled by default. The limit of the scheduler should be below the 
+     * connection pool limits, otherwise requests wait for a connection instead of a 
+     * slot and aren't ordered by priority. Clients can share a scheduler. Pass null to 
+     * disable scheduling.
+     */
+    public void setRequestScheduler(RequestScheduler requestScheduler) {
+        _requestScheduler = requestScheduler;
+    }
+    
+    /**
+     * Returns the admission policy for all hosts, null if none.
+     */
+    public AdmissionPolicy getAdmissionPolicy() {
+        return _admissionPolicy;
+    }
+    
+    /**
+     * Sets the admission policy (rate limit and concurrency bulkhead) which applies to 
+     * the requests to each host separately. Pass null to disable admission control.
+     * 
+     * Resets the admission state and counters.
+     */
+    public void setAdmissionPolicy(AdmissionPolicy policy) {
+        _admissionPolicy = policy;
+        _admissionControllers.clear();
+    }
+    
+    /**
+     * Sets the admission policy for the requests to the given host. Overrides the
+     * admission policy for all hosts.
+     * 
+     * @param host   Host name.
+     * @param policy Policy, pass null to remove the host specific policy.
+     */
+    public void setAdmissionPolicy(String host, AdmissionPolicy policy) {
+        host = host.toLowerCase(Locale.US);
+        if (policy == null) {
+            _hostAdmissionPolicies.remove(host);
+        } else {
+            _hostAdmissionPolicies.put(host, policy);
         }
         
-        return _httpClient;
+        _admissionControllers.remove(host);
     }
-
+    
     /**
-     * Gets the body of the HttpResponse as a String.
+     * Returns the admission controller, which holds the admission counters, for the 
+     * given host.
      * 
-     * Returns null if response is null or if the body is empty.
+     * @param host Host name.
      * 
-     * @throws IOException
-     * @throws IllegalStateException
+     * @return Admission controller, null if no admission policy applies to the host.
      */
-    protected String _getResponseBody(HttpResponse response) throws IllegalStateException, IOException {
-        if (response == null) {
+    public AdmissionController getAdmissionController(String host) {
+        if (host == null) {
+            return null;
+        }
+        
+        host = host.toLowerCase(Locale.US);
+        AdmissionController controller = _admissionControllers.get(host);
+        if (controller != null) {
+            return controller;
+        }
+        
+        AdmissionPolicy policy = _hostAdmissionPolicies.get(host);
+        if (policy == null) {
+            policy = _admissionPolicy;
+        }
+        
+        if (policy == null) {
+            return null;
+        }
+        
+        controller = new AdmissionController(host, policy);
+        AdmissionController existing = _admissionControllers.putIfAbsent(host, controller);
+        return existing != null ? existing : controller;
+    }
+    
+    /**
+     * Returns the circuit breaker policy, null if disabled.
+     */
+    public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+        return _circuitBreakerPolicy;
+    }
+    
+    /**
+     * Sets the circuit breaker policy, which makes requests to a failing route fail
+     * immediately instead of each waiting for a timeout. Pass null to disable, which
+     * is the default.
+     * 
+     * Resets the state of all circuits.
+     */
+    public void setCircuitBreakerPolicy(CircuitBreakerPolicy policy) {
+        _circuitBreakerPolicy = policy;
+        _circuitBreakers.clear();
+    }
+    
+    /**
+     * Returns the circuit breakers of the routes requested so far.
+     */
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableCollection(_circuitBreakers.values());
+    }
+    
+    /**
+     * Add circuit breaker listener, notified when the state of a circuit changes.
+     */
+    public void addCircuitBreakerListener(CircuitBreaker.Listener listener) {
+        _circuitBreakerListeners.addIfAbsent(listener);
+    }
+    
+    /**
+     * Remove circuit breaker listener.
+     */
+    public void removeCircuitBreakerListener(CircuitBreaker.Listener listener) {
+        _circuitBreakerListeners.remove(listener);
+    }
+    
+    /**
+     * Returns the hedging policy, null if disabled.
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return _hedgingPolicy;
+    }
+    
+    /**
+     * Sets the hedging policy. When set, GET requests that take longer than usual for
+     * their route are sent a second time and the first response wins. Pass null to 
+     * disable, which is the default.
+     * 
+     * Resets the recorded response times.
+     */
+    public void setHedgingPolicy(HedgingPolicy policy) {
+        _hedgingPolicy = policy;
+        _requestHedger = policy != null ? new RequestHedger(policy, _hedgingStatistics) : null;
+    }
+    
+    /**
+     * Returns the hedging statistics.
+     */
+    public HedgingStatistics getHedgingStatistics() {
+        return _hedgingStatistics;
+    }
+    
+    /**
+     * Returns the circuit breaker for the route of the given request, null if disabled.
+     */
+    private CircuitBreaker _getCircuitBreaker(HttpRequestBase request) {
+        CircuitBreakerPolicy policy = _circuitBreakerPolicy;
+        if (policy == null) {
             return null;
         }
+        
+        String route = _getRoute(request.getURI(), policy.getPathPrefixDepth());
+        CircuitBreaker circuitBreaker = _circuitBreakers.get(route);
+        if (circuitBreaker == null) {
+            circuitBreaker = new CircuitBreaker(route, policy, _circuitBreakerListeners);
+            CircuitBreaker existing = _circuitBreakers.putIfAbsent(route, circuitBreaker);
+            if (existing != null) {
+                circuitBreaker = existing;
+            }
+        }
+        
+        return circuitBreaker;
+    }
+    
+    /**
+     * Returns the route (scheme, host, port and the first path segments) for the given URI.
+     */
+    static String _getRoute(URI uri, int pathPrefixDepth) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(uri.getScheme()).append("://").append(uri.getHost() != null ? uri.getHost().toLowerCase(Locale.US) : "");
+        if (uri.getPort() != -1) {
+            builder.append(':').append(uri.getPort());
+        }
+        
+        String path = uri.getRawPath();
+        int start = 0;
+        for (int depth = 0; depth < pathPrefixDepth && path != null; depth++) {
+            while (start < path.length() && path.charAt(start) == '/') {
+                start++;
+            }
+            
+            if (start >= path.length()) {
+                break;
+            }
+            
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            
+            builder.append('/').append(path, start, end);
+            start = end;
+        }
+        
+        return builder.toString();
+    }
+    
+    /**
+     * Returns the executor shared by all clients.
+     */
+    protected synchronized static ExecutorService _getDefaultExecutor() {
+        if (_defaultExecutor == null) {
+            _defaultExecutor = _createExecutor(DEFAULT_MAX_CONCURRENT_REQUESTS);
+        }
+        
+        return _defaultExecutor;
+    }
+    
+    /**
+     * Creates a bounded executor which runs queued tasks in order of priority.
+     */
+    @SuppressLint("NewApi")
+    private static ExecutorService _createExecutor(int maxConcurrentRequests) {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "HTTPClient #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        
+        ThreadPoolExecutor executor = new PriorityThreadPoolExecutor(maxConcurrentRequests, 30, TimeUnit.SECONDS, threadFactory);
+        if (Build.VERSION.SDK_INT >= 9) {
+            executor.allowCoreThreadTimeOut(true);
+        }
+        
+        return executor;
+    }
+    
+    /**
+     * Submits the given request for asynchronous execution.
+     * 
+     * @param request  HTTP request, aborted when the future is cancelled.
+     * @param callable Executes the request and returns the result.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    protected <T> RequestFuture<T> _submit(HttpRequestBase request, final Callable<T> callable, RequestCallback<T> callback) {
+        final RequestPriority priority = RequestScheduler.getCurrentPriority();
+        final Deadline deadline = Deadline.current();
+        RequestFuture<T> future = new RequestFuture<T>(request, new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                RequestPriority previousPriority = RequestScheduler.setCurrentPriority(priority);
+                Deadline previousDeadline = Deadline.setCurrent(deadline);
+                try {
+                    return callable.call();
+                } finally {
+                    RequestScheduler.setCurrentPriority(previousPriority);
+                    Deadline.setCurrent(previousDeadline);
+                }
+            }
+        }, callback);
+        _applyMaxConcurrentRequests();
+        getExecutor().execute(future);
+        return future;
+    }
 
-        HttpEntity entity = response.getEntity();
+    /**
+     * Resizes the executor if the network policy for the current network limits the
+     * maximum number of concurrent requests.
+     * 
+     * The shared executor is never resized, a client that uses it gets a dedicated 
+     * executor once its policy sets a limit.
+     */
+    private void _applyMaxConcurrentRequests() {
+        if (!_executorResizable) {
+            return;
+        }
+        
+        NetworkPolicy policy = getNetworkPolicy();
+        int limit = policy != null ? policy.getMaxConcurrentRequests() : -1;
+        
+        ExecutorService executor = _executor;
+        if (executor == null) {
+            if (limit <= 0) {
+                return;
+            }
+            
+            synchronized (this) {
+                if (_executor == null) {
+                    _executor = _createExecutor(limit);
+                }
+                
+                executor = _executor;
+            }
+        }
+        
+        if (!(executor instanceof ThreadPoolExecutor)) {
+            return;
+        }
+        
+        int size = limit > 0 ? limit : _maxConcurrentRequests;
+        
+        ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor)executor;
+        synchronized (threadPoolExecutor) {
+            if (size > threadPoolExecutor.getMaximumPoolSize()) {
+                threadPoolExecutor.setMaximumPoolSize(size);
+                threadPoolExecutor.setCorePoolSize(size);
+            } else if (size < threadPoolExecutor.getMaximumPoolSize()) {
+                threadPoolExecutor.setCorePoolSize(size);
+                threadPoolExecutor.setMaximumPoolSize(size);
+            }
+        }
+    }
 
-        if (entity == null) {
+    /**
+     * Returns the response cache.
+     */
+    public ResponseCache getResponseCache() {
+        return _responseCache;
+    }
+    
+    /**
+     * Sets the response cache used for GET requests. Pass null to disable caching.
+     * 
+     * Responses are cached according to their Cache-Control / Expires headers. Stale 
+     * responses with an ETag or Last-Modified header are revalidated using a conditional
+     * request.
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        _responseCache = responseCache;
+    }
+    
+    /**
+     * Returns the response cache statistics.
+     */
+    public ResponseCacheStatistics getResponseCacheStatistics() {
+        return _responseCacheStatistics;
+    }
+    
+    /**
+     * Looks up the cached response for the given request.
+     * 
+     * If the cached response is stale, the request is turned into a conditional request
+     * so the cached response can be used if the server responds with 304 (not modified).
+     * 
+     * @param request HTTP request.
+     * 
+     * @return Cached response (fresh or stale) or null.
+     */
+    protected CachedResponse _getCachedResponse(HttpRequestBase request) {
+        ResponseCache cache = _responseCache;
+        if (cache == null) {
+            return null;
+        }
+        
+        CachedResponse response = cache.get(request.getURI().toString());
+        if (response == null) {
+            _responseCacheStatistics._recordMiss();
             return null;
+        } else if (response.isFresh()) {
+            _responseCacheStatistics._recordHit(response);
+            return response;
+        }
+        
+        if (response.getETag() != null) {
+            request.setHeader("If-None-Match", response.getETag());
+        }
+        
+        if (response.getLastModified() != null) {
+            request.setHeader("If-Modified-Since", response.getLastModified());
         }
 
-        InputStream content = entity.getContent();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(content, Charset.forName("UTF-8")), 8192);
-        StringBuilder builder = new StringBuilder();
+        _responseCacheStatistics._recordRevalidation();
+        return response;
+    }
+    
+    /**
+     * Updates the response cache for the given response and returns the response body 
+     * that should be used.
+     * 
+     * @param request        HTTP request.
+     * @param response       HTTP response.
+     * @param cachedResponse Cached response returned by _getCachedResponse (optional).
+     * @param responseBody   Response body.
+     * 
+     * @return Response body (the cached body if the server responded with 304).
+     */
+    protected String _cacheResponse(HttpRequestBase request, HttpResponse response, CachedResponse cachedResponse, String responseBody) {
+        ResponseCache cache = _responseCache;
+        if (cache == null) {
+            return responseBody;
+        }
+        
+        String key = request.getURI().toString();
+        int statusCode = response.getStatusLine().getStatusCode();
+        
+        if (statusCode == HttpStatus.SC_NOT_MODIFIED && cachedResponse != null) {
+            _responseCacheStatistics._recordNotModified(cachedResponse);
+            cache.put(key, cachedResponse.refresh(response));
+            return cachedResponse.getBody();
+        }
+        
+        CachedResponse newCachedResponse = CachedResponse.create(response, responseBody);
+        if (newCachedResponse != null) {
+            cache.put(key, newCachedResponse);
+        } else if (cachedResponse != null) {
+            cache.remove(key);
+        }
+        
+        return responseBody;
+    }
 
-        String line;
-        while ((line = reader.readLine()) != null) {
-            builder.append(line);
+    /**
+     * Removes the cached response for the URI of the given (non-GET) request, as
+     * the request is likely to change the resource.
+     * 
+     * @param request HTTP request.
+     */
+    protected void _invalidateCachedResponse(HttpRequestBase request) {
+        ResponseCache cache = _responseCache;
+        if (cache != null) {
+            cache.remove(request.getURI().toString());
         }
+    }
 
-        reader.close();
-        EntityUtils.consumeQuietly(entity);
-        
-        return builder.toString();
+    /**
+     * Returns the retry policy.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return _retryPolicy;
+    }
+    
+    /**
+     * Sets the retry policy. Pass null to disable retries.
+     * 
+     * Defaults to a DefaultRetryPolicy which retries once.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        _retryPolicy = retryPolicy;
+    }
+    
+    /**
+     * Returns the number of retries done by this client.
+     */
+    public long getRetryCount() {
+        return _retryCount.get();
+    }
+    
+    /**
+     * Returns the request listener.
+     */
+    public RequestListener getRequestListener() {
+        return _requestListener;
+    }
+    
+    /**
+     * Sets the request listener which receives timing information for all requests
+     * executed by this client. Pass null to disable request tracing.
+     * 
+     * @see HistogramRequestListener
+     */
+    public void setRequestListener(RequestListener requestListener) {
+        _requestListener = requestListener;
+    }
+    
+    /**
+     * Starts tracing the given request, if a request listener has been set.
+     * 
+     * The trace should be completed using _completeTrace when the request has been 
+     * fully processed.
+     * 
+     * @param request HTTP request.
+     * 
+     * @return Request trace or null.
+     */
+    protected RequestTrace _startTrace(HttpRequestBase request) {
+        RequestListener listener = _requestListener;
+        if (listener == null) {
+            return null;
+        }
+        
+        RequestTrace trace = new RequestTrace(request, listener);
+        trace._bind();
+        return trace;
+    }
+    
+    /**
+     * Reports the time spent parsing the response body.
+     * 
+     * @param trace     Request trace (optional).
+     * @param startTime System.nanoTime() at the start of parsing.
+     */
+    protected void _traceParse(RequestTrace trace, long startTime) {
+        if (trace != null) {
+            trace._recordParse(RequestTrace._elapsed(startTime));
+        }
+    }
+    
+    /**
+     * Completes the given request trace.
+     * 
+     * @param trace Request trace (optional).
+     */
+    protected void _completeTrace(RequestTrace trace) {
+        if (trace != null) {
+            trace._complete();
+        }
+    }
+    
+    /**
+     * Is response compression enabled?
+     */
+    public boolean isCompressionEnabled() {
+        return _compressionEnabled;
+    }
+    
+    /**
+     * Enable / disable response compression.
+     * 
+     * When enabled (the default), gzip and deflate encoded responses are accepted and 
+     * transparently decompressed while the response body is read.
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        _compressionEnabled = compressionEnabled;
+    }
+    
+    /**
+     * Returns the request compression threshold.
+     */
+    public int getRequestCompressionThreshold() {
+        return _requestCompressionThreshold;
+    }
+    
+    /**
+     * Sets the minimum size (in bytes) of a request body for it to be sent gzip compressed. 
+     * 
+     * Request compression is disabled by default (-1). Only enable this for servers that 
+     * accept gzip encoded request bodies.
+     */
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        _requestCompressionThreshold = requestCompressionThreshold;
+    }
+    
+    /**
+     * Returns the connectivity monitor.
+     */
+    public ConnectivityMonitor getConnectivityMonitor() {
+        return _connectivityMonitor;
+    }
+    
+    /**
+     * Sets the connectivity monitor.
+     * 
+     * When set, requests aren't executed while the monitor reports that there is no 
+     * internet connection. Instead they wait for a connection for at most the offline 
+     * wait time and fail with an OfflineException otherwise. The DNS caches of the 
+     * connection pools of this client are cleared when the connectivity changes.
+     */
+    public void setConnectivityMonitor(ConnectivityMonitor connectivityMonitor) {
+        _connectivityMonitor = connectivityMonitor;
+        _attachDnsCache(_connectionPoolConfig);
+        for (ConnectionPoolConfig config : _hostConnectionPoolConfigs.values()) {
+            _attachDnsCache(config);
+        }
+    }
+    
+    /**
+     * Clears the DNS cache of the given configuration when the connectivity changes.
+     */
+    private void _attachDnsCache(ConnectionPoolConfig config) {
+        ConnectivityMonitor monitor = _connectivityMonitor;
+        DnsCache dnsCache = config.getDnsCache();
+        if (monitor != null && dnsCache != null) {
+            dnsCache.clearOnConnectivityChange(monitor);
+        }
+    }
+    
+    /**
+     * Returns the offline wait time.
+     */
+    public long getOfflineWaitTime() {
+        return _offlineWaitTime;
+    }
+    
+    /**
+     * Sets the maximum time (in milliseconds) a request waits for an internet connection
+     * while offline. 
+     * 
+     * Defaults to 0, which means requests fail immediately while offline. Only has
+     * effect when a connectivity monitor is set.
+     */
+    public void setOfflineWaitTime(long offlineWaitTime) {
+        _offlineWaitTime = offlineWaitTime;
+    }
+    
+    /**
+     * Returns the network policy for the given network class.
+     */
+    public NetworkPolicy getNetworkPolicy(NetworkClass networkClass) {
+        return _networkPolicies.get(networkClass);
+    }
+    
+    /**
+     * Sets the network policy for the given network class. Pass null to remove the policy.
+     * 
+     * The policy of the current network class overrides the timeouts, maximum number of 
+     * concurrent requests, prefetch depth and compression setting of this client. Only 
+     * has effect when a connectivity monitor is set.
+     */
+    public void setNetworkPolicy(NetworkClass networkClass, NetworkPolicy policy) {
+        if (policy == null) {
+            _networkPolicies.remove(networkClass);
+        } else {
+            _networkPolicies.put(networkClass, policy);
+        }
+    }
+    
+    /**
+     * Returns the network policy for the current network.
+     * 
+     * @return Policy or null if there is no connectivity monitor or no policy for the
+     *         current network class.
+     */
+    public NetworkPolicy getNetworkPolicy() {
+        ConnectivityMonitor monitor = _connectivityMonitor;
+        if (monitor == null || _networkPolicies.isEmpty()) {
+            return null;
+        }
+        
+        return _networkPolicies.get(monitor.getNetworkClass());
+    }
+    
+    /**
+     * Returns the number of pages to fetch ahead when paging, limited by the network
+     * policy for the current network.
+     * 
+     * @param prefetchDepth Requested prefetch depth.
+     */
+    public int getPrefetchDepth(int prefetchDepth) {
+        NetworkPolicy policy = getNetworkPolicy();
+        return policy != null && policy.getPrefetchDepth() >= 0 ? Math.min(prefetchDepth, policy.getPrefetchDepth()) : prefetchDepth;
+    }
+    
+    /**
+     * Executes the given background or bulk task on the executor of this client as soon 
+     * as an unmetered network is available.
+     * 
+     * Without connectivity monitor the task is executed immediately. Requests executed
+     * by the task have background priority.
+     */
+    public void executeWhenUnmetered(Runnable task) {
+        task = RequestScheduler.withPriority(task, RequestPriority.BACKGROUND);
+        ConnectivityMonitor monitor = _connectivityMonitor;
+        if (monitor == null) {
+            getExecutor().execute(task);
+        } else {
+            monitor.executeWhenUnmetered(task, getExecutor());
+        }
+    }
+    
+    /**
+     * Returns the connection pool configuration for this client.
+     */
+    public ConnectionPoolConfig getConnectionPoolConfig() {
+        return _connectionPoolConfig;
+    }
+    
+    /**
+     * Sets the connection pool configuration for this client.
+     * 
+     * Clients using the same configuration instance share their connection pool.
+     */
+    public void setConnectionPoolConfig(ConnectionPoolConfig config) {
+        _connectionPoolConfig = config != null ? config : ConnectionPoolConfig.DEFAULT;
+        _connectionPool = null;
+        _attachDnsCache(_connectionPoolConfig);
+    }
+    
+    /**
+     * Sets the connection pool configuration used by this client for requests to the
+     * given host. Overrides the configuration for the client.
+     * 
+     * @param host   Host name.
+     * @param config Configuration, pass null to remove the host specific configuration.
+     */
+    public void setConnectionPoolConfig(String host, ConnectionPoolConfig config) {
+        if (config == null) {
+            _hostConnectionPoolConfigs.remove(host.toLowerCase(Locale.US));
+        } else {
+            _hostConnectionPoolConfigs.put(host.toLowerCase(Locale.US), config);
+            _attachDnsCache(config);
+        }
+    }
+    
+    /**
+     * Returns the connection pool for this client.
+     */
+    public ConnectionPool getConnectionPool() {
+        ConnectionPool pool = _connectionPool;
+        if (pool == null) {
+            pool = ConnectionPool.get(_connectionPoolConfig);
+            _connectionPool = pool;
+        }
+        
+        return pool;
+    }
+    
+    /**
+     * Returns the connection pool used for requests to the given host.
+     * 
+     * @param host Host name.
+     */
+    public ConnectionPool getConnectionPool(String host) {
+        if (host != null && !_hostConnectionPoolConfigs.isEmpty()) {
+            ConnectionPoolConfig config = _hostConnectionPoolConfigs.get(host.toLowerCase(Locale.US));
+            if (config != null) {
+                return ConnectionPool.get(config);
+            }
+        }
+        
+        return getConnectionPool();
+    }
+    
+    /**
+     * Returns the transport used to send requests.
+     */
+    public Transport getTransport() {
+        return _transport;
+    }
+    
+    /**
+     * Sets the transport used to send requests.
+     * 
+     * Defaults to an HttpClientTransport, which uses the connection pools of this client. 
+     * Pass null to restore the default. 
+     */
+    public void setTransport(Transport transport) {
+        _transport = transport != null ? transport : new HttpClientTransport(this);
+    }
+    
+    /**
+     * Resolves the host names of the base URLs and opens a connection to each of them 
+     * in the background, so the first request doesn't have to wait for DNS, TCP and TLS.
+     * 
+     * Call this early, e.g. when the application starts. Only the first call has effect.
+     * Connections stay pooled for the maximum idle time of the connection pool 
+     * configuration. Has no effect when using a transport other than the default.
+     * 
+     * @return Future, completes when the warm-up is done.
+     */
+    public Future<?> warmUp() {
+        return getExecutor().submit(new Runnable() {
+            @Override
+            public void run() {
+                _warmUp();
+            }
+        });
+    }
+    
+    /**
+     * Returns the warm-up and first request statistics.
+     */
+    public WarmUpStatistics getWarmUpStatistics() {
+        return _warmUpStatistics;
+    }
+    
+    /**
+     * Opens a connection to the host of each of the base URLs.
+     */
+    private void _warmUp() {
+        if (!(_transport instanceof HttpClientTransport) || !_warmUpStatistics._recordWarmUpStart()) {
+            return;
+        }
+        
+        List<String> urls = new ArrayList<String>();
+        for (String baseURL : new String[] { _baseURL, _secureBaseURL }) {
+            if (baseURL != null && !urls.contains(baseURL)) {
+                urls.add(baseURL);
+            }
+        }
+        
+        for (String url : urls) {
+            try {
+                URI uri = new URI(url);
+                getConnectionPool(uri.getHost()).warmUp(uri);
+            } catch (Exception e) {
+                if (_isLoggingEnabled()) {
+                    Log.d(_getLoggingTag(), "Error warming up " + url + " (" + e.toString() + ")");
+                }
+            }
+        }
+        
+        _warmUpStatistics._recordWarmUpEnd();
+        
+        if (_isLoggingEnabled()) {
+            Log.d(_getLoggingTag(), "Warm-up done in " + _warmUpStatistics.getWarmUpTime() + "ms");
+        }
+    }
+    
+    /**
+     * Returns the HTTP client object of the default connection pool.
+     * 
+     * @deprecated Clients no longer share a single HTTP client, use 
+     *             {@link #_getClient(HttpRequestBase)} or {@link #getConnectionPool()}.
+     */
+    @Deprecated
+    protected static HttpClient _getClient() {
+        return ConnectionPool.get(ConnectionPoolConfig.DEFAULT).getHttpClient();
+    }
+    
+    /**
+     * Returns the HTTP client object for the given request.
+     */
+    protected HttpClient _getClient(HttpRequestBase request) {
+        return getConnectionPool(request.getURI().getHost()).getHttpClient();
+    }
+    
+    /**
+     * Executes the given request that has been fully configured.
+     * 
+     * Waits for a slot of the request scheduler (if any) using the priority bound to the
+     * current thread. Failed attempts are retried according to the retry policy. If a
+     * deadline is bound to the current thread, the request is aborted when it expires.
+     * Requests (and retries) that aren't allowed by the admission policy for the host
+     * fail with an AdmissionRejectedException, and requests to a route for which the 
+     * circuit is open fail with a CircuitOpenException.
+     * 
+     * @param request HTTP request.
+     * 
+     * @return HTTP response.
+     * 
+     * @throws IOException
+     */
+    protected HttpResponse _execute(final HttpRequestBase request) throws IOException {
+        final Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline._register(request);
+        }
+        
+        final CircuitBreaker circuitBreaker = _getCircuitBreaker(request);
+        final AdmissionController admissionController = getAdmissionController(request.getURI().getHost());
+        final RequestScheduler scheduler = _requestScheduler;
+        final RequestPriority priority = RequestScheduler.getCurrentPriority();
+        boolean permitted = false;
+        boolean executed = false;
+        boolean admitted = false;
+        boolean acquired = false;
+        
+        HttpResponse response = null;
+        try {
+            _awaitConnectivity(request, deadline);
+            
+            if (circuitBreaker != null) {
+                circuitBreaker._acquirePermission();
+                permitted = true;
+            }
+            
+            if (admissionController != null) {
+                long maxWaitTime = admissionController.getPolicy().getMaxWaitTime();
+                admissionController._acquire(request, deadline != null ? Math.min(maxWaitTime, deadline.getRemainingTime()) : maxWaitTime);
+                admitted = true;
+            }
+            
+            if (scheduler != null) {
+                scheduler._acquire(priority, request);
+                acquired = true;
+            }
+            
+            executed = true;
+            response = _executeWithRetries(request, deadline, circuitBreaker, admissionController);
+            
+            if (permitted) {
+                circuitBreaker._recordResult(response.getStatusLine().getStatusCode() < 500);
+                permitted = false;
+            }
+        } catch (IOException e) {
+            if (permitted && executed && !request.isAborted()) {
+                circuitBreaker._recordResult(false);
+                permitted = false;
+            }
+            
+            if (deadline != null && deadline.isExpired() && !(e instanceof DeadlineExceededException)) {
+                DeadlineExceededException exception = new DeadlineExceededException();
+                exception.initCause(e);
+                throw exception;
+            }
+            
+            throw e;
+        } finally {
+            if (permitted) {
+                // not caused by the route, e.g. rejected or aborted by the caller
+                circuitBreaker._recordIgnored();
+            }
+            
+            if (admitted || acquired || deadline != null) {
+                final boolean release = acquired;
+                final boolean admissionRelease = admitted;
+                Runnable completion = new Runnable() {
+                    @Override
+                    public void run() {
+                        if (release) {
+                            scheduler._release(priority);
+                        }
+                        
+                        if (admissionRelease) {
+                            admissionController._release();
+                        }
+                        
+                        if (deadline != null) {
+                            deadline._unregister(request);
+                        }
+                    }
+                };
+                
+                HttpEntity entity = response != null ? response.getEntity() : null;
+                if (entity == null || !entity.isStreaming()) {
+                    completion.run();
+                } else {
+                    // slots are released once the body has been consumed
+                    response.setEntity(new CompletionEntity(entity, completion));
+                }
+            }
+        }
+        
+        return response;
+    }
+    
+    /**
+     * Executes the given request, retrying failed attempts according to the retry policy.
+     */
+    private HttpResponse _executeWithRetries(HttpRequestBase request, Deadline deadline, CircuitBreaker circuitBreaker, AdmissionController admissionController) throws IOException {
+        _prepareCompression(request);
+        
+        Transport transport = _transport;
+        RequestHedger hedger = request instanceof HttpGet ? _requestHedger : null;
+        long start = System.currentTimeMillis();
+        boolean warm = _warmUpStatistics.isWarm();
+        HttpParams callerParams = request.getParams();
+        
+        for (int attempt = 1;; attempt++) {
+            HttpResponse response = null;
+            IOException exception = null;
+            RequestTrace trace = RequestTrace.current();
+            long attemptStartTime = System.nanoTime();
+            
+            request.setParams(_mergeParams(callerParams, _getRequestParams(deadline)));
+            
+            try {
+                response = hedger != null ? hedger.execute(transport, request, circuitBreaker, admissionController) : transport.execute(request);
+            } catch (IOException e) {
+                exception = e;
+            }
+            
+            if (attempt == 1 && response != null && _warmUpStatistics.getFirstRequestTime() < 0) {
+                _warmUpStatistics._recordRequest(RequestTrace._elapsed(attemptStartTime), warm);
+            }
+            
+            if (trace != null && response != null) {
+                trace._recordFirstByte(response.getStatusLine().getStatusCode(), RequestTrace._elapsed(attemptStartTime));
+            }
+            
+            RetryPolicy retryPolicy = _retryPolicy;
+            long delay = -1;
+            if (retryPolicy != null && (exception != null || response.getStatusLine().getStatusCode() >= 400)) {
+                delay = retryPolicy.getRetryDelay(request, attempt, response, exception, System.currentTimeMillis() - start);
+            }
+            
+            if (delay >= 0 && exception != null && _connectivityMonitor != null && !_connectivityMonitor.isConnected()) {
+                // no use retrying while offline
+                delay = -1;
+            }
+            
+            if (delay >= 0 && request.isAborted()) {
+                // an aborted request can't be executed again
+                delay = -1;
+            }
+            
+            if (delay >= 0 && deadline != null && deadline.getRemainingTime() <= delay) {
+                // no time left for another attempt
+                delay = -1;
+            }
+            
+            if (delay >= 0 && admissionController != null && !admissionController._tryAcquireRetry()) {
+                // retries count against the rate limit, don't add load to a struggling host
+                delay = -1;
+            }
+            
+            if (delay < 0) {
+                if (exception != null) {
+                    throw exception;
+                }
+                
+                if (trace != null && response.getEntity() != null) {
+                    response.setEntity(new TracingEntity(response.getEntity(), trace));
+                }
+                
+                _decompressResponse(response);
+                return response;
+            }
+            
+            if (response != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+            } else if (exception instanceof ConnectException) {
+                // close idle connections to make sure the connect exception isn't
+                // caused by a stuck connection
+                transport.closeIdleConnections(request);
+            }
+            
+            _retryCount.incrementAndGet();
+            
+            if (_isLoggingEnabled()) {
+                Log.d(_getLoggingTag(), "Retry " + request.getURI() + " in " + delay + "ms (" + (exception != null ? exception.toString() : response.getStatusLine().toString()) + ")");
+            }
+            
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to retry");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Waits for an internet connection if the connectivity monitor reports we are offline.
+     * 
+     * @throws OfflineException if there is no connection within the offline wait time.
+     */
+    private void _awaitConnectivity(HttpRequestBase request, Deadline deadline) throws IOException {
+        ConnectivityMonitor monitor = _connectivityMonitor;
+        if (monitor == null || monitor.isConnected()) {
+            return;
+        }
+        
+        long waitTime = deadline != null ? Math.min(_offlineWaitTime, deadline.getRemainingTime()) : _offlineWaitTime;
+        
+        if (_isLoggingEnabled()) {
+            Log.d(_getLoggingTag(), "Offline, " + (waitTime > 0 ? "waiting at most " + waitTime + "ms for connection" : "not executing") + " " + request.getURI());
+        }
+        
+        try {
+            if (waitTime <= 0 || !monitor.awaitConnected(waitTime)) {
+                throw new OfflineException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for connection");
+        }
+    }
+    
+    /**
+     * Advertises the supported content encodings and compresses the request body
+     * if it's large enough.
+     */
+    private void _prepareCompression(HttpRequestBase request) {
+        NetworkPolicy policy = getNetworkPolicy();
+        boolean compressionEnabled = policy != null && policy.isCompressionEnabled() != null ? policy.isCompressionEnabled().booleanValue() : _compressionEnabled;
+        if (compressionEnabled && !request.containsHeader("Accept-Encoding")) {
+            request.addHeader("Accept-Encoding", "gzip, deflate");
+        }
+        
+        if (_requestCompressionThreshold < 0 || !(request instanceof HttpEntityEnclosingRequestBase)) {
+            return;
+        }
+        
+        HttpEntityEnclosingRequestBase entityRequest = (HttpEntityEnclosingRequestBase)request;
+        HttpEntity entity = entityRequest.getEntity();
+        if (entity != null && entity.getContentEncoding() == null && entity.getContentLength() >= _requestCompressionThreshold) {
+            entityRequest.setEntity(new GzipCompressingEntity(entity));
+        }
+    }
+    
+    /**
+     * Replaces a gzip or deflate encoded response entity with an entity that
+     * decompresses the content while it's being read.
+     */
+    private void _decompressResponse(HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        if (entity == null || entity.getContentEncoding() == null) {
+            return;
+        }
+        
+        for (HeaderElement codec : entity.getContentEncoding().getElements()) {
+            String name = codec.getName().toLowerCase(Locale.US);
+            if ("gzip".equals(name) || "x-gzip".equals(name)) {
+                response.setEntity(new GzipDecompressingEntity(entity));
+            } else if ("deflate".equals(name)) {
+                response.setEntity(new DeflateDecompressingEntity(entity));
+            } else {
+                continue;
+            }
+            
+            response.removeHeaders("Content-Length");
+            response.removeHeaders("Content-Encoding");
+            response.removeHeaders("Content-MD5");
+            return;
+        }
+    }
+
+    /**
+     * Executes the given request and copies the response body to the given stream.
+     * 
+     * The body is requested without content encoding and is never held in memory. The
+     * stream isn't closed.
+     * 
+     * @param request  Request.
+     * @param out      Output stream.
+     * @param listener Progress listener (optional).
+     * 
+     * @return Number of bytes written.
+     * 
+     * @throws HTTPException for error responses.
+     */
+    protected long _download(HttpRequestBase request, OutputStream out, DownloadListener listener) throws IOException, HTTPException {
+        RequestTrace trace = _startTrace(request);
+        HttpResponse response = null;
+        try {
+            request.setHeader("Accept-Encoding", "identity");
+            response = _execute(request);
+            _checkDownloadResponse(response);
+            
+            HttpEntity entity = response.getEntity();
+            return entity == null ? 0 : _copy(entity.getContent(), out, 0, entity.getContentLength(), listener);
+        } finally {
+            if (response != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+            
+            _completeTrace(trace);
+        }
+    }
+    
+    /**
+     * Executes the given request and writes the response body to the given file.
+     * 
+     * If the file already exists it's assumed to contain the first part of the response
+     * body and only the remainder is requested using a Range header. If the server 
+     * doesn't support ranges the file is overwritten with the complete body (200). A 
+     * partial response for another range is discarded and the complete body is 
+     * requested instead.
+     * 
+     * @param request  Request.
+     * @param file     File.
+     * @param listener Progress listener (optional).
+     * 
+     * @return Size of the file.
+     * 
+     * @throws HTTPException for error responses and unexpected partial responses.
+     */
+    protected long _download(HttpRequestBase request, File file, DownloadListener listener) throws IOException, HTTPException {
+        RequestTrace trace = _startTrace(request);
+        HttpResponse response = null;
+        try {
+            long offset = file.exists() ? file.length() : 0;
+            
+            request.setHeader("Accept-Encoding", "identity");
+            if (offset > 0) {
+                request.setHeader("Range", "bytes=" + offset + "-");
+            }
+            
+            response = _execute(request);
+            
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (offset > 0 && statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && _getRangeTotal(response) == offset) {
+                // already complete
+                if (listener != null) {
+                    listener.onProgress(offset, offset);
+                }
+                
+                return offset;
+            }
+            
+            _checkDownloadResponse(response);
+            
+            if (offset > 0 && statusCode == HttpStatus.SC_PARTIAL_CONTENT && _getRangeStart(response) != offset) {
+                // missing or unexpected range, can't be appended to the file
+                if (_isLoggingEnabled()) {
+                    Log.w(_getLoggingTag(), "Unexpected Content-Range for " + file + " at " + offset + " bytes, downloading complete body");
+                }
+                
+                EntityUtils.consumeQuietly(response.getEntity());
+                response = null;
+                
+                offset = 0;
+                request.removeHeaders("Range");
+                response = _execute(request);
+                statusCode = response.getStatusLine().getStatusCode();
+                _checkDownloadResponse(response);
+            }
+            
+            boolean append = offset > 0 && statusCode == HttpStatus.SC_PARTIAL_CONTENT;
+            if (!append && statusCode != HttpStatus.SC_OK) {
+                throw new HTTPException(statusCode, "Unexpected response for download: " + response.getStatusLine());
+            }
+            
+            if (!append) {
+                offset = 0;
+            }
+            
+            if (_isLoggingEnabled()) {
+                Log.d(_getLoggingTag(), (append ? "Resume download at " + offset + " bytes" : "Download") + " to " + file);
+            }
+            
+            HttpEntity entity = response.getEntity();
+            long contentLength = entity != null ? entity.getContentLength() : 0;
+            
+            OutputStream out = new FileOutputStream(file, append);
+            try {
+                return offset + (entity == null ? 0 : _copy(entity.getContent(), out, offset, contentLength < 0 ? -1 : offset + contentLength, listener));
+            } finally {
+                out.close();
+            }
+        } finally {
+            if (response != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+            
+            _completeTrace(trace);
+        }
+    }
+    
+    /**
+     * Throws an HTTPException for error responses.
+     */
+    private void _checkDownloadResponse(HttpResponse response) throws IOException, HTTPException {
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode >= 400) {
+            throw new HTTPException(statusCode, _getResponseBody(response));
+        }
+    }
+    
+    /**
+     * Returns the first byte position of the Content-Range header, or -1.
+     */
+    private long _getRangeStart(HttpResponse response) {
+        Header header = response.getFirstHeader("Content-Range");
+        if (header == null) {
+            return -1;
+        }
+        
+        // bytes first-last/total
+        String value = header.getValue().trim();
+        int start = value.indexOf(' ');
+        int end = value.indexOf('-');
+        if (start < 0 || end <= start) {
+            return -1;
+        }
+        
+        try {
+            return Long.parseLong(value.substring(start + 1, end).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Returns the total length of the Content-Range header, or -1.
+     */
+    private long _getRangeTotal(HttpResponse response) {
+        Header header = response.getFirstHeader("Content-Range");
+        if (header == null) {
+            return -1;
+        }
+        
+        String value = header.getValue().trim();
+        int index = value.lastIndexOf('/');
+        if (index < 0) {
+            return -1;
+        }
+        
+        try {
+            return Long.parseLong(value.substring(index + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Copies the given stream using a pooled buffer.
+     * 
+     * @return Number of bytes copied.
+     */
+    private long _copy(InputStream in, OutputStream out, long offset, long total, DownloadListener listener) throws IOException {
+        byte[] buffer = BufferPool.acquireByteBuffer();
+        try {
+            long count = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                count += read;
+                
+                if (listener != null) {
+                    listener.onProgress(offset + count, total);
+                }
+            }
+            
+            return count;
+        } finally {
+            in.close();
+            BufferPool.releaseByteBuffer(buffer);
+        }
+    }
+
+    /**
+     * Returns the maximum response body size.
+     */
+    public long getMaxResponseBodySize() {
+        return _maxResponseBodySize;
+    }
+    
+    /**
+     * Sets the maximum size (in bytes) of response bodies that are read into memory.
+     * 
+     * Reading a larger body fails with an IOException. Defaults to -1 (no limit). 
+     * Doesn't apply to downloads.
+     */
+    public void setMaxResponseBodySize(long maxResponseBodySize) {
+        _maxResponseBodySize = maxResponseBodySize;
+    }
+    
+    /**
+     * Returns the charset declared by the Content-Type of the given entity.
+     * 
+     * @return Charset, UTF-8 if none or an unsupported charset is declared.
+     */
+    protected Charset _getResponseCharset(HttpEntity entity) {
+        try {
+            ContentType contentType = ContentType.get(entity);
+            if (contentType != null && contentType.getCharset() != null) {
+                return contentType.getCharset();
+            }
+        } catch (Exception e) {
+            if (_isLoggingEnabled()) {
+                Log.w(_getLoggingTag(), "Unsupported response charset, falling back to UTF-8", e);
+            }
+        }
+        
+        return UTF8;
+    }
+
+    /**
+     * Gets the body of the HttpResponse as a String.
+     * 
+     * The body is decoded using the charset declared by the response (UTF-8 if none)
+     * using pooled buffers.
+     * 
+     * Returns null if response is null or if the body is empty.
+     * 
+     * @throws IOException if reading fails or the body exceeds the maximum body size.
+     * @throws IllegalStateException
+     */
+    protected String _getResponseBody(HttpResponse response) throws IllegalStateException, IOException {
+        if (response == null) {
+            return null;
+        }
+
+        HttpEntity entity = response.getEntity();
+
+        if (entity == null) {
+            return null;
+        }
+        
+        long contentLength = entity.getContentLength();
+        InputStream content = _getResponseContent(entity);
+        CharsetDecoder decoder = _getResponseCharset(entity).newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        StringBuilder builder = new StringBuilder(contentLength > 0 ? (int)Math.min(contentLength, MAX_PRESIZED_BODY_LENGTH) : BufferPool.BUFFER_SIZE);
+
+        byte[] bytes = BufferPool.acquireByteBuffer();
+        char[] chars = BufferPool.acquireCharBuffer();
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            CharBuffer out = CharBuffer.wrap(chars);
+            
+            int read;
+            while ((read = content.read(bytes, in.position(), in.remaining())) != -1) {
+                in.position(in.position() + read);
+                in.flip();
+                _decode(decoder, in, out, builder, false);
+                in.compact();
+            }
+            
+            in.flip();
+            _decode(decoder, in, out, builder, true);
+            while (decoder.flush(out).isOverflow()) {
+                _drain(out, builder);
+            }
+            
+            _drain(out, builder);
+        } finally {
+            content.close();
+            BufferPool.releaseByteBuffer(bytes);
+            BufferPool.releaseCharBuffer(chars);
+            EntityUtils.consumeQuietly(entity);
+        }
+        
+        return builder.toString();
+    }
+    
+    /**
+     * Returns the content stream of the given response entity, limited to the maximum 
+     * response body size.
+     * 
+     * @throws IOException if the declared length or, while reading, the body exceeds the 
+     *                     maximum body size.
+     */
+    protected InputStream _getResponseContent(HttpEntity entity) throws IOException {
+        long maxSize = _maxResponseBodySize;
+        long contentLength = entity.getContentLength();
+        if (maxSize >= 0 && contentLength > maxSize) {
+            EntityUtils.consumeQuietly(entity);
+            throw new IOException("Response body of " + contentLength + " bytes exceeds maximum of " + maxSize + " bytes");
+        }
+        
+        InputStream content = entity.getContent();
+        return maxSize >= 0 ? new LimitedInputStream(content, maxSize) : content;
+    }
+    
+    /**
+     * Decodes the available input and appends it to the given builder.
+     */
+    private void _decode(CharsetDecoder decoder, ByteBuffer in, CharBuffer out, StringBuilder builder, boolean endOfInput) {
+        while (decoder.decode(in, out, endOfInput).isOverflow()) {
+            _drain(out, builder);
+        }
+        
+        _drain(out, builder);
+    }
+    
+    /**
+     * Appends the decoded chars to the given builder and clears the buffer.
+     */
+    private void _drain(CharBuffer out, StringBuilder builder) {
+        builder.append(out.array(), 0, out.position());
+        out.clear();
+    }
+
+    /**
+     * Input stream that fails once more than the given number of bytes have been read.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long _maxSize;
+        private long _count = 0;
+
+        LimitedInputStream(InputStream in, long maxSize) {
+            super(in);
+            _maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result != -1) {
+                _count(1);
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            if (result > 0) {
+                _count(result);
+            }
+
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            _count(result);
+            return result;
+        }
+
+        /**
+         * Counts the given number of bytes read.
+         */
+        private void _count(long count) throws IOException {
+            _count += count;
+            if (_count > _maxSize) {
+                throw new IOException("Response body exceeds maximum of " + _maxSize + " bytes");
+            }
+        }
     }
 }
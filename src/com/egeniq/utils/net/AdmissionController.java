@@ -0,0 +1,291 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+import ch.boye.httpclientandroidlib.conn.ClientConnectionRequest;
+import ch.boye.httpclientandroidlib.conn.ManagedClientConnection;
+
+/**
+ * Admission control state and counters for the requests to a single host.
+ * 
+ * @see AdmissionPolicy
+ */
+public class AdmissionController {
+    private final String _host;
+    private final AdmissionPolicy _policy;
+
+    private double _tokens;
+    private long _refillTime = System.nanoTime();
+    private int _runningCount = 0;
+    private int _waitingCount = 0;
+
+    private final LatencyHistogram _queueWaitHistogram = new LatencyHistogram();
+    private final AtomicLong _admittedCount = new AtomicLong();
+    private final AtomicLong _rateRejectedCount = new AtomicLong();
+    private final AtomicLong _concurrencyRejectedCount = new AtomicLong();
+    private final AtomicLong _suppressedRetryCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     * 
+     * @param host   Host.
+     * @param policy Policy.
+     */
+    AdmissionController(String host, AdmissionPolicy policy) {
+        _host = host;
+        _policy = policy;
+        _tokens = Math.max(1, policy.getBurst());
+    }
+
+    /**
+     * Host.
+     */
+    public String getHost() {
+        return _host;
+    }
+
+    /**
+     * Policy.
+     */
+    public AdmissionPolicy getPolicy() {
+        return _policy;
+    }
+
+    /**
+     * Number of admitted requests.
+     */
+    public long getAdmittedCount() {
+        return _admittedCount.get();
+    }
+
+    /**
+     * Number of requests rejected because of the rate limit.
+     */
+    public long getRateRejectedCount() {
+        return _rateRejectedCount.get();
+    }
+
+    /**
+     * Number of requests rejected because of the concurrency limit.
+     */
+    public long getConcurrencyRejectedCount() {
+        return _concurrencyRejectedCount.get();
+    }
+
+    /**
+     * Number of retries that weren't attempted because of the rate limit.
+     */
+    public long getSuppressedRetryCount() {
+        return _suppressedRetryCount.get();
+    }
+
+    /**
+     * Time (in milliseconds) admitted requests waited to be admitted.
+     */
+    public LatencyHistogram getQueueWaitHistogram() {
+        return _queueWaitHistogram;
+    }
+
+    /**
+     * Number of admitted requests that haven't completed yet.
+     */
+    public synchronized int getRunningCount() {
+        return _runningCount;
+    }
+
+    /**
+     * Number of requests waiting to be admitted.
+     */
+    public synchronized int getWaitingCount() {
+        return _waitingCount;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void reset() {
+        _queueWaitHistogram.reset();
+        _admittedCount.set(0);
+        _rateRejectedCount.set(0);
+        _concurrencyRejectedCount.set(0);
+        _suppressedRetryCount.set(0);
+    }
+
+    /**
+     * Waits until the given request can be admitted.
+     * 
+     * @param request     HTTP request, waiting stops when it's aborted.
+     * @param maxWaitTime Maximum wait time in milliseconds.
+     * 
+     * @throws AdmissionRejectedException if the request can't be admitted in time.
+     */
+    void _acquire(HttpRequestBase request, long maxWaitTime) throws IOException {
+        long startTime = System.nanoTime();
+
+        synchronized (this) {
+            if (_tryAcquire()) {
+                _admit(startTime);
+                return;
+            }
+
+            if (maxWaitTime <= 0) {
+                throw _reject();
+            }
+        }
+
+        request.setConnectionRequest(new ClientConnectionRequest() {
+            @Override
+            public ManagedClientConnection getConnection(long timeout, TimeUnit unit) {
+                throw new IllegalStateException("Not a connection request");
+            }
+
+            @Override
+            public void abortRequest() {
+                synchronized (AdmissionController.this) {
+                    AdmissionController.this.notifyAll();
+                }
+            }
+        });
+
+        long deadline = startTime / 1000000 + maxWaitTime;
+        synchronized (this) {
+            _waitingCount++;
+            try {
+                while (!_tryAcquire()) {
+                    long remaining = deadline - System.nanoTime() / 1000000;
+                    if (remaining <= 0) {
+                        throw _reject();
+                    } else if (request.isAborted()) {
+                        throw new InterruptedIOException("Request aborted while waiting to be admitted");
+                    }
+
+                    long tokenWaitTime = _getTokenWaitTime();
+                    wait(tokenWaitTime > 0 ? Math.min(remaining, tokenWaitTime) : remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to be admitted");
+            } finally {
+                _waitingCount--;
+            }
+
+            _admit(startTime);
+        }
+    }
+
+    /**
+     * Takes a token for retrying a request without waiting.
+     * 
+     * @return Can the request be retried?
+     */
+    synchronized boolean _tryAcquireRetry() {
+        if (_policy.getRate() <= 0) {
+            return true;
+        }
+
+        _refill();
+        if (_tokens >= 1) {
+            _tokens--;
+            return true;
+        }
+
+        _suppressedRetryCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Takes a concurrency slot and a token for a hedged request without waiting.
+     * 
+     * @return Can the hedged request be sent?
+     */
+    synchronized boolean _tryAcquireHedge() {
+        if (!_tryAcquire()) {
+            return false;
+        }
+
+        _admit(System.nanoTime());
+        return true;
+    }
+
+    /**
+     * Releases the concurrency slot of a completed request.
+     */
+    synchronized void _release() {
+        _runningCount--;
+        notifyAll();
+    }
+
+    /**
+     * Takes a concurrency slot and a token if both are available. Must hold the lock.
+     */
+    private boolean _tryAcquire() {
+        int maxConcurrentRequests = _policy.getMaxConcurrentRequests();
+        if (maxConcurrentRequests >= 0 && _runningCount >= maxConcurrentRequests) {
+            return false;
+        }
+
+        if (_policy.getRate() > 0) {
+            _refill();
+            if (_tokens < 1) {
+                return false;
+            }
+
+            _tokens--;
+        }
+
+        _runningCount++;
+        return true;
+    }
+
+    /**
+     * Records the admission of a request. Must hold the lock.
+     */
+    private void _admit(long startTime) {
+        _admittedCount.incrementAndGet();
+        _queueWaitHistogram.record(RequestTrace._elapsed(startTime));
+    }
+
+    /**
+     * Counts and returns a rejection. Must hold the lock.
+     */
+    private AdmissionRejectedException _reject() {
+        int maxConcurrentRequests = _policy.getMaxConcurrentRequests();
+        if (maxConcurrentRequests >= 0 && _runningCount >= maxConcurrentRequests) {
+            _concurrencyRejectedCount.incrementAndGet();
+            return new AdmissionRejectedException(_host, AdmissionRejectedException.Reason.CONCURRENCY_LIMITED);
+        } else {
+            _rateRejectedCount.incrementAndGet();
+            return new AdmissionRejectedException(_host, AdmissionRejectedException.Reason.RATE_LIMITED);
+        }
+    }
+
+    /**
+     * Adds the tokens for the time passed since the last refill. Must hold the lock.
+     */
+    private void _refill() {
+        long now = System.nanoTime();
+        _tokens = Math.min(Math.max(1, _policy.getBurst()), _tokens + (now - _refillTime) * _policy.getRate() / 1000000000.0);
+        _refillTime = now;
+    }
+
+    /**
+     * Returns the time (in milliseconds) until the next token is available, 0 if 
+     * available or not rate limited. Must hold the lock.
+     */
+    private long _getTokenWaitTime() {
+        if (_policy.getRate() <= 0 || _tokens >= 1) {
+            return 0;
+        }
+
+        return Math.max(1, (long)Math.ceil((1 - _tokens) * 1000 / _policy.getRate()));
+    }
+
+    @Override
+    public String toString() {
+        return "host=" + _host + ", running=" + getRunningCount() + ", waiting=" + getWaitingCount() + ", admitted=" + getAdmittedCount() + ", rateRejected=" + getRateRejectedCount() + ", concurrencyRejected=" + getConcurrencyRejectedCount() + ", suppressedRetries=" + getSuppressedRetryCount() + ", wait: " + _queueWaitHistogram;
+    }
+}
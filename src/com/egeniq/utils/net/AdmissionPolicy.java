@@ -0,0 +1,86 @@
+package com.egeniq.utils.net;
+
+/**
+ * Admission control settings for the requests to a host.
+ * 
+ * Combines a token bucket rate limiter with a concurrency bulkhead. Requests that can't
+ * be admitted immediately wait at most the maximum wait time, or fail immediately with
+ * an AdmissionRejectedException if the maximum wait time is 0.
+ * 
+ * @see AbstractHTTPClient#setAdmissionPolicy(AdmissionPolicy)
+ */
+public class AdmissionPolicy {
+    private double _rate = -1;
+    private int _burst = 1;
+    private int _maxConcurrentRequests = -1;
+    private long _maxWaitTime = 0;
+
+    /**
+     * Get the maximum sustained number of requests per second, -1 if unlimited.
+     */
+    public double getRate() {
+        return _rate;
+    }
+
+    /**
+     * Set the maximum sustained number of requests per second, -1 if unlimited.
+     * 
+     * Retries also count as requests, but are never delayed: if there is no token
+     * available the request isn't retried.
+     */
+    public AdmissionPolicy setRate(double rate) {
+        _rate = rate;
+        return this;
+    }
+
+    /**
+     * Get the number of requests that can be executed in a burst (the bucket size).
+     */
+    public int getBurst() {
+        return _burst;
+    }
+
+    /**
+     * Set the number of requests that can be executed in a burst (the bucket size).
+     * 
+     * Defaults to 1.
+     */
+    public AdmissionPolicy setBurst(int burst) {
+        _burst = burst;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of concurrent requests, -1 if unlimited.
+     */
+    public int getMaxConcurrentRequests() {
+        return _maxConcurrentRequests;
+    }
+
+    /**
+     * Set the maximum number of concurrent requests, -1 if unlimited.
+     * 
+     * A request counts as concurrent until its response body has been consumed.
+     */
+    public AdmissionPolicy setMaxConcurrentRequests(int maxConcurrentRequests) {
+        _maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+
+    /**
+     * Get the maximum time (in milliseconds) a request waits to be admitted.
+     */
+    public long getMaxWaitTime() {
+        return _maxWaitTime;
+    }
+
+    /**
+     * Set the maximum time (in milliseconds) a request waits to be admitted.
+     * 
+     * Defaults to 0, which rejects requests that can't be admitted immediately (fail fast).
+     */
+    public AdmissionPolicy setMaxWaitTime(long maxWaitTime) {
+        _maxWaitTime = maxWaitTime;
+        return this;
+    }
+}
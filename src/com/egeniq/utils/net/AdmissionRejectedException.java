@@ -0,0 +1,51 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request isn't executed because the admission policy for the host 
+ * doesn't allow it.
+ * 
+ * @see AdmissionPolicy
+ */
+public class AdmissionRejectedException extends IOException {
+    /**
+     * Unique identifier.
+     */
+    private static final long serialVersionUID = -1846470113946360572L;
+
+    /**
+     * Rejection reason.
+     */
+    public enum Reason {
+        /**
+         * Rate limit reached.
+         */
+        RATE_LIMITED,
+
+        /**
+         * Maximum number of concurrent requests reached.
+         */
+        CONCURRENCY_LIMITED
+    }
+
+    private final Reason _reason;
+
+    /**
+     * Constructor.
+     * 
+     * @param host   Host.
+     * @param reason Reason.
+     */
+    public AdmissionRejectedException(String host, Reason reason) {
+        super("Request to " + host + " rejected (" + (reason == Reason.RATE_LIMITED ? "rate limited" : "too many concurrent requests") + ")");
+        _reason = reason;
+    }
+
+    /**
+     * Returns the rejection reason.
+     */
+    public Reason getReason() {
+        return _reason;
+    }
+}
@@ -0,0 +1,81 @@
+package com.egeniq.utils.net;
+
+/**
+ * Per-thread pool of I/O buffers.
+ * 
+ * Each thread keeps at most a few released buffers around, so reading response bodies
+ * on the executor threads doesn't allocate a new buffer for every request. Buffers
+ * must be released on the thread that acquired them.
+ */
+final class BufferPool {
+    /**
+     * Buffer size, in bytes.
+     */
+    public final static int BUFFER_SIZE = 8192;
+
+    private final static int MAX_POOLED_BUFFERS = 2;
+
+    private final static ThreadLocal<BufferPool> _pools = new ThreadLocal<BufferPool>() {
+        @Override
+        protected BufferPool initialValue() {
+            return new BufferPool();
+        }
+    };
+
+    private final byte[][] _byteBuffers = new byte[MAX_POOLED_BUFFERS][];
+    private int _byteBufferCount = 0;
+
+    private final char[][] _charBuffers = new char[MAX_POOLED_BUFFERS][];
+    private int _charBufferCount = 0;
+
+    private BufferPool() {
+    }
+
+    /**
+     * Returns a byte buffer of BUFFER_SIZE bytes for the current thread.
+     */
+    public static byte[] acquireByteBuffer() {
+        BufferPool pool = _pools.get();
+        if (pool._byteBufferCount == 0) {
+            return new byte[BUFFER_SIZE];
+        }
+
+        byte[] buffer = pool._byteBuffers[--pool._byteBufferCount];
+        pool._byteBuffers[pool._byteBufferCount] = null;
+        return buffer;
+    }
+
+    /**
+     * Returns the given byte buffer to the pool of the current thread.
+     */
+    public static void releaseByteBuffer(byte[] buffer) {
+        BufferPool pool = _pools.get();
+        if (buffer != null && buffer.length == BUFFER_SIZE && pool._byteBufferCount < MAX_POOLED_BUFFERS) {
+            pool._byteBuffers[pool._byteBufferCount++] = buffer;
+        }
+    }
+
+    /**
+     * Returns a char buffer of BUFFER_SIZE chars for the current thread.
+     */
+    public static char[] acquireCharBuffer() {
+        BufferPool pool = _pools.get();
+        if (pool._charBufferCount == 0) {
+            return new char[BUFFER_SIZE];
+        }
+
+        char[] buffer = pool._charBuffers[--pool._charBufferCount];
+        pool._charBuffers[pool._charBufferCount] = null;
+        return buffer;
+    }
+
+    /**
+     * Returns the given char buffer to the pool of the current thread.
+     */
+    public static void releaseCharBuffer(char[] buffer) {
+        BufferPool pool = _pools.get();
+        if (buffer != null && buffer.length == BUFFER_SIZE && pool._charBufferCount < MAX_POOLED_BUFFERS) {
+            pool._charBuffers[pool._charBufferCount++] = buffer;
+        }
+    }
+}
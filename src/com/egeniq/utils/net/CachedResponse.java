@@ -0,0 +1,183 @@
+package com.egeniq.utils.net;
+
+import java.util.Date;
+
+import ch.boye.httpclientandroidlib.Header;
+import ch.boye.httpclientandroidlib.HeaderElement;
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.HttpStatus;
+import ch.boye.httpclientandroidlib.impl.cookie.DateParseException;
+import ch.boye.httpclientandroidlib.impl.cookie.DateUtils;
+
+/**
+ * Cached response body together with its validators.
+ */
+public class CachedResponse {
+    private final String _body;
+    private final String _eTag;
+    private final String _lastModified;
+    private final long _expires;
+
+    /**
+     * Constructor.
+     * 
+     * @param body         Response body.
+     * @param eTag         ETag header value (optional).
+     * @param lastModified Last-Modified header value (optional).
+     * @param expires      Time (in milliseconds since the epoch) until which the response is fresh.
+     */
+    public CachedResponse(String body, String eTag, String lastModified, long expires) {
+        _body = body;
+        _eTag = eTag;
+        _lastModified = lastModified;
+        _expires = expires;
+    }
+
+    /**
+     * Returns the response body.
+     */
+    public String getBody() {
+        return _body;
+    }
+
+    /**
+     * Returns the ETag header value.
+     */
+    public String getETag() {
+        return _eTag;
+    }
+
+    /**
+     * Returns the Last-Modified header value.
+     */
+    public String getLastModified() {
+        return _lastModified;
+    }
+
+    /**
+     * Returns the time until which the response is fresh.
+     */
+    public long getExpires() {
+        return _expires;
+    }
+
+    /**
+     * Can the response be used without revalidating it?
+     */
+    public boolean isFresh() {
+        return System.currentTimeMillis() < _expires;
+    }
+
+    /**
+     * Can the response be revalidated using a conditional request?
+     */
+    public boolean isRevalidatable() {
+        return _eTag != null || _lastModified != null;
+    }
+
+    /**
+     * Creates a cached response for the given response, or returns null if the
+     * response may not or need not be cached.
+     * 
+     * @param response HTTP response.
+     * @param body     Response body.
+     * 
+     * @return Cached response or null.
+     */
+    public static CachedResponse create(HttpResponse response, String body) {
+        if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || body == null) {
+            return null;
+        }
+
+        long expires = _getExpires(response);
+        if (expires < 0) {
+            return null;
+        }
+
+        CachedResponse result = new CachedResponse(body, _getHeaderValue(response, "ETag"), _getHeaderValue(response, "Last-Modified"), expires);
+        if (!result.isFresh() && !result.isRevalidatable()) {
+            return null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a copy of this cached response with the freshness and validators
+     * updated from a 304 (not modified) response.
+     * 
+     * @param response Not modified response.
+     * 
+     * @return Refreshed cached response.
+     */
+    public CachedResponse refresh(HttpResponse response) {
+        long expires = _getExpires(response);
+        String eTag = _getHeaderValue(response, "ETag");
+        String lastModified = _getHeaderValue(response, "Last-Modified");
+        return new CachedResponse(_body, eTag != null ? eTag : _eTag, lastModified != null ? lastModified : _lastModified, Math.max(expires, 0));
+    }
+
+    /**
+     * Determines the expiry time of the given response based on the Cache-Control
+     * and Expires headers. Returns -1 if the response may not be stored.
+     * 
+     * All Cache-Control directives are taken into account, regardless of their order:
+     * no-store wins, no-cache requires revalidation on each use, max-age takes 
+     * precedence over Expires. The response is never used stale, so must-revalidate 
+     * doesn't shorten the max-age.
+     */
+    private static long _getExpires(HttpResponse response) {
+        long now = System.currentTimeMillis();
+
+        boolean noCache = false;
+        boolean hasMaxAge = false;
+        long maxAge = 0;
+        for (Header header : response.getHeaders("Cache-Control")) {
+            for (HeaderElement element : header.getElements()) {
+                String name = element.getName();
+                if ("no-store".equalsIgnoreCase(name)) {
+                    return -1;
+                } else if ("no-cache".equalsIgnoreCase(name)) {
+                    noCache = true;
+                } else if ("max-age".equalsIgnoreCase(name) && element.getValue() != null) {
+                    long value;
+                    try {
+                        value = Math.max(Long.parseLong(element.getValue().trim()), 0);
+                    } catch (NumberFormatException e) {
+                        value = 0;
+                    }
+
+                    // use the most restrictive value if repeated
+                    maxAge = hasMaxAge ? Math.min(maxAge, value) : value;
+                    hasMaxAge = true;
+                }
+            }
+        }
+
+        if (noCache) {
+            return now;
+        } else if (hasMaxAge) {
+            return now + maxAge * 1000;
+        }
+
+        String expires = _getHeaderValue(response, "Expires");
+        if (expires != null) {
+            try {
+                Date date = DateUtils.parseDate(expires);
+                return Math.max(date.getTime(), now);
+            } catch (DateParseException e) {
+                return now;
+            }
+        }
+
+        return now;
+    }
+
+    /**
+     * Returns the value of the first header with the given name.
+     */
+    private static String _getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+}
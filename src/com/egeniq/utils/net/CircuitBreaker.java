@@ -0,0 +1,254 @@
+package com.egeniq.utils.net;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.util.Log;
+
+/**
+ * Circuit breaker state for a single route.
+ * 
+ * @see CircuitBreakerPolicy
+ */
+public class CircuitBreaker {
+    private final static String TAG = CircuitBreaker.class.getName();
+    private final static boolean DEBUG = false;
+
+    /**
+     * Circuit state.
+     */
+    public enum State {
+        /**
+         * Requests are executed.
+         */
+        CLOSED,
+
+        /**
+         * Requests fail immediately.
+         */
+        OPEN,
+
+        /**
+         * A limited number of probe requests is executed.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Circuit state listener.
+     */
+    public interface Listener {
+        /**
+         * Called when the state of a circuit changes.
+         * 
+         * Called on the thread that executed the request that caused the change, so don't block.
+         * 
+         * @param circuitBreaker Circuit breaker, holds the new state.
+         * @param previousState  Previous state.
+         */
+        public void onStateChanged(CircuitBreaker circuitBreaker, State previousState);
+    }
+
+    private final String _route;
+    private final CircuitBreakerPolicy _policy;
+    private final List<Listener> _listeners;
+
+    private State _state = State.CLOSED;
+    private final boolean[] _failures;
+    private int _index = 0;
+    private int _count = 0;
+    private int _failureCount = 0;
+    private long _openedTime = 0;
+    private int _probesStarted = 0;
+    private int _probesSucceeded = 0;
+
+    private final AtomicLong _rejectedCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     * 
+     * @param route     Route.
+     * @param policy    Policy.
+     * @param listeners Listeners, notified of state changes.
+     */
+    CircuitBreaker(String route, CircuitBreakerPolicy policy, List<Listener> listeners) {
+        _route = route;
+        _policy = policy;
+        _listeners = listeners;
+        _failures = new boolean[Math.max(1, policy.getWindowSize())];
+    }
+
+    /**
+     * Route (scheme, host, port and path prefix).
+     */
+    public String getRoute() {
+        return _route;
+    }
+
+    /**
+     * Current state.
+     */
+    public synchronized State getState() {
+        if (_state == State.OPEN && _getElapsed() >= _policy.getOpenDuration()) {
+            return State.HALF_OPEN; // the next request will probe
+        }
+
+        return _state;
+    }
+
+    /**
+     * Failure rate (0 - 1) of the most recent requests.
+     */
+    public synchronized double getFailureRate() {
+        return _count == 0 ? 0 : (double)_failureCount / _count;
+    }
+
+    /**
+     * Number of requests that failed immediately because the circuit was open.
+     */
+    public long getRejectedCount() {
+        return _rejectedCount.get();
+    }
+
+    /**
+     * Checks whether a request may be executed.
+     * 
+     * @throws CircuitOpenException if the circuit is open.
+     */
+    void _acquirePermission() throws CircuitOpenException {
+        State previousState;
+        State state;
+        synchronized (this) {
+            previousState = _state;
+            if (_state == State.OPEN) {
+                if (_getElapsed() < _policy.getOpenDuration()) {
+                    _rejectedCount.incrementAndGet();
+                    throw new CircuitOpenException(_route);
+                }
+
+                _state = State.HALF_OPEN;
+                _probesStarted = 0;
+                _probesSucceeded = 0;
+            }
+
+            if (_state == State.HALF_OPEN) {
+                if (_probesStarted >= Math.max(1, _policy.getProbeCount())) {
+                    _rejectedCount.incrementAndGet();
+                    throw new CircuitOpenException(_route);
+                }
+
+                _probesStarted++;
+            }
+
+            state = _state;
+        }
+
+        _notify(previousState, state);
+    }
+
+    /**
+     * Records the result of a permitted request.
+     * 
+     * @param success Successful?
+     */
+    void _recordResult(boolean success) {
+        State previousState;
+        State state;
+        synchronized (this) {
+            previousState = _state;
+            if (_state == State.HALF_OPEN) {
+                if (!success) {
+                    _open();
+                } else if (++_probesSucceeded >= Math.max(1, _policy.getProbeCount())) {
+                    _close();
+                }
+            } else if (_state == State.CLOSED) {
+                _record(!success);
+                if (_count >= _policy.getMinimumRequests() && getFailureRate() >= _policy.getFailureRateThreshold()) {
+                    _open();
+                }
+            }
+
+            state = _state;
+        }
+
+        _notify(previousState, state);
+    }
+
+    /**
+     * Releases the permission of a request that didn't produce a meaningful result, 
+     * e.g. because it was aborted by the caller.
+     */
+    synchronized void _recordIgnored() {
+        if (_state == State.HALF_OPEN && _probesStarted > 0) {
+            _probesStarted--;
+        }
+    }
+
+    /**
+     * Adds a result to the window. Must hold the lock.
+     */
+    private void _record(boolean failure) {
+        if (_count == _failures.length) {
+            if (_failures[_index]) {
+                _failureCount--;
+            }
+        } else {
+            _count++;
+        }
+
+        _failures[_index] = failure;
+        if (failure) {
+            _failureCount++;
+        }
+
+        _index = (_index + 1) % _failures.length;
+    }
+
+    /**
+     * Opens the circuit. Must hold the lock.
+     */
+    private void _open() {
+        _state = State.OPEN;
+        _openedTime = System.nanoTime();
+    }
+
+    /**
+     * Closes the circuit and clears the window. Must hold the lock.
+     */
+    private void _close() {
+        _state = State.CLOSED;
+        _index = 0;
+        _count = 0;
+        _failureCount = 0;
+    }
+
+    /**
+     * Time (in milliseconds) since the circuit opened. Must hold the lock.
+     */
+    private long _getElapsed() {
+        return RequestTrace._elapsed(_openedTime);
+    }
+
+    /**
+     * Notifies the listeners if the state has changed.
+     */
+    private void _notify(State previousState, State state) {
+        if (state == previousState) {
+            return;
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "Circuit for " + _route + " changed from " + previousState + " to " + state);
+        }
+
+        for (Listener listener : _listeners) {
+            listener.onStateChanged(this, previousState);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "route=" + _route + ", state=" + getState() + ", failureRate=" + getFailureRate() + ", rejected=" + getRejectedCount();
+    }
+}
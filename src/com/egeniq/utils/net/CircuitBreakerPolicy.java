@@ -0,0 +1,120 @@
+package com.egeniq.utils.net;
+
+/**
+ * Circuit breaker settings.
+ * 
+ * Requests are grouped in routes by host and path prefix. Once the failure rate of the 
+ * most recent requests to a route exceeds the threshold, the circuit for the route
+ * opens and requests fail immediately with a CircuitOpenException. After the open 
+ * duration the circuit is half-open: a limited number of probe requests is let 
+ * through, and if they all succeed the circuit closes again, otherwise it re-opens.
+ * 
+ * Connection errors, timeouts and 5xx responses count as failures.
+ * 
+ * @see AbstractHTTPClient#setCircuitBreakerPolicy(CircuitBreakerPolicy)
+ */
+public class CircuitBreakerPolicy {
+    private double _failureRateThreshold = 0.5;
+    private int _windowSize = 20;
+    private int _minimumRequests = 10;
+    private long _openDuration = 30000;
+    private int _probeCount = 1;
+    private int _pathPrefixDepth = 1;
+
+    /**
+     * Get the failure rate (0 - 1) at which the circuit opens.
+     */
+    public double getFailureRateThreshold() {
+        return _failureRateThreshold;
+    }
+
+    /**
+     * Set the failure rate (0 - 1) at which the circuit opens, defaults to 0.5.
+     */
+    public CircuitBreakerPolicy setFailureRateThreshold(double failureRateThreshold) {
+        _failureRateThreshold = failureRateThreshold;
+        return this;
+    }
+
+    /**
+     * Get the number of most recent requests the failure rate is calculated over.
+     */
+    public int getWindowSize() {
+        return _windowSize;
+    }
+
+    /**
+     * Set the number of most recent requests the failure rate is calculated over, 
+     * defaults to 20.
+     */
+    public CircuitBreakerPolicy setWindowSize(int windowSize) {
+        _windowSize = windowSize;
+        return this;
+    }
+
+    /**
+     * Get the minimum number of requests before the circuit can open.
+     */
+    public int getMinimumRequests() {
+        return _minimumRequests;
+    }
+
+    /**
+     * Set the minimum number of requests before the circuit can open, defaults to 10.
+     */
+    public CircuitBreakerPolicy setMinimumRequests(int minimumRequests) {
+        _minimumRequests = minimumRequests;
+        return this;
+    }
+
+    /**
+     * Get the time (in milliseconds) the circuit stays open before probing the route.
+     */
+    public long getOpenDuration() {
+        return _openDuration;
+    }
+
+    /**
+     * Set the time (in milliseconds) the circuit stays open before probing the route,
+     * defaults to 30 seconds.
+     */
+    public CircuitBreakerPolicy setOpenDuration(long openDuration) {
+        _openDuration = openDuration;
+        return this;
+    }
+
+    /**
+     * Get the number of probe requests that need to succeed to close a half-open circuit.
+     */
+    public int getProbeCount() {
+        return _probeCount;
+    }
+
+    /**
+     * Set the number of probe requests that need to succeed to close a half-open circuit,
+     * defaults to 1.
+     */
+    public CircuitBreakerPolicy setProbeCount(int probeCount) {
+        _probeCount = probeCount;
+        return this;
+    }
+
+    /**
+     * Get the number of path segments that are part of the route.
+     */
+    public int getPathPrefixDepth() {
+        return _pathPrefixDepth;
+    }
+
+    /**
+     * Set the number of path segments that are part of the route, defaults to 1. Use 0
+     * for one circuit per host.
+     * 
+     * For example, with depth 2 requests to /v2/endpoints/... and /v2/users/... use 
+     * different circuits.
+     */
+    public CircuitBreakerPolicy setPathPrefixDepth(int pathPrefixDepth) {
+        _pathPrefixDepth = pathPrefixDepth;
+        return this;
+    }
+}
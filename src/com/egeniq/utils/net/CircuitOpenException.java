@@ -0,0 +1,54 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request isn't executed because the circuit for its route is open.
+ * 
+ * Wrapped in an HTTPException with code HTTPException.CIRCUIT_OPEN or an APIException
+ * with code APIException.CIRCUIT_OPEN.
+ * 
+ * @see CircuitBreakerPolicy
+ */
+public class CircuitOpenException extends IOException {
+    /**
+     * Unique identifier.
+     */
+    private static final long serialVersionUID = 4514946466683096331L;
+
+    private final String _route;
+
+    /**
+     * Constructor.
+     * 
+     * @param route Route.
+     */
+    public CircuitOpenException(String route) {
+        super("Circuit open for " + route);
+        _route = route;
+    }
+
+    /**
+     * Returns the route.
+     */
+    public String getRoute() {
+        return _route;
+    }
+
+    /**
+     * Returns whether the given exception is, or is caused by, a CircuitOpenException.
+     */
+    public static boolean isCause(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CircuitOpenException) {
+                return true;
+            }
+
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+package com.egeniq.utils.net;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import ch.boye.httpclientandroidlib.HttpEntity;
+import ch.boye.httpclientandroidlib.entity.HttpEntityWrapper;
+
+/**
+ * Entity wrapper that runs a completion task once the response body has been consumed 
+ * or closed, e.g. to release the scheduler slot of the request.
+ */
+class CompletionEntity extends HttpEntityWrapper {
+    private final Runnable _completion;
+    private boolean _released = false;
+
+    /**
+     * Constructor.
+     */
+    CompletionEntity(HttpEntity entity, Runnable completion) {
+        super(entity);
+        _completion = completion;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        try {
+            return new CompletionInputStream(wrappedEntity.getContent());
+        } catch (IOException e) {
+            _release();
+            throw e;
+        } catch (RuntimeException e) {
+            _release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        try {
+            wrappedEntity.writeTo(out);
+        } finally {
+            _release();
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void consumeContent() throws IOException {
+        try {
+            wrappedEntity.consumeContent();
+        } finally {
+            _release();
+        }
+    }
+
+    /**
+     * Runs the completion task, once.
+     */
+    private synchronized void _release() {
+        if (!_released) {
+            _released = true;
+            _completion.run();
+        }
+    }
+
+    /**
+     * Input stream that runs the completion task when the end of the stream is reached 
+     * or the stream is closed.
+     */
+    private class CompletionInputStream extends FilterInputStream {
+        CompletionInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result == -1) {
+                _release();
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            if (result == -1) {
+                _release();
+            }
+
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                _release();
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import ch.boye.httpclientandroidlib.HttpException;
+import ch.boye.httpclientandroidlib.HttpHost;
+import ch.boye.httpclientandroidlib.HttpVersion;
+import ch.boye.httpclientandroidlib.client.HttpClient;
+import ch.boye.httpclientandroidlib.client.methods.HttpGet;
+import ch.boye.httpclientandroidlib.client.utils.URIUtils;
+import ch.boye.httpclientandroidlib.conn.ClientConnectionOperator;
+import ch.boye.httpclientandroidlib.conn.ClientConnectionRequest;
+import ch.boye.httpclientandroidlib.conn.ConnectionPoolTimeoutException;
+import ch.boye.httpclientandroidlib.conn.ManagedClientConnection;
+import ch.boye.httpclientandroidlib.conn.OperatedClientConnection;
+import ch.boye.httpclientandroidlib.conn.routing.HttpRoute;
+import ch.boye.httpclientandroidlib.conn.scheme.SchemeRegistry;
+import ch.boye.httpclientandroidlib.impl.client.DefaultHttpClient;
+import ch.boye.httpclientandroidlib.impl.client.DefaultHttpRequestRetryHandler;
+import ch.boye.httpclientandroidlib.impl.conn.DefaultClientConnectionOperator;
+import ch.boye.httpclientandroidlib.impl.conn.SchemeRegistryFactory;
+import ch.boye.httpclientandroidlib.impl.conn.tsccm.ThreadSafeClientConnManager;
+import ch.boye.httpclientandroidlib.params.BasicHttpParams;
+import ch.boye.httpclientandroidlib.params.CoreProtocolPNames;
+import ch.boye.httpclientandroidlib.params.HttpConnectionParams;
+import ch.boye.httpclientandroidlib.params.HttpParams;
+import ch.boye.httpclientandroidlib.protocol.BasicHttpContext;
+import ch.boye.httpclientandroidlib.protocol.HttpContext;
+
+/**
+ * Connection pool with the HTTP client that uses it.
+ * 
+ * There is one pool per connection pool configuration. Pools are never discarded,
+ * so use a limited number of configurations.
+ */
+public class ConnectionPool {
+    private final static int DEFAULT_TIMEOUT = 15000;
+
+    private final static ConcurrentHashMap<ConnectionPoolConfig, ConnectionPool> _pools = new ConcurrentHashMap<ConnectionPoolConfig, ConnectionPool>();
+    private static ScheduledExecutorService _evictor = null;
+
+    /**
+     * Connection manager which reports the connection lease wait time to the current
+     * request trace.
+     */
+    private static class TracingConnectionManager extends ThreadSafeClientConnManager {
+        public TracingConnectionManager(SchemeRegistry schemeRegistry, long connectionTimeToLive, DnsCache dnsCache) {
+            super(schemeRegistry, connectionTimeToLive, TimeUnit.MILLISECONDS);
+
+            // operator is created by the super constructor
+            ((TracingConnectionOperator)connOperator)._dnsCache = dnsCache;
+        }
+
+        @Override
+        protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemeRegistry) {
+            return new TracingConnectionOperator(schemeRegistry);
+        }
+
+        @Override
+        public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+            final ClientConnectionRequest request = super.requestConnection(route, state);
+            return new ClientConnectionRequest() {
+                @Override
+                public ManagedClientConnection getConnection(long timeout, TimeUnit unit) throws InterruptedException, ConnectionPoolTimeoutException {
+                    RequestTrace trace = RequestTrace.current();
+                    if (trace == null) {
+                        return request.getConnection(timeout, unit);
+                    }
+
+                    long startTime = System.nanoTime();
+                    try {
+                        return request.getConnection(timeout, unit);
+                    } finally {
+                        trace._recordLeaseWait(RequestTrace._elapsed(startTime));
+                    }
+                }
+
+                @Override
+                public void abortRequest() {
+                    request.abortRequest();
+                }
+            };
+        }
+    }
+
+    /**
+     * Connection operator which reports the time spent resolving the host name and
+     * opening the connection to the current request trace, and resolves host names
+     * using the DNS cache.
+     */
+    private static class TracingConnectionOperator extends DefaultClientConnectionOperator {
+        private volatile DnsCache _dnsCache;
+
+        public TracingConnectionOperator(SchemeRegistry schemeRegistry) {
+            super(schemeRegistry);
+        }
+
+        @Override
+        protected InetAddress[] resolveHostname(String host) throws UnknownHostException {
+            DnsCache dnsCache = _dnsCache;
+            return dnsCache != null ? dnsCache.resolve(host) : super.resolveHostname(host);
+        }
+
+        @Override
+        public void openConnection(OperatedClientConnection connection, HttpHost target, InetAddress local, HttpContext context, HttpParams params) throws IOException {
+            RequestTrace trace = RequestTrace.current();
+            if (trace == null) {
+                super.openConnection(connection, target, local, context, params);
+                return;
+            }
+
+            long startTime = System.nanoTime();
+            try {
+                super.openConnection(connection, target, local, context, params);
+            } finally {
+                trace._recordConnect(RequestTrace._elapsed(startTime));
+            }
+        }
+    }
+
+    private final ConnectionPoolConfig _config;
+    private final ThreadSafeClientConnManager _connectionManager;
+    private final DefaultHttpClient _httpClient;
+
+    /**
+     * Constructor.
+     */
+    private ConnectionPool(ConnectionPoolConfig config) {
+        _config = config;
+
+        _connectionManager = new TracingConnectionManager(SchemeRegistryFactory.createDefault(), config.getConnectionTimeToLive(), config.getDnsCache());
+        _connectionManager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+        _connectionManager.setMaxTotal(config.getMaxTotal());
+
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, DEFAULT_TIMEOUT);
+        HttpConnectionParams.setSoTimeout(params, DEFAULT_TIMEOUT);
+        HttpConnectionParams.setSoKeepalive(params, true);
+        HttpConnectionParams.setStaleCheckingEnabled(params, config.getValidateAfterInactivity() <= 0);
+
+        _httpClient = new DefaultHttpClient(_connectionManager, params);
+        _httpClient.getParams().setParameter(CoreProtocolPNames.PROTOCOL_VERSION, HttpVersion.HTTP_1_1);
+
+        // retries are handled (and counted) by the RetryPolicy of the client
+        _httpClient.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+    }
+
+    /**
+     * Returns the pool for the given configuration, creating it if needed.
+     * 
+     * @param config Configuration.
+     * 
+     * @return Connection pool.
+     */
+    public static ConnectionPool get(ConnectionPoolConfig config) {
+        ConnectionPool pool = _pools.get(config);
+        if (pool != null) {
+            return pool;
+        }
+
+        pool = new ConnectionPool(config);
+        ConnectionPool existing = _pools.putIfAbsent(config, pool);
+        if (existing != null) {
+            pool._shutdown();
+            return existing;
+        }
+
+        pool._scheduleEviction();
+        return pool;
+    }
+
+    /**
+     * Returns all pools created so far.
+     * 
+     * @return Connection pools.
+     */
+    public static Collection<ConnectionPool> getAll() {
+        return _pools.values();
+    }
+
+    /**
+     * Returns the configuration of this pool.
+     */
+    public ConnectionPoolConfig getConfig() {
+        return _config;
+    }
+
+    /**
+     * Returns the HTTP client that uses this pool.
+     */
+    public HttpClient getHttpClient() {
+        return _httpClient;
+    }
+
+    /**
+     * Returns the number of (leased and idle) connections in this pool.
+     */
+    public int getConnectionCount() {
+        return _connectionManager.getConnectionsInPool();
+    }
+
+    /**
+     * Returns the number of (leased and idle) connections to the given host.
+     * 
+     * @param host   Host.
+     * @param secure Secure connections?
+     */
+    public int getConnectionCount(HttpHost host, boolean secure) {
+        return _connectionManager.getConnectionsInPool(new HttpRoute(host, null, secure));
+    }
+
+    /**
+     * Opens a connection to the host of the given URI and returns it to the pool, so
+     * the first request to the host doesn't have to resolve the host name, connect and
+     * do the TLS handshake.
+     * 
+     * Does nothing if there is an idle connection to the host already.
+     * 
+     * @param uri URI.
+     * 
+     * @throws IOException
+     */
+    public void warmUp(URI uri) throws IOException {
+        HttpHost target = URIUtils.extractHost(uri);
+        if (target == null) {
+            throw new IOException("No host in URI " + uri);
+        }
+
+        HttpContext context = new BasicHttpContext();
+        HttpRoute route;
+        try {
+            route = _httpClient.getRoutePlanner().determineRoute(target, new HttpGet(uri), context);
+        } catch (HttpException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        ManagedClientConnection connection;
+        try {
+            connection = _connectionManager.requestConnection(route, null).getConnection(DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        try {
+            if (!connection.isOpen()) {
+                connection.open(route, context, _httpClient.getParams());
+            }
+
+            connection.markReusable();
+        } finally {
+            _connectionManager.releaseConnection(connection, _config.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Closes expired connections and connections that have been idle for too long.
+     */
+    public void evict() {
+        _connectionManager.closeExpiredConnections();
+
+        long maxIdleTime = _config.getMaxIdleTime();
+        if (_config.getValidateAfterInactivity() > 0) {
+            maxIdleTime = Math.min(maxIdleTime, _config.getValidateAfterInactivity());
+        }
+
+        _connectionManager.closeIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes all idle connections.
+     */
+    public void closeIdleConnections() {
+        _connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Shuts down this pool.
+     */
+    private void _shutdown() {
+        _connectionManager.shutdown();
+    }
+
+    /**
+     * Schedules the periodic eviction of connections.
+     */
+    private void _scheduleEviction() {
+        long interval = _config.getEvictionInterval();
+        if (_config.getValidateAfterInactivity() > 0) {
+            interval = interval > 0 ? Math.min(interval, _config.getValidateAfterInactivity()) : _config.getValidateAfterInactivity();
+        }
+
+        if (interval <= 0) {
+            return;
+        }
+
+        _getEvictor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evict();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the executor used for evicting connections.
+     */
+    private synchronized static ScheduledExecutorService _getEvictor() {
+        if (_evictor == null) {
+            _evictor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ConnectionPool evictor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return _evictor;
+    }
+
+    @Override
+    public String toString() {
+        return "connections=" + getConnectionCount() + ", maxTotal=" + _config.getMaxTotal() + ", maxPerRoute=" + _config.getMaxPerRoute();
+    }
+}
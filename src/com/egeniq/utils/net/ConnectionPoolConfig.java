@@ -0,0 +1,169 @@
+package com.egeniq.utils.net;
+
+/**
+ * Connection pool configuration.
+ * 
+ * Every configuration instance gets its own connection pool, which is created the
+ * first time a client uses the configuration. Changes made to a configuration after
+ * its pool has been created have no effect.
+ * 
+ * The shared DEFAULT configuration can't be changed; create a new configuration (which
+ * starts with the default values) to use different settings.
+ */
+public class ConnectionPoolConfig {
+    /**
+     * Default configuration, shared by all clients that don't specify their own.
+     */
+    public final static ConnectionPoolConfig DEFAULT = new ConnectionPoolConfig()._freeze();
+
+    private int _maxPerRoute = 10;
+    private int _maxTotal = 100;
+    private long _evictionInterval = 30000;
+    private long _maxIdleTime = 60000;
+    private long _connectionTimeToLive = -1;
+    private long _validateAfterInactivity = -1;
+    private DnsCache _dnsCache = DnsCache.DEFAULT;
+    private boolean _frozen = false;
+
+    /**
+     * Get maximum number of connections per route.
+     */
+    public int getMaxPerRoute() {
+        return _maxPerRoute;
+    }
+
+    /**
+     * Set maximum number of connections per route.
+     */
+    public ConnectionPoolConfig setMaxPerRoute(int maxPerRoute) {
+        _checkMutable();
+        _maxPerRoute = maxPerRoute;
+        return this;
+    }
+
+    /**
+     * Get maximum number of connections in total.
+     */
+    public int getMaxTotal() {
+        return _maxTotal;
+    }
+
+    /**
+     * Set maximum number of connections in total.
+     */
+    public ConnectionPoolConfig setMaxTotal(int maxTotal) {
+        _checkMutable();
+        _maxTotal = maxTotal;
+        return this;
+    }
+
+    /**
+     * Get the interval (in milliseconds) at which expired and idle connections are evicted.
+     */
+    public long getEvictionInterval() {
+        return _evictionInterval;
+    }
+
+    /**
+     * Set the interval (in milliseconds) at which expired and idle connections are evicted.
+     * 
+     * Use 0 to disable background eviction.
+     */
+    public ConnectionPoolConfig setEvictionInterval(long evictionInterval) {
+        _checkMutable();
+        _evictionInterval = evictionInterval;
+        return this;
+    }
+
+    /**
+     * Get the time (in milliseconds) after which idle connections are evicted.
+     */
+    public long getMaxIdleTime() {
+        return _maxIdleTime;
+    }
+
+    /**
+     * Set the time (in milliseconds) after which idle connections are evicted.
+     */
+    public ConnectionPoolConfig setMaxIdleTime(long maxIdleTime) {
+        _checkMutable();
+        _maxIdleTime = maxIdleTime;
+        return this;
+    }
+
+    /**
+     * Get the maximum lifetime (in milliseconds) of a connection.
+     */
+    public long getConnectionTimeToLive() {
+        return _connectionTimeToLive;
+    }
+
+    /**
+     * Set the maximum lifetime (in milliseconds) of a connection.
+     * 
+     * Use -1 for an unlimited lifetime.
+     */
+    public ConnectionPoolConfig setConnectionTimeToLive(long connectionTimeToLive) {
+        _checkMutable();
+        _connectionTimeToLive = connectionTimeToLive;
+        return this;
+    }
+
+    /**
+     * Get the inactivity period (in milliseconds) after which connections are validated.
+     */
+    public long getValidateAfterInactivity() {
+        return _validateAfterInactivity;
+    }
+
+    /**
+     * Set the inactivity period (in milliseconds) after which connections are validated.
+     * 
+     * Use -1 (the default) or 0 to validate (stale check) a connection each time it's 
+     * leased. Otherwise the per-lease stale check is disabled and connections that
+     * have been idle for longer than the given period are closed by the evictor 
+     * instead, so leased connections have never been idle for (much) longer than 
+     * this period.
+     */
+    public ConnectionPoolConfig setValidateAfterInactivity(long validateAfterInactivity) {
+        _checkMutable();
+        _validateAfterInactivity = validateAfterInactivity;
+        return this;
+    }
+
+    /**
+     * Get the DNS cache used for resolving host names, null if disabled.
+     */
+    public DnsCache getDnsCache() {
+        return _dnsCache;
+    }
+
+    /**
+     * Set the DNS cache used for resolving host names.
+     * 
+     * Defaults to the shared DnsCache.DEFAULT. Use null to always use the system 
+     * resolver.
+     */
+    public ConnectionPoolConfig setDnsCache(DnsCache dnsCache) {
+        _checkMutable();
+        _dnsCache = dnsCache;
+        return this;
+    }
+
+    /**
+     * Makes this configuration immutable.
+     */
+    private ConnectionPoolConfig _freeze() {
+        _frozen = true;
+        return this;
+    }
+
+    /**
+     * Throws if this configuration is immutable.
+     */
+    private void _checkMutable() {
+        if (_frozen) {
+            throw new UnsupportedOperationException("Configuration is immutable, create a new ConnectionPoolConfig instead");
+        }
+    }
+}
@@ -7,6 +7,10 @@ import android.util.Log;
 
 /**
  * Connectivity info.
+ * 
+ * Uses the cached state of the shared ConnectivityMonitor if it's running, otherwise
+ * looks up the state using the ConnectivityManager. Use ConnectivityMonitor directly
+ * to be notified of changes.
  */
 public class Connectivity {
     private final static String TAG = Connectivity.class.getName();
@@ -28,6 +32,11 @@ public class Connectivity {
      * @return mobile connection?
      */
     public boolean isMobileConnected() {
+        ConnectivityMonitor monitor = ConnectivityMonitor._getSharedInstance();
+        if (monitor != null && monitor.isStarted()) {
+            return monitor.isMobileConnected();
+        }
+        
         ConnectivityManager manager = (ConnectivityManager)_context.getSystemService(Context.CONNECTIVITY_SERVICE);
         NetworkInfo info = manager.getNetworkInfo(ConnectivityManager.TYPE_MOBILE);
         boolean result = info != null && info.isConnected();
@@ -43,6 +52,11 @@ public class Connectivity {
      * @return wifi connection?
      */    
     public boolean isWifiConnected() {
+        ConnectivityMonitor monitor = ConnectivityMonitor._getSharedInstance();
+        if (monitor != null && monitor.isStarted()) {
+            return monitor.isWifiConnected();
+        }
+        
         ConnectivityManager manager = (ConnectivityManager)_context.getSystemService(Context.CONNECTIVITY_SERVICE);
         NetworkInfo info = manager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
         boolean result = info != null && info.isConnected();
@@ -58,6 +72,11 @@ public class Connectivity {
      * @return internet connection?
      */
     public boolean isConnected() {
+        ConnectivityMonitor monitor = ConnectivityMonitor._getSharedInstance();
+        if (monitor != null && monitor.isStarted()) {
+            return monitor.isConnected();
+        }
+        
         ConnectivityManager manager = (ConnectivityManager)_context.getSystemService(Context.CONNECTIVITY_SERVICE);
         NetworkInfo info = manager.getActiveNetworkInfo();
         boolean result = info != null && info.isConnected();
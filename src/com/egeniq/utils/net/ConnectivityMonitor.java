@@ -0,0 +1,319 @@
+package com.egeniq.utils.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Connectivity monitor.
+ *
+ * Keeps the current connectivity state cached and updates it when the system broadcasts
+ * a connectivity change, so querying the state is cheap. Listeners are notified when
+ * the state changes.
+ *
+ * Call start() to start monitoring and stop() when the monitor isn't needed anymore.
+ */
+public class ConnectivityMonitor {
+    private final static String TAG = ConnectivityMonitor.class.getName();
+    private final static boolean DEBUG = false;
+
+    /**
+     * Connectivity listener.
+     */
+    public interface Listener {
+        /**
+         * Called when the connectivity state changes.
+         *
+         * Called on the main thread, so don't block.
+         *
+         * @param monitor Monitor, holds the new state.
+         */
+        public void onConnectivityChanged(ConnectivityMonitor monitor);
+    }
+
+    private static ConnectivityMonitor _sharedInstance = null;
+
+    private final Context _context;
+    private final CopyOnWriteArrayList<Listener> _listeners = new CopyOnWriteArrayList<Listener>();
+    private final Object _lock = new Object();
+
+    private volatile boolean _connected = true;
+    private volatile boolean _wifiConnected = false;
+    private volatile boolean _mobileConnected = false;
+    private volatile int _networkType = -1;
+    private volatile boolean _metered = false;
+
+    private BroadcastReceiver _receiver = null;
+
+    private final List<Runnable> _deferredTasks = new ArrayList<Runnable>();
+    private final List<Executor> _deferredExecutors = new ArrayList<Executor>();
+
+    /**
+     * Constructor.
+     *
+     * @param context Context.
+     */
+    public ConnectivityMonitor(Context context) {
+        _context = context.getApplicationContext();
+    }
+
+    /**
+     * Returns the shared, started, monitor for the application.
+     *
+     * @param context Context.
+     */
+    public static synchronized ConnectivityMonitor getSharedInstance(Context context) {
+        if (_sharedInstance == null) {
+            _sharedInstance = new ConnectivityMonitor(context);
+            _sharedInstance.start();
+        }
+
+        return _sharedInstance;
+    }
+
+    /**
+     * Returns the shared monitor if it has been created.
+     */
+    static synchronized ConnectivityMonitor _getSharedInstance() {
+        return _sharedInstance;
+    }
+
+    /**
+     * Starts monitoring.
+     */
+    public synchronized void start() {
+        if (_receiver != null) {
+            return;
+        }
+
+        _receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                update();
+            }
+        };
+
+        _context.registerReceiver(_receiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        update();
+    }
+
+    /**
+     * Stops monitoring.
+     * 
+     * The state is reset to connected, as before the monitor was started, so a stopped
+     * monitor never blocks requests on a stale offline state.
+     */
+    public synchronized void stop() {
+        if (_receiver == null) {
+            return;
+        }
+
+        _context.unregisterReceiver(_receiver);
+        _receiver = null;
+        _setState(true, false, false, -1, false);
+    }
+
+    /**
+     * Is the monitor started?
+     */
+    public synchronized boolean isStarted() {
+        return _receiver != null;
+    }
+
+    /**
+     * Add listener.
+     */
+    public void addListener(Listener listener) {
+        _listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Remove listener.
+     */
+    public void removeListener(Listener listener) {
+        _listeners.remove(listener);
+    }
+
+    /**
+     * Returns whatever we have an internet connection.
+     *
+     * Assumes a connection while the monitor isn't started.
+     */
+    public boolean isConnected() {
+        return _connected;
+    }
+
+    /**
+     * Returns whatever we have a wifi connection.
+     */
+    public boolean isWifiConnected() {
+        return _wifiConnected;
+    }
+
+    /**
+     * Returns whatever we have a mobile connection.
+     */
+    public boolean isMobileConnected() {
+        return _mobileConnected;
+    }
+
+    /**
+     * Returns the type of the active network, see ConnectivityManager.TYPE_*.
+     *
+     * @return Network type or -1 if not connected.
+     */
+    public int getNetworkType() {
+        return _networkType;
+    }
+
+    /**
+     * Returns the class of the active network.
+     */
+    public NetworkClass getNetworkClass() {
+        int networkType = _networkType;
+        if (!_connected) {
+            return NetworkClass.NONE;
+        } else if (networkType == ConnectivityManager.TYPE_WIFI) {
+            return NetworkClass.WIFI;
+        } else if (networkType == ConnectivityManager.TYPE_MOBILE) {
+            return NetworkClass.MOBILE;
+        } else {
+            return NetworkClass.OTHER;
+        }
+    }
+
+    /**
+     * Is the active network metered?
+     * 
+     * Before API level 16 mobile networks are considered metered and other networks
+     * unmetered.
+     */
+    public boolean isMetered() {
+        return _metered;
+    }
+
+    /**
+     * Executes the given task on the given executor as soon as we are connected to an
+     * unmetered network.
+     * 
+     * Use this to defer background or bulk work while on a metered network. Tasks are
+     * kept in memory only.
+     * 
+     * @param task     Task.
+     * @param executor Executor.
+     */
+    public void executeWhenUnmetered(Runnable task, Executor executor) {
+        synchronized (_lock) {
+            if (!_connected || _metered) {
+                _deferredTasks.add(task);
+                _deferredExecutors.add(executor);
+                return;
+            }
+        }
+
+        executor.execute(task);
+    }
+
+    /**
+     * Waits until we have an internet connection.
+     *
+     * @param timeout Maximum time to wait in milliseconds.
+     *
+     * @return Connected?
+     */
+    public boolean awaitConnected(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (_lock) {
+            while (!_connected) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                _lock.wait(remaining);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the current state from the connectivity manager and notifies the listeners
+     * if it has changed.
+     */
+    public void update() {
+        ConnectivityManager manager = (ConnectivityManager)_context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeInfo = manager.getActiveNetworkInfo();
+        NetworkInfo wifiInfo = manager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
+        NetworkInfo mobileInfo = manager.getNetworkInfo(ConnectivityManager.TYPE_MOBILE);
+
+        boolean connected = activeInfo != null && activeInfo.isConnected();
+        int networkType = connected ? activeInfo.getType() : -1;
+        boolean metered = Build.VERSION.SDK_INT >= 16 ? _isActiveNetworkMetered(manager) : networkType == ConnectivityManager.TYPE_MOBILE;
+        _setState(connected, wifiInfo != null && wifiInfo.isConnected(), mobileInfo != null && mobileInfo.isConnected(), networkType, metered);
+    }
+
+    /**
+     * Is the active network metered?
+     */
+    @TargetApi(16)
+    private boolean _isActiveNetworkMetered(ConnectivityManager manager) {
+        return manager.isActiveNetworkMetered();
+    }
+
+    /**
+     * Updates the cached state and notifies the listeners if it has changed.
+     */
+    protected void _setState(boolean connected, boolean wifiConnected, boolean mobileConnected, int networkType, boolean metered) {
+        boolean changed;
+        List<Runnable> tasks = null;
+        List<Executor> executors = null;
+        synchronized (_lock) {
+            changed = connected != _connected || wifiConnected != _wifiConnected || mobileConnected != _mobileConnected || networkType != _networkType || metered != _metered;
+
+            _connected = connected;
+            _wifiConnected = wifiConnected;
+            _mobileConnected = mobileConnected;
+            _networkType = networkType;
+            _metered = metered;
+
+            _lock.notifyAll();
+
+            if (connected && !metered && !_deferredTasks.isEmpty()) {
+                tasks = new ArrayList<Runnable>(_deferredTasks);
+                executors = new ArrayList<Executor>(_deferredExecutors);
+                _deferredTasks.clear();
+                _deferredExecutors.clear();
+            }
+        }
+
+        if (tasks != null) {
+            for (int i = 0; i < tasks.size(); i++) {
+                executors.get(i).execute(tasks.get(i));
+            }
+        }
+
+        if (!changed) {
+            return;
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "Connectivity changed, connected: " + connected + ", wifi: " + wifiConnected + ", mobile: " + mobileConnected + ", metered: " + metered);
+        }
+
+        for (Listener listener : _listeners) {
+            listener.onConnectivityChanged(this);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.egeniq.utils.net;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+
+/**
+ * Deadline and timeouts for one or more requests.
+ * 
+ * The total timeout bounds the time of all requests executed under this deadline 
+ * together, including waiting, retries and reading the response bodies. Requests that 
+ * are still in-flight when the deadline expires are aborted, and requests started 
+ * afterwards fail immediately, with a DeadlineExceededException. The connect and read 
+ * timeouts override the timeouts of the client for each request.
+ * 
+ * A deadline applies to the requests executed by the thread it is bound to (see 
+ * {@link #setCurrent(Deadline)}) and to the asynchronous requests submitted from that
+ * thread.
+ */
+public class Deadline {
+    private final static ThreadLocal<Deadline> _current = new ThreadLocal<Deadline>();
+    private static ScheduledExecutorService _timer = null;
+
+    private final long _expirationTime;
+    private int _connectTimeout = -1;
+    private int _readTimeout = -1;
+
+    private final Set<HttpRequestBase> _requests = new HashSet<HttpRequestBase>();
+    private boolean _expired = false;
+    private boolean _scheduled = false;
+
+    /**
+     * Constructor.
+     * 
+     * @param timeout Total timeout in milliseconds, starting now. Use -1 to only 
+     *                override the connect and / or read timeouts.
+     */
+    public Deadline(long timeout) {
+        _expirationTime = timeout >= 0 ? System.nanoTime() / 1000000 + timeout : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the deadline bound to the current thread, if any.
+     */
+    public static Deadline current() {
+        return _current.get();
+    }
+
+    /**
+     * Binds the given deadline to the current thread.
+     * 
+     * @param deadline Deadline, null to unbind.
+     * 
+     * @return Previous deadline, restore it when done.
+     */
+    public static Deadline setCurrent(Deadline deadline) {
+        Deadline previous = _current.get();
+        if (deadline == null) {
+            _current.remove();
+        } else {
+            _current.set(deadline);
+        }
+
+        return previous;
+    }
+
+    /**
+     * Get the connect timeout (in milliseconds), -1 to use the timeout of the client.
+     */
+    public int getConnectTimeout() {
+        return _connectTimeout;
+    }
+
+    /**
+     * Set the connect timeout (in milliseconds), -1 to use the timeout of the client.
+     */
+    public Deadline setConnectTimeout(int connectTimeout) {
+        _connectTimeout = connectTimeout;
+        return this;
+    }
+
+    /**
+     * Get the read (socket) timeout (in milliseconds), -1 to use the timeout of the client.
+     */
+    public int getReadTimeout() {
+        return _readTimeout;
+    }
+
+    /**
+     * Set the read (socket) timeout (in milliseconds), -1 to use the timeout of the client.
+     */
+    public Deadline setReadTimeout(int readTimeout) {
+        _readTimeout = readTimeout;
+        return this;
+    }
+
+    /**
+     * Has a total timeout been set?
+     */
+    public boolean hasTimeout() {
+        return _expirationTime != Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the remaining time in milliseconds, 0 if expired or Long.MAX_VALUE if 
+     * there is no total timeout.
+     */
+    public long getRemainingTime() {
+        if (!hasTimeout()) {
+            return Long.MAX_VALUE;
+        }
+
+        return Math.max(0, _expirationTime - System.nanoTime() / 1000000);
+    }
+
+    /**
+     * Has the deadline expired?
+     */
+    public boolean isExpired() {
+        return getRemainingTime() == 0;
+    }
+
+    /**
+     * Registers an in-flight request, which is aborted if the deadline expires.
+     * 
+     * @throws DeadlineExceededException if the deadline has already expired.
+     */
+    void _register(HttpRequestBase request) throws DeadlineExceededException {
+        if (!hasTimeout()) {
+            return;
+        }
+
+        long remaining = getRemainingTime();
+        synchronized (this) {
+            if (_expired || remaining == 0) {
+                throw new DeadlineExceededException();
+            }
+
+            _requests.add(request);
+            if (_scheduled) {
+                return;
+            }
+
+            _scheduled = true;
+        }
+
+        _getTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                _expire();
+            }
+        }, remaining, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Unregisters a request that has completed.
+     */
+    synchronized void _unregister(HttpRequestBase request) {
+        _requests.remove(request);
+    }
+
+    /**
+     * Aborts the in-flight requests.
+     */
+    private void _expire() {
+        List<HttpRequestBase> requests;
+        synchronized (this) {
+            _expired = true;
+            requests = new ArrayList<HttpRequestBase>(_requests);
+            _requests.clear();
+        }
+
+        for (HttpRequestBase request : requests) {
+            request.abort();
+        }
+    }
+
+    /**
+     * Returns the timer used for aborting requests.
+     */
+    private synchronized static ScheduledExecutorService _getTimer() {
+        if (_timer == null) {
+            _timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Deadline timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return _timer;
+    }
+
+    @Override
+    public String toString() {
+        return "remainingTime=" + (hasTimeout() ? getRemainingTime() + "ms" : "none") + ", connectTimeout=" + _connectTimeout + ", readTimeout=" + _readTimeout;
+    }
+}
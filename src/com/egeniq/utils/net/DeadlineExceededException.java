@@ -0,0 +1,22 @@
+package com.egeniq.utils.net;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Thrown when a request is not executed or aborted because its deadline expired.
+ * 
+ * @see Deadline
+ */
+public class DeadlineExceededException extends InterruptedIOException {
+    /**
+     * Unique identifier.
+     */
+    private static final long serialVersionUID = 2390671841539036498L;
+
+    /**
+     * Constructor.
+     */
+    public DeadlineExceededException() {
+        super("Deadline exceeded");
+    }
+}
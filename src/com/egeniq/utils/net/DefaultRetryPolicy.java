@@ -0,0 +1,220 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+
+import ch.boye.httpclientandroidlib.Header;
+import ch.boye.httpclientandroidlib.HttpEntity;
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.NoHttpResponseException;
+import ch.boye.httpclientandroidlib.client.methods.HttpEntityEnclosingRequestBase;
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+import ch.boye.httpclientandroidlib.conn.ConnectTimeoutException;
+import ch.boye.httpclientandroidlib.impl.cookie.DateParseException;
+import ch.boye.httpclientandroidlib.impl.cookie.DateUtils;
+
+/**
+ * Retry policy with capped exponential backoff and jitter.
+ * 
+ * Failures are classified as follows:
+ * - connect failures are retried for all methods, as the request was never sent;
+ * - 429 and 503 responses with a Retry-After header are retried for all methods after
+ *   the requested delay (if it fits in the maximum delay);
+ * - socket timeouts, dropped connections and 502, 503 and 504 responses are only 
+ *   retried for idempotent methods.
+ * 
+ * Requests with a non-repeatable body are never retried. No retry is done if it would 
+ * exceed the maximum retry time, measured from the first attempt.
+ */
+public class DefaultRetryPolicy implements RetryPolicy {
+    private final static Random _random = new Random();
+
+    private int _maxRetries = 1;
+    private long _baseDelay = 250;
+    private long _maxDelay = 5000;
+    private long _maxRetryTime = 30000;
+
+    /**
+     * Get the maximum number of retries.
+     */
+    public int getMaxRetries() {
+        return _maxRetries;
+    }
+
+    /**
+     * Set the maximum number of retries.
+     */
+    public DefaultRetryPolicy setMaxRetries(int maxRetries) {
+        _maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Get the base delay (in milliseconds), which doubles for each retry.
+     */
+    public long getBaseDelay() {
+        return _baseDelay;
+    }
+
+    /**
+     * Set the base delay (in milliseconds), which doubles for each retry.
+     */
+    public DefaultRetryPolicy setBaseDelay(long baseDelay) {
+        _baseDelay = baseDelay;
+        return this;
+    }
+
+    /**
+     * Get the maximum delay (in milliseconds) between two attempts.
+     */
+    public long getMaxDelay() {
+        return _maxDelay;
+    }
+
+    /**
+     * Set the maximum delay (in milliseconds) between two attempts.
+     */
+    public DefaultRetryPolicy setMaxDelay(long maxDelay) {
+        _maxDelay = maxDelay;
+        return this;
+    }
+
+    /**
+     * Get the maximum time (in milliseconds), measured from the first attempt, within which
+     * retries may be done.
+     */
+    public long getMaxRetryTime() {
+        return _maxRetryTime;
+    }
+
+    /**
+     * Set the maximum time (in milliseconds), measured from the first attempt, within which
+     * retries may be done.
+     */
+    public DefaultRetryPolicy setMaxRetryTime(long maxRetryTime) {
+        _maxRetryTime = maxRetryTime;
+        return this;
+    }
+
+    @Override
+    public long getRetryDelay(HttpRequestBase request, int attempt, HttpResponse response, IOException exception, long elapsed) {
+        if (attempt > _maxRetries || !_isRepeatable(request)) {
+            return -1;
+        }
+
+        long delay;
+        if (exception != null) {
+            delay = _getRetryDelay(request, attempt, exception);
+        } else {
+            delay = _getRetryDelay(request, attempt, response);
+        }
+
+        if (delay < 0 || elapsed + delay > _maxRetryTime) {
+            return -1;
+        }
+
+        return delay;
+    }
+
+    /**
+     * Returns the retry delay for a failed attempt.
+     */
+    private long _getRetryDelay(HttpRequestBase request, int attempt, IOException exception) {
+        if (exception instanceof ConnectException || exception instanceof ConnectTimeoutException) {
+            return _getBackoffDelay(attempt);
+        } else if ((exception instanceof InterruptedIOException || exception instanceof NoHttpResponseException) && isIdempotent(request)) {
+            return _getBackoffDelay(attempt);
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the retry delay for an error response.
+     */
+    private long _getRetryDelay(HttpRequestBase request, int attempt, HttpResponse response) {
+        int statusCode = response.getStatusLine().getStatusCode();
+
+        if (statusCode == 429 || statusCode == 503) {
+            long retryAfter = _getRetryAfter(response);
+            if (retryAfter >= 0) {
+                return retryAfter <= _maxDelay ? retryAfter : -1;
+            }
+        }
+
+        if ((statusCode == 502 || statusCode == 503 || statusCode == 504) && isIdempotent(request)) {
+            return _getBackoffDelay(attempt);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the capped exponential backoff delay with (equal) jitter.
+     */
+    private long _getBackoffDelay(int attempt) {
+        long delay = Math.min(_maxDelay, _baseDelay << Math.min(attempt - 1, 30));
+        if (delay <= 0) {
+            return 0;
+        }
+
+        long half = delay / 2;
+        synchronized (_random) {
+            return half + (long)(_random.nextDouble() * (delay - half));
+        }
+    }
+
+    /**
+     * Returns the delay (in milliseconds) requested by the Retry-After header, or -1.
+     */
+    private long _getRetryAfter(HttpResponse response) {
+        Header header = response.getFirstHeader("Retry-After");
+        if (header == null) {
+            return -1;
+        }
+
+        String value = header.getValue().trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                Date date = DateUtils.parseDate(value);
+                return Math.max(0, date.getTime() - System.currentTimeMillis());
+            } catch (DateParseException ex) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Can the request be sent again?
+     */
+    private boolean _isRepeatable(HttpRequestBase request) {
+        if (request.isAborted()) {
+            return false;
+        }
+
+        if (request instanceof HttpEntityEnclosingRequestBase) {
+            HttpEntity entity = ((HttpEntityEnclosingRequestBase)request).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+
+        return true;
+    }
+
+    /**
+     * Is the request method idempotent?
+     * 
+     * @param request HTTP request.
+     * 
+     * @return Idempotent?
+     */
+    public static boolean isIdempotent(HttpRequestBase request) {
+        String method = request.getMethod().toUpperCase(Locale.US);
+        return "GET".equals(method) || "HEAD".equals(method) || "PUT".equals(method) || "DELETE".equals(method) || "OPTIONS".equals(method) || "TRACE".equals(method);
+    }
+}
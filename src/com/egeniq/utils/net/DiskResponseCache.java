@@ -0,0 +1,215 @@
+package com.egeniq.utils.net;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import android.util.Log;
+
+/**
+ * File based response cache.
+ * 
+ * Each response is stored in its own file in the given directory. When the maximum
+ * number of entries is exceeded the least recently written responses are removed.
+ */
+public class DiskResponseCache implements ResponseCache {
+    private final static String TAG = DiskResponseCache.class.getName();
+    private final static boolean DEBUG = false;
+
+    private final static int VERSION = 1;
+    private final static String SUFFIX = ".response";
+
+    private final File _directory;
+    private final int _maxEntries;
+
+    /**
+     * Constructor.
+     * 
+     * @param directory  Cache directory, created if it doesn't exist.
+     * @param maxEntries Maximum number of responses.
+     */
+    public DiskResponseCache(File directory, int maxEntries) {
+        _directory = directory;
+        _maxEntries = maxEntries;
+    }
+
+    @Override
+    public synchronized CachedResponse get(String key) {
+        File file = _getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+
+            long expires = in.readLong();
+            String eTag = in.readBoolean() ? in.readUTF() : null;
+            String lastModified = in.readBoolean() ? in.readUTF() : null;
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+
+            return new CachedResponse(new String(body, "UTF-8"), eTag, lastModified, expires);
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "Error reading cached response", e);
+            }
+
+            file.delete();
+            return null;
+        } finally {
+            _close(in);
+        }
+    }
+
+    @Override
+    public synchronized void put(String key, CachedResponse response) {
+        if (!_directory.exists() && !_directory.mkdirs()) {
+            return;
+        }
+
+        File file = _getFile(key);
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeLong(response.getExpires());
+            out.writeBoolean(response.getETag() != null);
+            if (response.getETag() != null) {
+                out.writeUTF(response.getETag());
+            }
+            out.writeBoolean(response.getLastModified() != null);
+            if (response.getLastModified() != null) {
+                out.writeUTF(response.getLastModified());
+            }
+            byte[] body = response.getBody().getBytes("UTF-8");
+            out.writeInt(body.length);
+            out.write(body);
+            out.close();
+            out = null;
+
+            if (!tmpFile.renameTo(file)) {
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "Error writing cached response", e);
+            }
+
+            tmpFile.delete();
+        } finally {
+            _close(out);
+        }
+
+        _trim();
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        _getFile(key).delete();
+    }
+
+    @Override
+    public synchronized void clear() {
+        File[] files = _listFiles();
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Removes the oldest responses until the maximum number of entries is no longer exceeded.
+     */
+    private void _trim() {
+        File[] files = _listFiles();
+        if (files.length <= _maxEntries) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+
+        for (int i = 0; i < files.length - _maxEntries; i++) {
+            files[i].delete();
+        }
+    }
+
+    /**
+     * Returns the response files.
+     */
+    private File[] _listFiles() {
+        File[] files = _directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+
+        File[] result = new File[count];
+        System.arraycopy(files, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Returns the file for the given key.
+     */
+    private File _getFile(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+
+            StringBuilder builder = new StringBuilder(hash.length * 2 + SUFFIX.length());
+            for (byte b : hash) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+                builder.append(Character.forDigit(b & 0xf, 16));
+            }
+            builder.append(SUFFIX);
+
+            return new File(_directory, builder.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Closes the given stream, ignoring errors.
+     */
+    private static void _close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+}
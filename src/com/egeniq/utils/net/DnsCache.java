@@ -0,0 +1,164 @@
+package com.egeniq.utils.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process DNS cache.
+ * 
+ * Caches resolved addresses for the configured time to live and failed lookups for the
+ * (shorter) negative time to live, so connecting to a known host doesn't wait for the 
+ * system resolver. Clients with a connectivity monitor clear the caches they use when
+ * the network changes, as addresses may differ per network.
+ * 
+ * @see ConnectionPoolConfig#setDnsCache(DnsCache)
+ */
+public class DnsCache {
+    /**
+     * Default cache, shared by all connection pool configurations that don't specify 
+     * their own.
+     */
+    public final static DnsCache DEFAULT = new DnsCache();
+
+    private final static class Entry {
+        private final InetAddress[] _addresses;
+        private final long _expires;
+
+        public Entry(InetAddress[] addresses, long expires) {
+            _addresses = addresses;
+            _expires = expires;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> _entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicLong _hitCount = new AtomicLong();
+    private final AtomicLong _missCount = new AtomicLong();
+
+    private long _ttl = 60000;
+    private long _negativeTtl = 5000;
+
+    private final ConnectivityMonitor.Listener _connectivityListener = new ConnectivityMonitor.Listener() {
+        @Override
+        public void onConnectivityChanged(ConnectivityMonitor monitor) {
+            clear();
+        }
+    };
+
+    /**
+     * Get the time (in milliseconds) resolved addresses are cached.
+     */
+    public long getTtl() {
+        return _ttl;
+    }
+
+    /**
+     * Set the time (in milliseconds) resolved addresses are cached.
+     */
+    public DnsCache setTtl(long ttl) {
+        _ttl = ttl;
+        return this;
+    }
+
+    /**
+     * Get the time (in milliseconds) failed lookups are cached.
+     */
+    public long getNegativeTtl() {
+        return _negativeTtl;
+    }
+
+    /**
+     * Set the time (in milliseconds) failed lookups are cached. Use 0 to disable.
+     */
+    public DnsCache setNegativeTtl(long negativeTtl) {
+        _negativeTtl = negativeTtl;
+        return this;
+    }
+
+    /**
+     * Resolves the given host name, using the cached addresses if available.
+     * 
+     * @param host Host name.
+     * 
+     * @return Addresses.
+     * 
+     * @throws UnknownHostException
+     */
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        String key = host.toLowerCase(Locale.US);
+        long now = System.nanoTime() / 1000000;
+
+        Entry entry = _entries.get(key);
+        if (entry != null && entry._expires - now > 0) {
+            _hitCount.incrementAndGet();
+            if (entry._addresses == null) {
+                throw new UnknownHostException(host);
+            }
+
+            return entry._addresses.clone();
+        }
+
+        _missCount.incrementAndGet();
+
+        try {
+            InetAddress[] addresses = InetAddress.getAllByName(host);
+            if (_ttl > 0) {
+                _entries.put(key, new Entry(addresses, now + _ttl));
+            }
+
+            return addresses.clone();
+        } catch (UnknownHostException e) {
+            if (_negativeTtl > 0) {
+                _entries.put(key, new Entry(null, now + _negativeTtl));
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the cached addresses for the given host name.
+     */
+    public void remove(String host) {
+        _entries.remove(host.toLowerCase(Locale.US));
+    }
+
+    /**
+     * Removes all cached addresses, e.g. when the network changes.
+     */
+    public void clear() {
+        _entries.clear();
+    }
+
+    /**
+     * Clears the cache whenever the connectivity state of the given monitor changes.
+     * 
+     * Calling this more than once for the same monitor has no additional effect.
+     * 
+     * @param monitor Connectivity monitor.
+     */
+    public void clearOnConnectivityChange(ConnectivityMonitor monitor) {
+        monitor.addListener(_connectivityListener);
+    }
+
+    /**
+     * Number of lookups served from the cache.
+     */
+    public long getHitCount() {
+        return _hitCount.get();
+    }
+
+    /**
+     * Number of lookups that used the system resolver.
+     */
+    public long getMissCount() {
+        return _missCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "entries=" + _entries.size() + ", hits=" + getHitCount() + ", misses=" + getMissCount();
+    }
+}
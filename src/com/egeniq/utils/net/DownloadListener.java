@@ -0,0 +1,16 @@
+package com.egeniq.utils.net;
+
+/**
+ * Download progress listener.
+ */
+public interface DownloadListener {
+    /**
+     * Called on the downloading thread each time a chunk has been written.
+     * 
+     * For resumed downloads the counts include the bytes that were already downloaded.
+     * 
+     * @param bytesWritten Number of bytes written so far.
+     * @param totalBytes   Total number of bytes, or -1 if unknown.
+     */
+    public void onProgress(long bytesWritten, long totalBytes);
+}
@@ -0,0 +1,53 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ch.boye.httpclientandroidlib.Header;
+import ch.boye.httpclientandroidlib.HttpEntity;
+import ch.boye.httpclientandroidlib.entity.HttpEntityWrapper;
+import ch.boye.httpclientandroidlib.message.BasicHeader;
+
+/**
+ * Wraps an entity and compresses its content using gzip while it's being sent.
+ */
+public class GzipCompressingEntity extends HttpEntityWrapper {
+    /**
+     * Constructor.
+     * 
+     * @param entity Entity to compress.
+     */
+    public GzipCompressingEntity(HttpEntity entity) {
+        super(entity);
+    }
+
+    @Override
+    public Header getContentEncoding() {
+        return new BasicHeader("Content-Encoding", "gzip");
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return true;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        wrappedEntity.writeTo(gzip);
+        gzip.finish();
+        gzip.flush();
+    }
+}
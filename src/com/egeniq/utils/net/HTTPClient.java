@@ -1,13 +1,14 @@
 package com.egeniq.utils.net;
 
-import java.net.ConnectException;
-import java.util.concurrent.TimeUnit;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
 
 import android.util.Log;
 import ch.boye.httpclientandroidlib.Header;
 import ch.boye.httpclientandroidlib.HttpEntity;
 import ch.boye.httpclientandroidlib.HttpResponse;
-import ch.boye.httpclientandroidlib.client.HttpClient;
 import ch.boye.httpclientandroidlib.client.methods.HttpDelete;
 import ch.boye.httpclientandroidlib.client.methods.HttpGet;
 import ch.boye.httpclientandroidlib.client.methods.HttpPost;
@@ -69,6 +70,41 @@ public class HTTPClient extends AbstractHTTPClient {
      * @return Object.
      */
     public String get(String location, boolean useSSL, Header[] headers) throws HTTPException {
+        return _executeAPIRequest(_createGetRequest(location, useSSL, headers, "Fetch JSON object"));
+    }
+    
+    /**
+     * Performs an asynchronous GET request to the given location (which is appended to the base URL).
+     * 
+     * Doesn't use SSL.
+     * 
+     * @param location Location.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<String> getAsync(String location, RequestCallback<String> callback) {
+        return getAsync(location, false, null, callback);
+    }
+    
+    /**
+     * Performs an asynchronous GET request to the given location (which is appended to the base URL).
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<String> getAsync(String location, boolean useSSL, Header[] headers, RequestCallback<String> callback) {
+        return _submitAPIRequest(_createGetRequest(location, useSSL, headers, "Fetch JSON object"), callback);
+    }
+    
+    /**
+     * Creates a GET request.
+     */
+    private HttpGet _createGetRequest(String location, boolean useSSL, Header[] headers, String description) {
         HttpGet httpGet = new HttpGet(_getURL(location, useSSL));
 
         if (headers != null) {
@@ -78,10 +114,90 @@ public class HTTPClient extends AbstractHTTPClient {
         }          
         
         if (_isLoggingEnabled()) {
-            Log.d(_getLoggingTag(), "Fetch JSON object: " + httpGet.getURI());
+            Log.d(_getLoggingTag(), description + ": " + httpGet.getURI());
         }
         
-        return _executeAPIRequest(httpGet);
+        return httpGet;
+    }
+    
+    /**
+     * Performs a GET request to the given location (which is appended to the base URL)
+     * and copies the response body to the given stream. 
+     * 
+     * The body is never held in memory. The stream isn't closed.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param out      Output stream.
+     * @param listener Progress listener (optional).
+     * 
+     * @return Number of bytes written.
+     */
+    public long download(String location, boolean useSSL, Header[] headers, OutputStream out, DownloadListener listener) throws HTTPException {
+        try {
+            return _download(_createGetRequest(location, useSSL, headers, "Download"), out, listener);
+        } catch (IOException e) {
+            if (_isLoggingEnabled()) {
+                Log.e(_getLoggingTag(), "Unexpected error", e);
+            }
+            
+            throw new HTTPException(e);
+        }
+    }
+    
+    /**
+     * Performs a GET request to the given location (which is appended to the base URL)
+     * and writes the response body to the given file. 
+     * 
+     * If the file already exists, the download is resumed using a Range request. Delete 
+     * the file first to download it from scratch.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param file     File.
+     * @param listener Progress listener (optional).
+     * 
+     * @return Size of the file.
+     */
+    public long download(String location, boolean useSSL, Header[] headers, File file, DownloadListener listener) throws HTTPException {
+        try {
+            return _download(_createGetRequest(location, useSSL, headers, "Download"), file, listener);
+        } catch (IOException e) {
+            if (_isLoggingEnabled()) {
+                Log.e(_getLoggingTag(), "Unexpected error", e);
+            }
+            
+            throw new HTTPException(e);
+        }
+    }
+    
+    /**
+     * Asynchronously downloads the given location to the given file, see 
+     * {@link #download(String, boolean, Header[], File, DownloadListener)}.
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  HTTP headers.
+     * @param file     File.
+     * @param listener Progress listener (optional).
+     * @param callback Optional callback, receives the size of the file.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<Long> downloadAsync(String location, boolean useSSL, Header[] headers, final File file, final DownloadListener listener, RequestCallback<Long> callback) {
+        final HttpGet httpGet = _createGetRequest(location, useSSL, headers, "Download");
+        return _submit(httpGet, new Callable<Long>() {
+            @Override
+            public Long call() throws HTTPException {
+                try {
+                    return Long.valueOf(_download(httpGet, file, listener));
+                } catch (IOException e) {
+                    throw new HTTPException(e);
+                }
+            }
+        }, callback);
     }
     
     /**
@@ -119,6 +235,43 @@ public class HTTPClient extends AbstractHTTPClient {
      * @return Object.
      */
     public String post(String location, HttpEntity entity, boolean useSSL, Header[] headers) throws HTTPException {
+        return _executeAPIRequest(_createPostRequest(location, entity, useSSL, headers));
+    }
+    
+    /**
+     * Performs an asynchronous POST request to the given location (which is appended to the base URL).
+     * 
+     * Doesn't use SSL.
+     * 
+     * @param location Location.
+     * @param entity   Post entity.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<String> postAsync(String location, HttpEntity entity, RequestCallback<String> callback) {
+        return postAsync(location, entity, false, null, callback);
+    }
+    
+    /**
+     * Performs an asynchronous POST request to the given location (which is appended to the base URL).
+     * 
+     * @param location Location.
+     * @param entity   Post entity.
+     * @param useSSL   Use SSL when available.
+     * @param headers  Headers.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<String> postAsync(String location, HttpEntity entity, boolean useSSL, Header[] headers, RequestCallback<String> callback) {
+        return _submitAPIRequest(_createPostRequest(location, entity, useSSL, headers), callback);
+    }
+    
+    /**
+     * Creates a POST request.
+     */
+    private HttpPost _createPostRequest(String location, HttpEntity entity, boolean useSSL, Header[] headers) {
         HttpPost httpPost = new HttpPost(_getURL(location, useSSL));
 
         if (headers != null) {
@@ -135,7 +288,7 @@ public class HTTPClient extends AbstractHTTPClient {
             Log.d(_getLoggingTag(), "Post: " + httpPost.getURI());
         }
         
-        return _executeAPIRequest(httpPost);
+        return httpPost;
     }
     
     /**
@@ -174,6 +327,41 @@ public class HTTPClient extends AbstractHTTPClient {
      * @return Object.
      */
     public String delete(String location, boolean useSSL, Header[] headers) throws HTTPException {
+        return _executeAPIRequest(_createDeleteRequest(location, useSSL, headers));
+    }
+    
+    /**
+     * Performs an asynchronous DELETE request to the given location (which is appended to the base URL).
+     * 
+     * Doesn't use SSL.
+     * 
+     * @param location Location.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<String> deleteAsync(String location, RequestCallback<String> callback) {
+        return deleteAsync(location, false, null, callback);
+    }
+    
+    /**
+     * Performs an asynchronous DELETE request to the given location (which is appended to the base URL).
+     * 
+     * @param location Location.
+     * @param useSSL   Use SSL when available.
+     * @param headers  Headers.
+     * @param callback Optional callback.
+     * 
+     * @return Future.
+     */
+    public RequestFuture<String> deleteAsync(String location, boolean useSSL, Header[] headers, RequestCallback<String> callback) {
+        return _submitAPIRequest(_createDeleteRequest(location, useSSL, headers), callback);
+    }
+    
+    /**
+     * Creates a DELETE request.
+     */
+    private HttpDelete _createDeleteRequest(String location, boolean useSSL, Header[] headers) {
         HttpDelete httpDelete = new HttpDelete(_getURL(location, useSSL));
 
         if (headers != null) {
@@ -186,7 +374,19 @@ public class HTTPClient extends AbstractHTTPClient {
             Log.d(_getLoggingTag(), "Delete: " + httpDelete.getURI());
         }
         
-        return _executeAPIRequest(httpDelete);
+        return httpDelete;
+    }
+    
+    /**
+     * Submits an API request for asynchronous execution.
+     */
+    private RequestFuture<String> _submitAPIRequest(final HttpRequestBase httpRequest, RequestCallback<String> callback) {
+        return _submit(httpRequest, new Callable<String>() {
+            @Override
+            public String call() throws HTTPException {
+                return _executeAPIRequest(httpRequest);
+            }
+        }, callback);
     }
 
     /**
@@ -195,20 +395,10 @@ public class HTTPClient extends AbstractHTTPClient {
      * Handles response processing and error handling in a uniform way.
      */
     protected String _executeAPIRequest(HttpRequestBase httpRequest) throws HTTPException {
+        RequestTrace trace = _startTrace(httpRequest);
+        
         try {
-            httpRequest.setParams(_getDefaultParams());
-            
-            HttpClient client = _getClient();
-            HttpResponse response = null;
-            
-            try {
-                response = client.execute(httpRequest);
-            } catch (ConnectException ex) {
-                // close idle connections to make sure the connect exception isn't
-                // caused by a stuck connection and try again
-                client.getConnectionManager().closeIdleConnections(0, TimeUnit.MILLISECONDS);
-                response = client.execute(httpRequest);
-            }
+            HttpResponse response = _execute(httpRequest);
             
             String responseBody = _getResponseBody(response);
 
@@ -234,6 +424,8 @@ public class HTTPClient extends AbstractHTTPClient {
             }
             
             throw new HTTPException(e);
+        } finally {
+            _completeTrace(trace);
         }
     }  
 }
@@ -9,6 +9,12 @@ public class HTTPException extends Exception {
      */
     private static final long serialVersionUID = -6148048533520350702L;
     
+    /**
+     * Error code used when the request wasn't executed because the circuit for its 
+     * route is open.
+     */
+    public final static int CIRCUIT_OPEN = -1;
+    
     /**
      * Error code.
      */
@@ -22,10 +28,11 @@ public class HTTPException extends Exception {
     }
 
     /**
-     * Constructs an unknown HTTP exception.
+     * Constructs an unknown HTTP exception, or a CIRCUIT_OPEN exception if caused by a 
+     * CircuitOpenException.
      */
     public HTTPException(Throwable parent) {
-        this(500, "Unknown error", parent);
+        this(CircuitOpenException.isCause(parent) ? CIRCUIT_OPEN : 500, CircuitOpenException.isCause(parent) ? "Circuit open" : "Unknown error", parent);
     }
 
     /**
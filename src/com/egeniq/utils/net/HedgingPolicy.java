@@ -0,0 +1,113 @@
+package com.egeniq.utils.net;
+
+/**
+ * Hedging settings for idempotent GET requests.
+ * 
+ * If the response headers of a GET request haven't arrived within the hedging delay,
+ * a duplicate request is sent (on a different connection). The first response is used 
+ * and the other request is aborted. The hedging delay adapts to the route: it's the 
+ * given percentile of the recent first byte times of requests to the route.
+ * 
+ * @see AbstractHTTPClient#setHedgingPolicy(HedgingPolicy)
+ */
+public class HedgingPolicy {
+    private double _percentile = 95;
+    private int _minimumSamples = 20;
+    private int _windowSize = 200;
+    private long _minimumDelay = 10;
+    private double _budget = 0.05;
+    private int _pathPrefixDepth = 2;
+
+    /**
+     * Get the percentile (0 - 100) of the recent first byte times used as hedging delay.
+     */
+    public double getPercentile() {
+        return _percentile;
+    }
+
+    /**
+     * Set the percentile (0 - 100) of the recent first byte times used as hedging delay,
+     * defaults to 95.
+     */
+    public HedgingPolicy setPercentile(double percentile) {
+        _percentile = percentile;
+        return this;
+    }
+
+    /**
+     * Get the number of requests to a route before requests to it are hedged.
+     */
+    public int getMinimumSamples() {
+        return _minimumSamples;
+    }
+
+    /**
+     * Set the number of requests to a route before requests to it are hedged, defaults
+     * to 20.
+     */
+    public HedgingPolicy setMinimumSamples(int minimumSamples) {
+        _minimumSamples = minimumSamples;
+        return this;
+    }
+
+    /**
+     * Get the number of recent requests the hedging delay is based on.
+     */
+    public int getWindowSize() {
+        return _windowSize;
+    }
+
+    /**
+     * Set the number of recent requests the hedging delay is based on, defaults to 200.
+     */
+    public HedgingPolicy setWindowSize(int windowSize) {
+        _windowSize = windowSize;
+        return this;
+    }
+
+    /**
+     * Get the minimum hedging delay in milliseconds.
+     */
+    public long getMinimumDelay() {
+        return _minimumDelay;
+    }
+
+    /**
+     * Set the minimum hedging delay in milliseconds, defaults to 10.
+     */
+    public HedgingPolicy setMinimumDelay(long minimumDelay) {
+        _minimumDelay = minimumDelay;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of hedged requests as a fraction of all GET requests.
+     */
+    public double getBudget() {
+        return _budget;
+    }
+
+    /**
+     * Set the maximum number of hedged requests as a fraction of all GET requests,
+     * defaults to 0.05 (5% extra requests).
+     */
+    public HedgingPolicy setBudget(double budget) {
+        _budget = budget;
+        return this;
+    }
+
+    /**
+     * Get the number of path segments that are part of the route.
+     */
+    public int getPathPrefixDepth() {
+        return _pathPrefixDepth;
+    }
+
+    /**
+     * Set the number of path segments that are part of the route, defaults to 2.
+     */
+    public HedgingPolicy setPathPrefixDepth(int pathPrefixDepth) {
+        _pathPrefixDepth = pathPrefixDepth;
+        return this;
+    }
+}
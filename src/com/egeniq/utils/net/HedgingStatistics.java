@@ -0,0 +1,94 @@
+package com.egeniq.utils.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedging counters.
+ */
+public class HedgingStatistics {
+    private final AtomicLong _requestCount = new AtomicLong();
+    private final AtomicLong _hedgeCount = new AtomicLong();
+    private final AtomicLong _hedgeWinCount = new AtomicLong();
+    private final AtomicLong _budgetExceededCount = new AtomicLong();
+    private final AtomicLong _rejectedCount = new AtomicLong();
+
+    /**
+     * Number of GET requests eligible for hedging.
+     */
+    public long getRequestCount() {
+        return _requestCount.get();
+    }
+
+    /**
+     * Number of hedged (duplicate) requests sent.
+     */
+    public long getHedgeCount() {
+        return _hedgeCount.get();
+    }
+
+    /**
+     * Number of hedged requests that responded before the original request.
+     */
+    public long getHedgeWinCount() {
+        return _hedgeWinCount.get();
+    }
+
+    /**
+     * Number of requests that weren't hedged because the budget was used up.
+     */
+    public long getBudgetExceededCount() {
+        return _budgetExceededCount.get();
+    }
+
+    /**
+     * Number of requests that weren't hedged because the circuit of the route was open 
+     * or the host was at its admission limit.
+     */
+    public long getRejectedCount() {
+        return _rejectedCount.get();
+    }
+
+    /**
+     * Fraction (0 - 1) of the hedged requests that responded before the original request.
+     */
+    public double getWinRate() {
+        long hedgeCount = _hedgeCount.get();
+        return hedgeCount == 0 ? 0 : (double)_hedgeWinCount.get() / hedgeCount;
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        _requestCount.set(0);
+        _hedgeCount.set(0);
+        _hedgeWinCount.set(0);
+        _budgetExceededCount.set(0);
+        _rejectedCount.set(0);
+    }
+
+    void _recordRequest() {
+        _requestCount.incrementAndGet();
+    }
+
+    void _recordHedge() {
+        _hedgeCount.incrementAndGet();
+    }
+
+    void _recordHedgeWin() {
+        _hedgeWinCount.incrementAndGet();
+    }
+
+    void _recordBudgetExceeded() {
+        _budgetExceededCount.incrementAndGet();
+    }
+
+    void _recordRejected() {
+        _rejectedCount.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + getRequestCount() + ", hedges=" + getHedgeCount() + ", hedgeWins=" + getHedgeWinCount() + ", winRate=" + getWinRate() + ", budgetExceeded=" + getBudgetExceededCount() + ", rejected=" + getRejectedCount();
+    }
+}
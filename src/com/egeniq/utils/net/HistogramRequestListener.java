@@ -0,0 +1,275 @@
+package com.egeniq.utils.net;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request listener which aggregates latency histograms per endpoint (method, route
+ * and path).
+ * 
+ * Path segments that look like identifiers (numbers, UUIDs, hex strings and long tokens)
+ * are replaced by "{id}", so requests for different resources of the same kind share an
+ * endpoint. Override _getEndpoint() to group requests differently.
+ * 
+ * The number of tracked endpoints is limited; requests for further endpoints are 
+ * aggregated under a single "other" endpoint.
+ */
+public class HistogramRequestListener implements RequestListener {
+    private final static String OTHER = "other";
+    private final static String ID = "{id}";
+    private final static int MIN_HEX_ID_LENGTH = 8;
+    private final static int MIN_TOKEN_ID_LENGTH = 16;
+
+    /**
+     * Metrics for a single endpoint.
+     */
+    public static class EndpointMetrics {
+        private final LatencyHistogram _connect = new LatencyHistogram();
+        private final LatencyHistogram _leaseWait = new LatencyHistogram();
+        private final LatencyHistogram _firstByte = new LatencyHistogram();
+        private final LatencyHistogram _bodyRead = new LatencyHistogram();
+        private final LatencyHistogram _parse = new LatencyHistogram();
+        private final LatencyHistogram _total = new LatencyHistogram();
+        private final AtomicLong _bytesReceived = new AtomicLong();
+        private final AtomicLong _errorCount = new AtomicLong();
+
+        public LatencyHistogram getConnect() {
+            return _connect;
+        }
+
+        public LatencyHistogram getLeaseWait() {
+            return _leaseWait;
+        }
+
+        public LatencyHistogram getFirstByte() {
+            return _firstByte;
+        }
+
+        public LatencyHistogram getBodyRead() {
+            return _bodyRead;
+        }
+
+        public LatencyHistogram getParse() {
+            return _parse;
+        }
+
+        public LatencyHistogram getTotal() {
+            return _total;
+        }
+
+        /**
+         * Total number of response body bytes received.
+         */
+        public long getBytesReceived() {
+            return _bytesReceived.get();
+        }
+
+        /**
+         * Number of requests that failed or returned an error status code.
+         */
+        public long getErrorCount() {
+            return _errorCount.get();
+        }
+
+        @Override
+        public String toString() {
+            // @formatter:off
+            return "  total:      " + _total + "\n" +
+                   "  connect:    " + _connect + "\n" +
+                   "  leaseWait:  " + _leaseWait + "\n" +
+                   "  firstByte:  " + _firstByte + "\n" +
+                   "  bodyRead:   " + _bodyRead + "\n" +
+                   "  parse:      " + _parse + "\n" +
+                   "  bytes:      " + getBytesReceived() + "\n" +
+                   "  errors:     " + getErrorCount();
+            // @formatter:on
+        }
+    }
+
+    private final ConcurrentHashMap<String, EndpointMetrics> _endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+    private final int _maxEndpoints;
+
+    /**
+     * Constructor.
+     */
+    public HistogramRequestListener() {
+        this(100);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param maxEndpoints Maximum number of endpoints tracked separately.
+     */
+    public HistogramRequestListener(int maxEndpoints) {
+        _maxEndpoints = maxEndpoints;
+    }
+
+    /**
+     * Returns the metrics for the endpoint of the given trace.
+     * 
+     * @param trace Request trace.
+     * 
+     * @return Endpoint metrics.
+     */
+    public EndpointMetrics getMetrics(RequestTrace trace) {
+        return _getMetrics(_getEndpoint(trace));
+    }
+
+    /**
+     * Returns the endpoint key for the given trace.
+     * 
+     * @param trace Request trace.
+     */
+    protected String _getEndpoint(RequestTrace trace) {
+        return trace.getMethod() + " " + trace.getRoute() + _normalizePath(trace.getPath());
+    }
+
+    /**
+     * Replaces the identifier segments of the given path by "{id}".
+     * 
+     * @param path Raw path, may be null.
+     */
+    static String _normalizePath(String path) {
+        if (path == null) {
+            return "";
+        }
+
+        StringBuilder builder = null;
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+
+            boolean id = _isId(path, start, end);
+            if (id && builder == null) {
+                builder = new StringBuilder(path.length());
+                builder.append(path, 0, start);
+            }
+
+            if (builder != null) {
+                builder.append(id ? ID : path.substring(start, end));
+                if (end < path.length()) {
+                    builder.append('/');
+                }
+            }
+
+            start = end + 1;
+        }
+
+        return builder != null ? builder.toString() : path;
+    }
+
+    /**
+     * Does the given path segment look like an identifier?
+     */
+    private static boolean _isId(String path, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return false;
+        }
+
+        boolean digits = true;
+        boolean hex = true;
+        boolean token = true;
+        boolean hasDigit = false;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+            hasDigit |= digit;
+            digits &= digit;
+            hex &= digit || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == '-';
+            token &= digit || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-' || c == '_';
+        }
+
+        return digits || (hasDigit && ((hex && length >= MIN_HEX_ID_LENGTH) || (token && length >= MIN_TOKEN_ID_LENGTH)));
+    }
+
+    /**
+     * Returns a snapshot of the metrics per endpoint.
+     */
+    public Map<String, EndpointMetrics> getMetrics() {
+        return new TreeMap<String, EndpointMetrics>(_endpoints);
+    }
+
+    /**
+     * Clears all metrics.
+     */
+    public void reset() {
+        _endpoints.clear();
+    }
+
+    /**
+     * Returns a human readable dump of all metrics.
+     */
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, EndpointMetrics> entry : getMetrics().entrySet()) {
+            builder.append(entry.getKey()).append("\n").append(entry.getValue()).append("\n");
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public void onConnect(RequestTrace trace, long duration) {
+        getMetrics(trace)._connect.record(duration);
+    }
+
+    @Override
+    public void onLeaseWait(RequestTrace trace, long duration) {
+        getMetrics(trace)._leaseWait.record(duration);
+    }
+
+    @Override
+    public void onFirstByte(RequestTrace trace, long duration) {
+        getMetrics(trace)._firstByte.record(duration);
+    }
+
+    @Override
+    public void onBodyRead(RequestTrace trace, long duration) {
+        EndpointMetrics metrics = getMetrics(trace);
+        metrics._bodyRead.record(duration);
+        metrics._bytesReceived.addAndGet(trace.getBytesReceived());
+    }
+
+    @Override
+    public void onParse(RequestTrace trace, long duration) {
+        getMetrics(trace)._parse.record(duration);
+    }
+
+    @Override
+    public void onComplete(RequestTrace trace, long duration) {
+        EndpointMetrics metrics = getMetrics(trace);
+        metrics._total.record(duration);
+        if (trace.getStatusCode() < 0 || trace.getStatusCode() >= 400) {
+            metrics._errorCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the metrics for the given endpoint, creating them if needed.
+     */
+    private EndpointMetrics _getMetrics(String endpoint) {
+        EndpointMetrics metrics = _endpoints.get(endpoint);
+        if (metrics != null) {
+            return metrics;
+        }
+
+        if (_endpoints.size() >= _maxEndpoints) {
+            endpoint = OTHER;
+            metrics = _endpoints.get(endpoint);
+            if (metrics != null) {
+                return metrics;
+            }
+        }
+
+        metrics = new EndpointMetrics();
+        EndpointMetrics existing = _endpoints.putIfAbsent(endpoint, metrics);
+        return existing != null ? existing : metrics;
+    }
+}
@@ -0,0 +1,33 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+
+/**
+ * Default transport, uses the httpclientandroidlib connection pools of the client.
+ */
+public class HttpClientTransport implements Transport {
+    private final AbstractHTTPClient _client;
+
+    /**
+     * Constructor.
+     * 
+     * @param client Client whose connection pools are used.
+     */
+    public HttpClientTransport(AbstractHTTPClient client) {
+        _client = client;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequestBase request) throws IOException {
+        return _client._getClient(request).execute(request);
+    }
+
+    @Override
+    public void closeIdleConnections(HttpRequestBase request) {
+        _client._getClient(request).getConnectionManager().closeIdleConnections(0, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,73 @@
+package com.egeniq.utils.net;
+
+import java.util.Set;
+
+import ch.boye.httpclientandroidlib.params.AbstractHttpParams;
+import ch.boye.httpclientandroidlib.params.BasicHttpParams;
+import ch.boye.httpclientandroidlib.params.HttpParams;
+
+/**
+ * Read-only view of HTTP parameters, so one instance can be shared by many requests.
+ */
+final class ImmutableHttpParams extends AbstractHttpParams {
+    private final BasicHttpParams _params;
+
+    /**
+     * Constructor.
+     * 
+     * @param params Parameters, copied.
+     */
+    ImmutableHttpParams(AbstractHttpParams params) {
+        _params = new BasicHttpParams();
+        _copy(params, _params);
+    }
+
+    @Override
+    public Object getParameter(String name) {
+        return _params.getParameter(name);
+    }
+
+    @Override
+    public HttpParams setParameter(String name, Object value) {
+        throw new UnsupportedOperationException("Parameters are immutable");
+    }
+
+    @Override
+    public boolean removeParameter(String name) {
+        throw new UnsupportedOperationException("Parameters are immutable");
+    }
+
+    /**
+     * Returns a mutable copy.
+     */
+    BasicHttpParams _toMutable() {
+        BasicHttpParams params = new BasicHttpParams();
+        _copy(_params, params);
+        return params;
+    }
+
+    /**
+     * Returns a mutable copy.
+     * 
+     * @deprecated Use {@link #_toMutable()}.
+     */
+    @Override
+    @Deprecated
+    public HttpParams copy() {
+        return _toMutable();
+    }
+
+    @Override
+    public Set<String> getNames() {
+        return _params.getNames();
+    }
+
+    /**
+     * Copies the values of the given parameters one by one.
+     */
+    static void _copy(AbstractHttpParams from, HttpParams to) {
+        for (String name : from.getNames()) {
+            to.setParameter(name, from.getParameter(name));
+        }
+    }
+}
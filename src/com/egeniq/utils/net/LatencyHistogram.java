@@ -0,0 +1,104 @@
+package com.egeniq.utils.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed, roughly logarithmic buckets.
+ * 
+ * Percentiles are reported as the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+    private final static long[] BOUNDS = { 1, 2, 3, 5, 8, 13, 20, 30, 50, 75, 100, 150, 200, 300, 500, 750, 1000, 1500, 2000, 3000, 5000, 7500, 10000, 15000, 30000, 60000, Long.MAX_VALUE };
+
+    private final AtomicLongArray _counts = new AtomicLongArray(BOUNDS.length);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _sum = new AtomicLong();
+    private final AtomicLong _max = new AtomicLong();
+
+    /**
+     * Records a value.
+     * 
+     * @param value Value in milliseconds.
+     */
+    public void record(long value) {
+        int index = 0;
+        while (value > BOUNDS[index]) {
+            index++;
+        }
+
+        _counts.incrementAndGet(index);
+        _count.incrementAndGet();
+        _sum.addAndGet(value);
+
+        long max;
+        while (value > (max = _max.get()) && !_max.compareAndSet(max, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Number of recorded values.
+     */
+    public long getCount() {
+        return _count.get();
+    }
+
+    /**
+     * Mean value, 0 if nothing has been recorded.
+     */
+    public long getMean() {
+        long count = _count.get();
+        return count == 0 ? 0 : _sum.get() / count;
+    }
+
+    /**
+     * Maximum value.
+     */
+    public long getMax() {
+        return _max.get();
+    }
+
+    /**
+     * Returns the (approximated) value at the given percentile.
+     * 
+     * @param percentile Percentile (0 - 100).
+     * 
+     * @return Value, or -1 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        long count = _count.get();
+        if (count == 0) {
+            return -1;
+        }
+
+        long threshold = (long)Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += _counts.get(i);
+            if (seen >= threshold) {
+                return Math.min(BOUNDS[i], _max.get());
+            }
+        }
+
+        return _max.get();
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            _counts.set(i, 0);
+        }
+
+        _count.set(0);
+        _sum.set(0);
+        _max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + getMean() + " p50=" + getPercentile(50) + " p95=" + getPercentile(95) + " p99=" + getPercentile(99) + " max=" + getMax();
+    }
+}
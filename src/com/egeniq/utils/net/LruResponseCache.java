@@ -0,0 +1,126 @@
+package com.egeniq.utils.net;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory response cache which evicts the least recently used responses.
+ * 
+ * Optionally backed by a second level cache (e.g. a DiskResponseCache). Responses are
+ * written through to the second level cache and read from it on a miss.
+ */
+public class LruResponseCache implements ResponseCache {
+    private final LinkedHashMap<String, CachedResponse> _entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+    private final int _maxSize;
+    private final ResponseCache _secondLevelCache;
+    private int _size = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxSize Maximum total size of the cached bodies (in characters).
+     */
+    public LruResponseCache(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param maxSize          Maximum total size of the cached bodies (in characters).
+     * @param secondLevelCache Second level cache (optional).
+     */
+    public LruResponseCache(int maxSize, ResponseCache secondLevelCache) {
+        _maxSize = maxSize;
+        _secondLevelCache = secondLevelCache;
+    }
+
+    @Override
+    public CachedResponse get(String key) {
+        synchronized (_entries) {
+            CachedResponse response = _entries.get(key);
+            if (response != null || _secondLevelCache == null) {
+                return response;
+            }
+        }
+
+        CachedResponse response = _secondLevelCache.get(key);
+        if (response != null) {
+            _put(key, response);
+        }
+
+        return response;
+    }
+
+    @Override
+    public void put(String key, CachedResponse response) {
+        _put(key, response);
+
+        if (_secondLevelCache != null) {
+            _secondLevelCache.put(key, response);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        synchronized (_entries) {
+            CachedResponse previous = _entries.remove(key);
+            if (previous != null) {
+                _size -= previous.getBody().length();
+            }
+        }
+
+        if (_secondLevelCache != null) {
+            _secondLevelCache.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (_entries) {
+            _entries.clear();
+            _size = 0;
+        }
+
+        if (_secondLevelCache != null) {
+            _secondLevelCache.clear();
+        }
+    }
+
+    /**
+     * Returns the total size of the cached bodies in memory (in characters).
+     */
+    public int size() {
+        synchronized (_entries) {
+            return _size;
+        }
+    }
+
+    /**
+     * Stores the response in memory and evicts the least recently used responses
+     * until the cache fits its maximum size.
+     */
+    private void _put(String key, CachedResponse response) {
+        int size = response.getBody().length();
+        if (size > _maxSize) {
+            return;
+        }
+
+        synchronized (_entries) {
+            CachedResponse previous = _entries.put(key, response);
+            if (previous != null) {
+                _size -= previous.getBody().length();
+            }
+
+            _size += size;
+
+            Iterator<Map.Entry<String, CachedResponse>> iter = _entries.entrySet().iterator();
+            while (_size > _maxSize && iter.hasNext()) {
+                Map.Entry<String, CachedResponse> eldest = iter.next();
+                _size -= eldest.getValue().getBody().length();
+                iter.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.egeniq.utils.net;
+
+/**
+ * Class of the active network.
+ */
+public enum NetworkClass {
+    /**
+     * No network.
+     */
+    NONE,
+
+    /**
+     * Wi-Fi network.
+     */
+    WIFI,
+
+    /**
+     * Mobile network.
+     */
+    MOBILE,
+
+    /**
+     * Other network, e.g. ethernet or WiMAX.
+     */
+    OTHER
+}
@@ -0,0 +1,94 @@
+package com.egeniq.utils.net;
+
+/**
+ * Request policy for a class of networks.
+ * 
+ * Settings that aren't set (-1 or null) fall back to the client settings.
+ * 
+ * @see AbstractHTTPClient#setNetworkPolicy(NetworkClass, NetworkPolicy)
+ */
+public class NetworkPolicy {
+    private int _connectTimeout = -1;
+    private int _readTimeout = -1;
+    private int _maxConcurrentRequests = -1;
+    private int _prefetchDepth = -1;
+    private Boolean _compressionEnabled = null;
+
+    /**
+     * Get connect timeout in milliseconds.
+     */
+    public int getConnectTimeout() {
+        return _connectTimeout;
+    }
+
+    /**
+     * Set connect timeout in milliseconds.
+     */
+    public NetworkPolicy setConnectTimeout(int connectTimeout) {
+        _connectTimeout = connectTimeout;
+        return this;
+    }
+
+    /**
+     * Get read (socket) timeout in milliseconds.
+     */
+    public int getReadTimeout() {
+        return _readTimeout;
+    }
+
+    /**
+     * Set read (socket) timeout in milliseconds.
+     */
+    public NetworkPolicy setReadTimeout(int readTimeout) {
+        _readTimeout = readTimeout;
+        return this;
+    }
+
+    /**
+     * Get maximum number of concurrent asynchronous requests.
+     */
+    public int getMaxConcurrentRequests() {
+        return _maxConcurrentRequests;
+    }
+
+    /**
+     * Set maximum number of concurrent asynchronous requests.
+     * 
+     * Resizes the executor of the client. A client that uses the executor shared by all 
+     * clients gets a dedicated executor instead, other clients aren't affected.
+     */
+    public NetworkPolicy setMaxConcurrentRequests(int maxConcurrentRequests) {
+        _maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+
+    /**
+     * Get maximum number of pages to fetch ahead when paging.
+     */
+    public int getPrefetchDepth() {
+        return _prefetchDepth;
+    }
+
+    /**
+     * Set maximum number of pages to fetch ahead when paging.
+     */
+    public NetworkPolicy setPrefetchDepth(int prefetchDepth) {
+        _prefetchDepth = prefetchDepth;
+        return this;
+    }
+
+    /**
+     * Is response compression enabled?
+     */
+    public Boolean isCompressionEnabled() {
+        return _compressionEnabled;
+    }
+
+    /**
+     * Enable / disable response compression.
+     */
+    public NetworkPolicy setCompressionEnabled(Boolean compressionEnabled) {
+        _compressionEnabled = compressionEnabled;
+        return this;
+    }
+}
@@ -0,0 +1,20 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request isn't executed because there is no internet connection.
+ */
+public class OfflineException extends IOException {
+    /**
+     * Unique identifier.
+     */
+    private static final long serialVersionUID = -4371954032093187046L;
+
+    /**
+     * Constructor.
+     */
+    public OfflineException() {
+        super("No internet connection");
+    }
+}
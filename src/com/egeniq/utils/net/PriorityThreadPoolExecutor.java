@@ -0,0 +1,66 @@
+package com.egeniq.utils.net;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pool executor that runs queued tasks in order of the request priority of the
+ * submitting thread (FIFO within a priority), and runs each task with that priority 
+ * bound to the executing thread.
+ */
+class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
+    private final AtomicLong _sequence = new AtomicLong();
+
+    /**
+     * Task with its priority.
+     */
+    private final static class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final Runnable _task;
+        private final RequestPriority _priority;
+        private final long _sequence;
+
+        PrioritizedTask(Runnable task, RequestPriority priority, long sequence) {
+            _task = task;
+            _priority = priority;
+            _sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            RequestPriority previous = RequestScheduler.setCurrentPriority(_priority);
+            try {
+                _task.run();
+            } finally {
+                RequestScheduler.setCurrentPriority(previous);
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (_priority != other._priority) {
+                return _priority.ordinal() - other._priority.ordinal();
+            }
+
+            return _sequence < other._sequence ? -1 : (_sequence > other._sequence ? 1 : 0);
+        }
+    }
+
+    /**
+     * Constructor.
+     */
+    PriorityThreadPoolExecutor(int poolSize, long keepAliveTime, TimeUnit unit, ThreadFactory threadFactory) {
+        super(poolSize, poolSize, keepAliveTime, unit, new PriorityBlockingQueue<Runnable>(), threadFactory);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+
+        super.execute(new PrioritizedTask(task, RequestScheduler.getCurrentPriority(), _sequence.getAndIncrement()));
+    }
+}
@@ -0,0 +1,25 @@
+package com.egeniq.utils.net;
+
+/**
+ * Callback for asynchronously executed requests.
+ * 
+ * Callbacks are invoked on the thread that executed the request, not on the main
+ * thread. Cancelled requests don't invoke the callback at all.
+ * 
+ * @param <T> Result type.
+ */
+public interface RequestCallback<T> {
+    /**
+     * Called when the request finished successfully.
+     * 
+     * @param result Result.
+     */
+    public void onSuccess(T result);
+
+    /**
+     * Called when the request failed.
+     * 
+     * @param e Exception (normally an HTTPException or APIException).
+     */
+    public void onFailure(Exception e);
+}
@@ -0,0 +1,73 @@
+package com.egeniq.utils.net;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+
+/**
+ * Future for an asynchronously executed request.
+ * 
+ * Cancelling the future aborts the underlying HTTP request, also when it's
+ * already in progress.
+ * 
+ * @param <T> Result type.
+ */
+public class RequestFuture<T> extends FutureTask<T> {
+    private final HttpRequestBase _request;
+    private final RequestCallback<T> _callback;
+
+    /**
+     * Constructor.
+     * 
+     * @param request  HTTP request.
+     * @param callable Callable that executes the request.
+     * @param callback Optional callback.
+     */
+    public RequestFuture(HttpRequestBase request, Callable<T> callable, RequestCallback<T> callback) {
+        super(callable);
+        _request = request;
+        _callback = callback;
+    }
+
+    /**
+     * Returns the HTTP request.
+     * 
+     * @return HTTP request.
+     */
+    public HttpRequestBase getRequest() {
+        return _request;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean result = super.cancel(mayInterruptIfRunning);
+        if (result) {
+            _request.abort();
+        }
+
+        return result;
+    }
+
+    @Override
+    protected void done() {
+        if (_callback == null || isCancelled()) {
+            return;
+        }
+
+        T result;
+        try {
+            result = get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            _callback.onFailure(cause instanceof Exception ? (Exception)cause : e);
+            return;
+        } catch (InterruptedException e) {
+            _callback.onFailure(e);
+            return;
+        }
+
+        _callback.onSuccess(result);
+    }
+}
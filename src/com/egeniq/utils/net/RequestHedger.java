@@ -0,0 +1,477 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.boye.httpclientandroidlib.HttpEntity;
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.client.methods.HttpGet;
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+import ch.boye.httpclientandroidlib.conn.ClientConnectionRequest;
+import ch.boye.httpclientandroidlib.conn.ManagedClientConnection;
+import ch.boye.httpclientandroidlib.util.EntityUtils;
+
+/**
+ * Executes GET requests with hedging, see {@link HedgingPolicy}.
+ */
+final class RequestHedger {
+    private final static double MAX_BUDGET_TOKENS = 10;
+
+    private final static int NONE = 0;
+    private final static int PRIMARY = 1;
+    private final static int HEDGE = 2;
+
+    private static ScheduledExecutorService _timer = null;
+    private static ExecutorService _executor = null;
+
+    private final HedgingPolicy _policy;
+    private final HedgingStatistics _statistics;
+    private final ConcurrentHashMap<String, LatencyWindow> _windows = new ConcurrentHashMap<String, LatencyWindow>();
+    private double _budgetTokens = 1;
+
+    /**
+     * Recent first byte times of a route.
+     */
+    private final static class LatencyWindow {
+        private volatile LatencyHistogram _current = new LatencyHistogram();
+        private volatile LatencyHistogram _previous = null;
+
+        /**
+         * Records a first byte time, starts a new window when the current one is full.
+         */
+        public void record(long latency, int windowSize) {
+            LatencyHistogram current = _current;
+            current.record(latency);
+            if (current.getCount() >= windowSize) {
+                synchronized (this) {
+                    if (_current == current) {
+                        _previous = current;
+                        _current = new LatencyHistogram();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the given percentile, -1 if there aren't enough samples yet.
+         */
+        public long getPercentile(double percentile, int minimumSamples) {
+            LatencyHistogram histogram = _previous;
+            if (histogram == null) {
+                histogram = _current;
+                if (histogram.getCount() < minimumSamples) {
+                    return -1;
+                }
+            }
+
+            return histogram.getPercentile(percentile);
+        }
+    }
+
+    /**
+     * Race between a copy of the original request and its hedge. The original request 
+     * isn't executed itself, it only serves as handle: aborting it (cancellation, 
+     * deadline) aborts both copies, also after one of them has won the race.
+     */
+    private final class Race implements ClientConnectionRequest {
+        private final Transport _transport;
+        private final HttpRequestBase _request;
+        private final HttpGet _primaryRequest;
+        private final long _startTime;
+        private final LatencyWindow _window;
+        private final CircuitBreaker _circuitBreaker;
+        private final AdmissionController _admissionController;
+
+        private HttpGet _hedgeRequest = null;
+        private boolean _aborted = false;
+        private boolean _primaryFinished = false;
+        private boolean _hedgeFinished = false;
+        private int _winner = NONE;
+        private HttpResponse _hedgeResponse = null;
+
+        Race(Transport transport, HttpRequestBase request, long startTime, LatencyWindow window, CircuitBreaker circuitBreaker, AdmissionController admissionController) {
+            _transport = transport;
+            _request = request;
+            _primaryRequest = _copy(request);
+            _startTime = startTime;
+            _window = window;
+            _circuitBreaker = circuitBreaker;
+            _admissionController = admissionController;
+        }
+
+        @Override
+        public ManagedClientConnection getConnection(long timeout, TimeUnit unit) {
+            throw new IllegalStateException("Hedged request is executed by copies");
+        }
+
+        /**
+         * Called when the original request is aborted, aborts both copies.
+         */
+        @Override
+        public void abortRequest() {
+            HttpGet hedgeRequest;
+            synchronized (this) {
+                _aborted = true;
+                hedgeRequest = _hedgeRequest;
+                notifyAll();
+            }
+
+            _primaryRequest.abort();
+            if (hedgeRequest != null) {
+                hedgeRequest.abort();
+            }
+        }
+
+        /**
+         * Sends the hedge request, unless the original request has completed or the 
+         * hedge isn't allowed by the budget, the circuit breaker or the admission 
+         * controller of the host.
+         */
+        void _launchHedge() {
+            synchronized (this) {
+                if (_aborted || _primaryFinished || _winner != NONE) {
+                    return;
+                }
+
+                if (!_takeBudgetToken()) {
+                    _statistics._recordBudgetExceeded();
+                    return;
+                }
+
+                if (!_acquireHedgePermission()) {
+                    _returnBudgetToken();
+                    _statistics._recordRejected();
+                    return;
+                }
+
+                _hedgeRequest = _copy(_request);
+            }
+
+            _statistics._recordHedge();
+            _getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    _runHedge();
+                }
+            });
+        }
+
+        /**
+         * Takes a circuit breaker permission and an admission slot for the hedge.
+         */
+        private boolean _acquireHedgePermission() {
+            if (_circuitBreaker != null) {
+                try {
+                    _circuitBreaker._acquirePermission();
+                } catch (CircuitOpenException e) {
+                    return false;
+                }
+            }
+
+            if (_admissionController != null && !_admissionController._tryAcquireHedge()) {
+                if (_circuitBreaker != null) {
+                    _circuitBreaker._recordIgnored();
+                }
+
+                return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Executes the hedge request.
+         */
+        private void _runHedge() {
+            long startTime = System.nanoTime();
+            HttpResponse response = null;
+            boolean failed = false;
+            try {
+                response = _transport.execute(_hedgeRequest);
+            } catch (IOException e) {
+                // the original request may still succeed
+                failed = !_hedgeRequest.isAborted();
+            }
+
+            if (response != null) {
+                _releaseAdmissionOnCompletion(response);
+            } else if (_admissionController != null) {
+                _admissionController._release();
+            }
+
+            boolean won = false;
+            synchronized (this) {
+                _hedgeFinished = true;
+                if (_winner == NONE && response != null) {
+                    _winner = HEDGE;
+                    _hedgeResponse = response;
+                    won = true;
+                }
+
+                notifyAll();
+            }
+
+            if (_circuitBreaker != null) {
+                if (won || (response == null && !failed)) {
+                    // the result of the winner is recorded for the original request
+                    _circuitBreaker._recordIgnored();
+                } else {
+                    _circuitBreaker._recordResult(response != null && response.getStatusLine().getStatusCode() < 500);
+                }
+            }
+
+            if (won) {
+                _statistics._recordHedgeWin();
+                _window.record(RequestTrace._elapsed(startTime), _policy.getWindowSize());
+                _primaryRequest.abort();
+            } else if (response != null) {
+                _discard(_hedgeRequest, response);
+            }
+        }
+
+        /**
+         * Releases the admission slot of the hedge once its response has been consumed.
+         */
+        private void _releaseAdmissionOnCompletion(HttpResponse response) {
+            if (_admissionController == null) {
+                return;
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (entity == null || !entity.isStreaming()) {
+                _admissionController._release();
+                return;
+            }
+
+            response.setEntity(new CompletionEntity(entity, new Runnable() {
+                @Override
+                public void run() {
+                    _admissionController._release();
+                }
+            }));
+        }
+
+        /**
+         * Executes the primary copy and completes the race.
+         */
+        HttpResponse _executePrimary() throws IOException {
+            HttpResponse response = null;
+            IOException exception = null;
+            try {
+                response = _transport.execute(_primaryRequest);
+            } catch (IOException e) {
+                exception = e;
+            }
+
+            return _complete(response, exception);
+        }
+
+        /**
+         * Completes the race once the primary copy has finished.
+         */
+        private HttpResponse _complete(HttpResponse response, IOException exception) throws IOException {
+            HttpGet hedgeRequest;
+            int winner;
+            synchronized (this) {
+                _primaryFinished = true;
+                if (_winner == NONE && response != null) {
+                    _winner = PRIMARY;
+                }
+
+                hedgeRequest = _hedgeRequest;
+                winner = _winner;
+            }
+
+            if (winner == PRIMARY) {
+                _window.record(RequestTrace._elapsed(_startTime), _policy.getWindowSize());
+                if (hedgeRequest != null) {
+                    hedgeRequest.abort();
+                }
+
+                return response;
+            } else if (winner == HEDGE) {
+                if (response != null) {
+                    _discard(_primaryRequest, response);
+                }
+
+                return _hedgeResponse;
+            }
+
+            // primary copy failed, wait for the hedge (if any) unless the request was aborted
+            synchronized (this) {
+                try {
+                    while (hedgeRequest != null && !_hedgeFinished && !_aborted) {
+                        wait(100);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exception = new InterruptedIOException("Interrupted while waiting for hedged request");
+                }
+
+                if (_winner == HEDGE) {
+                    return _hedgeResponse;
+                }
+
+                _winner = PRIMARY; // discard the hedge response
+            }
+
+            if (hedgeRequest != null) {
+                hedgeRequest.abort();
+            }
+
+            throw exception;
+        }
+    }
+
+    /**
+     * Constructor.
+     */
+    RequestHedger(HedgingPolicy policy, HedgingStatistics statistics) {
+        _policy = policy;
+        _statistics = statistics;
+    }
+
+    /**
+     * Executes the given GET request, hedging it if the response takes longer than 
+     * usual for its route. The hedge request counts against the given circuit breaker 
+     * and admission controller (both optional).
+     */
+    HttpResponse execute(Transport transport, HttpRequestBase request, CircuitBreaker circuitBreaker, AdmissionController admissionController) throws IOException {
+        LatencyWindow window = _getWindow(request);
+        long delay = window.getPercentile(_policy.getPercentile(), _policy.getMinimumSamples());
+        long startTime = System.nanoTime();
+
+        _statistics._recordRequest();
+        _addBudgetToken();
+
+        if (delay < 0) {
+            HttpResponse response = transport.execute(request);
+            window.record(RequestTrace._elapsed(startTime), _policy.getWindowSize());
+            return response;
+        }
+
+        final Race race = new Race(transport, request, startTime, window, circuitBreaker, admissionController);
+        request.setConnectionRequest(race); // throws if the request has already been aborted
+
+        ScheduledFuture<?> timer = _getTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                race._launchHedge();
+            }
+        }, Math.max(delay, _policy.getMinimumDelay()), TimeUnit.MILLISECONDS);
+
+        try {
+            return race._executePrimary();
+        } finally {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the latency window for the route of the given request.
+     */
+    private LatencyWindow _getWindow(HttpRequestBase request) {
+        String route = AbstractHTTPClient._getRoute(request.getURI(), _policy.getPathPrefixDepth());
+        LatencyWindow window = _windows.get(route);
+        if (window == null) {
+            window = new LatencyWindow();
+            LatencyWindow existing = _windows.putIfAbsent(route, window);
+            if (existing != null) {
+                window = existing;
+            }
+        }
+
+        return window;
+    }
+
+    /**
+     * Each request adds a fraction of a token to the hedging budget.
+     */
+    private synchronized void _addBudgetToken() {
+        _budgetTokens = Math.min(MAX_BUDGET_TOKENS, _budgetTokens + _policy.getBudget());
+    }
+
+    /**
+     * Takes a token from the hedging budget if available.
+     */
+    private synchronized boolean _takeBudgetToken() {
+        if (_budgetTokens < 1) {
+            return false;
+        }
+
+        _budgetTokens--;
+        return true;
+    }
+
+    /**
+     * Returns the budget token of a hedge that wasn't sent.
+     */
+    private synchronized void _returnBudgetToken() {
+        _budgetTokens = Math.min(MAX_BUDGET_TOKENS, _budgetTokens + 1);
+    }
+
+    /**
+     * Returns a copy of the given GET request.
+     */
+    private static HttpGet _copy(HttpRequestBase request) {
+        HttpGet copy = new HttpGet(request.getURI());
+        copy.setHeaders(request.getAllHeaders());
+        copy.setParams(request.getParams());
+        return copy;
+    }
+
+    /**
+     * Aborts the losing request and releases its response.
+     */
+    private static void _discard(HttpRequestBase request, HttpResponse response) {
+        request.abort();
+        EntityUtils.consumeQuietly(response.getEntity());
+    }
+
+    /**
+     * Returns the timer used for launching hedge requests.
+     */
+    private synchronized static ScheduledExecutorService _getTimer() {
+        if (_timer == null) {
+            _timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "HTTPClient hedge timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return _timer;
+    }
+
+    /**
+     * Returns the executor used for executing hedge requests.
+     */
+    private synchronized static ExecutorService _getExecutor() {
+        if (_executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            _executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "HTTPClient hedge #" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return _executor;
+    }
+}
@@ -0,0 +1,58 @@
+package com.egeniq.utils.net;
+
+/**
+ * Receives timing information for the phases of a request.
+ * 
+ * Callbacks are invoked on the thread executing the request and should return quickly.
+ * All durations are in milliseconds. Phases that don't occur for a request (e.g. connect
+ * when a pooled connection is reused) don't invoke their callback. 
+ */
+public interface RequestListener {
+    /**
+     * Called when a new connection has been opened (DNS lookup and connect).
+     * 
+     * @param trace    Request trace.
+     * @param duration Duration.
+     */
+    public void onConnect(RequestTrace trace, long duration);
+
+    /**
+     * Called when a connection has been leased from the connection pool.
+     * 
+     * @param trace    Request trace.
+     * @param duration Time spent waiting for the connection.
+     */
+    public void onLeaseWait(RequestTrace trace, long duration);
+
+    /**
+     * Called when the response headers have been received.
+     * 
+     * @param trace    Request trace, the status code is available.
+     * @param duration Time since the start of the attempt.
+     */
+    public void onFirstByte(RequestTrace trace, long duration);
+
+    /**
+     * Called when the response body has been read.
+     * 
+     * @param trace    Request trace, the number of bytes received is available.
+     * @param duration Time spent reading the body.
+     */
+    public void onBodyRead(RequestTrace trace, long duration);
+
+    /**
+     * Called when the response body has been parsed (API requests only).
+     * 
+     * @param trace    Request trace.
+     * @param duration Time spent parsing.
+     */
+    public void onParse(RequestTrace trace, long duration);
+
+    /**
+     * Called when the request has completed, successfully or not.
+     * 
+     * @param trace    Request trace.
+     * @param duration Total duration.
+     */
+    public void onComplete(RequestTrace trace, long duration);
+}
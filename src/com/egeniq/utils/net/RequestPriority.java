@@ -0,0 +1,21 @@
+package com.egeniq.utils.net;
+
+/**
+ * Priority class of a request, see {@link RequestScheduler}.
+ */
+public enum RequestPriority {
+    /**
+     * User-visible requests, e.g. fetching the data for the current screen.
+     */
+    INTERACTIVE,
+
+    /**
+     * Default priority.
+     */
+    NORMAL,
+
+    /**
+     * Background work, e.g. syncing or paging through all subscriptions.
+     */
+    BACKGROUND
+}
@@ -0,0 +1,338 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+import ch.boye.httpclientandroidlib.conn.ClientConnectionRequest;
+import ch.boye.httpclientandroidlib.conn.ManagedClientConnection;
+
+/**
+ * Priority-aware request scheduler.
+ * 
+ * Limits the number of concurrently executing requests of a client. When all slots are
+ * in use, requests wait until a slot becomes available. Waiting interactive requests
+ * are admitted before normal requests, which are admitted before background requests,
+ * so background work can't starve user-visible requests. Each class can get a reserved
+ * share of the slots which is kept available while requests of that class are waiting,
+ * so lower classes still make progress.
+ * 
+ * A slot is held until the response body has been consumed (or closed). Requests that
+ * are already executing are never interrupted.
+ * 
+ * The priority of a request is the priority bound to the executing thread, see
+ * {@link #setCurrentPriority(RequestPriority)}. Asynchronous requests use the priority 
+ * of the thread that submitted them.
+ */
+public class RequestScheduler {
+    private final static ThreadLocal<RequestPriority> _currentPriority = new ThreadLocal<RequestPriority>();
+
+    private final static RequestPriority[] PRIORITIES = RequestPriority.values();
+
+    private final Object _lock = new Object();
+
+    private int _maxConcurrentRequests = 8;
+    private final int[] _reservedShares = new int[PRIORITIES.length];
+    private final int[] _runningCounts = new int[PRIORITIES.length];
+    private final LinkedList<?>[] _queues = new LinkedList<?>[PRIORITIES.length];
+
+    private final LatencyHistogram[] _queueWaitHistograms = new LatencyHistogram[PRIORITIES.length];
+    private final AtomicLong _preemptionCount = new AtomicLong();
+
+    /**
+     * Waiting request.
+     */
+    private final class Waiter implements ClientConnectionRequest {
+        private boolean _aborted = false;
+        private boolean _preempted = false;
+
+        @Override
+        public ManagedClientConnection getConnection(long timeout, TimeUnit unit) {
+            throw new IllegalStateException("Not a connection request");
+        }
+
+        @Override
+        public void abortRequest() {
+            synchronized (_lock) {
+                _aborted = true;
+                _lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     * 
+     * By default at most 8 requests are executed concurrently, and 1 slot is reserved
+     * for both normal and background requests.
+     */
+    public RequestScheduler() {
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            _queues[i] = new LinkedList<Waiter>();
+            _queueWaitHistograms[i] = new LatencyHistogram();
+        }
+
+        _reservedShares[RequestPriority.NORMAL.ordinal()] = 1;
+        _reservedShares[RequestPriority.BACKGROUND.ordinal()] = 1;
+    }
+
+    /**
+     * Returns the priority bound to the current thread, NORMAL if none.
+     */
+    public static RequestPriority getCurrentPriority() {
+        RequestPriority priority = _currentPriority.get();
+        return priority != null ? priority : RequestPriority.NORMAL;
+    }
+
+    /**
+     * Binds the given priority to the current thread. Requests executed by this thread
+     * or submitted from this thread use this priority.
+     * 
+     * @param priority Priority, null for the default (NORMAL).
+     * 
+     * @return Previous priority, restore it when done.
+     */
+    public static RequestPriority setCurrentPriority(RequestPriority priority) {
+        RequestPriority previous = getCurrentPriority();
+        if (priority == null) {
+            _currentPriority.remove();
+        } else {
+            _currentPriority.set(priority);
+        }
+
+        return previous;
+    }
+
+    /**
+     * Returns a task that runs the given task with the given priority bound to the
+     * executing thread.
+     * 
+     * @param task     Task.
+     * @param priority Priority.
+     */
+    public static Runnable withPriority(final Runnable task, final RequestPriority priority) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                RequestPriority previous = setCurrentPriority(priority);
+                try {
+                    task.run();
+                } finally {
+                    setCurrentPriority(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Get the maximum number of concurrently executing requests.
+     */
+    public int getMaxConcurrentRequests() {
+        synchronized (_lock) {
+            return _maxConcurrentRequests;
+        }
+    }
+
+    /**
+     * Set the maximum number of concurrently executing requests.
+     */
+    public RequestScheduler setMaxConcurrentRequests(int maxConcurrentRequests) {
+        synchronized (_lock) {
+            _maxConcurrentRequests = maxConcurrentRequests;
+            _lock.notifyAll();
+        }
+
+        return this;
+    }
+
+    /**
+     * Get the number of slots reserved for the given priority.
+     */
+    public int getReservedShare(RequestPriority priority) {
+        synchronized (_lock) {
+            return _reservedShares[priority.ordinal()];
+        }
+    }
+
+    /**
+     * Set the number of slots reserved for the given priority.
+     * 
+     * While requests of the given priority are waiting, other priorities can't use
+     * these slots. Keep the sum of the reserved shares below the maximum number of 
+     * concurrent requests.
+     */
+    public RequestScheduler setReservedShare(RequestPriority priority, int slots) {
+        synchronized (_lock) {
+            _reservedShares[priority.ordinal()] = slots;
+            _lock.notifyAll();
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns the number of executing requests with the given priority.
+     */
+    public int getRunningCount(RequestPriority priority) {
+        synchronized (_lock) {
+            return _runningCounts[priority.ordinal()];
+        }
+    }
+
+    /**
+     * Returns the number of waiting requests with the given priority.
+     */
+    public int getWaitingCount(RequestPriority priority) {
+        synchronized (_lock) {
+            return _queues[priority.ordinal()].size();
+        }
+    }
+
+    /**
+     * Returns the time (in milliseconds) requests with the given priority waited for
+     * a slot.
+     */
+    public LatencyHistogram getQueueWaitHistogram(RequestPriority priority) {
+        return _queueWaitHistograms[priority.ordinal()];
+    }
+
+    /**
+     * Number of requests that had to wait because higher priority requests were
+     * admitted first.
+     */
+    public long getPreemptionCount() {
+        return _preemptionCount.get();
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : _queueWaitHistograms) {
+            histogram.reset();
+        }
+
+        _preemptionCount.set(0);
+    }
+
+    /**
+     * Waits for a slot for the given request.
+     * 
+     * @throws IOException if the request is aborted or the thread is interrupted while waiting.
+     */
+    @SuppressWarnings("unchecked")
+    void _acquire(RequestPriority priority, HttpRequestBase request) throws IOException {
+        int index = priority.ordinal();
+        long startTime = System.nanoTime();
+
+        synchronized (_lock) {
+            if (_queues[index].isEmpty() && _canRun(index)) {
+                _runningCounts[index]++;
+                _queueWaitHistograms[index].record(0);
+                return;
+            }
+        }
+
+        Waiter waiter = new Waiter();
+        request.setConnectionRequest(waiter); // wakes us up when aborted
+
+        LinkedList<Waiter> queue = (LinkedList<Waiter>)_queues[index];
+        boolean acquired = false;
+        synchronized (_lock) {
+            queue.add(waiter);
+            try {
+                while (queue.getFirst() != waiter || !_canRun(index)) {
+                    if (waiter._aborted) {
+                        throw new InterruptedIOException("Request aborted while waiting to be scheduled");
+                    }
+
+                    if (!waiter._preempted && _hasHigherWaiters(index)) {
+                        waiter._preempted = true;
+                        _preemptionCount.incrementAndGet();
+                    }
+
+                    _lock.wait();
+                }
+
+                _runningCounts[index]++;
+                acquired = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to be scheduled");
+            } finally {
+                queue.remove(waiter);
+                if (!acquired) {
+                    _lock.notifyAll();
+                }
+            }
+        }
+
+        _queueWaitHistograms[index].record(RequestTrace._elapsed(startTime));
+    }
+
+    /**
+     * Releases the slot of a request with the given priority.
+     */
+    void _release(RequestPriority priority) {
+        synchronized (_lock) {
+            _runningCounts[priority.ordinal()]--;
+            _lock.notifyAll();
+        }
+    }
+
+    /**
+     * Can a request of the given priority be admitted? Must hold the lock.
+     */
+    private boolean _canRun(int index) {
+        int running = 0;
+        for (int count : _runningCounts) {
+            running += count;
+        }
+
+        if (running >= _maxConcurrentRequests) {
+            return false;
+        } else if (_runningCounts[index] < _reservedShares[index]) {
+            return true;
+        } else if (_hasHigherWaiters(index)) {
+            return false;
+        }
+
+        // keep the unused reserved slots of other waiting priorities available
+        int reserved = 0;
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            if (i != index && !_queues[i].isEmpty()) {
+                reserved += Math.max(0, _reservedShares[i] - _runningCounts[i]);
+            }
+        }
+
+        return _maxConcurrentRequests - running - 1 >= reserved;
+    }
+
+    /**
+     * Are requests with a higher priority waiting? Must hold the lock.
+     */
+    private boolean _hasHigherWaiters(int index) {
+        for (int i = 0; i < index; i++) {
+            if (!_queues[i].isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("maxConcurrentRequests=").append(getMaxConcurrentRequests()).append(", preemptions=").append(getPreemptionCount());
+        for (RequestPriority priority : PRIORITIES) {
+            builder.append(", ").append(priority.name().toLowerCase(Locale.US)).append("={running=").append(getRunningCount(priority)).append(" waiting=").append(getWaitingCount(priority)).append(" wait: ").append(getQueueWaitHistogram(priority)).append("}");
+        }
+
+        return builder.toString();
+    }
+}
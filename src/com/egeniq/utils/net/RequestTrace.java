@@ -0,0 +1,181 @@
+package com.egeniq.utils.net;
+
+import java.net.URI;
+
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+
+/**
+ * Timing information for a single request.
+ * 
+ * While a request is being executed its trace is bound to the executing thread, so the
+ * connection pool can report connection related phases.
+ */
+public class RequestTrace {
+    private final static ThreadLocal<RequestTrace> _current = new ThreadLocal<RequestTrace>();
+
+    private final RequestListener _listener;
+    private final String _method;
+    private final String _route;
+    private final String _path;
+    private final long _startTime;
+
+    private int _statusCode = -1;
+    private long _bytesReceived = 0;
+    private long _connectTime = 0;
+    private long _leaseWaitTime = 0;
+    private long _firstByteTime = -1;
+    private long _bodyReadTime = -1;
+    private long _parseTime = -1;
+    private long _totalTime = -1;
+
+    /**
+     * Constructor.
+     * 
+     * @param request  HTTP request.
+     * @param listener Listener.
+     */
+    RequestTrace(HttpRequestBase request, RequestListener listener) {
+        URI uri = request.getURI();
+        _listener = listener;
+        _method = request.getMethod();
+        _route = uri.getScheme() + "://" + uri.getHost() + (uri.getPort() != -1 ? ":" + uri.getPort() : "");
+        _path = uri.getRawPath();
+        _startTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the trace bound to the current thread, if any.
+     */
+    public static RequestTrace current() {
+        return _current.get();
+    }
+
+    /**
+     * Request method.
+     */
+    public String getMethod() {
+        return _method;
+    }
+
+    /**
+     * Route (scheme, host and port).
+     */
+    public String getRoute() {
+        return _route;
+    }
+
+    /**
+     * Request path (without query string).
+     */
+    public String getPath() {
+        return _path;
+    }
+
+    /**
+     * Response status code, -1 if no response has been received (yet).
+     */
+    public int getStatusCode() {
+        return _statusCode;
+    }
+
+    /**
+     * Number of (possibly compressed) response body bytes received.
+     */
+    public long getBytesReceived() {
+        return _bytesReceived;
+    }
+
+    /**
+     * Total time spent opening connections.
+     */
+    public long getConnectTime() {
+        return _connectTime;
+    }
+
+    /**
+     * Total time spent waiting for a pooled connection.
+     */
+    public long getLeaseWaitTime() {
+        return _leaseWaitTime;
+    }
+
+    /**
+     * Time to first byte of the last attempt, -1 if unknown.
+     */
+    public long getFirstByteTime() {
+        return _firstByteTime;
+    }
+
+    /**
+     * Time spent reading the response body, -1 if unknown.
+     */
+    public long getBodyReadTime() {
+        return _bodyReadTime;
+    }
+
+    /**
+     * Time spent parsing the response body, -1 if unknown.
+     */
+    public long getParseTime() {
+        return _parseTime;
+    }
+
+    /**
+     * Total time, -1 if the request hasn't completed yet.
+     */
+    public long getTotalTime() {
+        return _totalTime;
+    }
+
+    void _bind() {
+        _current.set(this);
+    }
+
+    void _recordConnect(long duration) {
+        _connectTime += duration;
+        _listener.onConnect(this, duration);
+    }
+
+    void _recordLeaseWait(long duration) {
+        _leaseWaitTime += duration;
+        _listener.onLeaseWait(this, duration);
+    }
+
+    void _recordFirstByte(int statusCode, long duration) {
+        _statusCode = statusCode;
+        _firstByteTime = duration;
+        _listener.onFirstByte(this, duration);
+    }
+
+    void _recordBodyRead(long bytes, long duration) {
+        _bytesReceived = bytes;
+        _bodyReadTime = duration;
+        _listener.onBodyRead(this, duration);
+    }
+
+    void _recordParse(long duration) {
+        _parseTime = duration;
+        _listener.onParse(this, duration);
+    }
+
+    void _complete() {
+        if (_current.get() == this) {
+            _current.remove();
+        }
+
+        _totalTime = _elapsed(_startTime);
+        _listener.onComplete(this, _totalTime);
+    }
+
+    /**
+     * Returns the number of milliseconds elapsed since the given System.nanoTime() value.
+     */
+    static long _elapsed(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return _method + " " + _route + _path + " status=" + _statusCode + " bytes=" + _bytesReceived + " connect=" + _connectTime + " leaseWait=" + _leaseWaitTime + " firstByte=" + _firstByteTime + " bodyRead=" + _bodyReadTime + " parse=" + _parseTime + " total=" + _totalTime;
+    }
+}
@@ -0,0 +1,37 @@
+package com.egeniq.utils.net;
+
+/**
+ * Response cache.
+ * 
+ * Implementations must be thread-safe.
+ */
+public interface ResponseCache {
+    /**
+     * Returns the cached response for the given key.
+     * 
+     * @param key Cache key.
+     * 
+     * @return Cached response or null.
+     */
+    public CachedResponse get(String key);
+
+    /**
+     * Stores the given response.
+     * 
+     * @param key      Cache key.
+     * @param response Response.
+     */
+    public void put(String key, CachedResponse response);
+
+    /**
+     * Removes the response for the given key.
+     * 
+     * @param key Cache key.
+     */
+    public void remove(String key);
+
+    /**
+     * Removes all responses.
+     */
+    public void clear();
+}
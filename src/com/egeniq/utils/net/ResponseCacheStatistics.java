@@ -0,0 +1,83 @@
+package com.egeniq.utils.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Response cache counters.
+ */
+public class ResponseCacheStatistics {
+    private final AtomicLong _hitCount = new AtomicLong();
+    private final AtomicLong _missCount = new AtomicLong();
+    private final AtomicLong _revalidationCount = new AtomicLong();
+    private final AtomicLong _notModifiedCount = new AtomicLong();
+    private final AtomicLong _savedCharacters = new AtomicLong();
+
+    /**
+     * Number of requests served from the cache without contacting the server.
+     */
+    public long getHitCount() {
+        return _hitCount.get();
+    }
+
+    /**
+     * Number of requests for which no cached response was available.
+     */
+    public long getMissCount() {
+        return _missCount.get();
+    }
+
+    /**
+     * Number of conditional requests sent to revalidate a cached response.
+     */
+    public long getRevalidationCount() {
+        return _revalidationCount.get();
+    }
+
+    /**
+     * Number of revalidations for which the server responded with 304 (not modified).
+     */
+    public long getNotModifiedCount() {
+        return _notModifiedCount.get();
+    }
+
+    /**
+     * Total size of the response bodies (in characters) that didn't need to be transferred.
+     */
+    public long getSavedCharacters() {
+        return _savedCharacters.get();
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        _hitCount.set(0);
+        _missCount.set(0);
+        _revalidationCount.set(0);
+        _notModifiedCount.set(0);
+        _savedCharacters.set(0);
+    }
+
+    void _recordHit(CachedResponse response) {
+        _hitCount.incrementAndGet();
+        _savedCharacters.addAndGet(response.getBody().length());
+    }
+
+    void _recordMiss() {
+        _missCount.incrementAndGet();
+    }
+
+    void _recordRevalidation() {
+        _revalidationCount.incrementAndGet();
+    }
+
+    void _recordNotModified(CachedResponse response) {
+        _notModifiedCount.incrementAndGet();
+        _savedCharacters.addAndGet(response.getBody().length());
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHitCount() + ", misses=" + getMissCount() + ", revalidations=" + getRevalidationCount() + ", notModified=" + getNotModifiedCount() + ", savedCharacters=" + getSavedCharacters();
+    }
+}
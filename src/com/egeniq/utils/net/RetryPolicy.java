@@ -0,0 +1,28 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+
+/**
+ * Decides whether (and when) a failed request should be retried.
+ * 
+ * Implementations must be thread-safe.
+ */
+public interface RetryPolicy {
+    /**
+     * Returns the delay before the request should be retried.
+     * 
+     * Exactly one of response and exception is set.
+     * 
+     * @param request   HTTP request.
+     * @param attempt   Number of attempts made so far (starting at 1).
+     * @param response  Response of the last attempt, if any.
+     * @param exception Exception thrown by the last attempt, if any.
+     * @param elapsed   Time (in milliseconds) elapsed since the first attempt.
+     * 
+     * @return Delay in milliseconds, or -1 if the request should not be retried.
+     */
+    public long getRetryDelay(HttpRequestBase request, int attempt, HttpResponse response, IOException exception, long elapsed);
+}
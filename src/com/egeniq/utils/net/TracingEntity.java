@@ -0,0 +1,86 @@
+package com.egeniq.utils.net;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ch.boye.httpclientandroidlib.HttpEntity;
+import ch.boye.httpclientandroidlib.entity.HttpEntityWrapper;
+
+/**
+ * Entity wrapper that reports the number of bytes read and the time spent reading
+ * them to a request trace.
+ */
+class TracingEntity extends HttpEntityWrapper {
+    private final RequestTrace _trace;
+
+    /**
+     * Constructor.
+     */
+    TracingEntity(HttpEntity entity, RequestTrace trace) {
+        super(entity);
+        _trace = trace;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new TracingInputStream(wrappedEntity.getContent());
+    }
+
+    /**
+     * Counting input stream, reports when the end of the stream is reached or the stream is closed.
+     */
+    private class TracingInputStream extends FilterInputStream {
+        private final long _startTime = System.nanoTime();
+        private long _count = 0;
+        private boolean _reported = false;
+
+        TracingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result == -1) {
+                _report();
+            } else {
+                _count++;
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            if (result == -1) {
+                _report();
+            } else {
+                _count += result;
+            }
+
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            _count += result;
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            _report();
+            super.close();
+        }
+
+        private void _report() {
+            if (!_reported) {
+                _reported = true;
+                _trace._recordBodyRead(_count, RequestTrace._elapsed(_startTime));
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+
+/**
+ * Transport that sends a single HTTP request.
+ * 
+ * AbstractHTTPClient delegates the actual network I/O to its transport. Retries, 
+ * caching, compression and tracing are handled by the client, so a transport only has 
+ * to send the request and return the response as-is (i.e. without decompressing it). 
+ * Connect and read timeouts are passed in the request parameters, see
+ * HttpConnectionParams.
+ * 
+ * @see AbstractHTTPClient#setTransport(Transport)
+ */
+public interface Transport {
+    /**
+     * Sends the given request.
+     * 
+     * The response entity must be streamed and release its connection when the content
+     * has been consumed or closed. Aborting the request must abort the connection.
+     * 
+     * @param request Request.
+     * 
+     * @return Response.
+     * 
+     * @throws IOException
+     */
+    public HttpResponse execute(HttpRequestBase request) throws IOException;
+
+    /**
+     * Closes the idle connections that might be used for the given request, e.g. after 
+     * a connection failure that might be caused by a stale connection.
+     * 
+     * @param request Request.
+     */
+    public void closeIdleConnections(HttpRequestBase request);
+}
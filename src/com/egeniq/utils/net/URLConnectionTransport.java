@@ -0,0 +1,151 @@
+package com.egeniq.utils.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+
+import ch.boye.httpclientandroidlib.Header;
+import ch.boye.httpclientandroidlib.HttpEntity;
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.HttpVersion;
+import ch.boye.httpclientandroidlib.client.methods.HttpEntityEnclosingRequestBase;
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+import ch.boye.httpclientandroidlib.conn.ConnectionReleaseTrigger;
+import ch.boye.httpclientandroidlib.entity.BasicHttpEntity;
+import ch.boye.httpclientandroidlib.message.BasicHttpResponse;
+import ch.boye.httpclientandroidlib.params.HttpConnectionParams;
+import ch.boye.httpclientandroidlib.params.HttpParams;
+
+/**
+ * Transport that uses HttpURLConnection and its built-in connection pool.
+ *
+ * The connection pool settings of the client don't apply to this transport, and
+ * connect and lease times aren't reported to the request listener. Because the client
+ * sets its own Accept-Encoding header, compressed responses are decompressed by the
+ * client instead of by HttpURLConnection.
+ */
+public class URLConnectionTransport implements Transport {
+    @Override
+    public HttpResponse execute(HttpRequestBase request) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection)request.getURI().toURL().openConnection();
+
+        request.setReleaseTrigger(new ConnectionReleaseTrigger() {
+            @Override
+            public void releaseConnection() {
+            }
+
+            @Override
+            public void abortConnection() {
+                connection.disconnect();
+            }
+        });
+
+        HttpParams params = request.getParams();
+        connection.setConnectTimeout(HttpConnectionParams.getConnectionTimeout(params));
+        connection.setReadTimeout(HttpConnectionParams.getSoTimeout(params));
+        connection.setRequestMethod(request.getMethod());
+        connection.setUseCaches(false);
+
+        for (Header header : request.getAllHeaders()) {
+            connection.addRequestProperty(header.getName(), header.getValue());
+        }
+
+        HttpEntity requestEntity = request instanceof HttpEntityEnclosingRequestBase ? ((HttpEntityEnclosingRequestBase)request).getEntity() : null;
+        if (requestEntity != null) {
+            _writeEntity(connection, requestEntity);
+        }
+
+        int statusCode = connection.getResponseCode();
+        if (statusCode == -1) {
+            connection.disconnect();
+            throw new IOException("Invalid HTTP response");
+        }
+
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, connection.getResponseMessage());
+        for (Map.Entry<String, List<String>> field : connection.getHeaderFields().entrySet()) {
+            if (field.getKey() == null) {
+                continue; // status line
+            }
+
+            for (String value : field.getValue()) {
+                response.addHeader(field.getKey(), value);
+            }
+        }
+
+        InputStream content = statusCode >= 400 ? connection.getErrorStream() : _getInputStream(connection, statusCode);
+        if (content != null) {
+            BasicHttpEntity entity = new BasicHttpEntity();
+            entity.setContent(content);
+            entity.setContentLength(_getContentLength(connection));
+            entity.setContentType(response.getFirstHeader("Content-Type"));
+            entity.setContentEncoding(response.getFirstHeader("Content-Encoding"));
+            response.setEntity(entity);
+        }
+
+        return response;
+    }
+
+    @Override
+    public void closeIdleConnections(HttpRequestBase request) {
+        // HttpURLConnection doesn't support closing idle connections
+    }
+
+    /**
+     * Writes the request entity.
+     */
+    private void _writeEntity(HttpURLConnection connection, HttpEntity entity) throws IOException {
+        connection.setDoOutput(true);
+
+        if (entity.getContentType() != null && connection.getRequestProperty("Content-Type") == null) {
+            connection.setRequestProperty("Content-Type", entity.getContentType().getValue());
+        }
+
+        if (entity.getContentEncoding() != null && connection.getRequestProperty("Content-Encoding") == null) {
+            connection.setRequestProperty("Content-Encoding", entity.getContentEncoding().getValue());
+        }
+
+        long contentLength = entity.getContentLength();
+        if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+            connection.setFixedLengthStreamingMode((int)contentLength);
+        } else {
+            connection.setChunkedStreamingMode(0);
+        }
+
+        OutputStream out = connection.getOutputStream();
+        try {
+            entity.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the response stream, or null if the response has no body.
+     */
+    private InputStream _getInputStream(HttpURLConnection connection, int statusCode) throws IOException {
+        if (statusCode == HttpURLConnection.HTTP_NO_CONTENT || statusCode == HttpURLConnection.HTTP_NOT_MODIFIED || "HEAD".equals(connection.getRequestMethod())) {
+            return null;
+        }
+
+        return connection.getInputStream();
+    }
+
+    /**
+     * Returns the content length, or -1 if unknown.
+     */
+    private long _getContentLength(HttpURLConnection connection) {
+        String value = connection.getHeaderField("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.egeniq.utils.net;
+
+/**
+ * Warm-up and first request latency of a client.
+ * 
+ * Compare the first request time of a client that has been warmed up with that of a
+ * client that hasn't, to see the effect of warming up.
+ * 
+ * @see AbstractHTTPClient#warmUp()
+ */
+public class WarmUpStatistics {
+    private volatile long _warmUpStartTime = -1;
+    private volatile long _warmUpTime = -1;
+    private volatile long _firstRequestTime = -1;
+    private volatile boolean _firstRequestWarm = false;
+
+    /**
+     * Time (in milliseconds) it took to resolve and connect to the base URLs, or -1 if
+     * the client hasn't been warmed up (yet).
+     */
+    public long getWarmUpTime() {
+        return _warmUpTime;
+    }
+
+    /**
+     * Time (in milliseconds) until the response headers of the first request of the 
+     * client were received, or -1 if no request has completed yet.
+     */
+    public long getFirstRequestTime() {
+        return _firstRequestTime;
+    }
+
+    /**
+     * Had the warm-up completed when the first request was started?
+     */
+    public boolean isFirstRequestWarm() {
+        return _firstRequestWarm;
+    }
+
+    /**
+     * Is the warm-up complete?
+     */
+    public boolean isWarm() {
+        return _warmUpTime >= 0;
+    }
+
+    /**
+     * Records the start of the warm-up.
+     */
+    synchronized boolean _recordWarmUpStart() {
+        if (_warmUpStartTime >= 0) {
+            return false;
+        }
+
+        _warmUpStartTime = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Records the end of the warm-up.
+     */
+    void _recordWarmUpEnd() {
+        _warmUpTime = RequestTrace._elapsed(_warmUpStartTime);
+    }
+
+    /**
+     * Records the first request.
+     */
+    synchronized void _recordRequest(long time, boolean warm) {
+        if (_firstRequestTime < 0) {
+            _firstRequestTime = time;
+            _firstRequestWarm = warm;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "warmUpTime=" + _warmUpTime + "ms, firstRequestTime=" + _firstRequestTime + "ms, firstRequestWarm=" + _firstRequestWarm;
+    }
+}
@@ -2,12 +2,9 @@ package io.msgs.v1;
 
 import io.msgs.v1.Subscription.Time;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Locale;
-import java.util.TimeZone;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -25,6 +22,7 @@ import com.egeniq.BuildConfig;
 import com.egeniq.utils.api.APIClient;
 import com.egeniq.utils.api.APIException;
 import com.egeniq.utils.api.APIUtils;
+import com.egeniq.utils.api.ISODateFormat;
 
 /**
  * Notification client.
@@ -45,12 +43,6 @@ public class Client {
     private final static int TOKEN_TIMEOUT = 3;// * 24 * 60 * 60; // 3 days
     private final static String DEVICE_FAMILY = "gcm";
 
-    private final static SimpleDateFormat DATE_FORMAT;
-    static {
-        DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
-        DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
-    }
-
     private final Context _context;
     private final String _serviceBaseURL;
     private final String _appId;
@@ -249,9 +241,9 @@ public class Client {
                 subscription.setChannelId(APIUtils.getString(rawSubscription, "channelId", ""));
 
                 String rawStartDate = APIUtils.getString(rawSubscription, "dateStart", null);
-                Date startDate = rawStartDate == null ? null : DATE_FORMAT.parse(rawStartDate);
+                Date startDate = rawStartDate == null ? null : ISODateFormat.parseDate(rawStartDate);
                 String rawEndDate = APIUtils.getString(rawSubscription, "dateEnd", null);
-                Date endDate = rawEndDate == null ? null : DATE_FORMAT.parse(rawEndDate);
+                Date endDate = rawEndDate == null ? null : ISODateFormat.parseDate(rawEndDate);
                 subscription.setDatePeriod(startDate, endDate);
 
                 String rawStartTime = APIUtils.getString(rawSubscription, "timeStart", null);
@@ -334,11 +326,11 @@ public class Client {
             params.add(new BasicNameValuePair("channelId", subscription.getChannelId()));
 
             if (subscription.getStartDate() != null) {
-                params.add(new BasicNameValuePair("dateStart", DATE_FORMAT.format(subscription.getStartDate())));
+                params.add(new BasicNameValuePair("dateStart", ISODateFormat.formatDate(subscription.getStartDate())));
             }
 
             if (subscription.getEndDate() != null) {
-                params.add(new BasicNameValuePair("dateEnd", DATE_FORMAT.format(subscription.getEndDate())));
+                params.add(new BasicNameValuePair("dateEnd", ISODateFormat.formatDate(subscription.getEndDate())));
             }
 
             if (subscription.getStartTime() != null) {
@@ -0,0 +1,57 @@
+package io.msgs.v2;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.egeniq.utils.api.APIException;
+
+/**
+ * Result of a bulk operation on a set of channels.
+ * 
+ * Contains the result for each channel for which the operation succeeded and the
+ * exception for each channel for which the operation failed.
+ * 
+ * @param <T> Result type.
+ */
+public class BulkResult<T> {
+    private final Map<String, T> _results = new LinkedHashMap<String, T>();
+    private final Map<String, APIException> _failures = new LinkedHashMap<String, APIException>();
+
+    /**
+     * Returns the results of the succeeded items, keyed by channel code.
+     * 
+     * Values might be null for operations that don't return a result (e.g. unsubscribe).
+     */
+    public synchronized Map<String, T> getResults() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, T>(_results));
+    }
+
+    /**
+     * Returns the failures, keyed by channel code.
+     */
+    public synchronized Map<String, APIException> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, APIException>(_failures));
+    }
+
+    /**
+     * Did all items succeed?
+     */
+    public synchronized boolean isSuccessful() {
+        return _failures.isEmpty();
+    }
+
+    /**
+     * Records the result of a succeeded item.
+     */
+    synchronized void _addResult(String channelCode, T result) {
+        _results.put(channelCode, result);
+    }
+
+    /**
+     * Records the failure of an item.
+     */
+    synchronized void _addFailure(String channelCode, APIException exception) {
+        _failures.put(channelCode, exception);
+    }
+}
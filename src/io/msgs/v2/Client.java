@@ -4,9 +4,12 @@ import io.msgs.v2.entity.Endpoint;
 import io.msgs.v2.entity.User;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -20,6 +23,19 @@ import ch.boye.httpclientandroidlib.message.BasicHeader;
 import ch.boye.httpclientandroidlib.message.BasicNameValuePair;
 
 import com.egeniq.utils.api.APIException;
+import com.egeniq.utils.net.AdmissionController;
+import com.egeniq.utils.net.AdmissionPolicy;
+import com.egeniq.utils.net.CircuitBreaker;
+import com.egeniq.utils.net.CircuitBreakerPolicy;
+import com.egeniq.utils.net.ConnectivityMonitor;
+import com.egeniq.utils.net.HedgingPolicy;
+import com.egeniq.utils.net.HedgingStatistics;
+import com.egeniq.utils.net.NetworkClass;
+import com.egeniq.utils.net.NetworkPolicy;
+import com.egeniq.utils.net.RequestListener;
+import com.egeniq.utils.net.RequestScheduler;
+import com.egeniq.utils.net.Transport;
+import com.egeniq.utils.net.WarmUpStatistics;
 
 /**
  * Msgs client.
@@ -41,6 +57,7 @@ public class Client {
             super(baseURL);
             _setLoggingEnabled(DEBUG);
             _setLoggingTag(getClass().getName());
+            setStreamingEnabled(true);
         }
     }
 
@@ -69,6 +86,186 @@ public class Client {
         return _apiClient;
     }
 
+    /**
+     * Sets the minimum size (in bytes) of a request body for it to be sent gzip compressed.
+     * 
+     * Disabled by default (-1).
+     * 
+     * @param threshold Threshold in bytes.
+     */
+    public void setRequestCompressionThreshold(int threshold) {
+        _getAPIClient().setRequestCompressionThreshold(threshold);
+    }
+
+    /**
+     * Sets the transport used for sending the requests, e.g. to run the client against
+     * an in-process stand-in for the msgs.io backend.
+     * 
+     * @param transport Transport.
+     */
+    public void setTransport(Transport transport) {
+        _getAPIClient().setTransport(transport);
+    }
+
+    /**
+     * Sets the request listener, which receives the timing of the phases of each
+     * request (connect, first byte, body read, parse and total).
+     * 
+     * @param listener Listener, null to disable.
+     */
+    public void setRequestListener(RequestListener listener) {
+        _getAPIClient().setRequestListener(listener);
+    }
+
+    /**
+     * Enable / disable coalescing of identical concurrent GET requests.
+     * 
+     * Disabled by default. When enabled, identical fetches that are issued while the 
+     * same fetch is still in-flight share its network call and result.
+     * 
+     * @param coalescingEnabled Coalescing enabled.
+     */
+    public void setCoalescingEnabled(boolean coalescingEnabled) {
+        _getAPIClient().setCoalescingEnabled(coalescingEnabled);
+    }
+
+    /**
+     * Sets the connectivity monitor.
+     * 
+     * When set, requests fail immediately with an APIException caused by an 
+     * OfflineException while there is no internet connection, instead of waiting for
+     * the connection to time out.
+     * 
+     * @param monitor Connectivity monitor.
+     */
+    public void setConnectivityMonitor(ConnectivityMonitor monitor) {
+        _getAPIClient().setConnectivityMonitor(monitor);
+    }
+
+    /**
+     * Sets the request policy for the given network class.
+     * 
+     * Only has effect when a connectivity monitor is set.
+     * 
+     * @param networkClass Network class.
+     * @param policy       Policy, null to remove.
+     */
+    public void setNetworkPolicy(NetworkClass networkClass, NetworkPolicy policy) {
+        _getAPIClient().setNetworkPolicy(networkClass, policy);
+    }
+
+    /**
+     * Executes the given background or bulk task (e.g. paging through all subscriptions)
+     * as soon as an unmetered network is available.
+     * 
+     * @param task Task.
+     */
+    public void executeWhenUnmetered(Runnable task) {
+        _getAPIClient().executeWhenUnmetered(task);
+    }
+
+    /**
+     * Resolves the msgs.io host and opens a connection to it in the background, so the
+     * first request doesn't have to wait for DNS, TCP and TLS.
+     * 
+     * @return Future, completes when the warm-up is done.
+     */
+    public Future<?> warmUp() {
+        return _getAPIClient().warmUp();
+    }
+
+    /**
+     * Returns the warm-up and first request statistics.
+     */
+    public WarmUpStatistics getWarmUpStatistics() {
+        return _getAPIClient().getWarmUpStatistics();
+    }
+
+    /**
+     * Sets the admission policy (rate limit and concurrency bulkhead) for the requests
+     * to the msgs.io host, so a degraded backend isn't hit at full rate.
+     * 
+     * @param policy Policy, null to disable admission control.
+     */
+    public void setAdmissionPolicy(AdmissionPolicy policy) {
+        _getAPIClient().setAdmissionPolicy(policy);
+    }
+
+    /**
+     * Returns the admission counters for the msgs.io host, null if no admission 
+     * policy has been set.
+     */
+    public AdmissionController getAdmissionController() {
+        return _getAPIClient().getAdmissionController(URI.create(_baseURL).getHost());
+    }
+
+    /**
+     * Sets the circuit breaker policy. When set, requests fail immediately with an 
+     * APIException with code APIException.CIRCUIT_OPEN while the msgs.io backend is 
+     * failing, instead of each waiting for a timeout.
+     * 
+     * @param policy Policy, null to disable.
+     */
+    public void setCircuitBreakerPolicy(CircuitBreakerPolicy policy) {
+        _getAPIClient().setCircuitBreakerPolicy(policy);
+    }
+
+    /**
+     * Add circuit breaker listener, notified when the state of a circuit changes.
+     */
+    public void addCircuitBreakerListener(CircuitBreaker.Listener listener) {
+        _getAPIClient().addCircuitBreakerListener(listener);
+    }
+
+    /**
+     * Remove circuit breaker listener.
+     */
+    public void removeCircuitBreakerListener(CircuitBreaker.Listener listener) {
+        _getAPIClient().removeCircuitBreakerListener(listener);
+    }
+
+    /**
+     * Sets the hedging policy. When set, fetches that take longer than usual are sent 
+     * a second time and the first response wins, which cuts the tail latency of fetches.
+     * 
+     * @param policy Policy, null to disable.
+     */
+    public void setHedgingPolicy(HedgingPolicy policy) {
+        _getAPIClient().setHedgingPolicy(policy);
+    }
+
+    /**
+     * Returns the hedging statistics, e.g. how often a hedged fetch won.
+     */
+    public HedgingStatistics getHedgingStatistics() {
+        return _getAPIClient().getHedgingStatistics();
+    }
+
+    /**
+     * Returns the request scheduler, null if disabled (default).
+     */
+    public RequestScheduler getRequestScheduler() {
+        return _getAPIClient().getRequestScheduler();
+    }
+
+    /**
+     * Sets the request scheduler, which limits the number of concurrent requests and 
+     * admits waiting requests in order of priority. Pass null to disable scheduling.
+     * 
+     * Bind a priority to the calling thread with RequestScheduler.setCurrentPriority, 
+     * e.g. INTERACTIVE for fetches the user is waiting for and BACKGROUND for syncing.
+     */
+    public void setRequestScheduler(RequestScheduler scheduler) {
+        _getAPIClient().setRequestScheduler(scheduler);
+    }
+
+    /**
+     * Returns the number of fetches that were served by an identical in-flight fetch.
+     */
+    public long getCoalescedRequestCount() {
+        return _getAPIClient().getCoalescedRequestCount();
+    }
+
     /**
      * Register endpoint.
      * 
@@ -139,6 +336,20 @@ public class Client {
         return new EndpointRequestHelper(this, token);
     }
 
+    /**
+     * Returns the executor used for background requests.
+     */
+    protected Executor _getExecutor() {
+        return _getAPIClient().getExecutor();
+    }
+
+    /**
+     * Returns the prefetch depth for paging, limited by the current network policy.
+     */
+    protected int _getPrefetchDepth(int prefetchDepth) {
+        return _getAPIClient().getPrefetchDepth(prefetchDepth);
+    }
+
     /**
      * Get Api Header
      */
@@ -179,7 +390,7 @@ public class Client {
      * Perform a GET request with the ApiKey header.
      */
     protected JSONObject _get(String path, List<NameValuePair> params) throws APIException {
-        return _getAPIClient().get(path + (!params.isEmpty() ? "?" + URLEncodedUtils.format(params, "utf-8") : ""), true, new Header[] { _getApiHeader() });
+        return _getAPIClient().get(path + (params != null && !params.isEmpty() ? "?" + URLEncodedUtils.format(params, "utf-8") : ""), true, new Header[] { _getApiHeader() });
     }
 
     /**
@@ -0,0 +1,685 @@
+package io.msgs.v2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.json.JSONObject;
+
+import ch.boye.httpclientandroidlib.NameValuePair;
+import ch.boye.httpclientandroidlib.message.BasicNameValuePair;
+
+import com.egeniq.utils.api.APIException;
+import com.egeniq.utils.net.ConnectivityMonitor;
+import com.egeniq.utils.net.RequestPriority;
+import com.egeniq.utils.net.RequestScheduler;
+
+/**
+ * Persistent outbox for msgs.io mutations.
+ *
+ * Mutations are appended to a journal file and replayed in order by flush(), e.g. when
+ * connectivity returns. Redundant mutations are collapsed when they are queued:
+ * <ul>
+ * <li>a subscribe followed by an unsubscribe for the same channel cancel each other
+ * out</li>
+ * <li>an unsubscribe followed by a subscribe for the same channel is replaced by the
+ * subscribe</li>
+ * <li>repeated subscribes or unsubscribes for the same channel are only sent once</li>
+ * <li>consecutive updates of the same endpoint are merged, later values win</li>
+ * </ul>
+ *
+ * Mutations that are rejected by the server with a client error (4xx) are dropped,
+ * other failures stop the flush and leave the remaining mutations queued.
+ *
+ * Except for flushOnReconnect() the outbox doesn't depend on Android, so it can be used
+ * on a plain JVM.
+ */
+public class Outbox {
+    private final static int VERSION = 1;
+    private final static int RECORD_ADD = 1;
+    private final static int RECORD_REMOVE = 2;
+    private final static int DEFAULT_BATCH_SIZE = 10;
+
+    /**
+     * Mutation type.
+     */
+    public enum Type {
+        SUBSCRIBE,
+        UNSUBSCRIBE,
+        REGISTER_ENDPOINT,
+        UPDATE_ENDPOINT
+    }
+
+    /**
+     * Queued mutation.
+     */
+    public static class Mutation {
+        private final long _id;
+        private final Type _type;
+        private final String _basePath;
+        private final String _channelCode;
+        private final List<NameValuePair> _params;
+
+        private Mutation(long id, Type type, String basePath, String channelCode, List<NameValuePair> params) {
+            _id = id;
+            _type = type;
+            _basePath = basePath;
+            _channelCode = channelCode;
+            _params = params;
+        }
+
+        /**
+         * Returns the mutation type.
+         */
+        public Type getType() {
+            return _type;
+        }
+
+        /**
+         * Returns the path of the user or endpoint the mutation applies to (empty for
+         * endpoints that are registered without user).
+         */
+        public String getBasePath() {
+            return _basePath;
+        }
+
+        /**
+         * Returns the channel code for (un)subscribe mutations.
+         */
+        public String getChannelCode() {
+            return _channelCode;
+        }
+
+        /**
+         * Returns the parameters for register and update mutations.
+         */
+        public List<NameValuePair> getParams() {
+            return Collections.unmodifiableList(_params);
+        }
+
+        /**
+         * Do both mutations apply to the same subscription?
+         */
+        private boolean _isSameSubscription(Mutation other) {
+            return _channelCode != null && _basePath.equals(other._basePath) && _channelCode.equals(other._channelCode);
+        }
+
+        @Override
+        public String toString() {
+            return _type + " " + _basePath + (_channelCode != null ? " " + _channelCode : "");
+        }
+    }
+
+    /**
+     * Outbox listener.
+     *
+     * Called on the thread that flushes the outbox.
+     */
+    public interface Listener {
+        /**
+         * Mutation has been sent.
+         *
+         * @param mutation Mutation.
+         * @param result   Response of the server, if any.
+         */
+        public void onSent(Mutation mutation, JSONObject result);
+
+        /**
+         * Mutation has been rejected by the server and is dropped.
+         *
+         * @param mutation  Mutation.
+         * @param exception Exception.
+         */
+        public void onDropped(Mutation mutation, APIException exception);
+    }
+
+    private final Client _client;
+    private final File _file;
+    private final Object _flushLock = new Object();
+
+    private final LinkedList<Mutation> _mutations = new LinkedList<Mutation>();
+    private final List<Mutation> _inFlight = new ArrayList<Mutation>();
+    private long _nextId = 1;
+    private JournalOutputStream _journal;
+
+    private int _batchSize = DEFAULT_BATCH_SIZE;
+    private Listener _listener;
+
+    /**
+     * Constructor.
+     *
+     * Loads the mutations that are still queued from the given journal file.
+     *
+     * @param client Client.
+     * @param file   Journal file, created if it doesn't exist.
+     *
+     * @throws IOException if the journal can't be read or written.
+     */
+    public Outbox(Client client, File file) throws IOException {
+        _client = client;
+        _file = file;
+        _load();
+    }
+
+    /**
+     * Returns the maximum number of mutations that is sent before the journal is updated.
+     */
+    public int getBatchSize() {
+        return _batchSize;
+    }
+
+    /**
+     * Sets the maximum number of mutations that is sent before the journal is updated.
+     */
+    public Outbox setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+
+        _batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Returns the listener.
+     */
+    public Listener getListener() {
+        return _listener;
+    }
+
+    /**
+     * Sets the listener.
+     */
+    public Outbox setListener(Listener listener) {
+        _listener = listener;
+        return this;
+    }
+
+    /**
+     * Queue a subscribe.
+     *
+     * @param helper      User or endpoint helper.
+     * @param channelCode Channel code.
+     */
+    public void subscribe(RequestHelper helper, String channelCode) throws IOException {
+        _enqueue(Type.SUBSCRIBE, helper._getBasePath(), channelCode, new ArrayList<NameValuePair>());
+    }
+
+    /**
+     * Queue an unsubscribe.
+     *
+     * @param helper      User or endpoint helper.
+     * @param channelCode Channel code.
+     */
+    public void unsubscribe(RequestHelper helper, String channelCode) throws IOException {
+        _enqueue(Type.UNSUBSCRIBE, helper._getBasePath(), channelCode, new ArrayList<NameValuePair>());
+    }
+
+    /**
+     * Queue the registration of an endpoint.
+     *
+     * @param data Endpoint data.
+     */
+    public void registerEndpoint(JSONObject data) throws IOException {
+        _enqueue(Type.REGISTER_ENDPOINT, "", null, _client._getParams(data));
+    }
+
+    /**
+     * Queue the registration of an endpoint for a user.
+     *
+     * @param helper User helper.
+     * @param data   Endpoint data.
+     */
+    public void registerEndpoint(UserRequestHelper helper, JSONObject data) throws IOException {
+        _enqueue(Type.REGISTER_ENDPOINT, helper._getBasePath(), null, _client._getParams(data));
+    }
+
+    /**
+     * Queue an update of an endpoint.
+     *
+     * @param helper Endpoint helper.
+     * @param data   Endpoint data.
+     */
+    public void update(EndpointRequestHelper helper, JSONObject data) throws IOException {
+        _enqueue(Type.UPDATE_ENDPOINT, helper._getBasePath(), null, _client._getParams(data));
+    }
+
+    /**
+     * Returns the queued mutations, in order.
+     */
+    public synchronized List<Mutation> getMutations() {
+        List<Mutation> result = new ArrayList<Mutation>(_inFlight);
+        result.addAll(_mutations);
+        return result;
+    }
+
+    /**
+     * Returns the number of queued mutations.
+     */
+    public synchronized int size() {
+        return _inFlight.size() + _mutations.size();
+    }
+
+    /**
+     * Sends the queued mutations in order, in batches.
+     *
+     * Stops at the first mutation that fails with a non client error.
+     *
+     * @return Number of mutations that have been sent or dropped.
+     *
+     * @throws APIException if a mutation failed, the mutation stays queued.
+     * @throws IOException if the journal can't be written.
+     */
+    public int flush() throws APIException, IOException {
+        synchronized (_flushLock) {
+            int count = 0;
+            while (true) {
+                List<Mutation> batch = _takeBatch();
+                if (batch.isEmpty()) {
+                    _compact();
+                    return count;
+                }
+
+                int done = 0;
+                try {
+                    for (Mutation mutation : batch) {
+                        _send(mutation);
+                        done++;
+                    }
+                } finally {
+                    _completeBatch(batch, done);
+                    count += done;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the queued mutations in the background, see {@link #flush()}.
+     * 
+     * The requests have background priority.
+     */
+    public void flushAsync() {
+        _client._getExecutor().execute(RequestScheduler.withPriority(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (APIException e) {
+                    // remaining mutations stay queued until the next flush
+                } catch (IOException e) {
+                    // idem
+                }
+            }
+        }, RequestPriority.BACKGROUND));
+    }
+
+    /**
+     * Flushes the outbox in the background each time the given monitor reports that 
+     * the internet connection has been restored.
+     *
+     * @param monitor Connectivity monitor.
+     */
+    public void flushOnReconnect(ConnectivityMonitor monitor) {
+        monitor.addListener(new ConnectivityMonitor.Listener() {
+            @Override
+            public void onConnectivityChanged(ConnectivityMonitor monitor) {
+                if (monitor.isConnected() && size() > 0) {
+                    flushAsync();
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes the journal.
+     */
+    public synchronized void close() {
+        _close(_journal);
+        _journal = null;
+    }
+
+    /**
+     * Sends a single mutation, client errors are reported to the listener and swallowed.
+     */
+    private void _send(Mutation mutation) throws APIException {
+        String basePath = mutation._basePath.length() == 0 ? "" : mutation._basePath + "/";
+
+        JSONObject result = null;
+        try {
+            switch (mutation._type) {
+                case SUBSCRIBE:
+                    List<NameValuePair> params = new ArrayList<NameValuePair>();
+                    params.add(new BasicNameValuePair("channelCode", mutation._channelCode));
+                    result = _client._post(basePath + "subscriptions", params);
+                    break;
+                case UNSUBSCRIBE:
+                    result = _client._delete(basePath + "subscriptions/" + mutation._channelCode);
+                    break;
+                case REGISTER_ENDPOINT:
+                    result = _client._post(basePath + "endpoints", mutation._params);
+                    break;
+                case UPDATE_ENDPOINT:
+                    result = _client._post(mutation._basePath, mutation._params);
+                    break;
+            }
+        } catch (APIException e) {
+            int responseCode = e.getResponseCode();
+            if (responseCode < 400 || responseCode >= 500 || responseCode == 408 || responseCode == 429) {
+                throw e;
+            }
+
+            if (_listener != null) {
+                _listener.onDropped(mutation, e);
+            }
+
+            return;
+        }
+
+        if (_listener != null) {
+            _listener.onSent(mutation, result);
+        }
+    }
+
+    /**
+     * Queues a mutation, collapsing it with the queued mutations where possible.
+     */
+    private synchronized void _enqueue(Type type, String basePath, String channelCode, List<NameValuePair> params) throws IOException {
+        _checkOpen();
+
+        Mutation mutation = new Mutation(_nextId++, type, basePath, channelCode, params);
+
+        // mutations that are in-flight have (possibly) already been sent, so they are never collapsed
+        Iterator<Mutation> iterator = _mutations.descendingIterator();
+        while (iterator.hasNext()) {
+            Mutation queued = iterator.next();
+
+            if (mutation._isSameSubscription(queued)) {
+                if (queued._type == mutation._type) {
+                    return;
+                }
+
+                iterator.remove();
+                _writeRemove(queued);
+                if (queued._type == Type.UNSUBSCRIBE) {
+                    // the subscription may still exist, queue the subscribe instead of the unsubscribe
+                    break;
+                }
+
+                _journal.flush();
+                _journal.getFD().sync();
+                return;
+            } else if (type == Type.UPDATE_ENDPOINT && queued._type == Type.UPDATE_ENDPOINT && queued._basePath.equals(basePath)) {
+                mutation = new Mutation(mutation._id, type, basePath, null, _merge(queued._params, params));
+                iterator.remove();
+                _writeRemove(queued);
+                break;
+            } else if (queued._basePath.equals(basePath) && (queued._type == Type.REGISTER_ENDPOINT || type == Type.REGISTER_ENDPOINT)) {
+                // don't reorder mutations across a registration for the same path
+                break;
+            }
+        }
+
+        _mutations.addLast(mutation);
+        _writeAdd(mutation);
+    }
+
+    /**
+     * Merges the given parameters, later values win.
+     */
+    private List<NameValuePair> _merge(List<NameValuePair> first, List<NameValuePair> second) {
+        List<NameValuePair> result = new ArrayList<NameValuePair>();
+        for (NameValuePair param : first) {
+            boolean overridden = false;
+            for (NameValuePair other : second) {
+                if (other.getName().equals(param.getName())) {
+                    overridden = true;
+                    break;
+                }
+            }
+
+            if (!overridden) {
+                result.add(param);
+            }
+        }
+
+        result.addAll(second);
+        return result;
+    }
+
+    /**
+     * Takes the next batch of mutations and marks them in-flight.
+     */
+    private synchronized List<Mutation> _takeBatch() throws IOException {
+        _checkOpen();
+
+        while (!_mutations.isEmpty() && _inFlight.size() < _batchSize) {
+            _inFlight.add(_mutations.removeFirst());
+        }
+
+        return new ArrayList<Mutation>(_inFlight);
+    }
+
+    /**
+     * Removes the mutations that have been sent from the journal and returns the others
+     * to the head of the queue.
+     */
+    private synchronized void _completeBatch(List<Mutation> batch, int done) throws IOException {
+        for (int i = 0; i < done; i++) {
+            _writeRemove(batch.get(i));
+        }
+
+        for (int i = batch.size() - 1; i >= done; i--) {
+            _mutations.addFirst(batch.get(i));
+        }
+
+        _inFlight.clear();
+        _journal.flush();
+        _journal.getFD().sync();
+    }
+
+    /**
+     * Checks that the outbox hasn't been closed.
+     */
+    private void _checkOpen() throws IOException {
+        if (_journal == null) {
+            throw new IOException("Outbox is closed");
+        }
+    }
+
+    /**
+     * Loads the journal and rewrites it without the removed mutations.
+     */
+    private synchronized void _load() throws IOException {
+        if (_file.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file)));
+            try {
+                if (in.readInt() != VERSION) {
+                    throw new IOException("Unsupported outbox version");
+                }
+
+                while (true) {
+                    int record = in.readInt();
+                    long id = in.readLong();
+                    if (record == RECORD_ADD) {
+                        _mutations.addLast(_readMutation(in, id));
+                    } else if (record == RECORD_REMOVE) {
+                        _removeById(id);
+                    } else {
+                        throw new IOException("Corrupt outbox journal");
+                    }
+
+                    _nextId = Math.max(_nextId, id + 1);
+                }
+            } catch (EOFException e) {
+                // end of journal, a record that has been written partially is ignored
+            } finally {
+                _close(in);
+            }
+        }
+
+        _rewrite();
+    }
+
+    /**
+     * Rewrites the journal if it only contains removed mutations.
+     */
+    private synchronized void _compact() throws IOException {
+        if (_mutations.isEmpty() && _inFlight.isEmpty()) {
+            _rewrite();
+        }
+    }
+
+    /**
+     * Rewrites the journal with the queued mutations.
+     */
+    private void _rewrite() throws IOException {
+        _close(_journal);
+        _journal = null;
+
+        File directory = _file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.exists()) {
+            directory.mkdirs();
+        }
+
+        File tempFile = new File(_file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(tempFile);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        try {
+            out.writeInt(VERSION);
+            for (Mutation mutation : _mutations) {
+                _writeMutation(out, mutation);
+            }
+
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            _close(out);
+        }
+
+        if (!tempFile.renameTo(_file)) {
+            _file.delete();
+            if (!tempFile.renameTo(_file)) {
+                throw new IOException("Unable to write outbox journal " + _file);
+            }
+        }
+
+        _journal = new JournalOutputStream(new FileOutputStream(_file, true));
+    }
+
+    /**
+     * Appends an add record to the journal.
+     */
+    private void _writeAdd(Mutation mutation) throws IOException {
+        _writeMutation(_journal, mutation);
+        _journal.flush();
+        _journal.getFD().sync();
+    }
+
+    /**
+     * Appends a remove record to the journal.
+     *
+     * Not synced, the caller syncs after writing the related records.
+     */
+    private void _writeRemove(Mutation mutation) throws IOException {
+        _journal.writeInt(RECORD_REMOVE);
+        _journal.writeLong(mutation._id);
+    }
+
+    /**
+     * Writes an add record.
+     */
+    private void _writeMutation(DataOutputStream out, Mutation mutation) throws IOException {
+        out.writeInt(RECORD_ADD);
+        out.writeLong(mutation._id);
+        out.writeUTF(mutation._type.name());
+        out.writeUTF(mutation._basePath);
+        out.writeBoolean(mutation._channelCode != null);
+        if (mutation._channelCode != null) {
+            out.writeUTF(mutation._channelCode);
+        }
+
+        out.writeInt(mutation._params.size());
+        for (NameValuePair param : mutation._params) {
+            out.writeUTF(param.getName());
+            out.writeUTF(param.getValue() != null ? param.getValue() : "");
+        }
+    }
+
+    /**
+     * Reads the remainder of an add record.
+     */
+    private Mutation _readMutation(DataInputStream in, long id) throws IOException {
+        Type type;
+        try {
+            type = Type.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt outbox journal");
+        }
+
+        String basePath = in.readUTF();
+        String channelCode = in.readBoolean() ? in.readUTF() : null;
+
+        int count = in.readInt();
+        List<NameValuePair> params = new ArrayList<NameValuePair>(count);
+        for (int i = 0; i < count; i++) {
+            params.add(new BasicNameValuePair(in.readUTF(), in.readUTF()));
+        }
+
+        return new Mutation(id, type, basePath, channelCode, params);
+    }
+
+    /**
+     * Removes the mutation with the given id from the queue.
+     */
+    private void _removeById(long id) {
+        Iterator<Mutation> iterator = _mutations.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next()._id == id) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Close stream.
+     */
+    private void _close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Buffered journal stream that can be synced to disk.
+     */
+    private static class JournalOutputStream extends DataOutputStream {
+        private final FileOutputStream _stream;
+
+        public JournalOutputStream(FileOutputStream stream) {
+            super(new BufferedOutputStream(stream));
+            _stream = stream;
+        }
+
+        public FileDescriptor getFD() throws IOException {
+            return _stream.getFD();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package io.msgs.v2;
+
+import io.msgs.v2.entity.AbstractEntity;
+import io.msgs.v2.entity.ItemList;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.egeniq.utils.api.APIException;
+
+/**
+ * Cursor over all items of a paged list resource.
+ * 
+ * Pages are fetched on demand. While the items of the current page are consumed, up to
+ * the configured number of next pages is fetched in the background. Only the current 
+ * and the prefetched pages are kept in memory.
+ * 
+ * A cursor is not thread-safe. Call close() when you stop iterating before the end to
+ * cancel outstanding prefetches.
+ * 
+ * @param <T> Item type.
+ */
+public class PagingCursor<T extends AbstractEntity> {
+    /**
+     * Fetches a single page.
+     */
+    public interface PageFetcher<T extends AbstractEntity> {
+        /**
+         * Fetch the page with the given limit and offset.
+         */
+        public ItemList<T> fetch(int limit, int offset) throws APIException;
+    }
+
+    private final PageFetcher<T> _fetcher;
+    private final Executor _executor;
+    private final int _pageSize;
+    private final int _prefetchDepth;
+
+    private final LinkedList<FutureTask<ItemList<T>>> _pending = new LinkedList<FutureTask<ItemList<T>>>();
+    private ItemList<T> _page = null;
+    private int _index = 0;
+    private int _nextOffset = 0;
+    private Integer _total = null;
+    private boolean _done = false;
+
+    /**
+     * Constructor.
+     * 
+     * @param fetcher       Page fetcher.
+     * @param executor      Executor used for prefetching.
+     * @param pageSize      Number of items per page.
+     * @param prefetchDepth Maximum number of pages to fetch ahead (0 disables prefetching).
+     */
+    public PagingCursor(PageFetcher<T> fetcher, Executor executor, int pageSize, int prefetchDepth) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        _fetcher = fetcher;
+        _executor = executor;
+        _pageSize = pageSize;
+        _prefetchDepth = Math.max(0, prefetchDepth);
+    }
+
+    /**
+     * Returns the total number of items, as reported by the first page.
+     * 
+     * @return Total or null if unknown.
+     */
+    public Integer getTotal() throws APIException {
+        if (_page == null && !_done) {
+            _nextPage();
+        }
+
+        return _total;
+    }
+
+    /**
+     * Are there more items?
+     */
+    public boolean hasNext() throws APIException {
+        while (!_done && (_page == null || _index >= _page.size())) {
+            _nextPage();
+        }
+
+        return !_done;
+    }
+
+    /**
+     * Returns the next item.
+     * 
+     * @return Item, or null if there are no more items.
+     */
+    public T next() throws APIException {
+        if (!hasNext()) {
+            return null;
+        }
+
+        return _page.get(_index++);
+    }
+
+    /**
+     * Stops iterating and cancels outstanding prefetches.
+     */
+    public void close() {
+        _done = true;
+        _page = null;
+
+        for (FutureTask<ItemList<T>> future : _pending) {
+            future.cancel(true);
+        }
+
+        _pending.clear();
+    }
+
+    /**
+     * Moves to the next page.
+     */
+    private void _nextPage() throws APIException {
+        if (_pending.isEmpty()) {
+            if (_page != null && !_hasMorePages(_page)) {
+                close();
+                return;
+            }
+
+            _schedule();
+        }
+
+        ItemList<T> page = _await(_pending.removeFirst());
+        if (_total == null) {
+            _total = page.getTotal();
+        }
+
+        _page = page;
+        _index = 0;
+
+        if (page.size() == 0) {
+            close();
+            return;
+        }
+
+        while (_pending.size() < _prefetchDepth && _hasMorePages(page)) {
+            _schedule();
+        }
+    }
+
+    /**
+     * Are there more pages after the last scheduled page?
+     */
+    private boolean _hasMorePages(ItemList<T> page) {
+        if (_total != null) {
+            return _nextOffset < _total;
+        }
+
+        Integer count = page.getCount();
+        return (count != null ? count.intValue() : page.size()) >= _pageSize;
+    }
+
+    /**
+     * Schedules the fetch of the next page.
+     */
+    private void _schedule() {
+        final int offset = _nextOffset;
+        _nextOffset += _pageSize;
+
+        FutureTask<ItemList<T>> future = new FutureTask<ItemList<T>>(new Callable<ItemList<T>>() {
+            @Override
+            public ItemList<T> call() throws APIException {
+                return _fetcher.fetch(_pageSize, offset);
+            }
+        });
+
+        _pending.addLast(future);
+
+        if (_prefetchDepth > 0) {
+            _executor.execute(future);
+        }
+    }
+
+    /**
+     * Waits for the given page.
+     * 
+     * If the executor hasn't started fetching the page yet, it's fetched on the current
+     * thread instead of waiting in the executor queue.
+     */
+    private ItemList<T> _await(FutureTask<ItemList<T>> future) throws APIException {
+        future.run();
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            close();
+            Throwable cause = e.getCause();
+            throw cause instanceof APIException ? (APIException)cause : new APIException(cause);
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new APIException(e);
+        }
+    }
+}
@@ -4,7 +4,14 @@ import io.msgs.v2.entity.ItemList;
 import io.msgs.v2.entity.Subscription;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 
 import org.json.JSONObject;
 
@@ -15,6 +22,8 @@ import ch.boye.httpclientandroidlib.message.BasicNameValuePair;
 
 import com.egeniq.BuildConfig;
 import com.egeniq.utils.api.APIException;
+import com.egeniq.utils.net.Deadline;
+import com.egeniq.utils.net.RequestScheduler;
 
 /**
  * Base RequestHelper
@@ -23,8 +32,52 @@ public abstract class RequestHelper {
     private final static String TAG = RequestHelper.class.getSimpleName();
     private final static boolean DEBUG = BuildConfig.DEBUG;
 
+    private final static int SYNC_PAGE_SIZE = 100;
+
     private Client _client;
     private String _basePath;
+    private Deadline _deadline;
+
+    /**
+     * Single operation of a bulk operation.
+     */
+    private interface BulkOperation<T> {
+        public T execute(String channelCode) throws APIException;
+    }
+
+    /**
+     * Result of syncing the subscriptions to a desired set of channels.
+     */
+    public static class SyncResult {
+        private final BulkResult<Subscription> _subscribed;
+        private final BulkResult<Void> _unsubscribed;
+
+        private SyncResult(BulkResult<Subscription> subscribed, BulkResult<Void> unsubscribed) {
+            _subscribed = subscribed;
+            _unsubscribed = unsubscribed;
+        }
+
+        /**
+         * Returns the result of the channels that have been subscribed to.
+         */
+        public BulkResult<Subscription> getSubscribed() {
+            return _subscribed;
+        }
+
+        /**
+         * Returns the result of the channels that have been unsubscribed from.
+         */
+        public BulkResult<Void> getUnsubscribed() {
+            return _unsubscribed;
+        }
+
+        /**
+         * Did all subscribe and unsubscribe calls succeed?
+         */
+        public boolean isSuccessful() {
+            return _subscribed.isSuccessful() && _unsubscribed.isSuccessful();
+        }
+    }
 
     public enum Sort {
         // @formatter:off
@@ -69,8 +122,27 @@ public abstract class RequestHelper {
     public RequestHelper(RequestHelper parent, String basePath) {
         _client = parent._client;
         _basePath = parent._basePath + "/" + basePath;
+        _deadline = parent._deadline;
     }    
 
+    /**
+     * Returns the deadline for the requests of this helper, if any.
+     */
+    public Deadline getDeadline() {
+        return _deadline;
+    }
+
+    /**
+     * Sets the deadline for the requests of this helper and of the helpers created by it,
+     * including bulk and paging requests. In-flight requests are aborted when the 
+     * deadline expires.
+     * 
+     * @param deadline Deadline, null for none.
+     */
+    public void setDeadline(Deadline deadline) {
+        _deadline = deadline;
+    }
+
     /**
      * Get subscription.
      * 
@@ -134,6 +206,23 @@ public abstract class RequestHelper {
         }
     }
 
+    /**
+     * Iterate over all subscriptions, fetching the pages as needed.
+     * 
+     * @param tags          Array of tags.
+     * @param sort          Optional. Pass <b>null</b> to use default value.
+     * @param pageSize      Number of subscriptions per page.
+     * @param prefetchDepth Number of pages to fetch ahead in the background.
+     */
+    public PagingCursor<Subscription> iterateSubscriptions(final String[] tags, final Sort[] sort, int pageSize, int prefetchDepth) {
+        return new PagingCursor<Subscription>(new PagingCursor.PageFetcher<Subscription>() {
+            @Override
+            public ItemList<Subscription> fetch(int limit, int offset) throws APIException {
+                return fetchSubscriptions(tags, sort, limit, offset);
+            }
+        }, _getExecutor(), pageSize, _getPrefetchDepth(prefetchDepth));
+    }
+
     /**
      * Subscribe.
      * 
@@ -180,27 +269,233 @@ public abstract class RequestHelper {
         }
     }
     
+    /**
+     * Subscribe to multiple channels.
+     * 
+     * Runs at most the given number of subscribe calls in parallel on the shared executor.
+     * A failing call doesn't stop the other calls.
+     * 
+     * @param channelCodes Channel codes.
+     * @param parallelism  Maximum number of parallel calls.
+     * 
+     * @return Per channel results and failures.
+     */
+    public BulkResult<Subscription> subscribe(Collection<String> channelCodes, int parallelism) throws APIException {
+        return _executeBulk(channelCodes, parallelism, new BulkOperation<Subscription>() {
+            @Override
+            public Subscription execute(String channelCode) throws APIException {
+                return subscribe(channelCode);
+            }
+        });
+    }
+
+    /**
+     * Unsubscribe from multiple channels.
+     * 
+     * Runs at most the given number of unsubscribe calls in parallel on the shared executor.
+     * A failing call doesn't stop the other calls.
+     * 
+     * @param channelCodes Channel codes.
+     * @param parallelism  Maximum number of parallel calls.
+     * 
+     * @return Per channel results and failures.
+     */
+    public BulkResult<Void> unsubscribe(Collection<String> channelCodes, int parallelism) throws APIException {
+        return _executeBulk(channelCodes, parallelism, new BulkOperation<Void>() {
+            @Override
+            public Void execute(String channelCode) throws APIException {
+                unsubscribe(channelCode);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Sync the subscriptions to the given set of channels.
+     * 
+     * Fetches the current subscriptions for the given tags and only subscribes to the 
+     * channels that aren't subscribed to yet and unsubscribes from the channels that 
+     * aren't in the given set.
+     * 
+     * @param tags         Array of tags, limits the subscriptions that are considered.
+     * @param channelCodes Channel codes of the desired subscriptions.
+     * @param parallelism  Maximum number of parallel calls.
+     * 
+     * @return Per channel results and failures.
+     * 
+     * @throws APIException if fetching the current subscriptions fails.
+     */
+    public SyncResult syncSubscriptions(String[] tags, Collection<String> channelCodes, int parallelism) throws APIException {
+        Set<String> current = new HashSet<String>();
+        PagingCursor<Subscription> cursor = iterateSubscriptions(tags, null, SYNC_PAGE_SIZE, 1);
+        try {
+            while (cursor.hasNext()) {
+                Subscription subscription = cursor.next();
+                if (subscription.getChannel() != null && subscription.getChannel().getCode() != null) {
+                    current.add(subscription.getChannel().getCode());
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Set<String> toSubscribe = new LinkedHashSet<String>(channelCodes);
+        toSubscribe.removeAll(current);
+
+        Set<String> toUnsubscribe = new LinkedHashSet<String>(current);
+        toUnsubscribe.removeAll(channelCodes);
+
+        if (DEBUG) {
+            Log.d(TAG, String.format("Syncing subscriptions, subscribing to %d and unsubscribing from %d channels", toSubscribe.size(), toUnsubscribe.size()));
+        }
+
+        return new SyncResult(subscribe(toSubscribe, parallelism), unsubscribe(toUnsubscribe, parallelism));
+    }
+
+    /**
+     * Executes the given operation for each channel with bounded parallelism.
+     * 
+     * The current thread takes part in executing the operations, so progress is
+     * guaranteed even if the shared executor is saturated (e.g. when called from one 
+     * of its threads). The deadline and request priority bound to the current thread
+     * also apply to the operations executed on the shared executor.
+     */
+    private <T> BulkResult<T> _executeBulk(Collection<String> channelCodes, int parallelism, final BulkOperation<T> operation) throws APIException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+
+        final BulkResult<T> result = new BulkResult<T>();
+        final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<String>(new LinkedHashSet<String>(channelCodes));
+        final CountDownLatch latch = new CountDownLatch(queue.size());
+        final Deadline deadline = Deadline.current();
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                Deadline previous = _bindDeadline(deadline);
+                try {
+                    String channelCode;
+                    while ((channelCode = queue.poll()) != null) {
+                        try {
+                            result._addResult(channelCode, operation.execute(channelCode));
+                        } catch (APIException e) {
+                            result._addFailure(channelCode, e);
+                        } catch (RuntimeException e) {
+                            result._addFailure(channelCode, new APIException(e));
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                } finally {
+                    _unbindDeadline(previous);
+                }
+            }
+        };
+
+        Executor executor = _getExecutor();
+        Runnable task = RequestScheduler.withPriority(worker, RequestScheduler.getCurrentPriority());
+        for (int i = 1; i < Math.min(parallelism, queue.size()); i++) {
+            executor.execute(task);
+        }
+
+        worker.run();
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            queue.clear();
+            Thread.currentThread().interrupt();
+            throw new APIException(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the path of the user or endpoint this helper applies to.
+     */
+    String _getBasePath() {
+        return _basePath;
+    }
+
+    /**
+     * Returns the executor used for background requests.
+     */
+    protected Executor _getExecutor() {
+        return _client._getExecutor();
+    }
+
+    /**
+     * Returns the prefetch depth for paging, limited by the current network policy.
+     */
+    protected int _getPrefetchDepth(int prefetchDepth) {
+        return _client._getPrefetchDepth(prefetchDepth);
+    }
+
     /**
      * Perform a GET request with the ApiKey header.
      */
     protected JSONObject _get(String path, List<NameValuePair> params) throws APIException {
-        return _client._get(path == null ? _basePath : _basePath + "/" + path, params);
+        Deadline previous = _bindDeadline();
+        try {
+            return _client._get(path == null ? _basePath : _basePath + "/" + path, params);
+        } finally {
+            _unbindDeadline(previous);
+        }
     }
 
     /**
      * Perform a POST request with the ApiKey header.
      */
     protected JSONObject _post(String path, List<NameValuePair> params) throws APIException {
-        return _client._post(path == null ? _basePath : _basePath + "/" + path, params);
+        Deadline previous = _bindDeadline();
+        try {
+            return _client._post(path == null ? _basePath : _basePath + "/" + path, params);
+        } finally {
+            _unbindDeadline(previous);
+        }
     }
 
     /**
      * Perform a DELETE request with the ApiKey header.
      */
     protected JSONObject _delete(String path) throws APIException {
-        return _client._delete(path == null ? _basePath : _basePath + "/" + path);
-    }    
-    
+        Deadline previous = _bindDeadline();
+        try {
+            return _client._delete(path == null ? _basePath : _basePath + "/" + path);
+        } finally {
+            _unbindDeadline(previous);
+        }
+    }
+
+    /**
+     * Binds the deadline of this helper (if any) to the current thread.
+     * 
+     * @return Previously bound deadline.
+     */
+    private Deadline _bindDeadline() {
+        return _bindDeadline(Deadline.current());
+    }
+
+    /**
+     * Binds the deadline of this helper or, if none, the given deadline to the current thread.
+     * 
+     * @param deadline Deadline to bind if this helper has none, may be null.
+     * 
+     * @return Previously bound deadline.
+     */
+    private Deadline _bindDeadline(Deadline deadline) {
+        return Deadline.setCurrent(_deadline != null ? _deadline : deadline);
+    }
+
+    /**
+     * Restores the previously bound deadline.
+     */
+    private void _unbindDeadline(Deadline previous) {
+        Deadline.setCurrent(previous);
+    }
+
     /**
      * Convert JSON object to name value pairs.
      * 
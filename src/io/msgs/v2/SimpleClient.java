@@ -10,6 +10,7 @@ import android.content.Context;
 import android.content.SharedPreferences.Editor;
 
 import com.egeniq.utils.api.APIException;
+import com.egeniq.utils.net.Deadline;
 
 /**
  * Simple Msgs.io client which only supports subscriptions for the current device.
@@ -77,6 +78,18 @@ public class SimpleClient {
      * @throws APIException
      */
     public Endpoint registerEndpoint(String registrationId) throws APIException {
+        return registerEndpoint(registrationId, -1);
+    }
+
+    /**
+     * Register device within the given time.
+     * 
+     * @param registrationId GCM registration id.
+     * @param timeout        Maximum time in milliseconds for all requests together, -1 for no limit.
+     * 
+     * @throws APIException, caused by a DeadlineExceededException if the timeout expires.
+     */
+    public Endpoint registerEndpoint(String registrationId, long timeout) throws APIException {
         if (_endpoint != null && registrationId.equals(_endpoint.getAddress())) {
             return _endpoint;
         }
@@ -86,10 +99,15 @@ public class SimpleClient {
         endpoint.setAddress(registrationId);
         endpoint.setName(Utils.getDeviceName());
 
-        if (_endpoint != null) {
-            _endpoint = _client.forEndpoint(_endpoint.getToken()).update(endpoint.toJSON());
-        } else {
-            _endpoint = _client.registerEndpoint(endpoint.toJSON());
+        Deadline previous = timeout >= 0 ? Deadline.setCurrent(new Deadline(timeout)) : Deadline.current();
+        try {
+            if (_endpoint != null) {
+                _endpoint = _client.forEndpoint(_endpoint.getToken()).update(endpoint.toJSON());
+            } else {
+                _endpoint = _client.registerEndpoint(endpoint.toJSON());
+            }
+        } finally {
+            Deadline.setCurrent(previous);
         }
 
         _saveState();
@@ -88,6 +88,21 @@ public class UserRequestHelper extends RequestHelper {
         }
     }
 
+    /**
+     * Iterate over all endpoints, fetching the pages as needed.
+     * 
+     * @param pageSize      Number of endpoints per page.
+     * @param prefetchDepth Number of pages to fetch ahead in the background.
+     */
+    public PagingCursor<Endpoint> iterateEndpoints(int pageSize, int prefetchDepth) {
+        return new PagingCursor<Endpoint>(new PagingCursor.PageFetcher<Endpoint>() {
+            @Override
+            public ItemList<Endpoint> fetch(int limit, int offset) throws APIException {
+                return fetchEndpoints(limit, offset);
+            }
+        }, _getExecutor(), pageSize, _getPrefetchDepth(prefetchDepth));
+    }
+
     /**
      * Get endpoint helper.
      * 
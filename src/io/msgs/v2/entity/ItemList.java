@@ -1,6 +1,11 @@
 package io.msgs.v2.entity;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -8,9 +13,17 @@ import org.json.JSONObject;
 /**
  * ItemList enitiy.
  * 
+ * Items are created lazily from their JSON data on first access and cached afterwards,
+ * so repeatedly accessing or iterating the list doesn't create new item objects.
  */
-public class ItemList<T extends AbstractEntity> extends AbstractEntity {
+public class ItemList<T extends AbstractEntity> extends AbstractEntity implements Iterable<T> {
+    private final static ConcurrentHashMap<Class<?>, Constructor<?>> _constructors = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
     private Class<T> _clazz;
+    private Constructor<T> _constructor;
+    private JSONArray _rawItems;
+    private Object[] _items;
+    private List<T> _list;
 
     public ItemList(Class<T> clazz) {
         super();
@@ -52,42 +65,89 @@ public class ItemList<T extends AbstractEntity> extends AbstractEntity {
         return this;
     }
 
+    /**
+     * Get number of items in this list.
+     */
+    public int size() {
+        _loadItems();
+        return _items == null ? 0 : _items.length;
+    }
+
     /**
      * Get item for index.
      */
     public T get(int index) {
-        JSONArray rawItems = _getArray("items");
-        if (rawItems == null || index >= rawItems.length()) {
+        _loadItems();
+        if (_items == null || index < 0 || index >= _items.length) {
             return null;
-        } else {
+        }
+
+        @SuppressWarnings("unchecked")
+        T item = (T)_items[index];
+        if (item == null) {
             try {
-                return _clazz.getConstructor(JSONObject.class).newInstance(rawItems.getJSONObject(index));
+                item = _getConstructor().newInstance(_rawItems.getJSONObject(index));
+                _items[index] = item;
             } catch (Exception e) {
                 return null;
             }
         }
+
+        return item;
     }
 
     /**
      * Get items.
      */
     public T[] getItems() {
-        try {
-            JSONArray rawItems = _getArray("items");
-            if (rawItems == null) {
+        _loadItems();
+        if (_items == null) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        T[] result = (T[])Array.newInstance(_clazz, _items.length);
+        for (int i = 0; i < result.length; i++) {
+            result[i] = get(i);
+            if (result[i] == null) {
                 return null;
             }
+        }
 
-            @SuppressWarnings("unchecked")
-            T[] result = (T[])Array.newInstance(_clazz, rawItems.length());
-            for (int i = 0; i < rawItems.length(); i++) {
-                result[i] = _clazz.getConstructor(JSONObject.class).newInstance(rawItems.getJSONObject(i));
-            }
+        return result;
+    }
 
-            return result;
-        } catch (Exception e) {
-            return null;
+    /**
+     * Get items as a read-only list, items are created when they are accessed.
+     */
+    public List<T> asList() {
+        if (_list == null) {
+            _list = new AbstractList<T>() {
+                @Override
+                public T get(int index) {
+                    if (index < 0 || index >= size()) {
+                        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+                    }
+
+                    return ItemList.this.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return ItemList.this.size();
+                }
+            };
         }
+
+        return _list;
+    }
+
+    /**
+     * Iterate over the items.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return asList().iterator();
     }
 
     /**
@@ -100,6 +160,44 @@ public class ItemList<T extends AbstractEntity> extends AbstractEntity {
         }
 
         _putArray("items", rawItems);
+
+        _rawItems = rawItems;
+        _items = new Object[items.length];
+        System.arraycopy(items, 0, _items, 0, items.length);
+
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * Looks up the raw items once.
+     */
+    private void _loadItems() {
+        if (_items != null) {
+            return;
+        }
+
+        JSONArray rawItems = _getArray("items");
+        if (rawItems != null) {
+            _rawItems = rawItems;
+            _items = new Object[rawItems.length()];
+        }
+    }
+
+    /**
+     * Returns the (cached) JSONObject constructor of the item class.
+     */
+    @SuppressWarnings("unchecked")
+    private Constructor<T> _getConstructor() throws NoSuchMethodException {
+        if (_constructor == null) {
+            Constructor<?> constructor = _constructors.get(_clazz);
+            if (constructor == null) {
+                constructor = _clazz.getConstructor(JSONObject.class);
+                _constructors.putIfAbsent(_clazz, constructor);
+            }
+
+            _constructor = (Constructor<T>)constructor;
+        }
+
+        return _constructor;
+    }
+}
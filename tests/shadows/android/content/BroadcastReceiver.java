@@ -0,0 +1,9 @@
+package android.content;
+
+/**
+ * Plain JVM replacement for android.content.BroadcastReceiver, so receivers can be
+ * created without the framework.
+ */
+public abstract class BroadcastReceiver {
+    public abstract void onReceive(Context context, Intent intent);
+}
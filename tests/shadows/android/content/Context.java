@@ -0,0 +1,20 @@
+package android.content;
+
+/**
+ * Plain JVM replacement for the parts of android.content.Context used by the library, 
+ * so tests can provide a context without the framework.
+ */
+public abstract class Context {
+    public static final String CONNECTIVITY_SERVICE = "connectivity";
+    public static final int MODE_PRIVATE = 0;
+
+    public abstract Context getApplicationContext();
+
+    public abstract Object getSystemService(String name);
+
+    public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter);
+
+    public abstract void unregisterReceiver(BroadcastReceiver receiver);
+
+    public abstract SharedPreferences getSharedPreferences(String name, int mode);
+}
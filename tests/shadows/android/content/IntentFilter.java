@@ -0,0 +1,17 @@
+package android.content;
+
+/**
+ * Plain JVM replacement for android.content.IntentFilter, so filters can be created
+ * without the framework.
+ */
+public class IntentFilter {
+    private final String _action;
+
+    public IntentFilter(String action) {
+        _action = action;
+    }
+
+    public final String getAction(int index) {
+        return index == 0 ? _action : null;
+    }
+}
@@ -0,0 +1,20 @@
+package android.os;
+
+/**
+ * Plain JVM replacement for the build information, reports the project target.
+ */
+public class Build {
+    public static final String MANUFACTURER = "jvm";
+    public static final String MODEL = "test";
+
+    public static class VERSION {
+        public static final int SDK_INT = 17;
+    }
+
+    public static class VERSION_CODES {
+        public static final int GINGERBREAD = 9;
+        public static final int HONEYCOMB = 11;
+        public static final int JELLY_BEAN = 16;
+        public static final int JELLY_BEAN_MR1 = 17;
+    }
+}
@@ -0,0 +1,41 @@
+package android.text;
+
+/**
+ * Plain JVM replacement for the TextUtils methods used by the library.
+ */
+public final class TextUtils {
+    private TextUtils() {
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+
+    public static String join(CharSequence delimiter, Object[] tokens) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < tokens.length; i++) {
+            if (i > 0) {
+                builder.append(delimiter);
+            }
+
+            builder.append(tokens[i]);
+        }
+
+        return builder.toString();
+    }
+
+    public static String join(CharSequence delimiter, Iterable<?> tokens) {
+        StringBuilder builder = new StringBuilder();
+        boolean first = true;
+        for (Object token : tokens) {
+            if (!first) {
+                builder.append(delimiter);
+            }
+
+            builder.append(token);
+            first = false;
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package android.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Plain JVM replacement for the Android JSON reader.
+ * 
+ * The Android reader originates from the Gson stream reader, so this delegates to it.
+ */
+public final class JsonReader implements Closeable {
+    private final com.google.gson.stream.JsonReader _reader;
+
+    public JsonReader(Reader in) {
+        _reader = new com.google.gson.stream.JsonReader(in);
+    }
+
+    public void setLenient(boolean lenient) {
+        _reader.setLenient(lenient);
+    }
+
+    public boolean isLenient() {
+        return _reader.isLenient();
+    }
+
+    public void beginArray() throws IOException {
+        _reader.beginArray();
+    }
+
+    public void endArray() throws IOException {
+        _reader.endArray();
+    }
+
+    public void beginObject() throws IOException {
+        _reader.beginObject();
+    }
+
+    public void endObject() throws IOException {
+        _reader.endObject();
+    }
+
+    public boolean hasNext() throws IOException {
+        return _reader.hasNext();
+    }
+
+    public JsonToken peek() throws IOException {
+        return JsonToken.valueOf(_reader.peek().name());
+    }
+
+    public String nextName() throws IOException {
+        return _reader.nextName();
+    }
+
+    public String nextString() throws IOException {
+        return _reader.nextString();
+    }
+
+    public boolean nextBoolean() throws IOException {
+        return _reader.nextBoolean();
+    }
+
+    public void nextNull() throws IOException {
+        _reader.nextNull();
+    }
+
+    public double nextDouble() throws IOException {
+        return _reader.nextDouble();
+    }
+
+    public long nextLong() throws IOException {
+        return _reader.nextLong();
+    }
+
+    public int nextInt() throws IOException {
+        return _reader.nextInt();
+    }
+
+    public void skipValue() throws IOException {
+        _reader.skipValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _reader.close();
+    }
+}
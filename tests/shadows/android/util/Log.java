@@ -0,0 +1,70 @@
+package android.util;
+
+/**
+ * Plain JVM replacement for the Android log.
+ * 
+ * Warnings and errors are written to stderr, other messages are dropped.
+ */
+public final class Log {
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    private Log() {
+    }
+
+    public static int v(String tag, String msg) {
+        return 0;
+    }
+
+    public static int v(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int d(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        return _print("W", tag, msg, null);
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return _print("W", tag, msg, tr);
+    }
+
+    public static int w(String tag, Throwable tr) {
+        return _print("W", tag, null, tr);
+    }
+
+    public static int e(String tag, String msg) {
+        return _print("E", tag, msg, null);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return _print("E", tag, msg, tr);
+    }
+
+    public static boolean isLoggable(String tag, int level) {
+        return level >= WARN;
+    }
+
+    private static int _print(String level, String tag, String msg, Throwable tr) {
+        System.err.println(level + "/" + tag + ": " + (msg != null ? msg : "") + (tr != null ? " (" + tr + ")" : ""));
+        return 0;
+    }
+}
@@ -0,0 +1,8 @@
+package com.egeniq;
+
+/**
+ * Build configuration for the plain JVM tests (normally generated by the Android build).
+ */
+public final class BuildConfig {
+    public final static boolean DEBUG = false;
+}
@@ -0,0 +1,193 @@
+package com.egeniq.utils.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.egeniq.utils.net.RequestCallback;
+import com.egeniq.utils.net.RequestFuture;
+
+/**
+ * Futures and callbacks of asynchronously executed requests against the stand-in server.
+ */
+public class AsyncRequestTest {
+    private StubServer _server;
+    private APIClient _client;
+    private ExecutorService _executor;
+    private final CountDownLatch _release = new CountDownLatch(1);
+
+    /**
+     * Callback that counts its invocations.
+     */
+    private static class CountingCallback<T> implements RequestCallback<T> {
+        private final AtomicInteger _successCount = new AtomicInteger();
+        private final AtomicInteger _failureCount = new AtomicInteger();
+        private final AtomicReference<Object> _value = new AtomicReference<Object>();
+        private final CountDownLatch _latch = new CountDownLatch(1);
+
+        @Override
+        public void onSuccess(T result) {
+            _value.set(result);
+            _successCount.incrementAndGet();
+            _latch.countDown();
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            _value.set(e);
+            _failureCount.incrementAndGet();
+            _latch.countDown();
+        }
+
+        /**
+         * Waits for the callback and for any (unexpected) further invocations.
+         */
+        void await() throws InterruptedException {
+            assertTrue(_latch.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _server.addHandler(new StubServer.Handler() {
+            @Override
+            public StubServer.Response handle(StubServer.Request request) {
+                if (request.getPath().equals("slow")) {
+                    try {
+                        _release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else if (request.getPath().equals("missing")) {
+                    return StubServer.Response.error(404, "not_found", "Not found");
+                }
+
+                try {
+                    return StubServer.Response.json(200, new JSONObject().put("path", request.getPath()));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        _executor = Executors.newSingleThreadExecutor();
+        _client = new APIClient(_server.getBaseURL());
+        _client.setExecutor(_executor);
+    }
+
+    @After
+    public void tearDown() {
+        _release.countDown();
+        _executor.shutdownNow();
+        _server.stop();
+    }
+
+    @Test
+    public void testSuccess() throws Exception {
+        CountingCallback<JSONObject> callback = new CountingCallback<JSONObject>();
+        RequestFuture<JSONObject> future = _client.getAsync("item", callback);
+
+        JSONObject result = future.get(5, TimeUnit.SECONDS);
+        assertEquals("item", result.getString("path"));
+
+        callback.await();
+        assertEquals(1, callback._successCount.get());
+        assertEquals(0, callback._failureCount.get());
+        assertSame(result, callback._value.get());
+    }
+
+    @Test
+    public void testFailurePropagatesThroughGet() throws Exception {
+        CountingCallback<JSONObject> callback = new CountingCallback<JSONObject>();
+        RequestFuture<JSONObject> future = _client.getAsync("missing", callback);
+
+        APIException exception = null;
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            exception = (APIException)e.getCause();
+        }
+
+        assertEquals("not_found", exception.getCode());
+        assertEquals(404, exception.getResponseCode());
+
+        callback.await();
+        assertEquals(0, callback._successCount.get());
+        assertEquals(1, callback._failureCount.get());
+        assertSame(exception, callback._value.get());
+    }
+
+    @Test
+    public void testCancelAbortsRunningRequest() throws Exception {
+        CountingCallback<JSONObject> callback = new CountingCallback<JSONObject>();
+        RequestFuture<JSONObject> future = _client.getAsync("slow", callback);
+        _awaitRequests(1);
+
+        assertTrue(future.cancel(true));
+        assertTrue(future.getRequest().isAborted());
+
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Expected CancellationException");
+        } catch (CancellationException e) {
+            // expected
+        }
+
+        // the only executor thread is free again while the server still stalls the aborted request
+        assertEquals("item", _client.getAsync("item", null).get(5, TimeUnit.SECONDS).getString("path"));
+
+        _release.countDown();
+        Thread.sleep(100);
+        assertEquals(0, callback._successCount.get() + callback._failureCount.get());
+    }
+
+    @Test
+    public void testCancelQueuedRequest() throws Exception {
+        RequestFuture<JSONObject> running = _client.getAsync("slow", null);
+        _awaitRequests(1);
+
+        CountingCallback<JSONObject> callback = new CountingCallback<JSONObject>();
+        RequestFuture<JSONObject> queued = _client.getAsync("item", callback);
+        assertTrue(queued.cancel(false));
+        assertTrue(queued.isCancelled());
+
+        _release.countDown();
+        assertEquals("slow", running.get(5, TimeUnit.SECONDS).getString("path"));
+        Thread.sleep(100);
+
+        assertEquals(1, _server.getRequestCount());
+        assertEquals(0, callback._successCount.get() + callback._failureCount.get());
+        assertFalse(queued.cancel(true));
+    }
+
+    /**
+     * Waits until the server has received the given number of requests.
+     */
+    private void _awaitRequests(int count) throws InterruptedException {
+        for (int i = 0; i < 500 && _server.getRequestCount() < count; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(count, _server.getRequestCount());
+    }
+}
@@ -0,0 +1,199 @@
+package com.egeniq.utils.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.egeniq.utils.net.Deadline;
+import com.egeniq.utils.net.DeadlineExceededException;
+import com.egeniq.utils.net.RequestFuture;
+
+/**
+ * Coalescing of identical GET requests against the stand-in server.
+ */
+public class CoalescingTest {
+    private StubServer _server;
+    private APIClient _client;
+    private final CountDownLatch _release = new CountDownLatch(1);
+    private final AtomicInteger _stallCount = new AtomicInteger(1);
+    private final AtomicInteger _count = new AtomicInteger();
+    private volatile int _statusCode = 200;
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _server.addHandler(new StubServer.Handler() {
+            @Override
+            public StubServer.Response handle(StubServer.Request request) {
+                if (_stallCount.getAndDecrement() > 0) {
+                    try {
+                        _release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                try {
+                    return StubServer.Response.json(_statusCode, new JSONObject().put("count", _count.incrementAndGet()));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        _client = new APIClient(_server.getBaseURL());
+        _client.setCoalescingEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        _release.countDown();
+        _server.stop();
+    }
+
+    @Test
+    public void testIdenticalRequestsAreCoalesced() throws Exception {
+        RequestFuture<JSONObject> first = _client.getAsync("item", null);
+        _awaitRequests(1);
+        RequestFuture<JSONObject> second = _client.getAsync("item", null);
+
+        // give the second request time to find the in-flight request
+        Thread.sleep(200);
+        assertEquals(0, _client.getCoalescedRequestCount());
+
+        _release.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS).getInt("count"));
+        assertEquals(1, second.get(5, TimeUnit.SECONDS).getInt("count"));
+        assertEquals(1, _server.getRequestCount());
+        assertEquals(1, _client.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void testWaitersReceiveOwnException() throws Exception {
+        _statusCode = 400;
+
+        RequestFuture<JSONObject> first = _client.getAsync("item", null);
+        _awaitRequests(1);
+        RequestFuture<JSONObject> second = _client.getAsync("item", null);
+        Thread.sleep(200);
+
+        _release.countDown();
+        APIException firstException = _getException(first);
+        APIException secondException = _getException(second);
+        assertTrue(firstException != secondException);
+        assertEquals(firstException.getCode(), secondException.getCode());
+        assertEquals(400, secondException.getResponseCode());
+        assertEquals(1, _server.getRequestCount());
+    }
+
+    @Test
+    public void testWaiterWithExpiredDeadlineDoesntWait() throws Exception {
+        _client.getAsync("item", null);
+        _awaitRequests(1);
+
+        Deadline deadline = new Deadline(1);
+        Thread.sleep(10);
+        assertTrue(deadline.isExpired());
+
+        Deadline previous = Deadline.setCurrent(deadline);
+        long startTime = System.currentTimeMillis();
+        try {
+            _client.get("item");
+            fail("Expected APIException");
+        } catch (APIException e) {
+            assertTrue(e.getCause() instanceof DeadlineExceededException);
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+
+        assertTrue(System.currentTimeMillis() - startTime < 1000);
+        assertEquals(0, _client.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void testWaiterWithoutTimeoutDoesntWait() throws Exception {
+        _client.getAsync("item", null);
+        _awaitRequests(1);
+
+        _client.setTimeout(0);
+        assertEquals(1, _client.get("item").getInt("count"));
+        assertEquals(2, _server.getRequestCount());
+        assertEquals(0, _client.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void testWaiterHonoursDeadline() throws Exception {
+        _client.getAsync("item", null);
+        _awaitRequests(1);
+
+        Deadline previous = Deadline.setCurrent(new Deadline(200));
+        long startTime = System.currentTimeMillis();
+        try {
+            _client.get("item");
+            fail("Expected APIException");
+        } catch (APIException e) {
+            assertTrue(e.getCause() instanceof DeadlineExceededException);
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+
+        assertTrue(System.currentTimeMillis() - startTime < 2000);
+        assertEquals(0, _client.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void testWaiterExecutesItselfAfterTimeout() throws Exception {
+        _client.setTimeout(300);
+
+        // the in-flight request has a longer read timeout than the client
+        Deadline previous = Deadline.setCurrent(new Deadline(-1).setReadTimeout(5000));
+        RequestFuture<JSONObject> first;
+        try {
+            first = _client.getAsync("item", null);
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+
+        _awaitRequests(1);
+        assertEquals(1, _client.get("item").getInt("count"));
+        assertEquals(2, _server.getRequestCount());
+
+        _release.countDown();
+        assertEquals(2, first.get(5, TimeUnit.SECONDS).getInt("count"));
+    }
+
+    /**
+     * Waits until the server has received the given number of requests.
+     */
+    private void _awaitRequests(int count) throws InterruptedException {
+        for (int i = 0; i < 500 && _server.getRequestCount() < count; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(count, _server.getRequestCount());
+    }
+
+    /**
+     * Returns the exception the given request failed with.
+     */
+    private APIException _getException(RequestFuture<JSONObject> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+            return null;
+        } catch (ExecutionException e) {
+            return (APIException)e.getCause();
+        }
+    }
+}
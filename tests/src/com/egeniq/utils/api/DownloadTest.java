@@ -0,0 +1,193 @@
+package com.egeniq.utils.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Resumable downloads against the stand-in server.
+ */
+public class DownloadTest {
+    private final static int SIZE = 10000;
+
+    /**
+     * How the server answers a Range request.
+     */
+    private enum RangeMode {
+        SUPPORTED,
+        IGNORED,
+        WRONG_START,
+        MISSING_CONTENT_RANGE
+    }
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private final byte[] _content = new byte[SIZE];
+    private StubServer _server;
+    private APIClient _client;
+    private File _file;
+    private volatile RangeMode _rangeMode = RangeMode.SUPPORTED;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < SIZE; i++) {
+            _content[i] = (byte)(i * 31);
+        }
+
+        _server = new StubServer().start();
+        _server.addHandler(new StubServer.Handler() {
+            @Override
+            public StubServer.Response handle(StubServer.Request request) {
+                return request.getPath().equals("file") ? _handle(request.getHeader("Range")) : null;
+            }
+        });
+
+        _client = new APIClient(_server.getBaseURL());
+        _file = new File(_folder.getRoot(), "file");
+    }
+
+    @After
+    public void tearDown() {
+        _server.stop();
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        assertEquals(SIZE, _client.download("file", false, null, _file, null));
+        assertArrayEquals(_content, _read());
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        _writePart(4000);
+
+        assertEquals(SIZE, _client.download("file", false, null, _file, null));
+        assertArrayEquals(_content, _read());
+    }
+
+    @Test
+    public void testRangeIgnored() throws Exception {
+        _writePart(4000);
+        _rangeMode = RangeMode.IGNORED;
+
+        assertEquals(SIZE, _client.download("file", false, null, _file, null));
+        assertArrayEquals(_content, _read());
+    }
+
+    @Test
+    public void testWrongRangeStart() throws Exception {
+        _writePart(4000);
+        _rangeMode = RangeMode.WRONG_START;
+
+        assertEquals(SIZE, _client.download("file", false, null, _file, null));
+        assertArrayEquals(_content, _read());
+        assertEquals(2, _server.getRequestCount());
+    }
+
+    @Test
+    public void testMissingContentRange() throws Exception {
+        _writePart(4000);
+        _rangeMode = RangeMode.MISSING_CONTENT_RANGE;
+
+        assertEquals(SIZE, _client.download("file", false, null, _file, null));
+        assertArrayEquals(_content, _read());
+        assertEquals(2, _server.getRequestCount());
+    }
+
+    @Test
+    public void testAlreadyComplete() throws Exception {
+        _writePart(SIZE);
+
+        assertEquals(SIZE, _client.download("file", false, null, _file, null));
+        assertArrayEquals(_content, _read());
+    }
+
+    @Test
+    public void testErrorKeepsFile() throws Exception {
+        _writePart(4000);
+        _server.setErrorRate(1, 404);
+
+        try {
+            _client.download("file", false, null, _file, null);
+            fail("Expected APIException");
+        } catch (APIException e) {
+            assertEquals(404, e.getResponseCode());
+        }
+
+        assertArrayEquals(Arrays.copyOf(_content, 4000), _read());
+        assertTrue(_file.exists());
+    }
+
+    /**
+     * Answers a request for the file.
+     */
+    private StubServer.Response _handle(String range) {
+        if (range == null || _rangeMode == RangeMode.IGNORED) {
+            return new StubServer.Response(200, _content);
+        }
+
+        int start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+        if (start >= SIZE) {
+            return new StubServer.Response(416, new byte[0]).setHeader("Content-Range", "bytes */" + SIZE);
+        }
+
+        if (_rangeMode == RangeMode.WRONG_START) {
+            start = start / 2;
+        }
+
+        StubServer.Response response = new StubServer.Response(206, Arrays.copyOfRange(_content, start, SIZE));
+        if (_rangeMode != RangeMode.MISSING_CONTENT_RANGE) {
+            response.setHeader("Content-Range", "bytes " + start + "-" + (SIZE - 1) + "/" + SIZE);
+        }
+
+        return response;
+    }
+
+    /**
+     * Writes the first bytes of the content to the file.
+     */
+    private void _writePart(int length) throws IOException {
+        FileOutputStream out = new FileOutputStream(_file);
+        try {
+            out.write(_content, 0, length);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the file.
+     */
+    private byte[] _read() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(_file);
+        try {
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,78 @@
+package com.egeniq.utils.api;
+
+import java.text.SimpleDateFormat;
+import java.util.Random;
+
+import com.egeniq.utils.benchmark.MicroBenchmark;
+
+/**
+ * Time and allocation of parsing and formatting API dates: ISODateFormat versus the
+ * SimpleDateFormat previously used by APIUtils.getDate.
+ * 
+ * The SimpleDateFormat is used from a single thread only; sharing it between threads, 
+ * as APIUtils did, would additionally require locking.
+ */
+public class ISODateFormatBenchmark {
+    private final static int COUNT = 1024;
+
+    public static void main(String[] args) throws Exception {
+        final SimpleDateFormat format = ISODateFormatTest._createSimpleDateFormat();
+        final long[] millis = new long[COUNT];
+        final String[] strings = new String[COUNT];
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            millis[i] = ISODateFormatTest._randomSeconds(random) * 1000;
+            strings[i] = format.format(millis[i]);
+        }
+
+        MicroBenchmark.printHeader("Date-time, per " + COUNT + " values");
+
+        MicroBenchmark.measure("SimpleDateFormat.parse", 500, new MicroBenchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                Object last = null;
+                for (int i = 0; i < COUNT; i++) {
+                    last = format.parse(strings[i]);
+                }
+
+                return last;
+            }
+        });
+
+        MicroBenchmark.measure("ISODateFormat.parseDateTime", 500, new MicroBenchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                Object last = null;
+                for (int i = 0; i < COUNT; i++) {
+                    last = ISODateFormat.parseDateTime(strings[i]);
+                }
+
+                return last;
+            }
+        });
+
+        MicroBenchmark.measure("SimpleDateFormat.format", 500, new MicroBenchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                Object last = null;
+                for (int i = 0; i < COUNT; i++) {
+                    last = format.format(millis[i]);
+                }
+
+                return last;
+            }
+        });
+
+        MicroBenchmark.measure("ISODateFormat.formatDateTime", 500, new MicroBenchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                Object last = null;
+                for (int i = 0; i < COUNT; i++) {
+                    last = ISODateFormat.formatDateTime(millis[i]);
+                }
+
+                return last;
+            }
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.egeniq.utils.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Parsing and formatting matches SimpleDateFormat in UTC, also when used concurrently.
+ */
+public class ISODateFormatTest {
+    private final static long MIN_MILLIS = -2208988800000L; // 1900-01-01
+    private final static long MAX_MILLIS = 4102444800000L; // 2100-01-01
+
+    @Test
+    public void testMatchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat format = _createSimpleDateFormat();
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long millis = _randomSeconds(random) * 1000;
+            String expected = format.format(millis);
+
+            assertEquals(expected, ISODateFormat.formatDateTime(millis));
+            assertEquals(millis, ISODateFormat.parseDateTimeMillis(expected));
+        }
+    }
+
+    @Test
+    public void testParseVariants() throws Exception {
+        long millis = ISODateFormat.parseDateTimeMillis("2013-06-20T14:05:00Z");
+
+        assertEquals(millis, ISODateFormat.parseDateTimeMillis("2013-06-20T14:05:00"));
+        assertEquals(millis, ISODateFormat.parseDateTimeMillis("2013-06-20 14:05:00z"));
+        assertEquals(millis + 123, ISODateFormat.parseDateTimeMillis("2013-06-20T14:05:00.123456Z"));
+        assertEquals(millis + 500, ISODateFormat.parseDateTimeMillis("2013-06-20T14:05:00.5Z"));
+        assertEquals(millis, ISODateFormat.parseDateTimeMillis("2013-06-20T16:05:00+02:00"));
+        assertEquals(millis, ISODateFormat.parseDateTimeMillis("2013-06-20T12:35:00-0130"));
+        assertEquals(millis, ISODateFormat.parseDateTimeMillis("2013-06-20T15:05:00+01"));
+        assertEquals("2013-06-20", ISODateFormat.formatDate(ISODateFormat.parseDate("2013-06-20T23:59:59Z")));
+        assertEquals("1969-12-31T23:59:59Z", ISODateFormat.formatDateTime(-1000));
+    }
+
+    @Test
+    public void testRejectsInvalidValues() {
+        String[] values = { "", "2013-06-20", "2013-13-01T00:00:00Z", "2013-02-29T00:00:00Z", "2013-06-20T24:00:00Z", "2013-06-20T14:60:00Z", "2013/06/20T14:05:00Z", "2013-06-20X14:05:00Z", "2013-06-20T14:05:00.Z", "2013-06-20T14:05:00+2", "2013-06-20T14:05:00Zulu" };
+        for (String value : values) {
+            try {
+                ISODateFormat.parseDateTimeMillis(value);
+                fail("Expected ParseException for \"" + value + "\"");
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testLeapYears() throws Exception {
+        assertEquals("2012-02-29", ISODateFormat.formatDate(ISODateFormat.parseDate("2012-02-29")));
+        assertEquals("2000-02-29", ISODateFormat.formatDate(ISODateFormat.parseDate("2000-02-29")));
+
+        try {
+            ISODateFormat.parseDate("1900-02-29");
+            fail("Expected ParseException");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 8; t++) {
+                final long seed = t;
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        SimpleDateFormat format = _createSimpleDateFormat();
+                        Random random = new Random(seed);
+                        int mismatches = 0;
+                        for (int i = 0; i < 20000; i++) {
+                            long millis = _randomSeconds(random) * 1000;
+                            String expected = format.format(millis);
+                            if (!expected.equals(ISODateFormat.formatDateTime(millis)) || ISODateFormat.parseDateTimeMillis(expected) != millis) {
+                                mismatches++;
+                            }
+                        }
+
+                        return mismatches;
+                    }
+                }));
+            }
+
+            for (Future<Integer> future : futures) {
+                assertEquals(Integer.valueOf(0), future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a random number of seconds since the epoch in the 20th or 21st century.
+     */
+    static long _randomSeconds(Random random) {
+        return (MIN_MILLIS + (long)(random.nextDouble() * (MAX_MILLIS - MIN_MILLIS))) / 1000;
+    }
+
+    /**
+     * Creates the format that was previously used by APIUtils.getDate.
+     */
+    static SimpleDateFormat _createSimpleDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+}
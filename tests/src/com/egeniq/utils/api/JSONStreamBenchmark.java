@@ -0,0 +1,96 @@
+package com.egeniq.utils.api;
+
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+import org.json.JSONArray;
+
+import android.util.JsonReader;
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.HttpVersion;
+import ch.boye.httpclientandroidlib.entity.ByteArrayEntity;
+import ch.boye.httpclientandroidlib.message.BasicHttpResponse;
+
+import com.egeniq.utils.benchmark.MicroBenchmark;
+
+/**
+ * Time and allocation of parsing JSON responses: reading the body into a String and
+ * parsing it with org.json versus parsing the entity stream with JSONStreamParser.
+ */
+public class JSONStreamBenchmark {
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Exposes the String path of the client.
+     */
+    private static class BenchmarkClient extends APIClient {
+        public BenchmarkClient() {
+            super("http://localhost");
+        }
+
+        public JSONArray parseString(HttpResponse response) throws Exception {
+            return new JSONArray(_getResponseBody(response));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final BenchmarkClient client = new BenchmarkClient();
+
+        MicroBenchmark.printHeader("JSON response");
+        for (int size : new int[] { 1024, 64 * 1024, 1024 * 1024 }) {
+            final byte[] body = _createBody(size);
+            int iterations = Math.max(10, 5000000 / size);
+
+            MicroBenchmark.measure("String + org.json, " + _format(size), iterations, new MicroBenchmark.Operation() {
+                @Override
+                public Object run() throws Exception {
+                    return client.parseString(_createResponse(body));
+                }
+            });
+
+            MicroBenchmark.measure("JSONStreamParser, " + _format(size), iterations, new MicroBenchmark.Operation() {
+                @Override
+                public Object run() throws Exception {
+                    JsonReader reader = new JsonReader(new InputStreamReader(_createResponse(body).getEntity().getContent(), UTF8));
+                    try {
+                        return JSONStreamParser.readArray(reader);
+                    } finally {
+                        reader.close();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates a JSON response with the given body.
+     */
+    private static HttpResponse _createResponse(byte[] body) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        ByteArrayEntity entity = new ByteArrayEntity(body);
+        entity.setContentType("application/json; charset=utf-8");
+        response.setEntity(entity);
+        return response;
+    }
+
+    /**
+     * Creates a JSON array body of (about) the given size, shaped like a listing.
+     */
+    private static byte[] _createBody(int size) throws Exception {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; builder.length() < size - 160; i++) {
+            builder.append(i > 0 ? "," : "");
+            builder.append("{\"id\":").append(i).append(",\"code\":\"channel-").append(i).append("\",\"name\":\"Café ").append(i);
+            builder.append("\",\"score\":").append(i * 0.25).append(",\"active\":").append(i % 2 == 0).append(",\"tags\":[\"news\",\"sports\"],\"parent\":null}");
+        }
+
+        return builder.append("]").toString().getBytes(UTF8);
+    }
+
+    /**
+     * Formats a size.
+     */
+    private static String _format(int size) {
+        return size >= 1024 * 1024 ? size / (1024 * 1024) + " MB" : size / 1024 + " KB";
+    }
+}
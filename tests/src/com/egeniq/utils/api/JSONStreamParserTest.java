@@ -0,0 +1,138 @@
+package com.egeniq.utils.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import android.util.JsonReader;
+import ch.boye.httpclientandroidlib.client.methods.HttpRequestBase;
+import ch.boye.httpclientandroidlib.entity.StringEntity;
+
+/**
+ * Streamed JSON is parsed into the same values as org.json parses from a string.
+ */
+public class JSONStreamParserTest {
+    private final static String JSON = "{\"int\":42,\"long\":12345678901,\"double\":1.5,\"exponent\":1e3,\"huge\":123456789012345678901234," + "\"string\":\"Caf\\u00e9 \\\"quoted\\\"\",\"true\":true,\"false\":false,\"null\":null," + "\"array\":[1,\"two\",[3],{\"four\":4}],\"object\":{\"nested\":{\"empty\":{}}},\"emptyArray\":[]}";
+
+    @Test
+    public void testObjectMatchesOrgJson() throws Exception {
+        JSONObject expected = new JSONObject(JSON);
+        JSONObject actual = JSONStreamParser.readObject(new JsonReader(new StringReader(JSON)));
+
+        assertEquals(expected.toString(), actual.toString());
+        for (String name : new String[] { "int", "long", "double", "exponent", "huge", "string", "true", "null" }) {
+            assertEquals(name, expected.get(name).getClass(), actual.get(name).getClass());
+        }
+
+        assertSame(JSONObject.NULL, actual.get("null"));
+    }
+
+    @Test
+    public void testArray() throws Exception {
+        JSONArray array = JSONStreamParser.readArray(new JsonReader(new StringReader("[1, 2147483648, \"x\", null]")));
+
+        assertEquals(4, array.length());
+        assertEquals(Integer.valueOf(1), array.get(0));
+        assertEquals(Long.valueOf(2147483648L), array.get(1));
+        assertEquals("x", array.get(2));
+        assertTrue(array.isNull(3));
+    }
+
+    @Test
+    public void testTruncatedInputFails() {
+        try {
+            JSONStreamParser.readObject(new JsonReader(new StringReader("{\"a\":[1,2")));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStreamingClient() throws Exception {
+        StubServer server = new StubServer().start();
+        try {
+            String token = server.createEndpoint();
+
+            APIClient client = new APIClient(server.getBaseURL());
+            JSONObject buffered = client.get("endpoints/" + token);
+
+            client.setStreamingEnabled(true);
+            JSONObject streamed = client.get("endpoints/" + token);
+            assertEquals(buffered.toString(), streamed.toString());
+
+            try {
+                client.get("endpoints/unknown");
+                fail("Expected APIException");
+            } catch (APIException e) {
+                assertEquals(404, e.getResponseCode());
+                assertEquals("endpoint_not_found", e.getCode());
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testOnlyGetRequestsAreStreamed() throws Exception {
+        StubServer server = new StubServer().start();
+        try {
+            String token = server.createEndpoint();
+            final AtomicInteger streamed = new AtomicInteger();
+
+            APIClient client = new APIClient(server.getBaseURL()) {
+                @Override
+                protected <T> T _executeStreamingAPIRequest(HttpRequestBase httpRequest, JSONStreamHandler<T> handler) throws APIException {
+                    streamed.incrementAndGet();
+                    return super._executeStreamingAPIRequest(httpRequest, handler);
+                }
+            };
+            client.setStreamingEnabled(true);
+
+            client.get("endpoints/" + token);
+            assertEquals(1, streamed.get());
+
+            StringEntity entity = new StringEntity("channelCode=news");
+            entity.setContentType("application/x-www-form-urlencoded");
+            client.post("endpoints/" + token + "/subscriptions", entity);
+            client.delete("endpoints/" + token + "/subscriptions/news");
+            assertEquals(1, streamed.get());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testStreamingHonoursMaxBodySize() throws Exception {
+        StubServer server = new StubServer().start();
+        try {
+            String token = server.createEndpoint();
+
+            APIClient client = new APIClient(server.getBaseURL());
+            client.setStreamingEnabled(true);
+            client.setMaxResponseBodySize(10);
+
+            try {
+                client.get("endpoints/" + token);
+                fail("Expected APIException");
+            } catch (APIException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+
+            client.setMaxResponseBodySize(-1);
+            assertEquals(token, client.get("endpoints/" + token).getString("token"));
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.egeniq.utils.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Minimal micro benchmark harness: measures the average time and the heap allocation 
+ * per operation on the calling thread, after a warm-up.
+ * 
+ * Allocation is measured with com.sun.management.ThreadMXBean and reported as -1 on 
+ * JVMs that don't support it.
+ * 
+ * System properties:
+ * <ul>
+ * <li>benchmark.scale: multiplies the number of iterations (default 1)</li>
+ * </ul>
+ */
+public final class MicroBenchmark {
+    private static volatile Object _sink;
+
+    /**
+     * Benchmarked operation.
+     */
+    public interface Operation {
+        /**
+         * Executes the operation once, the result is kept alive so it isn't optimized away.
+         */
+        public Object run() throws Exception;
+    }
+
+    private MicroBenchmark() {
+    }
+
+    /**
+     * Prints the header of a result table.
+     */
+    public static void printHeader(String title) {
+        System.out.println();
+        System.out.println(title);
+        System.out.println(String.format(Locale.US, "%-44s %14s %14s", "operation", "ns/op", "bytes/op"));
+    }
+
+    /**
+     * Warms up and measures the given operation and prints a result line.
+     * 
+     * @param name       Name.
+     * @param iterations Number of measured iterations, the warm-up uses the same number.
+     * @param operation  Operation.
+     */
+    public static void measure(String name, int iterations, Operation operation) throws Exception {
+        iterations = Math.max(1, (int)(iterations * Double.parseDouble(System.getProperty("benchmark.scale", "1"))));
+
+        for (int i = 0; i < iterations; i++) {
+            _sink = operation.run();
+        }
+
+        long startBytes = _getAllocatedBytes();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            _sink = operation.run();
+        }
+
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = startBytes < 0 ? -1 : _getAllocatedBytes() - startBytes;
+
+        System.out.println(String.format(Locale.US, "%-44s %14.1f %14.0f", name, (double)elapsed / iterations, allocated < 0 ? -1 : (double)allocated / iterations));
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread, -1 if unsupported.
+     */
+    private static long _getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,257 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.client.methods.HttpGet;
+import ch.boye.httpclientandroidlib.util.EntityUtils;
+
+import com.egeniq.utils.api.APIClient;
+
+/**
+ * Token bucket and bulkhead of the admission controller.
+ */
+public class AdmissionControllerTest {
+    private final static String HOST = "127.0.0.1";
+
+    private StubServer _server;
+    private APIClient _client;
+    private ExecutorService _executor;
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _server.addHandler(new StubServer.Handler() {
+            @Override
+            public StubServer.Response handle(StubServer.Request request) {
+                return new StubServer.Response(200, new byte[256 * 1024]).setHeader("Content-Type", "application/octet-stream");
+            }
+        });
+
+        _client = new APIClient(_server.getBaseURL());
+        _executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        _executor.shutdownNow();
+        _server.stop();
+    }
+
+    @Test
+    public void testTokenBucketRefill() throws Exception {
+        AdmissionController controller = new AdmissionController(HOST, new AdmissionPolicy().setRate(10).setBurst(2));
+
+        // the bucket starts full
+        controller._acquire(_createRequest(), 0);
+        controller._acquire(_createRequest(), 0);
+        _assertRejected(controller, AdmissionRejectedException.Reason.RATE_LIMITED);
+
+        Thread.sleep(120);
+        controller._acquire(_createRequest(), 0);
+        _assertRejected(controller, AdmissionRejectedException.Reason.RATE_LIMITED);
+
+        // waits for the next token, which is available after 100 ms
+        long startTime = System.nanoTime();
+        controller._acquire(_createRequest(), 1000);
+        long elapsed = RequestTrace._elapsed(startTime);
+        assertTrue("waited " + elapsed + "ms", elapsed >= 50 && elapsed < 500);
+
+        assertEquals(4, controller.getAdmittedCount());
+        assertEquals(2, controller.getRateRejectedCount());
+    }
+
+    @Test
+    public void testBucketDoesntExceedBurst() throws Exception {
+        AdmissionController controller = new AdmissionController(HOST, new AdmissionPolicy().setRate(100).setBurst(2));
+
+        Thread.sleep(100);
+        controller._acquire(_createRequest(), 0);
+        controller._acquire(_createRequest(), 0);
+        _assertRejected(controller, AdmissionRejectedException.Reason.RATE_LIMITED);
+    }
+
+    @Test
+    public void testRejectedAcquireDoesntConsumeToken() throws Exception {
+        AdmissionController controller = new AdmissionController(HOST, new AdmissionPolicy().setRate(10).setBurst(1).setMaxConcurrentRequests(1));
+
+        controller._acquire(_createRequest(), 0);
+        Thread.sleep(120);
+
+        // a token is available, but the bulkhead is full
+        _assertRejected(controller, AdmissionRejectedException.Reason.CONCURRENCY_LIMITED);
+        _assertRejected(controller, AdmissionRejectedException.Reason.CONCURRENCY_LIMITED);
+
+        controller._release();
+        controller._acquire(_createRequest(), 0);
+        assertEquals(2, controller.getAdmittedCount());
+        assertEquals(2, controller.getConcurrencyRejectedCount());
+        assertEquals(0, controller.getRateRejectedCount());
+    }
+
+    @Test
+    public void testWaitingRequestIsAdmittedOnRelease() throws Exception {
+        final AdmissionController controller = new AdmissionController(HOST, new AdmissionPolicy().setMaxConcurrentRequests(1));
+        controller._acquire(_createRequest(), 0);
+
+        Future<Void> waiting = _executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                controller._acquire(_createRequest(), 5000);
+                return null;
+            }
+        });
+
+        _awaitWaiting(controller, 1);
+        controller._release();
+        waiting.get(1, TimeUnit.SECONDS);
+
+        assertEquals(0, controller.getWaitingCount());
+        assertEquals(1, controller.getRunningCount());
+    }
+
+    @Test
+    public void testAbortedWaitingRequestGivesUp() throws Exception {
+        final AdmissionController controller = new AdmissionController(HOST, new AdmissionPolicy().setMaxConcurrentRequests(1));
+        controller._acquire(_createRequest(), 0);
+
+        final HttpGet request = _createRequest();
+        Future<Void> waiting = _executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                controller._acquire(request, 5000);
+                return null;
+            }
+        });
+
+        _awaitWaiting(controller, 1);
+        request.abort();
+
+        try {
+            waiting.get(1, TimeUnit.SECONDS);
+            fail("Expected InterruptedIOException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InterruptedIOException);
+        }
+
+        assertEquals(0, controller.getWaitingCount());
+        assertEquals(1, controller.getRunningCount());
+        assertEquals(1, controller.getAdmittedCount());
+    }
+
+    @Test
+    public void testSlotIsReleasedWhenBodyIsConsumed() throws Exception {
+        _client.setAdmissionPolicy(new AdmissionPolicy().setMaxConcurrentRequests(1));
+        AdmissionController controller = _client.getAdmissionController(HOST);
+
+        HttpResponse response = _client._execute(_createRequest());
+        assertEquals(1, controller.getRunningCount());
+        _assertExecuteRejected();
+
+        EntityUtils.consume(response.getEntity());
+        assertEquals(0, controller.getRunningCount());
+
+        EntityUtils.consume(_client._execute(_createRequest()).getEntity());
+        assertEquals(0, controller.getRunningCount());
+        assertEquals(2, controller.getAdmittedCount());
+    }
+
+    @Test
+    public void testSlotIsReleasedWhenBodyIsClosedEarly() throws Exception {
+        _client.setAdmissionPolicy(new AdmissionPolicy().setMaxConcurrentRequests(1));
+        AdmissionController controller = _client.getAdmissionController(HOST);
+
+        HttpResponse response = _client._execute(_createRequest());
+        InputStream content = response.getEntity().getContent();
+        content.read(new byte[1024]);
+        assertEquals(1, controller.getRunningCount());
+
+        content.close();
+        assertEquals(0, controller.getRunningCount());
+    }
+
+    @Test
+    public void testSlotIsReleasedWhenRequestIsAborted() throws Exception {
+        _client.setAdmissionPolicy(new AdmissionPolicy().setMaxConcurrentRequests(1));
+        AdmissionController controller = _client.getAdmissionController(HOST);
+
+        HttpGet request = _createRequest();
+        HttpResponse response = _client._execute(request);
+        InputStream content = response.getEntity().getContent();
+        content.read(new byte[1024]);
+
+        request.abort();
+        try {
+            while (content.read(new byte[1024]) != -1) {
+                // read until the abort surfaces
+            }
+        } catch (IOException e) {
+            // expected
+        } finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+
+        assertEquals(0, controller.getRunningCount());
+        EntityUtils.consume(_client._execute(_createRequest()).getEntity());
+        assertEquals(2, controller.getAdmittedCount());
+    }
+
+    /**
+     * Creates a request to the stand-in server.
+     */
+    private HttpGet _createRequest() {
+        return new HttpGet(_server.getBaseURL() + "/item");
+    }
+
+    /**
+     * Asserts that the controller rejects a request for the given reason.
+     */
+    private void _assertRejected(AdmissionController controller, AdmissionRejectedException.Reason reason) throws IOException {
+        try {
+            controller._acquire(_createRequest(), 0);
+            fail("Expected AdmissionRejectedException");
+        } catch (AdmissionRejectedException e) {
+            assertEquals(reason, e.getReason());
+        }
+    }
+
+    /**
+     * Asserts that the client rejects a request because the bulkhead is full.
+     */
+    private void _assertExecuteRejected() throws IOException {
+        try {
+            _client._execute(_createRequest());
+            fail("Expected AdmissionRejectedException");
+        } catch (AdmissionRejectedException e) {
+            assertEquals(AdmissionRejectedException.Reason.CONCURRENCY_LIMITED, e.getReason());
+        }
+    }
+
+    /**
+     * Waits until the given number of requests waits to be admitted.
+     */
+    private static void _awaitWaiting(AdmissionController controller, int count) throws InterruptedException {
+        for (int i = 0; i < 500 && controller.getWaitingCount() < count; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(count, controller.getWaitingCount());
+    }
+}
@@ -0,0 +1,118 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.HttpVersion;
+import ch.boye.httpclientandroidlib.impl.cookie.DateUtils;
+import ch.boye.httpclientandroidlib.message.BasicHttpResponse;
+
+/**
+ * Cache-Control and Expires handling of cached responses.
+ */
+public class CachedResponseTest {
+    @Test
+    public void testMaxAge() {
+        CachedResponse cached = CachedResponse.create(_response(200, "max-age=60"), "body");
+        assertNotNull(cached);
+        assertTrue(cached.isFresh());
+        _assertExpiresIn(60000, cached);
+    }
+
+    @Test
+    public void testNoStoreWinsRegardlessOfOrder() {
+        assertNull(CachedResponse.create(_response(200, "max-age=60, no-store"), "body"));
+        assertNull(CachedResponse.create(_response(200, "no-store, max-age=60"), "body"));
+        assertNull(CachedResponse.create(_response(200, "max-age=60", "no-store"), "body"));
+    }
+
+    @Test
+    public void testNoCacheRequiresRevalidation() {
+        for (String cacheControl : new String[] { "no-cache, max-age=60", "max-age=60, no-cache" }) {
+            CachedResponse cached = CachedResponse.create(_withETag(_response(200, cacheControl), "\"1\""), "body");
+            assertNotNull(cached);
+            assertFalse(cached.isFresh());
+            assertTrue(cached.isRevalidatable());
+        }
+    }
+
+    @Test
+    public void testMustRevalidateCombinesWithMaxAge() {
+        _assertExpiresIn(60000, CachedResponse.create(_response(200, "must-revalidate, max-age=60"), "body"));
+        _assertExpiresIn(60000, CachedResponse.create(_response(200, "max-age=60, must-revalidate"), "body"));
+    }
+
+    @Test
+    public void testMaxAgeOverridesExpires() {
+        HttpResponse response = _response(200, "max-age=60");
+        response.setHeader("Expires", DateUtils.formatDate(new Date(System.currentTimeMillis() + 3600000)));
+        _assertExpiresIn(60000, CachedResponse.create(response, "body"));
+    }
+
+    @Test
+    public void testExpires() {
+        HttpResponse response = _response(200);
+        response.setHeader("Expires", DateUtils.formatDate(new Date(System.currentTimeMillis() + 3600000)));
+        CachedResponse cached = CachedResponse.create(response, "body");
+        assertNotNull(cached);
+        assertTrue(cached.isFresh());
+    }
+
+    @Test
+    public void testStaleWithoutValidatorsIsNotCached() {
+        assertNull(CachedResponse.create(_response(200, "no-cache"), "body"));
+        assertNull(CachedResponse.create(_response(200), "body"));
+        assertNotNull(CachedResponse.create(_withETag(_response(200), "\"1\""), "body"));
+    }
+
+    @Test
+    public void testOnlyOkIsCached() {
+        assertNull(CachedResponse.create(_response(404, "max-age=60"), "body"));
+    }
+
+    @Test
+    public void testRefresh() {
+        CachedResponse cached = CachedResponse.create(_withETag(_response(200, "no-cache"), "\"1\""), "body");
+        CachedResponse refreshed = cached.refresh(_response(304, "max-age=60"));
+        assertEquals("body", refreshed.getBody());
+        assertEquals("\"1\"", refreshed.getETag());
+        assertTrue(refreshed.isFresh());
+    }
+
+    /**
+     * Asserts that the response expires after the given time (approximately).
+     */
+    private static void _assertExpiresIn(long expected, CachedResponse cached) {
+        assertNotNull(cached);
+        long remaining = cached.getExpires() - System.currentTimeMillis();
+        assertTrue("Expires in " + remaining + "ms", remaining > expected - 5000 && remaining <= expected);
+    }
+
+    /**
+     * Creates a response with the given Cache-Control headers.
+     */
+    private static HttpResponse _response(int statusCode, String... cacheControl) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, "Status");
+        for (String value : cacheControl) {
+            response.addHeader("Cache-Control", value);
+        }
+
+        return response;
+    }
+
+    /**
+     * Adds an ETag header to the given response.
+     */
+    private static HttpResponse _withETag(HttpResponse response, String eTag) {
+        response.setHeader("ETag", eTag);
+        return response;
+    }
+}
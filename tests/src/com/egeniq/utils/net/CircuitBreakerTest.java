@@ -0,0 +1,161 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.egeniq.utils.api.APIException;
+import com.egeniq.utils.net.CircuitBreaker.State;
+
+/**
+ * Circuit breaker state transitions.
+ */
+public class CircuitBreakerTest {
+    private final static String ROUTE = "http://127.0.0.1:80/v2";
+
+    private final List<String> _transitions = new ArrayList<String>();
+
+    @Test
+    public void testSlidingWindowTrips() throws Exception {
+        CircuitBreaker circuitBreaker = _create(new CircuitBreakerPolicy().setWindowSize(4).setMinimumRequests(4).setFailureRateThreshold(0.75).setOpenDuration(60000));
+
+        _record(circuitBreaker, false, false, true);
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+
+        _record(circuitBreaker, true, true, true);
+        assertEquals(0, circuitBreaker.getFailureRate(), 0);
+
+        // the failures of the first requests have left the window
+        _record(circuitBreaker, false, false);
+        assertEquals(0.5, circuitBreaker.getFailureRate(), 0);
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+
+        _record(circuitBreaker, false);
+        assertEquals(0.75, circuitBreaker.getFailureRate(), 0);
+        assertEquals(State.OPEN, circuitBreaker.getState());
+        assertEquals(Arrays.asList("CLOSED>OPEN"), _transitions);
+
+        _assertRejected(circuitBreaker);
+        _assertRejected(circuitBreaker);
+        assertEquals(2, circuitBreaker.getRejectedCount());
+    }
+
+    @Test
+    public void testMinimumRequests() throws Exception {
+        CircuitBreaker circuitBreaker = _create(new CircuitBreakerPolicy().setWindowSize(10).setMinimumRequests(5).setFailureRateThreshold(0.5));
+
+        _record(circuitBreaker, false, false, false, false);
+        assertEquals(1, circuitBreaker.getFailureRate(), 0);
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+
+        _record(circuitBreaker, false);
+        assertEquals(State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenProbeFailureReopens() throws Exception {
+        CircuitBreaker circuitBreaker = _create(new CircuitBreakerPolicy().setWindowSize(2).setMinimumRequests(2).setOpenDuration(50));
+        _record(circuitBreaker, false, false);
+        assertEquals(State.OPEN, circuitBreaker.getState());
+
+        Thread.sleep(100);
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+
+        // a single probe is let through
+        circuitBreaker._acquirePermission();
+        _assertRejected(circuitBreaker);
+
+        circuitBreaker._recordResult(false);
+        assertEquals(State.OPEN, circuitBreaker.getState());
+        _assertRejected(circuitBreaker);
+        assertEquals(Arrays.asList("CLOSED>OPEN", "OPEN>HALF_OPEN", "HALF_OPEN>OPEN"), _transitions);
+    }
+
+    @Test
+    public void testIgnoredProbeReleasesPermission() throws Exception {
+        CircuitBreaker circuitBreaker = _create(new CircuitBreakerPolicy().setWindowSize(2).setMinimumRequests(2).setOpenDuration(50));
+        _record(circuitBreaker, false, false);
+        Thread.sleep(100);
+
+        circuitBreaker._acquirePermission();
+        circuitBreaker._recordIgnored();
+        circuitBreaker._acquirePermission();
+        _assertRejected(circuitBreaker);
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        CircuitBreaker circuitBreaker = _create(new CircuitBreakerPolicy().setWindowSize(2).setMinimumRequests(2).setOpenDuration(50).setProbeCount(2));
+        _record(circuitBreaker, false, false);
+        Thread.sleep(100);
+
+        circuitBreaker._acquirePermission();
+        circuitBreaker._acquirePermission();
+        _assertRejected(circuitBreaker);
+
+        circuitBreaker._recordResult(true);
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+
+        circuitBreaker._recordResult(true);
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getFailureRate(), 0);
+        assertEquals(Arrays.asList("CLOSED>OPEN", "OPEN>HALF_OPEN", "HALF_OPEN>CLOSED"), _transitions);
+
+        // the window starts empty again
+        _record(circuitBreaker, false);
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testAPIExceptionForOpenCircuit() {
+        APIException exception = new APIException(503, new CircuitOpenException(ROUTE));
+        assertEquals(APIException.CIRCUIT_OPEN, exception.getCode());
+        assertEquals(0, exception.getResponseCode());
+
+        exception = new APIException(503, new IOException());
+        assertEquals("unknown", exception.getCode());
+        assertEquals(503, exception.getResponseCode());
+    }
+
+    /**
+     * Creates a circuit breaker that records its state transitions.
+     */
+    private CircuitBreaker _create(CircuitBreakerPolicy policy) {
+        CircuitBreaker.Listener listener = new CircuitBreaker.Listener() {
+            @Override
+            public void onStateChanged(CircuitBreaker circuitBreaker, State previousState) {
+                _transitions.add(previousState + ">" + circuitBreaker.getState());
+            }
+        };
+
+        return new CircuitBreaker(ROUTE, policy, Arrays.asList(listener));
+    }
+
+    /**
+     * Executes requests with the given results.
+     */
+    private static void _record(CircuitBreaker circuitBreaker, boolean... results) throws CircuitOpenException {
+        for (boolean success : results) {
+            circuitBreaker._acquirePermission();
+            circuitBreaker._recordResult(success);
+        }
+    }
+
+    /**
+     * Asserts that the circuit breaker rejects a request.
+     */
+    private static void _assertRejected(CircuitBreaker circuitBreaker) {
+        try {
+            circuitBreaker._acquirePermission();
+            fail("Expected CircuitOpenException");
+        } catch (CircuitOpenException e) {
+            assertEquals(ROUTE, e.getRoute());
+        }
+    }
+}
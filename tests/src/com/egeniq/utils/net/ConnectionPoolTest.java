@@ -0,0 +1,78 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+import ch.boye.httpclientandroidlib.params.HttpConnectionParams;
+
+/**
+ * Pool per configuration, the immutable default configuration and connection
+ * validation settings.
+ */
+public class ConnectionPoolTest {
+    @Test
+    public void testDefaultConfigIsImmutable() {
+        try {
+            ConnectionPoolConfig.DEFAULT.setMaxTotal(1);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        assertEquals(100, ConnectionPoolConfig.DEFAULT.getMaxTotal());
+        assertEquals(1, new ConnectionPoolConfig().setMaxTotal(1).getMaxTotal());
+    }
+
+    @Test
+    public void testPoolPerConfig() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+
+        assertSame(ConnectionPool.get(config), ConnectionPool.get(config));
+        assertTrue(ConnectionPool.get(config) != ConnectionPool.get(ConnectionPoolConfig.DEFAULT));
+    }
+
+    @Test
+    public void testStaleCheckWithoutValidateAfterInactivity() {
+        assertTrue(HttpConnectionParams.isStaleCheckingEnabled(ConnectionPool.get(new ConnectionPoolConfig()).getHttpClient().getParams()));
+        assertTrue(HttpConnectionParams.isStaleCheckingEnabled(ConnectionPool.get(new ConnectionPoolConfig().setValidateAfterInactivity(0)).getHttpClient().getParams()));
+        assertTrue(!HttpConnectionParams.isStaleCheckingEnabled(ConnectionPool.get(new ConnectionPoolConfig().setValidateAfterInactivity(2000)).getHttpClient().getParams()));
+    }
+
+    @Test
+    public void testEvictKeepsIdleConnectionsWithZeroValidateAfterInactivity() throws Exception {
+        StubServer server = new StubServer().start();
+        try {
+            ConnectionPool pool = ConnectionPool.get(new ConnectionPoolConfig().setValidateAfterInactivity(0));
+            pool.warmUp(new URI(server.getBaseURL()));
+            assertEquals(1, pool.getConnectionCount());
+
+            pool.evict();
+            assertEquals(1, pool.getConnectionCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testEvictClosesConnectionsIdleLongerThanValidateAfterInactivity() throws Exception {
+        StubServer server = new StubServer().start();
+        try {
+            ConnectionPool pool = ConnectionPool.get(new ConnectionPoolConfig().setValidateAfterInactivity(50).setEvictionInterval(0));
+            pool.warmUp(new URI(server.getBaseURL()));
+            assertEquals(1, pool.getConnectionCount());
+
+            Thread.sleep(100);
+            pool.evict();
+            assertEquals(0, pool.getConnectionCount());
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * State and listener handling of the connectivity monitor.
+ */
+public class ConnectivityMonitorTest {
+    private final static Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void testStopResetsState() {
+        TestConnectivityMonitor monitor = new TestConnectivityMonitor();
+        final AtomicInteger changes = new AtomicInteger();
+        monitor.addListener(new ConnectivityMonitor.Listener() {
+            @Override
+            public void onConnectivityChanged(ConnectivityMonitor monitor) {
+                changes.incrementAndGet();
+            }
+        });
+
+        monitor.start();
+        monitor.setOffline();
+        assertFalse(monitor.isConnected());
+        assertEquals(NetworkClass.NONE, monitor.getNetworkClass());
+
+        monitor.stop();
+        assertFalse(monitor.isStarted());
+        assertTrue(monitor.isConnected());
+        assertFalse(monitor.isMetered());
+        assertEquals(2, changes.get());
+    }
+
+    @Test
+    public void testStopRunsDeferredTasks() {
+        TestConnectivityMonitor monitor = new TestConnectivityMonitor();
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+
+        monitor.start();
+        monitor.setMobile();
+        monitor.executeWhenUnmetered(task, DIRECT);
+        assertEquals(0, runs.get());
+
+        monitor.stop();
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testAwaitConnected() throws InterruptedException {
+        TestConnectivityMonitor monitor = new TestConnectivityMonitor();
+        monitor.setOffline();
+        assertFalse(monitor.awaitConnected(10));
+
+        monitor.setWifi();
+        assertTrue(monitor.awaitConnected(10));
+    }
+}
@@ -0,0 +1,57 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.egeniq.utils.api.APIClient;
+
+/**
+ * Caching of lookups and clearing of the cache when the connectivity changes.
+ */
+public class DnsCacheTest {
+    @Test
+    public void testLookupsAreCached() throws Exception {
+        DnsCache cache = new DnsCache();
+        cache.resolve("localhost");
+        cache.resolve("LOCALHOST");
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testClearedOnConnectivityChange() throws Exception {
+        DnsCache cache = new DnsCache();
+        TestConnectivityMonitor monitor = new TestConnectivityMonitor();
+
+        APIClient client = new APIClient("http://localhost/");
+        client.setConnectionPoolConfig(new ConnectionPoolConfig().setDnsCache(cache));
+        client.setConnectivityMonitor(monitor);
+        client.setConnectivityMonitor(monitor);
+
+        cache.resolve("localhost");
+        monitor.setMobile();
+        cache.resolve("localhost");
+        cache.resolve("localhost");
+
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testHostConfigurationIsCleared() throws Exception {
+        DnsCache cache = new DnsCache();
+        TestConnectivityMonitor monitor = new TestConnectivityMonitor();
+
+        APIClient client = new APIClient("http://localhost/");
+        client.setConnectivityMonitor(monitor);
+        client.setConnectionPoolConfig("example.com", new ConnectionPoolConfig().setDnsCache(cache));
+
+        cache.resolve("localhost");
+        monitor.setOffline();
+        cache.resolve("localhost");
+
+        assertEquals(2, cache.getMissCount());
+    }
+}
@@ -0,0 +1,36 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import ch.boye.httpclientandroidlib.client.methods.HttpGet;
+
+/**
+ * Requests for different resources of the same kind share an endpoint.
+ */
+public class HistogramRequestListenerTest {
+    @Test
+    public void testNormalizePath() {
+        String path = "/v2/items";
+        assertSame(path, HistogramRequestListener._normalizePath(path));
+        assertEquals("/items/{id}", HistogramRequestListener._normalizePath("/items/12345"));
+        assertEquals("/items/{id}/", HistogramRequestListener._normalizePath("/items/12345/"));
+        assertEquals("/endpoints/{id}/subscriptions", HistogramRequestListener._normalizePath("/endpoints/3f2504e0-4f89-11d3-9a0c-0305e82c3301/subscriptions"));
+        assertEquals("/subscriptions/app/{id}", HistogramRequestListener._normalizePath("/subscriptions/app/aB3dE5gH7jK9mN1pQ3"));
+        assertEquals("/users/deadbeef", HistogramRequestListener._normalizePath("/users/deadbeef"));
+        assertEquals("/oauth2", HistogramRequestListener._normalizePath("/oauth2"));
+        assertEquals("", HistogramRequestListener._normalizePath(null));
+    }
+
+    @Test
+    public void testEndpointsAreShared() {
+        HistogramRequestListener listener = new HistogramRequestListener();
+        RequestTrace first = new RequestTrace(new HttpGet("http://localhost:8080/items/1"), listener);
+        RequestTrace second = new RequestTrace(new HttpGet("http://localhost:8080/items/2"), listener);
+
+        assertSame(listener.getMetrics(first), listener.getMetrics(second));
+        assertEquals("[GET http://localhost:8080/items/{id}]", listener.getMetrics().keySet().toString());
+    }
+}
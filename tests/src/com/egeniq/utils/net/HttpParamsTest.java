@@ -0,0 +1,120 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import ch.boye.httpclientandroidlib.params.BasicHttpParams;
+import ch.boye.httpclientandroidlib.params.HttpConnectionParams;
+import ch.boye.httpclientandroidlib.params.HttpParams;
+import ch.boye.httpclientandroidlib.params.HttpProtocolParams;
+
+import com.egeniq.utils.api.APIClient;
+
+/**
+ * The shared request parameters are immutable, the default parameters handed to
+ * subclasses are not.
+ */
+public class HttpParamsTest {
+    /**
+     * Client that overrides the default parameters.
+     */
+    private static class CustomClient extends APIClient {
+        public CustomClient(String baseURL) {
+            super(baseURL);
+        }
+
+        @Override
+        protected HttpParams _getDefaultParams() {
+            HttpParams params = super._getDefaultParams();
+            HttpProtocolParams.setUserAgent(params, "custom-agent");
+            HttpConnectionParams.setSoTimeout(params, 4321);
+            return params;
+        }
+    }
+
+    @Test
+    public void testOverriddenDefaultParamsReachRequest() throws Exception {
+        final AtomicReference<String> userAgent = new AtomicReference<String>();
+        StubServer server = new StubServer().start();
+        server.addHandler(new StubServer.Handler() {
+            @Override
+            public StubServer.Response handle(StubServer.Request request) {
+                userAgent.set(request.getHeader("User-Agent"));
+                return null;
+            }
+        });
+
+        try {
+            CustomClient client = new CustomClient(server.getBaseURL());
+            client.getArray("subscriptions/app/token");
+            assertEquals("custom-agent", userAgent.get());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testOverriddenDefaultParamsWithDeadline() {
+        CustomClient client = new CustomClient("http://localhost/");
+
+        HttpParams params = client._getRequestParams(null);
+        assertEquals(4321, HttpConnectionParams.getSoTimeout(params));
+
+        params = client._getRequestParams(new Deadline(-1).setReadTimeout(1000));
+        assertEquals(1000, HttpConnectionParams.getSoTimeout(params));
+        assertEquals("custom-agent", HttpProtocolParams.getUserAgent(params));
+    }
+
+    @Test
+    public void testDefaultParamsAreMutableCopies() {
+        APIClient client = new APIClient("http://localhost/");
+        client.setTimeout(1000);
+
+        HttpParams params = client._getDefaultParams();
+        assertEquals(1000, HttpConnectionParams.getConnectionTimeout(params));
+        assertEquals(1000, HttpConnectionParams.getSoTimeout(params));
+        assertTrue(HttpConnectionParams.getSoKeepalive(params));
+
+        HttpConnectionParams.setSoTimeout(params, 5);
+        assertEquals(1000, HttpConnectionParams.getSoTimeout(client._getDefaultParams()));
+        assertNotSame(params, client._getDefaultParams());
+    }
+
+    @Test
+    public void testRequestParamsAreShared() {
+        APIClient client = new APIClient("http://localhost/");
+
+        HttpParams params = client._getRequestParams(null);
+        assertSame(params, client._getRequestParams(null));
+
+        try {
+            params.setParameter("name", "value");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testImmutableParamsCopyValues() {
+        BasicHttpParams source = new BasicHttpParams();
+        source.setParameter("name", "value");
+
+        ImmutableHttpParams params = new ImmutableHttpParams(source);
+        source.setParameter("name", "changed");
+        assertEquals("value", params.getParameter("name"));
+
+        BasicHttpParams copy = params._toMutable();
+        copy.setParameter("name", "other");
+        assertEquals("other", copy.getParameter("name"));
+        assertEquals("value", params.getParameter("name"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import io.msgs.stub.StubServer;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.egeniq.utils.api.APIClient;
+
+/**
+ * Network policies of the current network class.
+ */
+public class NetworkPolicyTest {
+    private StubServer _server;
+    private TestConnectivityMonitor _monitor;
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _monitor = new TestConnectivityMonitor();
+        _monitor.setWifi();
+    }
+
+    @After
+    public void tearDown() {
+        _server.stop();
+    }
+
+    @Test
+    public void testLimitDoesNotResizeSharedExecutor() throws Exception {
+        ThreadPoolExecutor shared = (ThreadPoolExecutor)AbstractHTTPClient._getDefaultExecutor();
+        int sharedSize = shared.getMaximumPoolSize();
+
+        APIClient limited = _createClient();
+        limited.setNetworkPolicy(NetworkClass.WIFI, new NetworkPolicy().setMaxConcurrentRequests(1));
+        APIClient other = _createClient();
+
+        limited.getArrayAsync("subscriptions/app/token", null).get(5, TimeUnit.SECONDS);
+        other.getArrayAsync("subscriptions/app/token", null).get(5, TimeUnit.SECONDS);
+
+        assertEquals(sharedSize, shared.getMaximumPoolSize());
+        assertSame(shared, other.getExecutor());
+        assertNotSame(shared, limited.getExecutor());
+        assertEquals(1, ((ThreadPoolExecutor)limited.getExecutor()).getMaximumPoolSize());
+    }
+
+    @Test
+    public void testLimitFollowsNetworkClass() throws Exception {
+        APIClient client = _createClient();
+        client.setMaxConcurrentRequests(8);
+        client.setNetworkPolicy(NetworkClass.MOBILE, new NetworkPolicy().setMaxConcurrentRequests(2));
+
+        client.getArrayAsync("subscriptions/app/token", null).get(5, TimeUnit.SECONDS);
+        assertEquals(8, ((ThreadPoolExecutor)client.getExecutor()).getMaximumPoolSize());
+
+        _monitor.setMobile();
+        client.getArrayAsync("subscriptions/app/token", null).get(5, TimeUnit.SECONDS);
+        assertEquals(2, ((ThreadPoolExecutor)client.getExecutor()).getMaximumPoolSize());
+
+        _monitor.setWifi();
+        client.getArrayAsync("subscriptions/app/token", null).get(5, TimeUnit.SECONDS);
+        assertEquals(8, ((ThreadPoolExecutor)client.getExecutor()).getMaximumPoolSize());
+    }
+
+    /**
+     * Creates a client that uses the test monitor.
+     */
+    private APIClient _createClient() {
+        APIClient client = new APIClient(_server.getBaseURL());
+        client.setConnectivityMonitor(_monitor);
+        return client;
+    }
+}
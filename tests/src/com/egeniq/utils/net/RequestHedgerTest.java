@@ -0,0 +1,145 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.egeniq.utils.api.APIClient;
+import com.egeniq.utils.api.APIException;
+
+/**
+ * Hedged GET requests against the stand-in server.
+ */
+public class RequestHedgerTest {
+    private StubServer _server;
+    private APIClient _client;
+    private final AtomicInteger _stallCount = new AtomicInteger();
+    private final CountDownLatch _stalled = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _server.addHandler(new StubServer.Handler() {
+            @Override
+            public StubServer.Response handle(StubServer.Request request) throws IOException {
+                if (!request.getPath().equals("items")) {
+                    return null;
+                }
+
+                if (_stallCount.getAndDecrement() > 0) {
+                    try {
+                        _stalled.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                try {
+                    return StubServer.Response.json(200, new JSONObject().put("ok", true));
+                } catch (Exception e) {
+                    throw new IOException(e.toString());
+                }
+            }
+        });
+
+        _client = new APIClient(_server.getBaseURL());
+        _client.setHedgingPolicy(new HedgingPolicy().setMinimumDelay(50));
+        _client.setAdmissionPolicy(new AdmissionPolicy().setMaxConcurrentRequests(4));
+
+        for (int i = 0; i < 25; i++) {
+            _client.get("items");
+        }
+
+        _client.getHedgingStatistics().reset();
+    }
+
+    @After
+    public void tearDown() {
+        _stalled.countDown();
+        _server.stop();
+    }
+
+    @Test
+    public void testHedgeWinsOverStalledRequest() throws Exception {
+        _stallCount.set(1);
+
+        long startTime = System.currentTimeMillis();
+        assertTrue(_client.get("items").getBoolean("ok"));
+        assertTrue(System.currentTimeMillis() - startTime < 2000);
+
+        assertEquals(1, _client.getHedgingStatistics().getHedgeCount());
+        assertEquals(1, _client.getHedgingStatistics().getHedgeWinCount());
+        _assertReleased();
+    }
+
+    @Test
+    public void testDeadlineAbortsHedge() throws Exception {
+        _stallCount.set(2);
+
+        Deadline previous = Deadline.setCurrent(new Deadline(300));
+        long startTime = System.currentTimeMillis();
+        try {
+            _client.get("items");
+            fail("Expected APIException");
+        } catch (APIException e) {
+            // expected
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+
+        assertTrue(System.currentTimeMillis() - startTime < 2000);
+        assertEquals(1, _client.getHedgingStatistics().getHedgeCount());
+        assertEquals(0, _client.getHedgingStatistics().getHedgeWinCount());
+        _assertReleased();
+    }
+
+    @Test
+    public void testCancelAbortsHedge() throws Exception {
+        _stallCount.set(2);
+
+        RequestFuture<JSONObject> future = _client.getAsync("items", null);
+        Thread.sleep(200);
+        assertTrue(future.cancel(true));
+
+        assertEquals(1, _client.getHedgingStatistics().getHedgeCount());
+        _assertReleased();
+    }
+
+    @Test
+    public void testHedgeCountsAgainstAdmission() throws Exception {
+        _client.setAdmissionPolicy(new AdmissionPolicy().setMaxConcurrentRequests(1));
+        _stallCount.set(1);
+
+        RequestFuture<JSONObject> future = _client.getAsync("items", null);
+        Thread.sleep(200);
+        _stalled.countDown();
+
+        assertTrue(future.get(2, TimeUnit.SECONDS).getBoolean("ok"));
+        assertEquals(0, _client.getHedgingStatistics().getHedgeCount());
+        assertEquals(1, _client.getHedgingStatistics().getRejectedCount());
+        _assertReleased();
+    }
+
+    /**
+     * Asserts that the admission slots of the request and its hedge are released.
+     */
+    private void _assertReleased() throws InterruptedException {
+        AdmissionController controller = _client.getAdmissionController("127.0.0.1");
+        for (int i = 0; i < 100 && controller.getRunningCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, controller.getRunningCount());
+    }
+}
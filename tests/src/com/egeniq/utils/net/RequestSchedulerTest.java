@@ -0,0 +1,120 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import io.msgs.stub.StubServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.egeniq.utils.api.APIClient;
+
+/**
+ * Priority scheduling of requests against the stand-in server.
+ */
+public class RequestSchedulerTest {
+    private StubServer _server;
+    private APIClient _client;
+    private final CountDownLatch _release = new CountDownLatch(1);
+    private final List<String> _order = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _server.addHandler(new StubServer.Handler() {
+            @Override
+            public StubServer.Response handle(StubServer.Request request) {
+                if (request.getPath().equals("slow")) {
+                    try {
+                        _release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                _order.add(request.getPath());
+                return StubServer.Response.json(200, new JSONObject());
+            }
+        });
+
+        _client = new APIClient(_server.getBaseURL());
+    }
+
+    @After
+    public void tearDown() {
+        _release.countDown();
+        _server.stop();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertNull(_client.getRequestScheduler());
+    }
+
+    @Test
+    public void testInteractiveIsAdmittedFirst() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler().setMaxConcurrentRequests(1).setReservedShare(RequestPriority.NORMAL, 0).setReservedShare(RequestPriority.BACKGROUND, 0);
+        _client.setRequestScheduler(scheduler);
+
+        Thread slow = _start("slow", RequestPriority.BACKGROUND);
+        _await(scheduler, RequestPriority.BACKGROUND, 1, 0);
+
+        Thread background = _start("background", RequestPriority.BACKGROUND);
+        _await(scheduler, RequestPriority.BACKGROUND, 1, 1);
+        Thread normal = _start("normal", RequestPriority.NORMAL);
+        _await(scheduler, RequestPriority.NORMAL, 0, 1);
+        Thread interactive = _start("interactive", RequestPriority.INTERACTIVE);
+        _await(scheduler, RequestPriority.INTERACTIVE, 0, 1);
+
+        _release.countDown();
+        for (Thread thread : new Thread[] { slow, background, normal, interactive }) {
+            thread.join(5000);
+        }
+
+        assertEquals(Arrays.asList("slow", "interactive", "normal", "background"), _order);
+        assertEquals(0, scheduler.getRunningCount(RequestPriority.BACKGROUND));
+    }
+
+    /**
+     * Starts a request with the given priority on a new thread.
+     */
+    private Thread _start(final String location, final RequestPriority priority) {
+        Thread thread = new Thread(RequestScheduler.withPriority(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    _client.get(location);
+                } catch (Exception e) {
+                    _order.add(location + " failed: " + e);
+                }
+            }
+        }, priority));
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Waits until the scheduler has the given number of running and waiting requests.
+     */
+    private void _await(RequestScheduler scheduler, RequestPriority priority, int running, int waiting) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            if (scheduler.getRunningCount(priority) == running && scheduler.getWaitingCount(priority) == waiting) {
+                return;
+            }
+
+            Thread.sleep(10);
+        }
+
+        assertEquals(running, scheduler.getRunningCount(priority));
+        assertEquals(waiting, scheduler.getWaitingCount(priority));
+    }
+}
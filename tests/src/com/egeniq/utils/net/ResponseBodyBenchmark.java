@@ -0,0 +1,94 @@
+package com.egeniq.utils.net;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.HttpVersion;
+import ch.boye.httpclientandroidlib.entity.ByteArrayEntity;
+import ch.boye.httpclientandroidlib.message.BasicHttpResponse;
+import ch.boye.httpclientandroidlib.util.EntityUtils;
+
+import com.egeniq.utils.api.APIClient;
+import com.egeniq.utils.benchmark.MicroBenchmark;
+
+/**
+ * Time and allocation of reading response bodies: the pooled CharsetDecoder path of
+ * _getResponseBody versus the previous BufferedReader / readLine implementation.
+ */
+public class ResponseBodyBenchmark {
+    public static void main(String[] args) throws Exception {
+        final APIClient client = new APIClient("http://localhost");
+
+        MicroBenchmark.printHeader("Response body");
+        for (int size : new int[] { 1024, 64 * 1024, 1024 * 1024 }) {
+            final byte[] body = _createBody(size);
+            int iterations = Math.max(20, 20000000 / size);
+
+            MicroBenchmark.measure("readLine, " + _format(size), iterations, new MicroBenchmark.Operation() {
+                @Override
+                public Object run() throws Exception {
+                    return _readLines(_createResponse(body));
+                }
+            });
+
+            MicroBenchmark.measure("_getResponseBody, " + _format(size), iterations, new MicroBenchmark.Operation() {
+                @Override
+                public Object run() throws Exception {
+                    return client._getResponseBody(_createResponse(body));
+                }
+            });
+        }
+    }
+
+    /**
+     * Previous implementation.
+     */
+    private static String _readLines(HttpResponse response) throws IOException {
+        InputStream content = response.getEntity().getContent();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(content, Charset.forName("UTF-8")), 8192);
+        StringBuilder builder = new StringBuilder();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            builder.append(line);
+        }
+
+        reader.close();
+        EntityUtils.consumeQuietly(response.getEntity());
+        return builder.toString();
+    }
+
+    /**
+     * Creates a JSON response with the given body.
+     */
+    private static HttpResponse _createResponse(byte[] body) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        ByteArrayEntity entity = new ByteArrayEntity(body);
+        entity.setContentType("application/json; charset=utf-8");
+        response.setEntity(entity);
+        return response;
+    }
+
+    /**
+     * Creates a JSON body of (about) the given size with some non-ASCII text.
+     */
+    static byte[] _createBody(int size) throws IOException {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; builder.length() < size - 64; i++) {
+            builder.append(i > 0 ? ",\n" : "").append("{\"id\":").append(i).append(",\"title\":\"Café naïve € ").append(i).append("\"}");
+        }
+
+        return builder.append("]").toString().getBytes("UTF-8");
+    }
+
+    /**
+     * Formats a size.
+     */
+    private static String _format(int size) {
+        return size >= 1024 * 1024 ? size / (1024 * 1024) + " MB" : size / 1024 + " KB";
+    }
+}
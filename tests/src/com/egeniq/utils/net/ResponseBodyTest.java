@@ -0,0 +1,107 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import ch.boye.httpclientandroidlib.HttpResponse;
+import ch.boye.httpclientandroidlib.HttpVersion;
+import ch.boye.httpclientandroidlib.entity.BasicHttpEntity;
+import ch.boye.httpclientandroidlib.message.BasicHttpResponse;
+
+import com.egeniq.utils.api.APIClient;
+
+/**
+ * Decoding of response bodies.
+ */
+public class ResponseBodyTest {
+    private final APIClient _client = new APIClient("http://localhost");
+
+    @Test
+    public void testUtf8AcrossBufferBoundaries() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append("€é😀");
+        }
+
+        String body = builder.toString();
+        assertEquals(body, _client._getResponseBody(_response(body.getBytes("UTF-8"), "application/json; charset=utf-8", true, 3)));
+        assertEquals(body, _client._getResponseBody(_response(body.getBytes("UTF-8"), "application/json; charset=utf-8", false, 1000)));
+    }
+
+    @Test
+    public void testDeclaredCharset() throws Exception {
+        String body = "{\"name\":\"Café\"}";
+        assertEquals(body, _client._getResponseBody(_response(body.getBytes("ISO-8859-1"), "application/json; charset=ISO-8859-1", true, 1000)));
+        assertEquals(body, _client._getResponseBody(_response(body.getBytes("UTF-16BE"), "text/plain; charset=\"UTF-16BE\"", true, 1000)));
+    }
+
+    @Test
+    public void testDefaultsToUtf8() throws Exception {
+        String body = "{\"name\":\"Café\"}";
+        assertEquals(body, _client._getResponseBody(_response(body.getBytes("UTF-8"), "application/json", true, 1000)));
+        assertEquals(body, _client._getResponseBody(_response(body.getBytes("UTF-8"), null, true, 1000)));
+        assertEquals(body, _client._getResponseBody(_response(body.getBytes("UTF-8"), "application/json; charset=x-unknown", true, 1000)));
+    }
+
+    @Test
+    public void testPreservesNewlines() throws Exception {
+        String body = "line 1\nline 2\r\n\nline 4";
+        assertEquals(body, _client._getResponseBody(_response(body.getBytes("UTF-8"), "text/plain", true, 1000)));
+    }
+
+    @Test
+    public void testMalformedInputIsReplaced() throws Exception {
+        byte[] body = new byte[] { 'a', (byte)0xff, 'b' };
+        assertEquals("a�b", _client._getResponseBody(_response(body, "text/plain; charset=utf-8", true, 1000)));
+    }
+
+    @Test
+    public void testMaxBodySize() throws Exception {
+        _client.setMaxResponseBodySize(100);
+        byte[] body = new byte[101];
+
+        for (boolean knownLength : new boolean[] { true, false }) {
+            try {
+                _client._getResponseBody(_response(body, "text/plain", knownLength, 10));
+                fail("Expected IOException");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("maximum"));
+            }
+        }
+
+        assertEquals(100, _client._getResponseBody(_response(new byte[100], "text/plain", false, 10)).length());
+    }
+
+    @Test
+    public void testNoEntity() throws Exception {
+        assertNull(_client._getResponseBody(new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content")));
+    }
+
+    /**
+     * Creates a response that delivers the given body in reads of at most the given size.
+     */
+    private static HttpResponse _response(byte[] body, String contentType, boolean knownLength, final int chunkSize) {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(body) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+                return super.read(buffer, offset, Math.min(length, chunkSize));
+            }
+        });
+        entity.setContentLength(knownLength ? body.length : -1);
+        if (contentType != null) {
+            entity.setContentType(contentType);
+        }
+
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(entity);
+        return response;
+    }
+}
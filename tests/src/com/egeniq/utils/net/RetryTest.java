@@ -0,0 +1,80 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.egeniq.utils.api.APIClient;
+import com.egeniq.utils.api.APIException;
+
+/**
+ * Retries are only made by the retry policy of the client, never by the transport.
+ */
+public class RetryTest {
+    private StubServer _server;
+    private APIClient _client;
+    private final AtomicInteger _dropCount = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _server.addHandler(new StubServer.Handler() {
+            @Override
+            public StubServer.Response handle(StubServer.Request request) {
+                if (_dropCount.getAndDecrement() > 0) {
+                    // close the connection without response
+                    return new StubServer.Response(0, new byte[0]);
+                }
+
+                return null;
+            }
+        });
+
+        _client = new APIClient(_server.getBaseURL());
+    }
+
+    @After
+    public void tearDown() {
+        _server.stop();
+    }
+
+    @Test
+    public void testNoTransportRetries() throws Exception {
+        _client.setRetryPolicy(null);
+        _dropCount.set(1);
+
+        try {
+            _client.get("subscriptions/app/token");
+            fail("Expected APIException");
+        } catch (APIException e) {
+            // expected
+        }
+
+        assertEquals(1, _server.getRequestCount());
+    }
+
+    @Test
+    public void testRetryPolicyRetriesAreCounted() throws Exception {
+        _dropCount.set(1);
+
+        assertEquals(0, _client.getArray("subscriptions/app/token").length());
+        assertEquals(2, _server.getRequestCount());
+        assertEquals(1, _client.getRetryCount());
+    }
+
+    @Test
+    public void testServerErrorIsRetried() throws Exception {
+        _client.setRetryPolicy(new DefaultRetryPolicy().setMaxRetries(2));
+        _server.failNext(2, 503);
+
+        assertEquals(0, _client.getArray("subscriptions/app/token").length());
+        assertEquals(3, _server.getRequestCount());
+        assertEquals(2, _client.getRetryCount());
+    }
+}
@@ -0,0 +1,74 @@
+package com.egeniq.utils.net;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+
+/**
+ * Connectivity monitor whose state is set by the test instead of the framework.
+ */
+public class TestConnectivityMonitor extends ConnectivityMonitor {
+    /**
+     * Context without services.
+     */
+    private static class TestContext extends Context {
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+
+        @Override
+        public Object getSystemService(String name) {
+            return null;
+        }
+
+        @Override
+        public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+            return null;
+        }
+
+        @Override
+        public void unregisterReceiver(BroadcastReceiver receiver) {
+        }
+
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public TestConnectivityMonitor() {
+        super(new TestContext());
+    }
+
+    /**
+     * The state is only changed by the test.
+     */
+    @Override
+    public void update() {
+    }
+
+    /**
+     * Connected to an unmetered wifi network.
+     */
+    public void setWifi() {
+        _setState(true, true, false, ConnectivityManager.TYPE_WIFI, false);
+    }
+
+    /**
+     * Connected to a metered mobile network.
+     */
+    public void setMobile() {
+        _setState(true, false, true, ConnectivityManager.TYPE_MOBILE, true);
+    }
+
+    /**
+     * Not connected.
+     */
+    public void setOffline() {
+        _setState(false, false, false, -1, false);
+    }
+}
@@ -0,0 +1,196 @@
+package com.egeniq.utils.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import ch.boye.httpclientandroidlib.Header;
+import ch.boye.httpclientandroidlib.NameValuePair;
+import ch.boye.httpclientandroidlib.client.entity.UrlEncodedFormEntity;
+import ch.boye.httpclientandroidlib.message.BasicHeader;
+import ch.boye.httpclientandroidlib.message.BasicNameValuePair;
+
+import com.egeniq.utils.api.APIClient;
+import com.egeniq.utils.api.APIException;
+
+/**
+ * Runs the same requests over every transport, which must behave identically.
+ */
+@RunWith(Parameterized.class)
+public class TransportConformanceTest {
+    private final Transport _transport;
+
+    private StubServer _server;
+    private APIClient _client;
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> transports() {
+        return Arrays.asList(new Object[][] { { "HttpClientTransport", null }, { "URLConnectionTransport", new URLConnectionTransport() } });
+    }
+
+    public TransportConformanceTest(String name, Transport transport) {
+        _transport = transport;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _server.addHandler(new StubServer.Handler() {
+            @Override
+            public StubServer.Response handle(StubServer.Request request) throws IOException {
+                if (request.getPath().equals("gzip")) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    GZIPOutputStream out = new GZIPOutputStream(bytes);
+                    out.write("{\"compressed\":true}".getBytes("UTF-8"));
+                    out.close();
+                    return new StubServer.Response(200, bytes.toByteArray()).setHeader("Content-Type", "application/json").setHeader("Content-Encoding", "gzip");
+                } else if (request.getPath().equals("echo")) {
+                    try {
+                        return StubServer.Response.json(200, new JSONObject().put("method", request.getMethod()).put("header", String.valueOf(request.getHeader("X-Test"))).put("body", new String(request.getBody(), "UTF-8")));
+                    } catch (JSONException e) {
+                        throw new IOException(e.getMessage());
+                    }
+                }
+
+                return null;
+            }
+        });
+
+        _client = new APIClient(_server.getBaseURL());
+        _client.setTransport(_transport);
+    }
+
+    @After
+    public void tearDown() {
+        _server.stop();
+    }
+
+    @Test
+    public void testGetObjectAndArray() throws Exception {
+        String token = _server.createEndpoint();
+
+        assertEquals(token, _client.get("endpoints/" + token).getString("token"));
+        assertEquals(0, _client.getArray("subscriptions/app/" + token).length());
+    }
+
+    @Test
+    public void testPostAndDelete() throws Exception {
+        List<NameValuePair> params = new ArrayList<NameValuePair>();
+        params.add(new BasicNameValuePair("appId", "app"));
+        params.add(new BasicNameValuePair("deviceFamily", "gcm"));
+        params.add(new BasicNameValuePair("deviceToken", "device"));
+        String token = _client.post("subscribers", new UrlEncodedFormEntity(params)).getString("notificationToken");
+
+        params.clear();
+        params.add(new BasicNameValuePair("appId", "app"));
+        params.add(new BasicNameValuePair("notificationToken", token));
+        params.add(new BasicNameValuePair("channelId", "news"));
+        _client.post("subscriptions", new UrlEncodedFormEntity(params));
+        assertEquals(1, _client.getArray("subscriptions/app/" + token).length());
+
+        String endpoint = _server.createEndpoint();
+        _client.post("endpoints/" + endpoint + "/subscriptions", new UrlEncodedFormEntity(Arrays.asList(new BasicNameValuePair("channelCode", "news"))));
+        assertEquals(Arrays.asList("news"), _server.getSubscriptions("endpoints/" + endpoint));
+        _client.delete("endpoints/" + endpoint + "/subscriptions/news");
+        assertTrue(_server.getSubscriptions("endpoints/" + endpoint).isEmpty());
+    }
+
+    @Test
+    public void testRequestHeadersAndBody() throws Exception {
+        Header[] headers = { new BasicHeader("X-Test", "value") };
+        JSONObject echo = _client.post("echo", new UrlEncodedFormEntity(Arrays.asList(new BasicNameValuePair("a", "b"))), false, headers);
+
+        assertEquals("POST", echo.getString("method"));
+        assertEquals("value", echo.getString("header"));
+        assertEquals("a=b", echo.getString("body"));
+    }
+
+    @Test
+    public void testCompressedRequestBody() throws Exception {
+        _client.setRequestCompressionThreshold(0);
+        JSONObject echo = _client.post("echo", new UrlEncodedFormEntity(Arrays.asList(new BasicNameValuePair("a", "b"))));
+
+        assertEquals("a=b", echo.getString("body"));
+    }
+
+    @Test
+    public void testCompressedResponse() throws Exception {
+        assertTrue(_client.get("gzip").getBoolean("compressed"));
+    }
+
+    @Test
+    public void testErrorResponse() throws Exception {
+        try {
+            _client.get("endpoints/unknown");
+            fail("Expected APIException");
+        } catch (APIException e) {
+            assertEquals(404, e.getResponseCode());
+            assertEquals("endpoint_not_found", e.getCode());
+        }
+    }
+
+    @Test
+    public void testServerErrorIsRetried() throws Exception {
+        String token = _server.createEndpoint();
+        _server.failNext(1, 503);
+
+        assertEquals(token, _client.get("endpoints/" + token).getString("token"));
+        assertEquals(2, _server.getRequestCount());
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        String token = _server.createEndpoint();
+        _server.setLatency(1000);
+        _client.setTimeout(100);
+        _client.setRetryPolicy(null);
+
+        long start = System.currentTimeMillis();
+        try {
+            _client.get("endpoints/" + token);
+            fail("Expected APIException");
+        } catch (APIException e) {
+            // expected
+        }
+
+        assertTrue(System.currentTimeMillis() - start < 900);
+    }
+
+    @Test
+    public void testConnectionReuse() throws Exception {
+        String token = _server.createEndpoint();
+        for (int i = 0; i < 5; i++) {
+            _client.get("endpoints/" + token);
+        }
+
+        assertEquals(1, _server.getConnectionCount());
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        String token = _server.createEndpoint();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long length = _client.download("endpoints/" + token, false, null, out, null);
+
+        assertEquals(out.size(), length);
+        assertEquals(token, new JSONObject(out.toString("UTF-8")).getString("token"));
+    }
+}
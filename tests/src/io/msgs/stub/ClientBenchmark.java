@@ -0,0 +1,241 @@
+package io.msgs.stub;
+
+import io.msgs.v2.Client;
+import io.msgs.v2.EndpointRequestHelper;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.egeniq.utils.net.Transport;
+import com.egeniq.utils.net.URLConnectionTransport;
+
+/**
+ * Measures the throughput and latency of the msgs.io client stack against the stand-in
+ * server, for a number of scenarios at various concurrency levels, over each transport.
+ *
+ * Usage: ClientBenchmark [concurrency levels, e.g. 1,4,16,64] [operations per level]
+ *
+ * System properties:
+ * <ul>
+ * <li>benchmark.latency: server latency in milliseconds (default 0)</li>
+ * <li>benchmark.padding: bytes of padding per entity (default 256)</li>
+ * <li>benchmark.warmup: warm-up operations per scenario (default 200)</li>
+ * <li>benchmark.transports: comma separated transports, httpclient and/or urlconnection
+ * (default both)</li>
+ * </ul>
+ */
+public class ClientBenchmark {
+    private final static String[] TAGS = { "news" };
+
+    /**
+     * Benchmarked operation.
+     */
+    private static abstract class Scenario {
+        private final String _name;
+
+        Scenario(String name) {
+            _name = name;
+        }
+
+        /**
+         * Creates the client and server state for the scenario.
+         */
+        abstract void setUp(StubServer server, Client client) throws Exception;
+
+        /**
+         * Executes a single operation.
+         */
+        abstract void execute(int index) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] levels = _parseLevels(args.length > 0 ? args[0] : "1,4,16,64");
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        long latency = Long.getLong("benchmark.latency", 0);
+        int padding = Integer.getInteger("benchmark.padding", 256);
+        int warmUp = Integer.getInteger("benchmark.warmup", 200);
+        String[] transports = System.getProperty("benchmark.transports", "httpclient,urlconnection").split(",");
+
+        StubServer server = new StubServer().start();
+        server.setLatency(latency).setPadding(padding);
+
+        System.out.println(String.format(Locale.US, "%-14s %-24s %11s %10s %9s %9s %9s %7s", "transport", "scenario", "concurrency", "ops/s", "p50 ms", "p99 ms", "max ms", "errors"));
+
+        try {
+            for (String transport : transports) {
+                for (Scenario scenario : _createScenarios()) {
+                    Client client = new Client(server.getBaseURL(), "benchmark");
+                    client.setTransport(_createTransport(transport.trim()));
+                    scenario.setUp(server, client);
+                    _run(scenario, 1, warmUp);
+
+                    for (int level : levels) {
+                        _report(transport.trim(), scenario, level, _run(scenario, level, operations));
+                    }
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Creates the transport with the given name, null for the default transport.
+     */
+    private static Transport _createTransport(String name) {
+        if (name.equals("httpclient")) {
+            return null;
+        } else if (name.equals("urlconnection")) {
+            return new URLConnectionTransport();
+        }
+
+        throw new IllegalArgumentException("Unknown transport: " + name);
+    }
+
+    /**
+     * Returns the benchmarked scenarios.
+     */
+    private static Scenario[] _createScenarios() {
+        return new Scenario[] { new Scenario("fetch endpoint") {
+            private EndpointRequestHelper _helper;
+
+            @Override
+            void setUp(StubServer server, Client client) {
+                _helper = client.forEndpoint(server.createEndpoint());
+            }
+
+            @Override
+            void execute(int index) throws Exception {
+                _helper.fetch();
+            }
+        }, new Scenario("fetch subscriptions") {
+            private EndpointRequestHelper _helper;
+
+            @Override
+            void setUp(StubServer server, Client client) {
+                String token = server.createEndpoint();
+                server.addSubscriptions("endpoints/" + token, 100);
+                _helper = client.forEndpoint(token);
+            }
+
+            @Override
+            void execute(int index) throws Exception {
+                _helper.fetchSubscriptions(TAGS, null, 25, (index % 4) * 25).size();
+            }
+        }, new Scenario("subscribe + unsubscribe") {
+            private EndpointRequestHelper _helper;
+
+            @Override
+            void setUp(StubServer server, Client client) {
+                _helper = client.forEndpoint(server.createEndpoint());
+            }
+
+            @Override
+            void execute(int index) throws Exception {
+                String channelCode = "channel-" + index + "-" + Thread.currentThread().getId();
+                _helper.subscribe(channelCode);
+                _helper.unsubscribe(channelCode);
+            }
+        } };
+    }
+
+    /**
+     * Runs the given number of operations on the given number of threads.
+     */
+    private static Result _run(final Scenario scenario, int concurrency, final int operations) throws InterruptedException {
+        final long[] latencies = new long[operations];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(concurrency);
+
+        for (int i = 0; i < concurrency; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+
+                        int index;
+                        while ((index = next.getAndIncrement()) < operations) {
+                            long startTime = System.nanoTime();
+                            try {
+                                scenario.execute(index);
+                            } catch (Exception e) {
+                                errors.incrementAndGet();
+                            }
+
+                            latencies[index] = System.nanoTime() - startTime;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "Benchmark #" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - startTime;
+
+        return new Result(latencies, elapsed, errors.get());
+    }
+
+    /**
+     * Prints a result line.
+     */
+    private static void _report(String transport, Scenario scenario, int concurrency, Result result) {
+        System.out.println(String.format(Locale.US, "%-14s %-24s %11d %10.0f %9.2f %9.2f %9.2f %7d", transport, scenario._name, concurrency, result.getThroughput(), result.getPercentile(50), result.getPercentile(99), result.getPercentile(100), result._errors));
+    }
+
+    /**
+     * Parses a comma separated list of concurrency levels.
+     */
+    private static int[] _parseLevels(String value) {
+        String[] parts = value.split(",");
+        int[] levels = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            levels[i] = Integer.parseInt(parts[i].trim());
+        }
+
+        return levels;
+    }
+
+    /**
+     * Latencies of a run.
+     */
+    private static class Result {
+        private final long[] _latencies;
+        private final long _elapsed;
+        private final int _errors;
+
+        Result(long[] latencies, long elapsed, int errors) {
+            _latencies = latencies.clone();
+            _elapsed = elapsed;
+            _errors = errors;
+            Arrays.sort(_latencies);
+        }
+
+        /**
+         * Operations per second.
+         */
+        double getThroughput() {
+            return _latencies.length / (_elapsed / 1e9);
+        }
+
+        /**
+         * Latency percentile in milliseconds.
+         */
+        double getPercentile(double percentile) {
+            int index = (int)Math.ceil(percentile / 100 * _latencies.length) - 1;
+            return _latencies[Math.max(0, Math.min(index, _latencies.length - 1))] / 1e6;
+        }
+    }
+}
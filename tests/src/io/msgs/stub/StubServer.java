@@ -0,0 +1,1001 @@
+package io.msgs.stub;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Local stand-in for the msgs.io backend.
+ *
+ * Implements the v1 (subscribers, subscriptions) and v2 (endpoints, users,
+ * subscriptions) routes used by the msgs.io clients on top of a plain ServerSocket,
+ * with HTTP/1.1 keep-alive. State is kept in memory. Latency, errors and payload sizes
+ * can be configured while the server is running.
+ *
+ * Additional handlers can be added for responses the msgs.io routes don't produce
+ * (e.g. partial content).
+ */
+public class StubServer {
+    private final static String DATE = "2013-06-01T12:00:00Z";
+
+    /**
+     * Parsed request.
+     */
+    public static class Request {
+        private final String _method;
+        private final String _path;
+        private final Map<String, String> _headers;
+        private final Map<String, String> _params;
+        private final byte[] _body;
+
+        private Request(String method, String path, Map<String, String> headers, Map<String, String> params, byte[] body) {
+            _method = method;
+            _path = path;
+            _headers = headers;
+            _params = params;
+            _body = body;
+        }
+
+        /**
+         * Returns the method.
+         */
+        public String getMethod() {
+            return _method;
+        }
+
+        /**
+         * Returns the path, without leading slash and query string.
+         */
+        public String getPath() {
+            return _path;
+        }
+
+        /**
+         * Returns the header with the given name, null if not set.
+         */
+        public String getHeader(String name) {
+            return _headers.get(name.toLowerCase(Locale.US));
+        }
+
+        /**
+         * Returns the query or form parameter with the given name, null if not set.
+         */
+        public String getParameter(String name) {
+            return _params.get(name);
+        }
+
+        /**
+         * Returns the (decompressed) body.
+         */
+        public byte[] getBody() {
+            return _body;
+        }
+
+        @Override
+        public String toString() {
+            return _method + " " + _path;
+        }
+    }
+
+    /**
+     * Response.
+     */
+    public static class Response {
+        private final int _statusCode;
+        private final Map<String, String> _headers = new LinkedHashMap<String, String>();
+        private final byte[] _body;
+
+        /**
+         * Constructor.
+         *
+         * @param statusCode Status code, 0 to close the connection without response.
+         * @param body       Body.
+         */
+        public Response(int statusCode, byte[] body) {
+            _statusCode = statusCode;
+            _body = body;
+        }
+
+        /**
+         * JSON response.
+         */
+        public static Response json(int statusCode, Object json) {
+            try {
+                Response response = new Response(statusCode, String.valueOf(json).getBytes("UTF-8"));
+                response.setHeader("Content-Type", "application/json; charset=utf-8");
+                return response;
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * msgs.io error response.
+         */
+        public static Response error(int statusCode, String code, String message) {
+            try {
+                return json(statusCode, new JSONObject().put("code", code).put("message", message));
+            } catch (JSONException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Sets a header.
+         */
+        public Response setHeader(String name, String value) {
+            _headers.put(name, value);
+            return this;
+        }
+
+        /**
+         * Returns the status code.
+         */
+        public int getStatusCode() {
+            return _statusCode;
+        }
+    }
+
+    /**
+     * Request handler.
+     */
+    public interface Handler {
+        /**
+         * Handles the given request.
+         *
+         * @return Response, null if the request isn't handled by this handler.
+         */
+        public Response handle(Request request) throws IOException;
+    }
+
+    private final CopyOnWriteArrayList<Handler> _handlers = new CopyOnWriteArrayList<Handler>();
+    private final List<String> _requests = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicLong _requestCount = new AtomicLong();
+    private final AtomicLong _connectionCount = new AtomicLong();
+    private final Random _random = new Random();
+
+    private final Map<String, JSONObject> _endpoints = new HashMap<String, JSONObject>();
+    private final Map<String, JSONObject> _users = new HashMap<String, JSONObject>();
+    private final Map<String, Map<String, JSONObject>> _subscriptions = new HashMap<String, Map<String, JSONObject>>();
+    private final Map<String, List<JSONObject>> _legacySubscriptions = new HashMap<String, List<JSONObject>>();
+    private final AtomicInteger _nextId = new AtomicInteger(1);
+
+    private volatile long _minLatency = 0;
+    private volatile long _maxLatency = 0;
+    private volatile double _errorRate = 0;
+    private volatile int _errorStatusCode = 503;
+    private int _failCount = 0;
+    private int _failStatusCode = 503;
+    private volatile int _padding = 0;
+
+    private ServerSocket _serverSocket;
+    private ExecutorService _executor;
+    private final List<Socket> _sockets = Collections.synchronizedList(new ArrayList<Socket>());
+
+    /**
+     * Starts the server on a free port on the loopback interface.
+     */
+    public StubServer start() throws IOException {
+        _serverSocket = new ServerSocket(0, 128, InetAddress.getByName("127.0.0.1"));
+        _executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger _count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "StubServer #" + _count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        _executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                _accept();
+            }
+        });
+
+        return this;
+    }
+
+    /**
+     * Stops the server and closes all connections.
+     */
+    public void stop() {
+        try {
+            _serverSocket.close();
+        } catch (IOException e) {
+        }
+
+        synchronized (_sockets) {
+            for (Socket socket : _sockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        _executor.shutdownNow();
+    }
+
+    /**
+     * Returns the base URL, without trailing slash.
+     */
+    public String getBaseURL() {
+        return "http://127.0.0.1:" + _serverSocket.getLocalPort();
+    }
+
+    /**
+     * Sets a fixed latency that is added to each response.
+     */
+    public StubServer setLatency(long latency) {
+        return setLatency(latency, latency);
+    }
+
+    /**
+     * Sets a latency that is added to each response, uniformly distributed between
+     * the given bounds.
+     */
+    public StubServer setLatency(long minLatency, long maxLatency) {
+        _minLatency = minLatency;
+        _maxLatency = maxLatency;
+        return this;
+    }
+
+    /**
+     * Fails the given fraction of the requests with the given status code.
+     */
+    public StubServer setErrorRate(double errorRate, int statusCode) {
+        _errorRate = errorRate;
+        _errorStatusCode = statusCode;
+        return this;
+    }
+
+    /**
+     * Fails the next requests with the given status code, 0 closes the connection
+     * without response.
+     */
+    public synchronized StubServer failNext(int count, int statusCode) {
+        _failCount = count;
+        _failStatusCode = statusCode;
+        return this;
+    }
+
+    /**
+     * Adds the given number of bytes of padding to the data of each returned entity.
+     */
+    public StubServer setPadding(int padding) {
+        _padding = padding;
+        return this;
+    }
+
+    /**
+     * Adds a handler that is consulted before the msgs.io routes.
+     */
+    public StubServer addHandler(Handler handler) {
+        _handlers.add(handler);
+        return this;
+    }
+
+    /**
+     * Returns the number of requests received.
+     */
+    public long getRequestCount() {
+        return _requestCount.get();
+    }
+
+    /**
+     * Returns the number of connections accepted.
+     */
+    public long getConnectionCount() {
+        return _connectionCount.get();
+    }
+
+    /**
+     * Returns the requests received so far, as "METHOD path".
+     */
+    public List<String> getRequests() {
+        synchronized (_requests) {
+            return new ArrayList<String>(_requests);
+        }
+    }
+
+    /**
+     * Clears the recorded requests.
+     */
+    public void clearRequests() {
+        _requests.clear();
+    }
+
+    /**
+     * Creates an endpoint.
+     *
+     * @return Token.
+     */
+    public synchronized String createEndpoint() {
+        return _createEndpoint(new HashMap<String, String>()).optString("token");
+    }
+
+    /**
+     * Creates a user.
+     *
+     * @return Token.
+     */
+    public synchronized String createUser() {
+        return _createUser(null).optString("token");
+    }
+
+    /**
+     * Subscribes the given user or endpoint path (e.g. "endpoints/token") to the
+     * given number of generated channels.
+     */
+    public synchronized void addSubscriptions(String basePath, int count) {
+        for (int i = 0; i < count; i++) {
+            _subscribe(basePath, "channel-" + _nextId.getAndIncrement());
+        }
+    }
+
+    /**
+     * Returns the channel codes the given user or endpoint path is subscribed to.
+     */
+    public synchronized List<String> getSubscriptions(String basePath) {
+        Map<String, JSONObject> subscriptions = _subscriptions.get(_canonicalize(basePath));
+        return subscriptions == null ? new ArrayList<String>() : new ArrayList<String>(subscriptions.keySet());
+    }
+
+    /**
+     * Returns the endpoint with the given token, null if it doesn't exist.
+     */
+    public synchronized JSONObject getEndpoint(String token) {
+        return _endpoints.get(token);
+    }
+
+    /**
+     * Accepts connections until the server is stopped.
+     */
+    private void _accept() {
+        while (!_serverSocket.isClosed()) {
+            try {
+                final Socket socket = _serverSocket.accept();
+                _connectionCount.incrementAndGet();
+                _sockets.add(socket);
+                try {
+                    _executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            _serve(socket);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // server stopped while accepting
+                    _sockets.remove(socket);
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // server stopped
+            }
+        }
+    }
+
+    /**
+     * Serves the requests of a connection.
+     */
+    private void _serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+            while (true) {
+                String requestLine = _readLine(in);
+                if (requestLine == null) {
+                    return;
+                }
+
+                if (requestLine.length() == 0) {
+                    continue;
+                }
+
+                Map<String, String> headers = new HashMap<String, String>();
+                String line;
+                while ((line = _readLine(in)) != null && line.length() > 0) {
+                    int index = line.indexOf(':');
+                    if (index > 0) {
+                        headers.put(line.substring(0, index).trim().toLowerCase(Locale.US), line.substring(index + 1).trim());
+                    }
+                }
+
+                Request request = _readRequest(requestLine, headers, in);
+                _requestCount.incrementAndGet();
+                _requests.add(request.toString());
+
+                Response response = _respond(request);
+                if (response == null || response._statusCode == 0) {
+                    return;
+                }
+
+                _writeResponse(out, response);
+
+                if ("close".equalsIgnoreCase(request.getHeader("Connection"))) {
+                    return;
+                }
+            }
+        } catch (SocketException e) {
+            // connection closed by the client
+        } catch (IOException e) {
+            // idem
+        } finally {
+            _sockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Reads the request body and parameters.
+     */
+    private Request _readRequest(String requestLine, Map<String, String> headers, InputStream in) throws IOException {
+        String[] parts = requestLine.split(" ");
+        if (parts.length < 2) {
+            throw new IOException("Invalid request line: " + requestLine);
+        }
+
+        String target = parts[1];
+        int queryIndex = target.indexOf('?');
+        String path = queryIndex >= 0 ? target.substring(0, queryIndex) : target;
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+
+        byte[] body;
+        if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+            body = _readChunked(in);
+        } else if (headers.containsKey("content-length")) {
+            body = _readFully(in, Integer.parseInt(headers.get("content-length")));
+        } else {
+            body = new byte[0];
+        }
+
+        if ("gzip".equalsIgnoreCase(headers.get("content-encoding"))) {
+            body = _gunzip(body);
+        }
+
+        Map<String, String> params = new HashMap<String, String>();
+        if (queryIndex >= 0) {
+            _parseParams(target.substring(queryIndex + 1), params);
+        }
+
+        String contentType = headers.get("content-type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            _parseParams(new String(body, "ISO-8859-1"), params);
+        }
+
+        return new Request(parts[0], path, headers, params, body);
+    }
+
+    /**
+     * Writes a response.
+     */
+    private void _writeResponse(OutputStream out, Response response) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("HTTP/1.1 ").append(response._statusCode).append(' ').append(_getReasonPhrase(response._statusCode)).append("\r\n");
+        for (Map.Entry<String, String> header : response._headers.entrySet()) {
+            builder.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+
+        if (!response._headers.containsKey("Content-Length")) {
+            builder.append("Content-Length: ").append(response._body.length).append("\r\n");
+        }
+
+        builder.append("\r\n");
+        out.write(builder.toString().getBytes("ISO-8859-1"));
+        out.write(response._body);
+        out.flush();
+    }
+
+    /**
+     * Creates the response for the given request, applying latency and errors.
+     */
+    private Response _respond(Request request) throws IOException {
+        long latency = _minLatency + (_maxLatency > _minLatency ? (long)(_random.nextDouble() * (_maxLatency - _minLatency)) : 0);
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+
+        synchronized (this) {
+            if (_failCount > 0) {
+                _failCount--;
+                return _failStatusCode == 0 ? null : Response.error(_failStatusCode, "injected_error", "Injected error");
+            }
+        }
+
+        if (_errorRate > 0 && _random.nextDouble() < _errorRate) {
+            return Response.error(_errorStatusCode, "injected_error", "Injected error");
+        }
+
+        for (Handler handler : _handlers) {
+            Response response = handler.handle(request);
+            if (response != null) {
+                return response;
+            }
+        }
+
+        try {
+            synchronized (this) {
+                return _route(request);
+            }
+        } catch (JSONException e) {
+            return Response.error(500, "internal_error", e.toString());
+        }
+    }
+
+    /**
+     * Routes a request to the msgs.io v1 and v2 resources.
+     */
+    private Response _route(Request request) throws JSONException {
+        String method = request.getMethod();
+        String[] segments = request.getPath().split("/");
+
+        // v1
+        if (segments[0].equals("subscribers") && method.equals("POST")) {
+            return _registerSubscriber(request);
+        } else if (segments[0].equals("subscriptions") && segments.length == 1 && method.equals("POST")) {
+            return _addLegacySubscription(request);
+        } else if (segments[0].equals("subscriptions") && segments.length == 2 && segments[1].equals(";delete") && method.equals("POST")) {
+            return _deleteLegacySubscription(request);
+        } else if (segments[0].equals("subscriptions") && segments.length == 3 && method.equals("GET")) {
+            List<JSONObject> subscriptions = _legacySubscriptions.get(segments[1] + "/" + segments[2]);
+            return Response.json(200, new JSONArray(subscriptions != null ? subscriptions : new ArrayList<JSONObject>()));
+        }
+
+        // v2
+        if (segments.length == 1 && segments[0].equals("endpoints") && method.equals("POST")) {
+            return Response.json(200, _pad(_createEndpoint(request._params)));
+        } else if (segments.length == 1 && segments[0].equals("users") && method.equals("POST")) {
+            return Response.json(200, _pad(_createUser(request.getParameter("externalUserId"))));
+        } else if (segments[0].equals("users") && segments.length >= 2) {
+            if (!_users.containsKey(segments[1])) {
+                return Response.error(404, "user_not_found", "User not found");
+            } else if (segments.length == 2 && method.equals("GET")) {
+                return Response.json(200, _pad(_users.get(segments[1])));
+            } else if (segments.length == 3 && segments[2].equals("endpoints")) {
+                return _userEndpoints(request, segments[1]);
+            } else if (segments.length >= 4 && segments[2].equals("endpoints")) {
+                return _endpoint(request, segments, 3);
+            } else if (segments[2].equals("subscriptions")) {
+                return _subscriptions(request, "users/" + segments[1], segments, 3);
+            }
+        } else if (segments[0].equals("endpoints") && segments.length >= 2) {
+            return _endpoint(request, segments, 1);
+        }
+
+        return Response.error(404, "not_found", "Unknown resource " + request);
+    }
+
+    /**
+     * Endpoint resource and its subscriptions, segments[index] is the endpoint token.
+     */
+    private Response _endpoint(Request request, String[] segments, int index) throws JSONException {
+        String token = segments[index];
+        JSONObject endpoint = _endpoints.get(token);
+        if (endpoint == null) {
+            return Response.error(404, "endpoint_not_found", "Endpoint not found");
+        }
+
+        String method = request.getMethod();
+        if (segments.length == index + 1) {
+            if (method.equals("GET")) {
+                return Response.json(200, _pad(endpoint));
+            } else if (method.equals("POST")) {
+                for (String name : new String[] { "type", "address", "name", "endpointSubscriptionsActive", "userSubscriptionsActive" }) {
+                    if (request.getParameter(name) != null) {
+                        endpoint.put(name, request.getParameter(name));
+                    }
+                }
+
+                return Response.json(200, _pad(endpoint));
+            } else if (method.equals("DELETE")) {
+                _endpoints.remove(token);
+                _subscriptions.remove("endpoints/" + token);
+                return Response.json(200, new JSONObject());
+            }
+        } else if (segments[index + 1].equals("subscriptions")) {
+            return _subscriptions(request, "endpoints/" + token, segments, index + 2);
+        }
+
+        return Response.error(405, "method_not_allowed", "Method not allowed");
+    }
+
+    /**
+     * Endpoints of a user.
+     */
+    private Response _userEndpoints(Request request, String userToken) throws JSONException {
+        if (request.getMethod().equals("POST")) {
+            JSONObject endpoint = _createEndpoint(request._params);
+            endpoint.put("userToken", userToken);
+            return Response.json(200, _pad(endpoint));
+        }
+
+        List<JSONObject> endpoints = new ArrayList<JSONObject>();
+        for (JSONObject endpoint : _endpoints.values()) {
+            if (userToken.equals(endpoint.optString("userToken"))) {
+                endpoints.add(endpoint);
+            }
+        }
+
+        return Response.json(200, _page(request, endpoints));
+    }
+
+    /**
+     * Subscriptions of a user or endpoint, segments[index] is the channel code (if any).
+     */
+    private Response _subscriptions(Request request, String basePath, String[] segments, int index) throws JSONException {
+        String method = request.getMethod();
+        Map<String, JSONObject> subscriptions = _subscriptions.get(basePath);
+
+        if (segments.length == index) {
+            if (method.equals("POST")) {
+                String channelCode = request.getParameter("channelCode");
+                if (channelCode == null) {
+                    return Response.error(400, "missing_channel_code", "Missing channel code");
+                }
+
+                return Response.json(200, _pad(_subscribe(basePath, channelCode)));
+            } else if (method.equals("GET")) {
+                return Response.json(200, _page(request, subscriptions != null ? new ArrayList<JSONObject>(subscriptions.values()) : new ArrayList<JSONObject>()));
+            }
+        } else if (segments.length == index + 1) {
+            JSONObject subscription = subscriptions != null ? subscriptions.get(segments[index]) : null;
+            if (subscription == null) {
+                return Response.error(404, "subscription_not_found", "Subscription not found");
+            } else if (method.equals("GET")) {
+                return Response.json(200, _pad(subscription));
+            } else if (method.equals("DELETE")) {
+                subscriptions.remove(segments[index]);
+                return Response.json(200, new JSONObject());
+            }
+        }
+
+        return Response.error(405, "method_not_allowed", "Method not allowed");
+    }
+
+    /**
+     * v1 device registration.
+     */
+    private Response _registerSubscriber(Request request) throws JSONException {
+        if (request.getParameter("appId") == null || request.getParameter("deviceToken") == null) {
+            return Response.error(400, "missing_parameter", "Missing appId or deviceToken");
+        }
+
+        String notificationToken = request.getParameter("notificationToken");
+        if (notificationToken == null) {
+            notificationToken = "nt-" + _nextId.getAndIncrement();
+        }
+
+        return Response.json(200, new JSONObject().put("notificationToken", notificationToken));
+    }
+
+    /**
+     * v1 subscribe.
+     */
+    private Response _addLegacySubscription(Request request) throws JSONException {
+        String appId = request.getParameter("appId");
+        String notificationToken = request.getParameter("notificationToken");
+        if (appId == null || notificationToken == null || request.getParameter("channelId") == null) {
+            return Response.error(400, "missing_parameter", "Missing appId, notificationToken or channelId");
+        }
+
+        JSONObject subscription = new JSONObject();
+        subscription.put("id", String.valueOf(_nextId.getAndIncrement()));
+        subscription.put("channelId", request.getParameter("channelId"));
+        for (String name : new String[] { "dateStart", "dateEnd", "timeStart", "timeEnd", "dowSet" }) {
+            if (request.getParameter(name) != null) {
+                subscription.put(name, request.getParameter(name));
+            }
+        }
+
+        String key = appId + "/" + notificationToken;
+        if (!_legacySubscriptions.containsKey(key)) {
+            _legacySubscriptions.put(key, new ArrayList<JSONObject>());
+        }
+
+        _legacySubscriptions.get(key).add(subscription);
+        return Response.json(200, subscription);
+    }
+
+    /**
+     * v1 unsubscribe, by channel or subscription ID.
+     */
+    private Response _deleteLegacySubscription(Request request) throws JSONException {
+        List<JSONObject> subscriptions = _legacySubscriptions.get(request.getParameter("appId") + "/" + request.getParameter("notificationToken"));
+        if (subscriptions != null) {
+            for (int i = subscriptions.size() - 1; i >= 0; i--) {
+                JSONObject subscription = subscriptions.get(i);
+                if (subscription.optString("channelId").equals(request.getParameter("channelId")) || subscription.optString("id").equals(request.getParameter("subscriptionId"))) {
+                    subscriptions.remove(i);
+                }
+            }
+        }
+
+        return Response.json(200, new JSONObject());
+    }
+
+    /**
+     * Creates an endpoint from the given parameters.
+     */
+    private JSONObject _createEndpoint(Map<String, String> params) {
+        try {
+            String token = "e" + _nextId.getAndIncrement();
+            JSONObject endpoint = new JSONObject();
+            endpoint.put("token", token);
+            endpoint.put("type", params.containsKey("type") ? params.get("type") : "gcm");
+            endpoint.put("address", params.containsKey("address") ? params.get("address") : "address-" + token);
+            endpoint.put("name", params.containsKey("name") ? params.get("name") : "Endpoint " + token);
+            endpoint.put("endpointSubscriptionsActive", true);
+            endpoint.put("userSubscriptionsActive", true);
+            endpoint.put("createdAt", DATE);
+            _endpoints.put(token, endpoint);
+            return endpoint;
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a user.
+     */
+    private JSONObject _createUser(String externalUserId) {
+        try {
+            String token = "u" + _nextId.getAndIncrement();
+            JSONObject user = new JSONObject();
+            user.put("token", token);
+            user.put("externalUserId", externalUserId != null ? externalUserId : token);
+            user.put("createdAt", DATE);
+            _users.put(token, user);
+            return user;
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Subscribes a user or endpoint to a channel, returns the (existing) subscription.
+     */
+    private JSONObject _subscribe(String basePath, String channelCode) {
+        basePath = _canonicalize(basePath);
+        Map<String, JSONObject> subscriptions = _subscriptions.get(basePath);
+        if (subscriptions == null) {
+            subscriptions = new LinkedHashMap<String, JSONObject>();
+            _subscriptions.put(basePath, subscriptions);
+        }
+
+        JSONObject subscription = subscriptions.get(channelCode);
+        if (subscription == null) {
+            try {
+                JSONObject channel = new JSONObject();
+                channel.put("code", channelCode);
+                channel.put("name", "Channel " + channelCode);
+                channel.put("tags", new JSONArray().put("news"));
+                channel.put("createdAt", DATE);
+                channel.put("updatedAt", DATE);
+
+                subscription = new JSONObject();
+                subscription.put("channel", channel);
+                subscription.put("createdAt", DATE);
+            } catch (JSONException e) {
+                throw new IllegalStateException(e);
+            }
+
+            subscriptions.put(channelCode, subscription);
+        }
+
+        return subscription;
+    }
+
+    /**
+     * Subscriptions of an endpoint are the same whether addressed through its user or not.
+     */
+    private String _canonicalize(String basePath) {
+        int index = basePath.indexOf("/endpoints/");
+        return index >= 0 ? basePath.substring(index + 1) : basePath;
+    }
+
+    /**
+     * Returns a page of the given items.
+     */
+    private JSONObject _page(Request request, List<JSONObject> items) throws JSONException {
+        int offset = request.getParameter("offset") != null ? Integer.parseInt(request.getParameter("offset")) : 0;
+        int limit = request.getParameter("limit") != null ? Integer.parseInt(request.getParameter("limit")) : 25;
+
+        JSONArray page = new JSONArray();
+        for (int i = offset; i < Math.min(items.size(), offset + limit); i++) {
+            page.put(_pad(items.get(i)));
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("total", items.size());
+        result.put("count", page.length());
+        result.put("items", page);
+        return result;
+    }
+
+    /**
+     * Returns a copy of the given entity with the configured padding.
+     */
+    private JSONObject _pad(JSONObject entity) throws JSONException {
+        int padding = _padding;
+        if (padding <= 0) {
+            return entity;
+        }
+
+        char[] chars = new char[padding];
+        Arrays.fill(chars, 'x');
+
+        JSONObject copy = new JSONObject(entity.toString());
+        copy.put("data", new JSONObject().put("padding", new String(chars)));
+        return copy;
+    }
+
+    /**
+     * Parses URL encoded parameters.
+     */
+    private static void _parseParams(String query, Map<String, String> params) throws UnsupportedEncodingException {
+        for (String pair : query.split("&")) {
+            if (pair.length() == 0) {
+                continue;
+            }
+
+            int index = pair.indexOf('=');
+            String name = URLDecoder.decode(index >= 0 ? pair.substring(0, index) : pair, "UTF-8");
+            String value = index >= 0 ? URLDecoder.decode(pair.substring(index + 1), "UTF-8") : "";
+            params.put(name, value);
+        }
+    }
+
+    /**
+     * Reads a CRLF terminated line, null at the end of the stream.
+     */
+    private static String _readLine(InputStream in) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = builder.length();
+                if (length > 0 && builder.charAt(length - 1) == '\r') {
+                    builder.setLength(length - 1);
+                }
+
+                return builder.toString();
+            }
+
+            builder.append((char)c);
+        }
+
+        return builder.length() > 0 ? builder.toString() : null;
+    }
+
+    /**
+     * Reads exactly the given number of bytes.
+     */
+    private static byte[] _readFully(InputStream in, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int count = in.read(buffer, offset, length - offset);
+            if (count < 0) {
+                throw new IOException("Unexpected end of request body");
+            }
+
+            offset += count;
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Reads a chunked body.
+     */
+    private static byte[] _readChunked(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (true) {
+            String line = _readLine(in);
+            if (line == null) {
+                throw new IOException("Unexpected end of chunked body");
+            }
+
+            int index = line.indexOf(';');
+            int size = Integer.parseInt((index >= 0 ? line.substring(0, index) : line).trim(), 16);
+            if (size == 0) {
+                while ((line = _readLine(in)) != null && line.length() > 0) {
+                    // trailers
+                }
+
+                return out.toByteArray();
+            }
+
+            out.write(_readFully(in, size));
+            _readLine(in);
+        }
+    }
+
+    /**
+     * Decompresses a gzip body.
+     */
+    private static byte[] _gunzip(byte[] body) throws IOException {
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the reason phrase for the given status code.
+     */
+    private static String _getReasonPhrase(int statusCode) {
+        switch (statusCode) {
+            case 200:
+                return "OK";
+            case 206:
+                return "Partial Content";
+            case 304:
+                return "Not Modified";
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            case 429:
+                return "Too Many Requests";
+            case 500:
+                return "Internal Server Error";
+            case 503:
+                return "Service Unavailable";
+            default:
+                return "Status " + statusCode;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.msgs.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.msgs.stub.StubServer;
+import io.msgs.v2.entity.Subscription;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.egeniq.utils.api.APIException;
+import com.egeniq.utils.net.Deadline;
+import com.egeniq.utils.net.DeadlineExceededException;
+import com.egeniq.utils.net.HistogramRequestListener;
+import com.egeniq.utils.net.RequestPriority;
+import com.egeniq.utils.net.RequestScheduler;
+import com.egeniq.utils.net.RequestTrace;
+
+/**
+ * Bulk subscribe and unsubscribe against the stand-in server.
+ */
+public class BulkRequestTest {
+    private final static List<String> CHANNELS = Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l");
+
+    private StubServer _server;
+    private Client _client;
+    private String _token;
+    private final AtomicInteger _running = new AtomicInteger();
+    private final AtomicInteger _maxRunning = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _server.addHandler(new StubServer.Handler() {
+            @Override
+            public StubServer.Response handle(StubServer.Request request) {
+                String channelCode = request.getParameter("channelCode");
+                if (channelCode != null && channelCode.startsWith("bad")) {
+                    return StubServer.Response.error(400, "invalid_channel", "Invalid channel");
+                }
+
+                int running = _running.incrementAndGet();
+                while (running > _maxRunning.get()) {
+                    _maxRunning.compareAndSet(_maxRunning.get(), running);
+                }
+
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    _running.decrementAndGet();
+                }
+
+                return null;
+            }
+        });
+
+        _client = new Client(_server.getBaseURL(), "key");
+        _token = _server.createEndpoint();
+    }
+
+    @After
+    public void tearDown() {
+        _server.stop();
+    }
+
+    @Test
+    public void testParallelismIsBounded() throws Exception {
+        BulkResult<Subscription> result = _client.forEndpoint(_token).subscribe(CHANNELS, 3);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(new HashSet<String>(CHANNELS), result.getResults().keySet());
+        assertEquals(new HashSet<String>(CHANNELS), new HashSet<String>(_server.getSubscriptions("endpoints/" + _token)));
+        assertTrue("max parallel requests " + _maxRunning.get(), _maxRunning.get() <= 3);
+        assertTrue("max parallel requests " + _maxRunning.get(), _maxRunning.get() > 1);
+    }
+
+    @Test
+    public void testSequentialWithParallelismOne() throws Exception {
+        BulkResult<Subscription> result = _client.forEndpoint(_token).subscribe(CHANNELS.subList(0, 4), 1);
+
+        assertEquals(4, result.getResults().size());
+        assertEquals(1, _maxRunning.get());
+    }
+
+    @Test
+    public void testFailuresAreCollectedPerItem() throws Exception {
+        BulkResult<Subscription> result = _client.forEndpoint(_token).subscribe(Arrays.asList("a", "bad1", "b", "bad2", "c"), 2);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), result.getResults().keySet());
+        assertEquals(new HashSet<String>(Arrays.asList("bad1", "bad2")), result.getFailures().keySet());
+        for (APIException e : result.getFailures().values()) {
+            assertEquals("invalid_channel", e.getCode());
+            assertEquals(400, e.getResponseCode());
+        }
+
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), new HashSet<String>(_server.getSubscriptions("endpoints/" + _token)));
+    }
+
+    @Test
+    public void testCallerDeadlineAppliesToAllItems() throws Exception {
+        Deadline deadline = new Deadline(1);
+        Thread.sleep(10);
+
+        Deadline previous = Deadline.setCurrent(deadline);
+        BulkResult<Subscription> result;
+        try {
+            result = _client.forEndpoint(_token).subscribe(CHANNELS, 4);
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+
+        assertEquals(CHANNELS.size(), result.getFailures().size());
+        for (APIException e : result.getFailures().values()) {
+            assertTrue(e.getCause() instanceof DeadlineExceededException);
+        }
+
+        assertTrue(_server.getSubscriptions("endpoints/" + _token).isEmpty());
+    }
+
+    @Test
+    public void testCallerPriorityAppliesToAllItems() throws Exception {
+        final Set<RequestPriority> priorities = Collections.synchronizedSet(new HashSet<RequestPriority>());
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        _client.setRequestListener(new HistogramRequestListener() {
+            @Override
+            public void onComplete(RequestTrace trace, long duration) {
+                priorities.add(RequestScheduler.getCurrentPriority());
+                threads.add(Thread.currentThread());
+            }
+        });
+
+        RequestPriority previous = RequestScheduler.setCurrentPriority(RequestPriority.BACKGROUND);
+        try {
+            assertTrue(_client.forEndpoint(_token).subscribe(CHANNELS, 4).isSuccessful());
+        } finally {
+            RequestScheduler.setCurrentPriority(previous);
+        }
+
+        assertEquals(Collections.singleton(RequestPriority.BACKGROUND), priorities);
+        assertTrue(threads.size() > 1);
+    }
+}
@@ -0,0 +1,183 @@
+package io.msgs.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+import io.msgs.v2.entity.Endpoint;
+import io.msgs.v2.entity.ItemList;
+import io.msgs.v2.entity.Subscription;
+import io.msgs.v2.entity.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.boye.httpclientandroidlib.NameValuePair;
+import ch.boye.httpclientandroidlib.client.entity.UrlEncodedFormEntity;
+import ch.boye.httpclientandroidlib.message.BasicNameValuePair;
+
+import com.egeniq.utils.api.APIClient;
+import com.egeniq.utils.api.APIException;
+
+/**
+ * Drives the msgs.io client through its main scenarios against the stand-in server.
+ */
+public class ClientScenarioTest {
+    private final static String[] TAGS = { "news" };
+
+    private StubServer _server;
+    private Client _client;
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _client = new Client(_server.getBaseURL(), "key");
+    }
+
+    @After
+    public void tearDown() {
+        _server.stop();
+    }
+
+    @Test
+    public void testRegisterAndFetchEndpoint() throws Exception {
+        Endpoint endpoint = _client.registerEndpoint(new JSONObject().put("type", "gcm").put("address", "device-1"));
+        assertNotNull(endpoint.getToken());
+
+        Endpoint fetched = _client.forEndpoint(endpoint.getToken()).fetch();
+        assertEquals(endpoint.getToken(), fetched.getToken());
+        assertEquals("device-1", fetched.getAddress());
+    }
+
+    @Test
+    public void testUpdateEndpoint() throws Exception {
+        String token = _server.createEndpoint();
+
+        Endpoint endpoint = _client.forEndpoint(token).update(new JSONObject().put("name", "Phone"));
+        assertEquals("Phone", endpoint.getName());
+        assertEquals("Phone", _server.getEndpoint(token).getString("name"));
+    }
+
+    @Test
+    public void testSubscribeAndUnsubscribe() throws Exception {
+        String token = _server.createEndpoint();
+        EndpointRequestHelper helper = _client.forEndpoint(token);
+
+        Subscription subscription = helper.subscribe("sports");
+        assertEquals("sports", subscription.getChannel().getCode());
+        assertEquals("sports", helper.fetchSubscription("sports").getChannel().getCode());
+
+        helper.unsubscribe("sports");
+        assertTrue(_server.getSubscriptions("endpoints/" + token).isEmpty());
+    }
+
+    @Test
+    public void testFetchSubscriptionsPage() throws Exception {
+        String token = _server.createEndpoint();
+        _server.addSubscriptions("endpoints/" + token, 30);
+
+        ItemList<Subscription> page = _client.forEndpoint(token).fetchSubscriptions(TAGS, null, 10, 20);
+        assertEquals(Integer.valueOf(30), page.getTotal());
+        assertEquals(10, page.size());
+        assertEquals(_server.getSubscriptions("endpoints/" + token).get(20), page.get(0).getChannel().getCode());
+    }
+
+    @Test
+    public void testIterateSubscriptions() throws Exception {
+        String token = _server.createEndpoint();
+        _server.addSubscriptions("endpoints/" + token, 120);
+
+        List<String> codes = new ArrayList<String>();
+        PagingCursor<Subscription> cursor = _client.forEndpoint(token).iterateSubscriptions(TAGS, null, 25, 2);
+        try {
+            while (cursor.hasNext()) {
+                codes.add(cursor.next().getChannel().getCode());
+            }
+        } finally {
+            cursor.close();
+        }
+
+        assertEquals(_server.getSubscriptions("endpoints/" + token), codes);
+    }
+
+    @Test
+    public void testSyncSubscriptions() throws Exception {
+        String token = _server.createEndpoint();
+        EndpointRequestHelper helper = _client.forEndpoint(token);
+        helper.subscribe("a");
+        helper.subscribe("b");
+
+        RequestHelper.SyncResult result = helper.syncSubscriptions(TAGS, Arrays.asList("b", "c", "d"), 2);
+        assertTrue(result.isSuccessful());
+        assertEquals(new HashSet<String>(Arrays.asList("c", "d")), result.getSubscribed().getResults().keySet());
+        assertEquals(new HashSet<String>(Arrays.asList("a")), result.getUnsubscribed().getResults().keySet());
+        assertEquals(new HashSet<String>(Arrays.asList("b", "c", "d")), new HashSet<String>(_server.getSubscriptions("endpoints/" + token)));
+    }
+
+    @Test
+    public void testUserEndpoints() throws Exception {
+        User user = _client.registerUser(new JSONObject().put("externalUserId", "user-1"));
+        UserRequestHelper helper = _client.forUser(user.getToken());
+
+        Endpoint endpoint = helper.registerEndpoint(new JSONObject().put("address", "device-2"));
+        helper.forEndpoint(endpoint.getToken()).subscribe("weather");
+
+        ItemList<Endpoint> endpoints = helper.fetchEndpoints(null, null);
+        assertEquals(1, endpoints.size());
+        assertEquals(endpoint.getToken(), endpoints.get(0).getToken());
+        assertEquals(Arrays.asList("weather"), _server.getSubscriptions("endpoints/" + endpoint.getToken()));
+    }
+
+    @Test
+    public void testErrorResponse() throws Exception {
+        try {
+            _client.forEndpoint("unknown").fetch();
+            fail("Expected APIException");
+        } catch (APIException e) {
+            assertEquals("endpoint_not_found", e.getCode());
+            assertEquals(404, e.getResponseCode());
+        }
+    }
+
+    @Test
+    public void testServerErrorIsRetried() throws Exception {
+        String token = _server.createEndpoint();
+        _server.failNext(1, 503);
+
+        assertEquals(token, _client.forEndpoint(token).fetch().getToken());
+        assertEquals(2, _server.getRequestCount());
+    }
+
+    @Test
+    public void testLegacyRoutes() throws Exception {
+        APIClient client = new APIClient(_server.getBaseURL());
+
+        List<NameValuePair> params = new ArrayList<NameValuePair>();
+        params.add(new BasicNameValuePair("appId", "app"));
+        params.add(new BasicNameValuePair("deviceFamily", "gcm"));
+        params.add(new BasicNameValuePair("deviceToken", "device"));
+        String notificationToken = client.post("subscribers", new UrlEncodedFormEntity(params)).getString("notificationToken");
+
+        params.clear();
+        params.add(new BasicNameValuePair("appId", "app"));
+        params.add(new BasicNameValuePair("notificationToken", notificationToken));
+        params.add(new BasicNameValuePair("channelId", "news"));
+        client.post("subscriptions", new UrlEncodedFormEntity(params));
+
+        JSONArray subscriptions = client.getArray("subscriptions/app/" + notificationToken);
+        assertEquals(1, subscriptions.length());
+        assertEquals("news", subscriptions.getJSONObject(0).getString("channelId"));
+
+        client.post("subscriptions/;delete", new UrlEncodedFormEntity(params));
+        assertEquals(0, client.getArray("subscriptions/app/" + notificationToken).length());
+    }
+}
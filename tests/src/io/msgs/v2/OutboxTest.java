@@ -0,0 +1,182 @@
+package io.msgs.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import io.msgs.stub.StubServer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.egeniq.utils.api.APIException;
+
+/**
+ * Outbox journal and collapsing, flushed against the stand-in server.
+ */
+public class OutboxTest {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private StubServer _server;
+    private Client _client;
+    private File _file;
+    private String _token;
+    private EndpointRequestHelper _helper;
+
+    @Before
+    public void setUp() throws Exception {
+        _server = new StubServer().start();
+        _client = new Client(_server.getBaseURL(), "key");
+        _file = new File(_folder.getRoot(), "outbox");
+        _token = _server.createEndpoint();
+        _helper = _client.forEndpoint(_token);
+    }
+
+    @After
+    public void tearDown() {
+        _server.stop();
+    }
+
+    @Test
+    public void testJournalReplay() throws Exception {
+        Outbox outbox = new Outbox(_client, _file);
+        outbox.subscribe(_helper, "a");
+        outbox.subscribe(_helper, "b");
+        outbox.update(_helper, new JSONObject().put("name", "Phone"));
+        outbox.close();
+
+        outbox = new Outbox(_client, _file);
+        assertEquals(Arrays.asList("SUBSCRIBE a", "SUBSCRIBE b", "UPDATE_ENDPOINT"), _describe(outbox));
+        assertEquals(3, outbox.flush());
+        assertEquals(Arrays.asList("a", "b"), _server.getSubscriptions("endpoints/" + _token));
+        assertEquals("Phone", _server.getEndpoint(_token).getString("name"));
+        outbox.close();
+
+        outbox = new Outbox(_client, _file);
+        assertEquals(0, outbox.size());
+        outbox.close();
+    }
+
+    @Test
+    public void testFailedMutationStaysQueued() throws Exception {
+        Outbox outbox = new Outbox(_client, _file);
+        outbox.subscribe(_helper, "a");
+
+        _server.setErrorRate(1, 503);
+        try {
+            outbox.flush();
+            fail("Expected APIException");
+        } catch (APIException e) {
+            assertEquals(503, e.getResponseCode());
+        }
+
+        outbox.close();
+
+        _server.setErrorRate(0, 503);
+        outbox = new Outbox(_client, _file);
+        assertEquals(1, outbox.flush());
+        assertEquals(Arrays.asList("a"), _server.getSubscriptions("endpoints/" + _token));
+        outbox.close();
+    }
+
+    @Test
+    public void testClientErrorIsDropped() throws Exception {
+        final List<String> dropped = new ArrayList<String>();
+
+        Outbox outbox = new Outbox(_client, _file);
+        outbox.setListener(new Outbox.Listener() {
+            @Override
+            public void onSent(Outbox.Mutation mutation, JSONObject result) {
+            }
+
+            @Override
+            public void onDropped(Outbox.Mutation mutation, APIException exception) {
+                dropped.add(exception.getCode());
+            }
+        });
+
+        outbox.unsubscribe(_helper, "unknown");
+        assertEquals(1, outbox.flush());
+        assertEquals(Arrays.asList("subscription_not_found"), dropped);
+        assertEquals(0, outbox.size());
+        outbox.close();
+    }
+
+    @Test
+    public void testCollapse() throws Exception {
+        _helper.subscribe("b");
+
+        Outbox outbox = new Outbox(_client, _file);
+        outbox.subscribe(_helper, "a");
+        outbox.unsubscribe(_helper, "a");
+        outbox.unsubscribe(_helper, "b");
+        outbox.subscribe(_helper, "b");
+        outbox.subscribe(_helper, "c");
+        outbox.subscribe(_helper, "c");
+        outbox.update(_helper, new JSONObject().put("name", "Phone").put("address", "device-1"));
+        outbox.update(_helper, new JSONObject().put("name", "Tablet"));
+
+        List<String> expected = Arrays.asList("SUBSCRIBE b", "SUBSCRIBE c", "UPDATE_ENDPOINT");
+        assertEquals(expected, _describe(outbox));
+        outbox.close();
+
+        // the collapsed state has been journaled
+        outbox = new Outbox(_client, _file);
+        assertEquals(expected, _describe(outbox));
+
+        assertEquals(3, outbox.flush());
+        assertEquals(Arrays.asList("b", "c"), _server.getSubscriptions("endpoints/" + _token));
+        assertEquals("Tablet", _server.getEndpoint(_token).getString("name"));
+        assertEquals("device-1", _server.getEndpoint(_token).getString("address"));
+        outbox.close();
+    }
+
+    @Test
+    public void testPartialRecordIsIgnored() throws Exception {
+        Outbox outbox = new Outbox(_client, _file);
+        outbox.subscribe(_helper, "a");
+        outbox.subscribe(_helper, "b");
+        outbox.close();
+
+        // simulate a crash while appending a record
+        FileOutputStream out = new FileOutputStream(_file, true);
+        try {
+            out.write(new byte[] { 0, 0, 0, 1, 0, 0, 0 });
+        } finally {
+            out.close();
+        }
+
+        outbox = new Outbox(_client, _file);
+        assertEquals(Arrays.asList("SUBSCRIBE a", "SUBSCRIBE b"), _describe(outbox));
+        outbox.subscribe(_helper, "c");
+        outbox.close();
+
+        // the journal has been rewritten without the partial record
+        outbox = new Outbox(_client, _file);
+        assertEquals(Arrays.asList("SUBSCRIBE a", "SUBSCRIBE b", "SUBSCRIBE c"), _describe(outbox));
+        assertEquals(3, outbox.flush());
+        assertEquals(Arrays.asList("a", "b", "c"), _server.getSubscriptions("endpoints/" + _token));
+        outbox.close();
+    }
+
+    /**
+     * Returns the type and channel code of the queued mutations.
+     */
+    private List<String> _describe(Outbox outbox) {
+        List<String> result = new ArrayList<String>();
+        for (Outbox.Mutation mutation : outbox.getMutations()) {
+            result.add(mutation.getType() + (mutation.getChannelCode() != null ? " " + mutation.getChannelCode() : ""));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,195 @@
+package io.msgs.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.msgs.v2.entity.Channel;
+import io.msgs.v2.entity.ItemList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.egeniq.utils.api.APIException;
+
+/**
+ * Paging, prefetching and cancellation of a PagingCursor.
+ */
+public class PagingCursorTest {
+    /**
+     * Executor that runs tasks immediately on the submitting thread.
+     */
+    private final static Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Serves pages of a fixed number of channels.
+     */
+    private static class Fetcher implements PagingCursor.PageFetcher<Channel> {
+        private final int _itemCount;
+        private final boolean _withTotal;
+        private int _failOffset = -1;
+        private final List<Integer> _offsets = Collections.synchronizedList(new ArrayList<Integer>());
+        private final List<Thread> _threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+        Fetcher(int itemCount, boolean withTotal) {
+            _itemCount = itemCount;
+            _withTotal = withTotal;
+        }
+
+        Fetcher setFailOffset(int failOffset) {
+            _failOffset = failOffset;
+            return this;
+        }
+
+        @Override
+        public ItemList<Channel> fetch(int limit, int offset) throws APIException {
+            _offsets.add(offset);
+            _threads.add(Thread.currentThread());
+            if (offset == _failOffset) {
+                throw new APIException("page_failed", "Page failed", 500);
+            }
+
+            int count = Math.max(0, Math.min(limit, _itemCount - offset));
+            Channel[] channels = new Channel[count];
+            for (int i = 0; i < count; i++) {
+                channels[i] = new Channel().setCode("channel-" + (offset + i));
+            }
+
+            ItemList<Channel> page = new ItemList<Channel>(Channel.class).setItems(channels).setCount(count);
+            return _withTotal ? page.setTotal(_itemCount) : page;
+        }
+    }
+
+    /**
+     * Executor that holds on to its tasks until they are run explicitly.
+     */
+    private static class QueueingExecutor implements Executor {
+        private final List<Runnable> _tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            _tasks.add(command);
+        }
+    }
+
+    @Test
+    public void testStopsAtTotal() throws Exception {
+        Fetcher fetcher = new Fetcher(25, true);
+        PagingCursor<Channel> cursor = new PagingCursor<Channel>(fetcher, DIRECT_EXECUTOR, 10, 2);
+
+        assertEquals(Integer.valueOf(25), cursor.getTotal());
+        assertEquals(25, _consume(cursor).size());
+        assertEquals(Arrays.asList(0, 10, 20), fetcher._offsets);
+        assertNull(cursor.next());
+    }
+
+    @Test
+    public void testStopsAtShortPageWithoutTotal() throws Exception {
+        Fetcher fetcher = new Fetcher(25, false);
+        PagingCursor<Channel> cursor = new PagingCursor<Channel>(fetcher, DIRECT_EXECUTOR, 10, 1);
+
+        List<String> codes = _consume(cursor);
+        assertEquals(25, codes.size());
+        assertEquals("channel-24", codes.get(24));
+        assertNull(cursor.getTotal());
+        assertEquals(Arrays.asList(0, 10, 20), fetcher._offsets);
+    }
+
+    @Test
+    public void testStopsAtEmptyPageWithoutTotal() throws Exception {
+        Fetcher fetcher = new Fetcher(20, false);
+        PagingCursor<Channel> cursor = new PagingCursor<Channel>(fetcher, DIRECT_EXECUTOR, 10, 0);
+
+        assertEquals(20, _consume(cursor).size());
+        assertEquals(Arrays.asList(0, 10, 20), fetcher._offsets);
+    }
+
+    @Test
+    public void testPrefetchFailureSurfacesFromNext() throws Exception {
+        Fetcher fetcher = new Fetcher(30, true).setFailOffset(10);
+        PagingCursor<Channel> cursor = new PagingCursor<Channel>(fetcher, DIRECT_EXECUTOR, 10, 1);
+
+        // the failing page has been prefetched while the first page is consumed
+        for (int i = 0; i < 10; i++) {
+            assertEquals("channel-" + i, cursor.next().getCode());
+        }
+
+        assertEquals(Arrays.asList(0, 10), fetcher._offsets);
+
+        try {
+            cursor.next();
+            fail("Expected APIException");
+        } catch (APIException e) {
+            assertEquals("page_failed", e.getCode());
+            assertEquals(500, e.getResponseCode());
+        }
+
+        assertFalse(cursor.hasNext());
+        assertEquals(Arrays.asList(0, 10), fetcher._offsets);
+    }
+
+    @Test
+    public void testCloseCancelsPrefetches() throws Exception {
+        Fetcher fetcher = new Fetcher(100, true);
+        QueueingExecutor executor = new QueueingExecutor();
+        PagingCursor<Channel> cursor = new PagingCursor<Channel>(fetcher, executor, 10, 2);
+
+        assertEquals("channel-0", cursor.next().getCode());
+        assertEquals(3, executor._tasks.size());
+        assertEquals(Arrays.asList(0), fetcher._offsets);
+
+        cursor.close();
+        for (Runnable task : executor._tasks.subList(1, 3)) {
+            assertTrue(((Future<?>)task).isCancelled());
+            task.run();
+        }
+
+        assertEquals(Arrays.asList(0), fetcher._offsets);
+        assertFalse(cursor.hasNext());
+        assertNull(cursor.next());
+    }
+
+    @Test
+    public void testWithoutPrefetchingFetchesInline() throws Exception {
+        Fetcher fetcher = new Fetcher(25, true);
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                fail("Executor used without prefetching");
+            }
+        };
+
+        PagingCursor<Channel> cursor = new PagingCursor<Channel>(fetcher, executor, 10, 0);
+
+        assertEquals("channel-0", cursor.next().getCode());
+        assertEquals(Arrays.asList(0), fetcher._offsets);
+
+        assertEquals(24, _consume(cursor).size());
+        assertEquals(Arrays.asList(0, 10, 20), fetcher._offsets);
+        assertEquals(Collections.nCopies(3, Thread.currentThread()), fetcher._threads);
+    }
+
+    /**
+     * Returns the codes of the remaining items of the given cursor.
+     */
+    private static List<String> _consume(PagingCursor<Channel> cursor) throws APIException {
+        List<String> codes = new ArrayList<String>();
+        while (cursor.hasNext()) {
+            codes.add(cursor.next().getCode());
+        }
+
+        return codes;
+    }
+}
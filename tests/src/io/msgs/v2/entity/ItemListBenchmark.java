@@ -0,0 +1,67 @@
+package io.msgs.v2.entity;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.egeniq.utils.benchmark.MicroBenchmark;
+
+/**
+ * Time and allocation of accessing the items of an ItemList: the previous reflective
+ * lookup and construction per access versus the cached, lazily created items.
+ */
+public class ItemListBenchmark {
+    private final static int PASSES = 3;
+
+    public static void main(String[] args) throws Exception {
+        MicroBenchmark.printHeader("ItemList, " + PASSES + " passes over all items");
+        for (final int count : new int[] { 10, 100, 1000 }) {
+            final JSONObject data = ItemListTest._createData(count);
+            int iterations = Math.max(50, 500000 / count);
+
+            MicroBenchmark.measure("reflective get(i), " + count + " items", iterations, new MicroBenchmark.Operation() {
+                @Override
+                public Object run() throws Exception {
+                    Object last = null;
+                    for (int pass = 0; pass < PASSES; pass++) {
+                        for (int i = 0; i < count; i++) {
+                            last = _legacyGet(data, Channel.class, i);
+                        }
+                    }
+
+                    return last;
+                }
+            });
+
+            MicroBenchmark.measure("cached get(i), " + count + " items", iterations, new MicroBenchmark.Operation() {
+                @Override
+                public Object run() throws Exception {
+                    ItemList<Channel> list = new ItemList<Channel>(Channel.class, data);
+                    Object last = null;
+                    for (int pass = 0; pass < PASSES; pass++) {
+                        for (int i = 0; i < count; i++) {
+                            last = list.get(i);
+                        }
+                    }
+
+                    return last;
+                }
+            });
+        }
+    }
+
+    /**
+     * Previous implementation of ItemList.get().
+     */
+    private static <T> T _legacyGet(JSONObject data, Class<T> clazz, int index) {
+        JSONArray rawItems = data.optJSONArray("items");
+        if (rawItems == null || index >= rawItems.length()) {
+            return null;
+        }
+
+        try {
+            return clazz.getConstructor(JSONObject.class).newInstance(rawItems.getJSONObject(index));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package io.msgs.v2.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * Lazy creation and caching of the items of an ItemList.
+ */
+public class ItemListTest {
+    @Test
+    public void testItemsAreCreatedOnceAndCached() throws Exception {
+        ItemList<Channel> list = new ItemList<Channel>(Channel.class, _createData(3));
+
+        assertEquals(3, list.size());
+        Channel first = list.get(0);
+        assertEquals("channel-0", first.getCode());
+        assertSame(first, list.get(0));
+        assertSame(first, list.getItems()[0]);
+        assertSame(first, list.asList().get(0));
+    }
+
+    @Test
+    public void testOutOfRange() throws Exception {
+        ItemList<Channel> list = new ItemList<Channel>(Channel.class, _createData(2));
+
+        assertNull(list.get(-1));
+        assertNull(list.get(2));
+
+        try {
+            list.asList().get(2);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIterate() throws Exception {
+        ItemList<Channel> list = new ItemList<Channel>(Channel.class, _createData(5));
+
+        List<String> codes = new ArrayList<String>();
+        for (Channel channel : list) {
+            codes.add(channel.getCode());
+        }
+
+        assertEquals(5, codes.size());
+        assertEquals("channel-4", codes.get(4));
+    }
+
+    @Test
+    public void testWithoutItems() {
+        ItemList<Channel> list = new ItemList<Channel>(Channel.class, new JSONObject());
+
+        assertEquals(0, list.size());
+        assertNull(list.get(0));
+        assertNull(list.getItems());
+        assertEquals(0, list.asList().size());
+    }
+
+    @Test
+    public void testSetItems() {
+        Channel channel = new Channel().setCode("news");
+        ItemList<Channel> list = new ItemList<Channel>(Channel.class).setItems(new Channel[] { channel });
+
+        assertEquals(1, list.size());
+        assertSame(channel, list.get(0));
+
+        ItemList<Channel> copy = new ItemList<Channel>(Channel.class, list.toJSON());
+        assertEquals("news", copy.get(0).getCode());
+    }
+
+    /**
+     * Creates list data with the given number of channels.
+     */
+    static JSONObject _createData(int count) throws Exception {
+        JSONArray items = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            items.put(new JSONObject().put("code", "channel-" + i).put("name", "Channel " + i));
+        }
+
+        return new JSONObject().put("total", count).put("count", count).put("items", items);
+    }
+}